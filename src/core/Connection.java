@@ -20,6 +20,11 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** are the transfer completions scheduled as transfer events */
+	private boolean transferEvents;
+	/** time of the scheduled completion of the current transfer or NaN if
+	 * none is scheduled */
+	private double completionTime = Double.NaN;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -58,6 +63,71 @@ public abstract class Connection {
 		return node == this.fromNode;
 	}
 
+	/**
+	 * Sets the scheduling of transfer completions on or off. If on, the
+	 * connection schedules a transfer event for the time when the current
+	 * transfer completes (and replaces it if its speed changes) so the
+	 * sending router finalizes the transfer at that time instead of polling
+	 * the connection every update. Default is off.
+	 * @param transferEvents True if the completions are scheduled
+	 */
+	public void setTransferEvents(boolean transferEvents) {
+		this.transferEvents = transferEvents;
+	}
+
+	/**
+	 * Returns true if the transfer completions are scheduled
+	 * @return true if the transfer completions are scheduled
+	 * @see #setTransferEvents(boolean)
+	 */
+	public boolean hasTransferEvents() {
+		return this.transferEvents;
+	}
+
+	/**
+	 * Schedules a transfer event for the completion of the current transfer
+	 * if the transfer completions are scheduled. A completion that was
+	 * scheduled earlier for the same transfer is cancelled.
+	 * @param time The simulation time when the transfer completes
+	 * @see World#scheduleTransferCompletion(Connection, double)
+	 */
+	protected void scheduleCompletion(double time) {
+		if (this.transferEvents) {
+			SimScenario.getInstance().getWorld().scheduleTransferCompletion(
+					this, time);
+		}
+	}
+
+	/**
+	 * Sets the time of the scheduled completion of the current transfer
+	 * @param time The time of the completion's transfer event
+	 */
+	void setCompletionTime(double time) {
+		this.completionTime = time;
+	}
+
+	/**
+	 * Cancels the scheduled completion of the current transfer (if any).
+	 * The scheduled transfer event is discarded when its time comes.
+	 */
+	protected void cancelCompletion() {
+		this.completionTime = Double.NaN;
+	}
+
+	/**
+	 * Completes the current transfer if the transfer event of the given
+	 * time is still its scheduled completion. The sending router is
+	 * informed with {@link MessageRouter#transferCompleted(Connection)}.
+	 * @param time The time of the transfer event
+	 */
+	void completeTransfer(double time) {
+		if (time != this.completionTime || this.msgOnFly == null) {
+			return; // cancelled or replaced by a later completion
+		}
+		this.completionTime = Double.NaN;
+		this.msgFromNode.getRouter().transferCompleted(this);
+	}
+
 	/**
 	 * Sets the state of the connection.
 	 * @param state True if the connection is up, false if not
@@ -113,6 +183,7 @@ public abstract class Connection {
 	protected void clearMsgOnFly() {
 		this.msgOnFly = null;
 		this.msgFromNode = null;		
+		cancelCompletion();
 	}
 
 	/**
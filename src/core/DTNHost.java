@@ -22,6 +22,20 @@ public class DTNHost implements Comparable<DTNHost> {
 
 	private Coord location; 	// where is the host
 	private Coord destination;	// where is it going
+	/* the host moves on a straight segment from segStart to destination.
+	   The times are on the host's own movement clock that advances only
+	   when the host moves, so the location is a function of the clock and
+	   it is calculated only when someone asks for it */
+	private Coord segStart;
+	private double segStartTime;
+	private double segEndTime;
+	private double moveClock;
+	/** simulation time that the movement clock's value corresponds to */
+	private double locationTime;
+	private boolean locationValid;
+	/** the kernel that moves the host (or null) and the host's slot in it */
+	private MovementKernel kernel;
+	private int kernelSlot;
 
 	private MessageRouter router;
 	private MovementModel movement;
@@ -33,6 +47,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
+	/** is the host sleeping (not updated) until its next active time */
+	private boolean asleep;
 
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -53,11 +69,40 @@ public class DTNHost implements Comparable<DTNHost> {
 			String groupId, List<NetworkInterface> interf,
 			ModuleCommunicationBus comBus, 
 			MovementModel mmProto, MessageRouter mRouterProto) {
+		this(msgLs, movLs, groupId, interf, comBus, mmProto, mRouterProto,
+				null, null);
+	}
+
+	/**
+	 * Creates a new DTNHost whose movement model may already have been
+	 * replicated (for this host's address) and placed to its initial location.
+	 * @param msgLs Message listeners
+	 * @param movLs Movement listeners
+	 * @param groupId GroupID of this host
+	 * @param interf List of NetworkInterfaces for the class
+	 * @param comBus Module communication bus object
+	 * @param mmProto Prototype of the movement model of this host
+	 * @param mRouterProto Prototype of the message router of this host
+	 * @param replica The replicated movement model or null if the prototype
+	 * should be replicated here
+	 * @param initLocation The initial location the replicated movement model
+	 * gave (ignored if replica is null)
+	 * @see SimScenario#createHosts()
+	 */
+	DTNHost(List<MessageListener> msgLs,
+			List<MovementListener> movLs,
+			String groupId, List<NetworkInterface> interf,
+			ModuleCommunicationBus comBus, 
+			MovementModel mmProto, MessageRouter mRouterProto,
+			MovementModel replica, Coord initLocation) {
 		this.comBus = comBus;
 		this.location = new Coord(0,0);
+		this.locationValid = true;
 		this.address = getNextAddress();
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
+		/* the replicated modules take their random streams for this host */
+		RandomStreams.setCurrentHost(this.address);
 
 		for (NetworkInterface i : interf) {
 			NetworkInterface ni = i.replicate();
@@ -72,11 +117,14 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.movListeners = movLs;
 
 		// create instances by replicating the prototypes
-		this.movement = mmProto.replicate();
+		this.movement = replica != null ? replica : mmProto.replicate();
 		this.movement.setComBus(comBus);
 		setRouter(mRouterProto.replicate());
 
-		this.location = movement.getInitialLocation();
+		this.location = replica != null ? initLocation :
+			this.movement.getInitialLocation();
+		this.locationValid = true;
+		RandomStreams.setCurrentHost(RandomStreams.NO_HOST);
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
@@ -97,6 +145,14 @@ public class DTNHost implements Comparable<DTNHost> {
 		return nextAddress++;	
 	}
 
+	/**
+	 * Returns the address the next host will get without reserving it
+	 * @return The next address
+	 */
+	synchronized static int peekNextAddress() {
+		return nextAddress;
+	}
+
 	/**
 	 * Reset the host and its interfaces
 	 */
@@ -112,6 +168,39 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.movement.isActive();
 	}
 
+	/**
+	 * Returns the time when this node is active next time
+	 * @return the time when this node is active next time
+	 * @see MovementModel#getNextActiveTime()
+	 */
+	public double getNextActiveTime() {
+		return this.movement.getNextActiveTime();
+	}
+
+	/**
+	 * Puts the host to sleep or wakes it up. The interfaces of a sleeping
+	 * host are removed from the connectivity optimizers so other hosts
+	 * don't find them.
+	 * @param asleep Should the host sleep
+	 */
+	void setAsleep(boolean asleep) {
+		if (this.asleep == asleep) {
+			return;
+		}
+		this.asleep = asleep;
+		for (NetworkInterface i : net) {
+			i.setInOptimizer(!asleep);
+		}
+	}
+
+	/**
+	 * Returns true if the host is sleeping
+	 * @return true if the host is sleeping
+	 */
+	boolean isAsleep() {
+		return this.asleep;
+	}
+
 	/**
 	 * Set a router for this host
 	 * @param router The router to set
@@ -176,16 +265,176 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @return The location
 	 */
 	public Coord getLocation() {
+		if (this.kernel != null) {
+			this.location.setLocation(kernel.getX(kernelSlot),
+					kernel.getY(kernelSlot));
+			return this.location;
+		}
+		if (!this.locationValid) {
+			updateLocation();
+		}
 		return this.location;
 	}
+	
+	/**
+	 * Calculates the location on the current segment at the current
+	 * movement clock value
+	 */
+	private void updateLocation() {
+		this.locationValid = true;
+		double duration = segEndTime - segStartTime;
+		if (this.moveClock >= segEndTime || duration <= 0) {
+			this.location.setLocation(this.destination);
+			return;
+		}
+		double f = (this.moveClock - segStartTime) / duration;
+		this.location.setLocation(
+				segStart.getX() + f * (destination.getX() - segStart.getX()),
+				segStart.getY() + f * (destination.getY() - segStart.getY()));
+	}
+	
+	/**
+	 * Returns the simulation time of the location returned by 
+	 * {@link #getLocation()}. Hosts are moved in steps, so the time can be
+	 * behind the current simulation time (e.g., when external events are 
+	 * processed between the steps).
+	 * @return The time of the current location
+	 */
+	public double getLocationTime() {
+		if (this.kernel != null) {
+			return kernel.getLocationTime();
+		}
+		return this.locationTime;
+	}
+	
+	/**
+	 * Returns the point where the host's current straight movement ends.
+	 * Until {@link #getSegmentEndTime()} the host moves (with constant 
+	 * speed) on the line from its current location to this point.
+	 * @return A copy of the end point of the current segment or of the
+	 * current location if the host is not moving
+	 */
+	public Coord getSegmentEnd() {
+		if (!isMoving()) {
+			return getLocation().clone();
+		}
+		return this.destination.clone();
+	}
+	
+	/**
+	 * Returns the simulation time when the host's current straight movement
+	 * (or wait) ends, i.e., the time until which the host's location can be
+	 * calculated from its current location and {@link #getSegmentEnd()}.
+	 * @return The end time of the current segment or wait; the current time
+	 * if the host is inactive (it may start moving at any time)
+	 */
+	public double getSegmentEndTime() {
+		if (!isActive()) {
+			return SimClock.getTime();
+		}
+		if (!isMoving()) {
+			return Math.max(this.nextTimeToMove, SimClock.getTime());
+		}
+		return getLocationTime() + (segEndTime - getMoveClock());
+	}
+	
+	/**
+	 * Returns true if the host is on its way to a waypoint
+	 */
+	private boolean isMoving() {
+		return this.destination != null && getMoveClock() < this.segEndTime;
+	}
+
+	/**
+	 * Returns the value of the movement clock
+	 */
+	private double getMoveClock() {
+		if (this.kernel != null) {
+			return kernel.getClock(kernelSlot);
+		}
+		return this.moveClock;
+	}
+
+	/**
+	 * Returns true if the host can be moved by a {@link MovementKernel}
+	 * @return true if the host's movement model is compatible with the kernel
+	 */
+	public boolean isKernelCompatible() {
+		return this.movement.isKernelCompatible();
+	}
+
+	/**
+	 * Moves the host's movement state to a kernel
+	 * @param kernel The kernel that moves the host from now on
+	 * @param slot The host's slot in the kernel
+	 */
+	void attachToKernel(MovementKernel kernel, int slot) {
+		this.kernelSlot = slot;
+		storeToKernel(kernel);
+	}
+
+	/**
+	 * Moves the host in the kernel when the host is not moving on its
+	 * current segment for the whole time (see {@link #move(double)}).
+	 * @param timeIncrement How long time the node moves
+	 */
+	void moveInKernel(double timeIncrement) {
+		MovementKernel k = takeFromKernel();
+		move(timeIncrement);
+		storeToKernel(k);
+	}
+
+	/**
+	 * Takes the movement clock from the kernel and detaches the host from
+	 * it so that the host's own state is used
+	 * @return The kernel the host was detached from
+	 */
+	private MovementKernel takeFromKernel() {
+		MovementKernel k = this.kernel;
+		this.moveClock = k.getClock(kernelSlot);
+		if (this.destination != null) {
+			this.locationValid = false;
+		}
+		this.kernel = null;
+		return k;
+	}
 
 	/**
-	 * Returns the Path this node is currently traveling or null if no
-	 * path is in use at the moment.
+	 * Stores the host's movement state to a kernel and attaches the host
+	 * to it
+	 * @param k The kernel
+	 */
+	private void storeToKernel(MovementKernel k) {
+		k.setSegment(kernelSlot, moveClock, segStartTime, segEndTime,
+				segStart, destination, getLocation());
+		this.kernel = k;
+	}
+	
+	/**
+	 * Starts a new segment from the current location towards the destination
+	 * @param startTime Movement clock value when the segment starts
+	 */
+	private void startSegment(double startTime) {
+		if (this.segStart == null) {
+			this.segStart = getLocation().clone();
+		}
+		else {
+			this.segStart.setLocation(getLocation());
+		}
+		this.segStartTime = startTime;
+		double distance = segStart.distance(this.destination);
+		this.segEndTime = startTime + (distance > 0 ? distance / speed : 0);
+	}
+
+	/**
+	 * Returns a copy of the Path this node is currently traveling or null
+	 * if no path is in use at the moment. The host's own path may come
+	 * from a pool and be reused once it has been traveled, so it is never
+	 * given out.
 	 * @return The path this node is traveling
 	 */
 	public Path getPath() {
-		return this.path;
+		return this.path == null ? null : new Path(this.path);
 	}
 
 
@@ -194,7 +443,19 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param location The location to set
 	 */
 	public void setLocation(Coord location) {
+		MovementKernel k = null;
+		if (this.kernel != null) {
+			k = takeFromKernel();
+		}
 		this.location = location.clone();
+		this.locationValid = true;
+		this.locationTime = SimClock.getTime();
+		if (this.destination != null) {
+			startSegment(this.moveClock); // continue from the new location
+		}
+		if (k != null) {
+			storeToKernel(k);
+		}
 	}
 
 	/**
@@ -319,6 +580,11 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void update(boolean simulateConnections) {
 		if (!isActive()) {
+			if (simulateConnections) {
+				for (NetworkInterface i : net) {
+					i.hostInactive();
+				}
+			}
 			return;
 		}
 		
@@ -336,10 +602,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param timeIncrement How long time the node moves
 	 */
 	public void move(double timeIncrement) {		
-		double possibleMovement;
-		double distance;
-		double dx, dy;
-
+		this.locationTime = SimClock.getTime() + timeIncrement;
 		if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
 			return; 
 		}
@@ -349,25 +612,30 @@ public class DTNHost implements Comparable<DTNHost> {
 			}
 		}
 
-		possibleMovement = timeIncrement * speed;
-		distance = this.location.distance(this.destination);
-
-		while (possibleMovement >= distance) {
+		double target = this.moveClock + timeIncrement;
+		while (target >= this.segEndTime) {
 			// node can move past its next destination
+			/* (the segment of a path that ended during an earlier step
+			   ended before the clock; that step's rest is not moved) */
+			this.moveClock = Math.max(this.moveClock, this.segEndTime);
 			this.location.setLocation(this.destination); // snap to destination
-			possibleMovement -= distance;
+			this.locationValid = true;
+			double oldSpeed = this.speed;
 			if (!setNextWaypoint()) { // get a new waypoint
+				this.moveClock = target;
 				return; // no more waypoints left
 			}
-			distance = this.location.distance(this.destination);
+			if (this.speed != oldSpeed && this.speed > 0) {
+				/* the rest of the step covers the distance that is left
+				   (not the time), like when the hosts moved step by step */
+				target = this.moveClock +
+					(target - this.moveClock) * oldSpeed / this.speed;
+			}
 		}
 
-		// move towards the point for possibleMovement amount
-		dx = (possibleMovement/distance) * (this.destination.getX() -
-				this.location.getX());
-		dy = (possibleMovement/distance) * (this.destination.getY() -
-				this.location.getY());
-		this.location.translate(dx, dy);
+		/* the location on the segment is calculated when it is needed */
+		this.moveClock = target;
+		this.locationValid = false;
 	}	
 
 	/**
@@ -383,16 +651,25 @@ public class DTNHost implements Comparable<DTNHost> {
 
 		if (path == null || !path.hasNext()) {
 			this.nextTimeToMove = movement.nextPathAvailable();
+			if (this.path != null) {
+				this.path.recycle(); // the path has been traveled
+			}
 			this.path = null;
 			return false;
 		}
 
-		this.destination = path.getNextWaypoint();
+		if (this.destination == null) {
+			this.destination = new Coord(0,0);
+		}
+		path.getNextWaypoint(this.destination);
 		this.speed = path.getSpeed();
+		startSegment(this.moveClock);
 
 		if (this.movListeners != null) {
+			/* the listeners get a copy that the host doesn't reuse */
+			Coord dest = this.destination.clone();
 			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+				l.newDestination(this, dest, this.speed);
 			}
 		}
 
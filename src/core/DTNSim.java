@@ -9,6 +9,8 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
+import ui.ControlServer;
+import ui.DTNSimServerUI;
 import ui.DTNSimTextUI;
 
 /**
@@ -18,6 +20,10 @@ public class DTNSim {
 	/** If this option ({@value}) is given to program, batch mode and
 	 * Text UI are used*/
 	public static final String BATCH_MODE_FLAG = "-b";
+	/** If this option ({@value}) is given to program, batch mode is used
+	 * and the runs can be monitored and controlled through a local HTTP
+	 * server (see {@link ControlServer}) */
+	public static final String SERVER_MODE_FLAG = "-s";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
 	
@@ -37,10 +43,13 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * The {@link #SERVER_MODE_FLAG} is used like the batch mode option, but
+	 * the runs use the headless {@link DTNSimServerUI}.
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
 		boolean batchMode = false;
+		boolean serverMode = false;
 		int nrofRuns[] = {0,1};
 		String confFiles[];
 		int firstConfIndex = 0;
@@ -50,8 +59,10 @@ public class DTNSim {
 		java.util.Locale.setDefault(java.util.Locale.US);
 		
 		if (args.length > 0) {
-			if (args[0].equals(BATCH_MODE_FLAG)) {
+			if (args[0].equals(BATCH_MODE_FLAG) ||
+					args[0].equals(SERVER_MODE_FLAG)) {
 				batchMode = true;
+				serverMode = args[0].equals(SERVER_MODE_FLAG);
                 if (args.length == 1) {
                     firstConfIndex = 1;
                 }
@@ -78,11 +89,28 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
+			ControlServer server = null;
+			if (serverMode) {
+				server = startControlServer();
+			}
 			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+				if (server != null && server.isStopped()) {
+					break;
+				}
 				print("Run " + (i+1) + "/" + nrofRuns[1]);
 				Settings.setRunIndex(i);
 				resetForNextRun();
-				new DTNSimTextUI().start();
+				if (server != null) {
+					DTNSimServerUI ui = new DTNSimServerUI(server);
+					server.setRun(ui, i, nrofRuns[1] - 1);
+					ui.start();
+				}
+				else {
+					new DTNSimTextUI().start();
+				}
+			}
+			if (server != null) {
+				server.stop();
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +121,26 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Creates and starts the control server of the server mode
+	 * @return The server or null if it couldn't be started
+	 */
+	private static ControlServer startControlServer() {
+		try {
+			ControlServer server = new ControlServer();
+			server.start();
+			print("Control server listening at http://127.0.0.1:" +
+					server.getPort() + "/ (token for POST requests in " +
+					server.getTokenFile() + ")");
+			return server;
+		}
+		catch (SimError er) {
+			System.err.println("Can't start the control server: " +
+					er.getMessage() + "\nRunning the batch without it");
+		}
+		return null;
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
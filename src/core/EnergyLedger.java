@@ -0,0 +1,292 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+/**
+ * <P>Central account of the hosts' energy levels. The balances are kept in
+ * one array indexed by the host addresses. The modules that use energy
+ * (e.g. {@link routing.EnergyAwareRouter}) record debits during the hosts'
+ * updates and the world applies all of them in one loop after every
+ * update round (see {@link #applyDebits()}), in the order they were
+ * recorded. A balance never goes below zero.</P>
+ *
+ * <P>The ledger also keeps the balances with the recorded debits included.
+ * When such a balance crosses zero, i.e. at the debit that uses the last
+ * of the energy, the host is depleted and its listener is told about it
+ * right away. Network interfaces of depleted hosts don't
+ * look for new connections. Every balance change is also published on the
+ * host's {@link ModuleCommunicationBus} as the
+ * {@link routing.EnergyAwareRouter#ENERGY_VALUE_ID} value, but the ledger
+ * is the authoritative source: changes made directly to the bus value
+ * don't change the balance.</P>
+ */
+public class EnergyLedger {
+	/** Handle of the energy value's key in the communication buses */
+	public static final int ENERGY_VALUE_KEY = ModuleCommunicationBus.getKey(
+			routing.EnergyAwareRouter.ENERGY_VALUE_ID);
+
+	private static EnergyLedger instance;
+
+	/** energy balances by host address */
+	private double[] balances;
+	/** balances with the debits of the current round (by address) */
+	private double[] pending;
+	/** is the host in the ledger (by address) */
+	private boolean[] registered;
+	/** has the host run out of energy (by address) */
+	private boolean[] depleted;
+	private ModuleCommunicationBus[] buses;
+	private Listener[] listeners;
+
+	/* debits recorded during the current update round */
+	private int[] debitHosts;
+	private double[] debitAmounts;
+	private int nrofDebits;
+
+	static {
+		DTNSim.registerForReset(EnergyLedger.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static synchronized void reset() {
+		instance = null;
+	}
+
+	/**
+	 * Returns the energy ledger of the simulation and creates one if it
+	 * doesn't exist yet
+	 * @return The energy ledger
+	 */
+	public static synchronized EnergyLedger getInstance() {
+		if (instance == null) {
+			instance = new EnergyLedger();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the energy ledger of the simulation if some module has
+	 * created it
+	 * @return The energy ledger or null if there is none
+	 */
+	static synchronized EnergyLedger getExistingInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns true if the host with the given address has run out of energy
+	 * @param address Address of the host
+	 * @return true if the host is in the ledger and depleted
+	 */
+	static boolean isHostDepleted(int address) {
+		EnergyLedger ledger = instance;
+		return ledger != null && ledger.isDepleted(address);
+	}
+
+	private EnergyLedger() {
+		this.balances = new double[0];
+		this.pending = new double[0];
+		this.registered = new boolean[0];
+		this.depleted = new boolean[0];
+		this.buses = new ModuleCommunicationBus[0];
+		this.listeners = new Listener[0];
+		this.debitHosts = new int[16];
+		this.debitAmounts = new double[16];
+	}
+
+	/**
+	 * Adds a host to the ledger. An earlier entry of the same address is
+	 * replaced.
+	 * @param address Address of the host
+	 * @param balance Initial energy balance
+	 * @param comBus The host's communication bus where the balance is
+	 * published (or null)
+	 * @param listener Listener that is told when the host runs out of
+	 * energy (or null)
+	 */
+	public void register(int address, double balance,
+			ModuleCommunicationBus comBus, Listener listener) {
+		ensureCapacity(address);
+		this.registered[address] = true;
+		this.depleted[address] = false;
+		this.buses[address] = comBus;
+		this.listeners[address] = listener;
+		this.pending[address] = this.balances[address];
+		setBalance(address, balance);
+	}
+
+	private void ensureCapacity(int address) {
+		if (address < this.balances.length) {
+			return;
+		}
+		int size = Math.max(address + 1, this.balances.length * 2);
+		double[] newBalances = new double[size];
+		double[] newPending = new double[size];
+		boolean[] newRegistered = new boolean[size];
+		boolean[] newDepleted = new boolean[size];
+		ModuleCommunicationBus[] newBuses = new ModuleCommunicationBus[size];
+		Listener[] newListeners = new Listener[size];
+		int n = this.balances.length;
+		System.arraycopy(balances, 0, newBalances, 0, n);
+		System.arraycopy(pending, 0, newPending, 0, n);
+		System.arraycopy(registered, 0, newRegistered, 0, n);
+		System.arraycopy(depleted, 0, newDepleted, 0, n);
+		System.arraycopy(buses, 0, newBuses, 0, n);
+		System.arraycopy(listeners, 0, newListeners, 0, n);
+		this.balances = newBalances;
+		this.pending = newPending;
+		this.registered = newRegistered;
+		this.depleted = newDepleted;
+		this.buses = newBuses;
+		this.listeners = newListeners;
+	}
+
+	/**
+	 * Returns true if the host is in the ledger
+	 * @param address Address of the host
+	 * @return true if the host is in the ledger
+	 */
+	public boolean isRegistered(int address) {
+		return address < this.registered.length && this.registered[address];
+	}
+
+	/**
+	 * Returns the energy balance of a host. The debits of the current
+	 * update round are not included before they are applied.
+	 * @param address Address of the host
+	 * @return The energy balance
+	 * @throws SimError if the host is not in the ledger
+	 */
+	public double getBalance(int address) {
+		if (!isRegistered(address)) {
+			throw new SimError("Host " + address + " has no energy balance");
+		}
+		return this.balances[address];
+	}
+
+	/**
+	 * Returns true if the host has run out of energy
+	 * @param address Address of the host
+	 * @return true if the host is in the ledger and its balance, including
+	 * the debits that are not applied yet, is zero
+	 */
+	public boolean isDepleted(int address) {
+		return address < this.depleted.length && this.depleted[address];
+	}
+
+	/**
+	 * Sets the energy balance of a host right away (e.g. when the battery is
+	 * charged). Negative balances are set to zero. The debits of the
+	 * current update round are still applied after the round.
+	 * @param address Address of the host
+	 * @param balance The new balance
+	 * @throws SimError if the host is not in the ledger
+	 */
+	public void setBalance(int address, double balance) {
+		if (!isRegistered(address)) {
+			throw new SimError("Host " + address + " has no energy balance");
+		}
+		if (balance < 0) {
+			balance = 0;
+		}
+		double owed = this.balances[address] - this.pending[address];
+		this.balances[address] = balance;
+		this.pending[address] = balance - owed;
+		if (buses[address] != null) {
+			buses[address].setDouble(ENERGY_VALUE_KEY, balance);
+		}
+		if (this.pending[address] > 0) {
+			this.depleted[address] = false;
+		}
+		else if (!this.depleted[address]) {
+			deplete(address);
+		}
+	}
+
+	/**
+	 * Records a debit of energy from a host. The debit is applied when the
+	 * current update round is over, but if it uses the last of the host's
+	 * energy, the host is depleted right away.
+	 * @param address Address of the host
+	 * @param amount The amount of energy
+	 */
+	public void debit(int address, double amount) {
+		if (this.nrofDebits == this.debitHosts.length) {
+			int[] newHosts = new int[this.nrofDebits * 2];
+			double[] newAmounts = new double[this.nrofDebits * 2];
+			System.arraycopy(debitHosts, 0, newHosts, 0, nrofDebits);
+			System.arraycopy(debitAmounts, 0, newAmounts, 0, nrofDebits);
+			this.debitHosts = newHosts;
+			this.debitAmounts = newAmounts;
+		}
+		this.debitHosts[nrofDebits] = address;
+		this.debitAmounts[nrofDebits] = amount;
+		this.nrofDebits++;
+
+		this.pending[address] -= amount;
+		if (this.pending[address] <= 0 && !this.depleted[address]) {
+			deplete(address);
+		}
+	}
+
+	/**
+	 * Applies the recorded debits in the order they were recorded. The
+	 * hosts whose balance reaches zero are depleted (if the debits didn't
+	 * deplete them already).
+	 */
+	public void applyDebits() {
+		double[] bal = this.balances;
+		int[] hosts = this.debitHosts;
+		double[] amounts = this.debitAmounts;
+		int n = this.nrofDebits;
+		this.nrofDebits = 0;
+
+		for (int i=0; i < n; i++) {
+			bal[hosts[i]] -= amounts[i];
+		}
+
+		/* clamping only the final balance gives the same result as clamping
+		   after every debit, since a balance at zero can only stay there */
+		for (int i=0; i < n; i++) {
+			int address = hosts[i];
+			if (bal[address] < 0) {
+				bal[address] = 0;
+			}
+			this.pending[address] = bal[address];
+			if (buses[address] != null) {
+				buses[address].setDouble(ENERGY_VALUE_KEY, bal[address]);
+			}
+			if (bal[address] <= 0 && !this.depleted[address]) {
+				deplete(address);
+			}
+		}
+	}
+
+	/**
+	 * Marks a host depleted and tells its listener about it
+	 * @param address Address of the host
+	 */
+	private void deplete(int address) {
+		this.depleted[address] = true;
+		if (this.listeners[address] != null) {
+			this.listeners[address].energyDepleted(address);
+		}
+	}
+
+	/**
+	 * Interface for the modules that want to know when a host runs out of
+	 * energy
+	 */
+	public interface Listener {
+		/**
+		 * Called when the energy balance of a host reaches zero
+		 * @param address Address of the host
+		 */
+		public void energyDepleted(int address);
+	}
+}
@@ -164,6 +164,15 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
+	/**
+	 * Returns the initial TTL (minutes) of the message or 
+	 * {@link #INFINITE_TTL} if the TTL is infinite.
+	 * @return The initial TTL
+	 */
+	public int getInitialTtl() {
+		return this.initTtl;
+	}
+	
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -0,0 +1,438 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of named run-time metrics (counters, gauges and histograms).
+ * Modules look up their metric objects once (e.g. at initialization) and
+ * update them directly, so updating a metric costs only a field write.
+ * The metrics can be polled by reports (see
+ * {@link report.MetricsSnapshotReport}) and, once {@link #registerMBean()}
+ * has been called, through JMX.
+ * <P>Metrics are written only by the simulation thread; other threads
+ * (e.g. JMX) see the latest written values.</P>
+ */
+public class MetricsRegistry {
+	/** Object name of the registry's MBean ({@value}) */
+	public static final String MBEAN_NAME = "core:type=MetricsRegistry";
+	/** The registered metrics by name */
+	private static Map<String, Metric> metrics;
+
+	static {
+		DTNSim.registerForReset(MetricsRegistry.class.getCanonicalName());
+		reset();
+	}
+
+	private MetricsRegistry() {}
+
+	/**
+	 * Returns the counter with the given name. The counter is created if it
+	 * does not exist yet.
+	 * @param name Name of the counter
+	 * @return The counter
+	 * @throws SimError if a different type of metric has the same name
+	 */
+	public static Counter counter(String name) {
+		return get(name, Counter.class);
+	}
+
+	/**
+	 * Returns the gauge with the given name. The gauge is created if it
+	 * does not exist yet.
+	 * @param name Name of the gauge
+	 * @return The gauge
+	 * @throws SimError if a different type of metric has the same name
+	 */
+	public static Gauge gauge(String name) {
+		return get(name, Gauge.class);
+	}
+
+	/**
+	 * Returns the histogram with the given name. The histogram is created if
+	 * it does not exist yet.
+	 * @param name Name of the histogram
+	 * @return The histogram
+	 * @throws SimError if a different type of metric has the same name
+	 */
+	public static Histogram histogram(String name) {
+		return get(name, Histogram.class);
+	}
+
+	/**
+	 * Returns all registered metrics ordered by their name
+	 * @return A copy of the name-metric map
+	 */
+	public static synchronized Map<String, Metric> getMetrics() {
+		return new TreeMap<String, Metric>(metrics);
+	}
+
+	/**
+	 * Registers the registry to the platform MBean server (if it isn't
+	 * registered already).
+	 * @throws SimError if the registration fails
+	 */
+	public static void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new RegistryMBean(), name);
+			}
+		} catch (JMException e) {
+			throw new SimError("Can't register metrics MBean: " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Removes all metrics
+	 */
+	public static synchronized void reset() {
+		metrics = new TreeMap<String, Metric>();
+	}
+
+	private static synchronized <T extends Metric> T get(String name,
+			Class<T> type) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			try {
+				m = type.getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				throw new SimError("Can't create metric " + name, e);
+			}
+			metrics.put(name, m);
+		}
+		else if (!type.isInstance(m)) {
+			throw new SimError("Metric " + name + " is not a " +
+					type.getSimpleName());
+		}
+
+		return type.cast(m);
+	}
+
+	/**
+	 * Superclass of all metrics.
+	 */
+	public static abstract class Metric {
+		/**
+		 * Returns the current value of the metric as a string
+		 * @return the current value
+		 */
+		public abstract String getValueString();
+
+		/**
+		 * Adds the JMX attribute names and values of this metric
+		 * to the given map
+		 * @param name Name of the metric
+		 * @param attributes Map where the attributes are added to
+		 */
+		protected void addAttributes(String name,
+				Map<String, Object> attributes) {
+			attributes.put(name, getValueString());
+		}
+	}
+
+	/**
+	 * Monotonically increasing count of events.
+	 */
+	public static class Counter extends Metric {
+		private volatile long count;
+
+		/** Increments the counter by one */
+		public void increment() {
+			count++;
+		}
+
+		/**
+		 * Increments the counter by the given amount
+		 * @param amount How much to increment
+		 */
+		public void add(long amount) {
+			count += amount;
+		}
+
+		/**
+		 * Returns the current count
+		 * @return the current count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public String getValueString() {
+			return Long.toString(count);
+		}
+
+		@Override
+		protected void addAttributes(String name, Map<String, Object> attrs) {
+			attrs.put(name, count);
+		}
+	}
+
+	/**
+	 * Current value of some quantity.
+	 */
+	public static class Gauge extends Metric {
+		private volatile double value;
+
+		/**
+		 * Sets the value of the gauge
+		 * @param value The new value
+		 */
+		public void set(double value) {
+			this.value = value;
+		}
+
+		/**
+		 * Returns the current value
+		 * @return the current value
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public String getValueString() {
+			return Double.toString(value);
+		}
+
+		@Override
+		protected void addAttributes(String name, Map<String, Object> attrs) {
+			attrs.put(name, value);
+		}
+	}
+
+	/**
+	 * Distribution of recorded values. Positive values are counted in
+	 * logarithmic buckets (a power of two split into
+	 * {@value #SUB_BUCKETS} linear sub buckets), so the relative error of
+	 * the percentile values is at most 1/{@value #SUB_BUCKETS} and the
+	 * memory use is fixed. Values that are zero or negative are counted
+	 * in a separate bucket.
+	 * <P>Values are recorded by one thread (the simulation) without locks:
+	 * the state is kept in an atomic array that is updated with ordered
+	 * writes. Other threads see the latest written values, but not
+	 * necessarily a consistent set of them (e.g. the count can be one ahead
+	 * of the buckets).</P>
+	 */
+	public static class Histogram extends Metric {
+		/** Number of linear sub buckets in each power of two */
+		public static final int SUB_BUCKETS = 16;
+		/** Smallest and largest binary exponent that get own buckets */
+		private static final int MIN_EXP = -32;
+		private static final int MAX_EXP = 31;
+
+		/* indexes of the scalar values in the state array; the buckets
+		   follow them. The doubles are stored as their raw long bits. */
+		private static final int COUNT = 0;
+		private static final int NON_POSITIVE = 1;
+		private static final int SUM = 2;
+		private static final int MIN = 3;
+		private static final int MAX = 4;
+		private static final int FIRST_BUCKET = 5;
+		private static final int NROF_BUCKETS =
+			(MAX_EXP - MIN_EXP + 1) * SUB_BUCKETS;
+
+		private final AtomicLongArray state =
+			new AtomicLongArray(FIRST_BUCKET + NROF_BUCKETS);
+
+		/**
+		 * Records a value. Must be called from one thread only.
+		 * @param value The value to record
+		 */
+		public void record(double value) {
+			AtomicLongArray s = this.state;
+			long n = s.get(COUNT);
+			if (n == 0 || value < getDouble(MIN)) {
+				s.lazySet(MIN, Double.doubleToRawLongBits(value));
+			}
+			if (n == 0 || value > getDouble(MAX)) {
+				s.lazySet(MAX, Double.doubleToRawLongBits(value));
+			}
+			s.lazySet(SUM, Double.doubleToRawLongBits(getDouble(SUM) + value));
+
+			int index = (value > 0 ? FIRST_BUCKET + bucketIndex(value) :
+				NON_POSITIVE);
+			s.lazySet(index, s.get(index) + 1);
+			s.lazySet(COUNT, n + 1);
+		}
+
+		private double getDouble(int index) {
+			return Double.longBitsToDouble(state.get(index));
+		}
+
+		/**
+		 * Returns the number of recorded values
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			return state.get(COUNT);
+		}
+
+		/**
+		 * Returns the mean of recorded values or 0 if nothing was recorded
+		 * @return the mean of recorded values
+		 */
+		public double getMean() {
+			long n = getCount();
+			return n == 0 ? 0 : getDouble(SUM) / n;
+		}
+
+		/**
+		 * Returns the largest recorded value or 0 if nothing was recorded
+		 * @return the largest recorded value
+		 */
+		public double getMax() {
+			return getCount() == 0 ? 0 : getDouble(MAX);
+		}
+
+		/**
+		 * Returns the smallest recorded value or 0 if nothing was recorded
+		 * @return the smallest recorded value
+		 */
+		public double getMin() {
+			return getCount() == 0 ? 0 : getDouble(MIN);
+		}
+
+		/**
+		 * Returns an estimate of the given percentile of recorded values
+		 * @param percentile The percentile [0..100]
+		 * @return The estimate (upper bound of the bucket where the
+		 * percentile falls in) or 0 if nothing was recorded
+		 */
+		public double getPercentile(double percentile) {
+			long count = getCount();
+			if (count == 0) {
+				return 0;
+			}
+			double max = getDouble(MAX);
+			long limit = (long)Math.ceil(count * percentile / 100.0);
+			long seen = state.get(NON_POSITIVE);
+			if (seen >= limit) {
+				return Math.min(max, 0);
+			}
+			for (int i=0; i<NROF_BUCKETS; i++) {
+				seen += state.get(FIRST_BUCKET + i);
+				if (seen >= limit) {
+					return Math.min(max, bucketUpperBound(i));
+				}
+			}
+			return max;
+		}
+
+		private static int bucketIndex(double value) {
+			int exp = Math.getExponent(value);
+			if (exp < MIN_EXP) {
+				return 0;
+			}
+			if (exp > MAX_EXP) {
+				return (MAX_EXP - MIN_EXP + 1) * SUB_BUCKETS - 1;
+			}
+			/* fraction of the value in [1, 2) tells the sub bucket */
+			int sub = (int)((Math.scalb(value, -exp) - 1.0) * SUB_BUCKETS);
+			return (exp - MIN_EXP) * SUB_BUCKETS + sub;
+		}
+
+		private static double bucketUpperBound(int index) {
+			int exp = index / SUB_BUCKETS + MIN_EXP;
+			int sub = index % SUB_BUCKETS;
+			return Math.scalb(1.0 + (sub + 1.0) / SUB_BUCKETS, exp);
+		}
+
+		@Override
+		public String getValueString() {
+			return getCount() + " " + getMin() + " " + getMean() + " " +
+				getPercentile(50) + " " + getPercentile(90) + " " +
+				getPercentile(99) + " " + getMax();
+		}
+
+		@Override
+		protected void addAttributes(String name,
+				Map<String, Object> attrs) {
+			attrs.put(name + ".count", getCount());
+			attrs.put(name + ".mean", getMean());
+			attrs.put(name + ".p50", getPercentile(50));
+			attrs.put(name + ".p99", getPercentile(99));
+			attrs.put(name + ".max", getMax());
+		}
+	}
+
+	/**
+	 * Read-only MBean that exposes all the metrics as attributes
+	 */
+	private static class RegistryMBean implements DynamicMBean {
+
+		private Map<String, Object> getAttributes() {
+			Map<String, Object> attrs = new TreeMap<String, Object>();
+			for (Map.Entry<String, Metric> e : getMetrics().entrySet()) {
+				e.getValue().addAttributes(e.getKey(), attrs);
+			}
+			return attrs;
+		}
+
+		public Object getAttribute(String attribute)
+				throws AttributeNotFoundException {
+			Object value = getAttributes().get(attribute);
+			if (value == null) {
+				throw new AttributeNotFoundException(attribute);
+			}
+			return value;
+		}
+
+		public AttributeList getAttributes(String[] attributes) {
+			Map<String, Object> attrs = getAttributes();
+			AttributeList list = new AttributeList();
+			for (String name : attributes) {
+				if (attrs.containsKey(name)) {
+					list.add(new Attribute(name, attrs.get(name)));
+				}
+			}
+			return list;
+		}
+
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> infos = new ArrayList<MBeanAttributeInfo>();
+			for (Map.Entry<String, Object> e : getAttributes().entrySet()) {
+				infos.add(new MBeanAttributeInfo(e.getKey(),
+						e.getValue().getClass().getName(), e.getKey(),
+						true, false, false));
+			}
+			return new MBeanInfo(getClass().getName(), "Simulation metrics",
+					infos.toArray(new MBeanAttributeInfo[0]), null, null,
+					null);
+		}
+
+		public Object invoke(String actionName, Object[] params,
+				String[] signature) {
+			throw new UnsupportedOperationException(actionName);
+		}
+
+		public void setAttribute(Attribute attribute) {
+			throw new UnsupportedOperationException(attribute.getName());
+		}
+
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+	}
+}
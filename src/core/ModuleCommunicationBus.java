@@ -4,105 +4,300 @@
  */
 package core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>Every key is registered once as an integer handle (see
+ * {@link #getKey(String)}) that is the same in all buses. The values are
+ * stored in arrays by the handles and double and integer values are kept
+ * as primitives, so the modules that use the handles and the typed methods
+ * (and {@link TypedModuleCommunicationListener}s) don't create any objects
+ * when they update the values. The methods that take the keys as strings
+ * work as before.</P>
  */
 public class ModuleCommunicationBus {
-	/** Initial capacity for the listener lists (instead of 10) */
-	private static int INIT_CAPACITY = 3;
-	/** The values in the blackboard (or null if none)*/
-	private HashMap<String, Object> values;
-	/** Subscribed listeners (or null if none)*/
-	private HashMap<String, List<ModuleCommunicationListener>> listeners;
-	
+	/* types of the values */
+	private static final byte NONE = 0;
+	private static final byte OBJECT = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte INT = 3;
+
+	/** handles of the registered keys by the key names */
+	private static final ConcurrentHashMap<String, Integer> keyHandles =
+		new ConcurrentHashMap<String, Integer>();
+	/** names of the registered keys by the handles (replaced by a longer
+	 * copy when a key is registered so it can be read without locking) */
+	private static volatile String[] keyNames = new String[0];
+
+	/* the values in the blackboard by the key handles (null if none) */
+	private byte[] types;
+	private double[] doubles;
+	private int[] ints;
+	private Object[] objects;
+	/** Subscribed listeners by the key handles (or null if none)*/
+	private ModuleCommunicationListener[][] listeners;
+
 	/**
 	 * Constructor.
 	 */
 	public ModuleCommunicationBus() {
-		this.values = null; /* use lazy creation  */
+		this.types = null; /* use lazy creation  */
 		this.listeners = null;
 	}
-	
+
+	/**
+	 * Returns the handle of a key and registers the key if it isn't
+	 * registered yet. The handles stay the same during the whole execution,
+	 * so they can be stored in static fields. Only the registration of a
+	 * new key is synchronized.
+	 * @param key The key
+	 * @return The handle of the key
+	 */
+	public static int getKey(String key) {
+		Integer handle = keyHandles.get(key);
+		if (handle != null) {
+			return handle;
+		}
+		return registerKey(key);
+	}
+
+	/**
+	 * Registers a key unless another thread already did it
+	 * @param key The key
+	 * @return The handle of the key
+	 */
+	private static synchronized int registerKey(String key) {
+		Integer handle = keyHandles.get(key);
+		if (handle == null) {
+			handle = keyNames.length;
+			String[] names = Arrays.copyOf(keyNames, handle + 1);
+			names[handle] = key;
+			keyNames = names; /* the name is visible before the handle */
+			keyHandles.put(key, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * Returns the name of a registered key
+	 * @param key Handle of the key
+	 * @return The name of the key
+	 */
+	public static String getKeyName(int key) {
+		return keyNames[key];
+	}
+
+	/**
+	 * Makes sure the value arrays can hold a value for the given key
+	 * @param key Handle of the key
+	 */
+	private void ensureCapacity(int key) {
+		if (this.types == null) {
+			/* lazy creation to prevent performance overhead for classes
+			   that don't use the property feature  */
+			this.types = new byte[key + 1];
+			this.doubles = new double[key + 1];
+			this.ints = new int[key + 1];
+			this.objects = new Object[key + 1];
+		}
+		else if (this.types.length <= key) {
+			int size = Math.max(key + 1, this.types.length * 2);
+			byte[] newTypes = new byte[size];
+			double[] newDoubles = new double[size];
+			int[] newInts = new int[size];
+			Object[] newObjects = new Object[size];
+			System.arraycopy(types, 0, newTypes, 0, types.length);
+			System.arraycopy(doubles, 0, newDoubles, 0, doubles.length);
+			System.arraycopy(ints, 0, newInts, 0, ints.length);
+			System.arraycopy(objects, 0, newObjects, 0, objects.length);
+			this.types = newTypes;
+			this.doubles = newDoubles;
+			this.ints = newInts;
+			this.objects = newObjects;
+		}
+	}
+
+	/**
+	 * Returns the type of the value for the given key
+	 * @param key Handle of the key
+	 * @return The type of the value (NONE if there's no value)
+	 */
+	private byte getType(int key) {
+		if (this.types == null || this.types.length <= key) {
+			return NONE;
+		}
+		return this.types[key];
+	}
+
+	/**
+	 * Returns true if there is a value for the given key
+	 * @param key Handle of the key
+	 * @return true if there is a value for the key
+	 */
+	public boolean contains(int key) {
+		return getType(key) != NONE;
+	}
+
+	/**
+	 * Checks that there is no value for a key yet
+	 * @param key Handle of the key
+	 * @throws SimError if there is already a value for the given key
+	 */
+	private void checkNew(int key) throws SimError {
+		if (contains(key)) {
+			/* check to prevent accidental name space collisions */
+			throw new SimError("A value for the key " + getKeyName(key) +
+					" already exists");
+		}
+	}
+
 	/**
-	 * Adds a new property for this node. The key can be any string but 
+	 * Adds a new property for this node. The key can be any string but
 	 * it should be such that no other class accidently uses the same value.
 	 * Note that, unless the value is immutable, it can be changed by any
-	 * object that can call {@link #getProperty}. 
+	 * object that can call {@link #getProperty}.
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
-			/* check to prevent accidental name space collisions */
-			throw new SimError("A value for the key " + key + 
-					" already exists");
-		}
-		
+		checkNew(getKey(key));
 		this.updateProperty(key, value);
 	}
-	
+
+	/**
+	 * Adds a new double value for this node
+	 * @param key Handle of the key
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 */
+	public void addDouble(int key, double value) throws SimError {
+		checkNew(key);
+		setDouble(key, value);
+	}
+
 	/**
-	 * Returns an object that was stored using the given key. If such object 
-	 * is not found, null is returned.
+	 * Adds a new integer value for this node
+	 * @param key Handle of the key
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 */
+	public void addInt(int key, int value) throws SimError {
+		checkNew(key);
+		setInt(key, value);
+	}
+
+	/**
+	 * Returns an object that was stored using the given key. If such object
+	 * is not found, null is returned. Double and integer values are returned
+	 * as Double and Integer objects.
 	 * @param key The key used to lookup the object
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.values == null) {
+		if (this.types == null) {
+			return null;
+		}
+		return getProperty(getKey(key));
+	}
+
+	/**
+	 * Returns an object that was stored using the given key
+	 * @param key Handle of the key
+	 * @return The stored object or null if it isn't found
+	 * @see #getProperty(String)
+	 */
+	public Object getProperty(int key) {
+		switch (getType(key)) {
+		case DOUBLE:
+			return this.doubles[key];
+		case INT:
+			return this.ints[key];
+		case OBJECT:
+			return this.objects[key];
+		default:
 			return null;
 		}
-		return this.values.get(key);
 	}
-	
+
 	/**
-	 * Updates a value for an existing property. For storing the value first 
+	 * Updates a value for an existing property. For storing the value first
 	 * time, {@link #addProperty(String, Object)} should be used which
 	 * checks for name space clashes.
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.values == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.values = new HashMap<String, Object>();
-		}		
+		int handle = getKey(key);
+		if (value instanceof Double) {
+			setDouble(handle, (Double)value);
+		}
+		else if (value instanceof Integer) {
+			setInt(handle, (Integer)value);
+		}
+		else {
+			ensureCapacity(handle);
+			this.types[handle] = OBJECT;
+			this.objects[handle] = value;
+			notifyListeners(handle, value);
+		}
+	}
 
-		this.values.put(key, value);
+	/**
+	 * Sets a double value for a key and notifies the key's listeners
+	 * @param key Handle of the key
+	 * @param value The new value
+	 */
+	public void setDouble(int key, double value) {
+		ensureCapacity(key);
+		this.types[key] = DOUBLE;
+		this.doubles[key] = value;
+		this.objects[key] = null;
+		notifyListeners(key, value);
+	}
+
+	/**
+	 * Sets an integer value for a key and notifies the key's listeners
+	 * @param key Handle of the key
+	 * @param value The new value
+	 */
+	public void setInt(int key, int value) {
+		ensureCapacity(key);
+		this.types[key] = INT;
+		this.ints[key] = value;
+		this.objects[key] = null;
 		notifyListeners(key, value);
 	}
 
 	/**
-	 * Changes the Double value with given key with the value delta  
+	 * Changes the Double value with given key with the value delta
 	 * @param key The key of variable to update
 	 * @param delta Value added to the old value
 	 * @return The new value
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
-		double current;
-		try {
-			current = (Double)getProperty(key);
-			updateProperty(key, current + delta);
-		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
-		}
-		catch (NullPointerException npe) {
-			throw new SimError("No value for key " + key);
-		}
+		return updateDouble(getKey(key), delta);
+	}
 
-		return current + delta;
+	/**
+	 * Changes the double value with given key with the value delta
+	 * @param key Handle of the key
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the value with the given key was not a double
+	 */
+	public double updateDouble(int key, double delta) throws SimError {
+		double value = getDoubleValue(key, true, 0) + delta;
+		setDouble(key, value);
+		return value;
 	}
-	
+
 	/**
 	 * Returns a double value from the communication bus.
 	 * @param key The key of the variable
@@ -111,18 +306,48 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double getDouble(String key, double naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
+		if (this.types == null) {
 			return naValue;
 		}
-		try {
-			return (Double)value;
+		return getDouble(getKey(key), naValue);
+	}
+
+	/**
+	 * Returns a double value from the communication bus.
+	 * @param key Handle of the key
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not a double
+	 */
+	public double getDouble(int key, double naValue) throws SimError {
+		return getDoubleValue(key, false, naValue);
+	}
+
+	/**
+	 * Returns a double value
+	 * @param key Handle of the key
+	 * @param required Is it an error if there's no value
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value or naValue
+	 * @throws SimError if the value is not a double (or it is missing and
+	 * it was required)
+	 */
+	private double getDoubleValue(int key, boolean required, double naValue)
+			throws SimError {
+		byte type = getType(key);
+		if (type == DOUBLE) {
+			return this.doubles[key];
+		}
+		if (type == INT || (type == OBJECT && this.objects[key] != null)) {
+			throw new SimError("No Double value for key " + getKeyName(key));
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
+		/* no value or a null object */
+		if (required) {
+			throw new SimError("No value for key " + getKeyName(key));
 		}
+		return naValue;
 	}
-	
+
 	/**
 	 * Returns an integer value from the communication bus.
 	 * @param key The key of the variable
@@ -131,87 +356,201 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not an Integer
 	 */
 	public int getInt(String key, int naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
+		if (this.types == null) {
 			return naValue;
 		}
-		try {
-			return (Integer)value;
+		return getInt(getKey(key), naValue);
+	}
+
+	/**
+	 * Returns an integer value from the communication bus.
+	 * @param key Handle of the key
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not an integer
+	 */
+	public int getInt(int key, int naValue) throws SimError {
+		byte type = getType(key);
+		if (type == INT) {
+			return this.ints[key];
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Integer value for key " + key);
+		if (type == DOUBLE || (type == OBJECT && this.objects[key] != null)) {
+			throw new SimError("No Integer value for key " + getKeyName(key));
 		}
+		return naValue; /* no value or a null object */
 	}
-	
+
 	/**
 	 * Subscribes a module to changes of a certain value.
 	 * @param key The key of the value whose changes the module is interested of
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
+		subscribe(getKey(key), module);
+	}
+
+	/**
+	 * Subscribes a module to changes of a certain value.
+	 * @param key Handle of the key
+	 * @param module The module to subscribe.
+	 */
+	public void subscribe(int key, ModuleCommunicationListener module) {
 		if (this.listeners == null) {
 			/* first listener for the whole node */
-			this.listeners = 
-				new HashMap<String, List<ModuleCommunicationListener>>();
+			this.listeners = new ModuleCommunicationListener[key + 1][];
 		}
-		
-		List<ModuleCommunicationListener> list = this.listeners.get(key);
-		if (list == null) {
+		else if (this.listeners.length <= key) {
+			ModuleCommunicationListener[][] bigger =
+				new ModuleCommunicationListener[key + 1][];
+			System.arraycopy(listeners, 0, bigger, 0, listeners.length);
+			this.listeners = bigger;
+		}
+
+		/* the arrays are replaced instead of changed, so a listener can
+		   (un)subscribe while the listeners are notified */
+		ModuleCommunicationListener[] old = this.listeners[key];
+		if (old == null) {
 			/* first listener for this key */
-			list = new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
-			this.listeners.put(key, list);
+			this.listeners[key] = new ModuleCommunicationListener[] {module};
+		}
+		else {
+			ModuleCommunicationListener[] list =
+				new ModuleCommunicationListener[old.length + 1];
+			System.arraycopy(old, 0, list, 0, old.length);
+			list[old.length] = module;
+			this.listeners[key] = list;
 		}
-		
-		list.add(module);
 	}
-	
+
 	/**
 	 * Removes a notification subscription
 	 * @param key The key for which the subscription should be removed
 	 * @param module The module to whose subscription is removed
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
+		unsubscribe(getKey(key), module);
+	}
+
+	/**
+	 * Removes a notification subscription
+	 * @param key Handle of the key
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(int key, ModuleCommunicationListener module) {
+		ModuleCommunicationListener[] list;
+
+		if (this.listeners == null || this.listeners.length <= key) {
 			return; /* no subscriptions */
 		}
-		
-		list = this.listeners.get(key);
+
+		list = this.listeners[key];
 		if (list == null) {
 			return; /* no subscriptions for the key */
 		}
-		
-		list.remove(module);
+
+		for (int i=0; i < list.length; i++) {
+			if (module.equals(list[i])) {
+				ModuleCommunicationListener[] smaller =
+					new ModuleCommunicationListener[list.length - 1];
+				System.arraycopy(list, 0, smaller, 0, i);
+				System.arraycopy(list, i + 1, smaller, i, list.length - i - 1);
+				this.listeners[key] = smaller;
+				return;
+			}
+		}
 	}
-	
-	
+
 	/**
-	 * Notifies all listeners that have subscribed to the given key 
-	 * @param key The key which got new value
+	 * Returns the listeners of a key
+	 * @param key Handle of the key
+	 * @return The listeners or null if there are none
+	 */
+	private ModuleCommunicationListener[] getListeners(int key) {
+		if (this.listeners == null || this.listeners.length <= key) {
+			return null;
+		}
+		return this.listeners[key];
+	}
+
+	/**
+	 * Notifies all listeners that have subscribed to the given key
+	 * @param key Handle of the key which got new value
 	 * @param newValue The new value for the key
 	 */
-	private void notifyListeners(String key, Object newValue) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
+	private void notifyListeners(int key, Object newValue) {
+		ModuleCommunicationListener[] list = getListeners(key);
+		if (list == null) {
 			return;
 		}
-		list = this.listeners.get(key);
-		
+
+		String name = getKeyName(key);
+		for (ModuleCommunicationListener mcl : list) {
+			mcl.moduleValueChanged(name, newValue);
+		}
+	}
+
+	/**
+	 * Notifies all listeners that have subscribed to the given key. The
+	 * value is boxed only for the listeners that aren't typed.
+	 * @param key Handle of the key which got new value
+	 * @param newValue The new value for the key
+	 */
+	private void notifyListeners(int key, double newValue) {
+		ModuleCommunicationListener[] list = getListeners(key);
+		if (list == null) {
+			return;
+		}
+
+		for (ModuleCommunicationListener mcl : list) {
+			if (mcl instanceof TypedModuleCommunicationListener) {
+				((TypedModuleCommunicationListener)mcl).moduleDoubleChanged(
+						key, newValue);
+			}
+			else {
+				mcl.moduleValueChanged(getKeyName(key), newValue);
+			}
+		}
+	}
+
+	/**
+	 * Notifies all listeners that have subscribed to the given key. The
+	 * value is boxed only for the listeners that aren't typed.
+	 * @param key Handle of the key which got new value
+	 * @param newValue The new value for the key
+	 */
+	private void notifyListeners(int key, int newValue) {
+		ModuleCommunicationListener[] list = getListeners(key);
 		if (list == null) {
 			return;
 		}
-		
+
 		for (ModuleCommunicationListener mcl : list) {
-			mcl.moduleValueChanged(key, newValue);
+			if (mcl instanceof TypedModuleCommunicationListener) {
+				((TypedModuleCommunicationListener)mcl).moduleIntChanged(
+						key, newValue);
+			}
+			else {
+				mcl.moduleValueChanged(getKeyName(key), newValue);
+			}
 		}
 	}
-	
-	
+
+
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ? 
-				this.values.toString() : "n/a");
+		if (this.types == null) {
+			return "ComBus with mapping: n/a";
+		}
+
+		StringBuilder sb = new StringBuilder("ComBus with mapping: {");
+		String separator = "";
+		for (int i=0; i < this.types.length; i++) {
+			if (this.types[i] != NONE) {
+				sb.append(separator).append(getKeyName(i)).append('=').
+					append(getProperty(i));
+				separator = ", ";
+			}
+		}
+		return sb.append('}').toString();
 	}
 }
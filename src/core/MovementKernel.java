@@ -0,0 +1,189 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * <P>Moves hosts whose movement models support it (see
+ * {@link movement.MovementModel#isKernelCompatible()}) with the state of
+ * their current straight segments stored in primitive arrays
+ * (structure of arrays). All the hosts that stay on their segment during
+ * an update are advanced in one loop without method calls, so the loop can
+ * be vectorized by the JIT compiler. The hosts that reach the end of their
+ * segment or wait are moved by {@link DTNHost#move(double)} as before, in
+ * the order of their addresses, so the results are identical with and
+ * without the kernel.</P>
+ *
+ * <P>The locations of the hosts in the kernel are kept in the arrays and
+ * {@link DTNHost#getLocation()} returns a view of them.</P>
+ */
+public class MovementKernel {
+	/** all hosts of the world in the order they are moved */
+	private DTNHost[] hosts;
+	/** slots of the hosts by their index in the hosts array (-1 if the host
+	    is not in the kernel) */
+	private int[] slots;
+	/** number of hosts in the kernel */
+	private int size;
+
+	/* the state of the hosts' segments by the slot index */
+	private double[] clock;
+	private double[] nextClock;
+	private double[] segStartTime;
+	private double[] segEndTime;
+	private double[] duration;
+	private double[] startX;
+	private double[] startY;
+	private double[] deltaX;
+	private double[] deltaY;
+	private double[] x;
+	private double[] y;
+
+	/** simulation time of the locations */
+	private double locationTime;
+
+	/**
+	 * Creates a kernel and moves the compatible hosts to it
+	 * @param hosts All the hosts of the world
+	 */
+	public MovementKernel(List<DTNHost> hosts) {
+		this.hosts = hosts.toArray(new DTNHost[hosts.size()]);
+		int n = 0;
+		for (DTNHost h : hosts) {
+			if (h.isKernelCompatible()) {
+				n++;
+			}
+		}
+
+		this.clock = new double[n];
+		this.nextClock = new double[n];
+		this.segStartTime = new double[n];
+		this.segEndTime = new double[n];
+		this.duration = new double[n];
+		this.startX = new double[n];
+		this.startY = new double[n];
+		this.deltaX = new double[n];
+		this.deltaY = new double[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.slots = new int[this.hosts.length];
+		this.locationTime = SimClock.getTime();
+
+		for (int i=0; i < this.hosts.length; i++) {
+			DTNHost h = this.hosts[i];
+			if (h.isKernelCompatible()) {
+				slots[i] = size;
+				h.attachToKernel(this, size++);
+			}
+			else {
+				slots[i] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Moves all hosts of the world
+	 * @param timeIncrement How long time the hosts move
+	 */
+	public void move(double timeIncrement) {
+		this.locationTime = SimClock.getTime() + timeIncrement;
+
+		/* locations on the current segments (not valid for the hosts that
+		   pass the segment's end; those are moved by the hosts) */
+		for (int i=0; i < size; i++) {
+			double c = clock[i] + timeIncrement;
+			double f = (c - segStartTime[i]) / duration[i];
+			nextClock[i] = c;
+			x[i] = startX[i] + f * deltaX[i];
+			y[i] = startY[i] + f * deltaY[i];
+		}
+
+		for (int i=0, n = hosts.length; i < n; i++) {
+			int slot = slots[i];
+			if (slot < 0) {
+				if (!hosts[i].isAsleep()) {
+					hosts[i].move(timeIncrement); // not in the kernel
+				}
+			}
+			else if (nextClock[slot] < segEndTime[slot]) {
+				clock[slot] = nextClock[slot];
+			}
+			else {
+				hosts[i].moveInKernel(timeIncrement);
+			}
+		}
+	}
+
+	/**
+	 * Stores the state of a host's segment
+	 * @param slot The host's slot
+	 * @param moveClock The host's movement clock
+	 * @param startTime Movement clock value at the start of the segment
+	 * @param endTime Movement clock value at the end of the segment
+	 * @param start Start point of the segment
+	 * @param end End point of the segment (or null if the host has none)
+	 * @param location The host's current location
+	 */
+	void setSegment(int slot, double moveClock, double startTime,
+			double endTime, Coord start, Coord end, Coord location) {
+		clock[slot] = moveClock;
+		segStartTime[slot] = startTime;
+		segEndTime[slot] = endTime;
+		duration[slot] = endTime - startTime;
+		if (start == null || end == null) {
+			start = end = location;
+		}
+		startX[slot] = start.getX();
+		startY[slot] = start.getY();
+		deltaX[slot] = end.getX() - start.getX();
+		deltaY[slot] = end.getY() - start.getY();
+		x[slot] = location.getX();
+		y[slot] = location.getY();
+	}
+
+	/**
+	 * Returns the movement clock of a host
+	 * @param slot The host's slot
+	 * @return the movement clock value
+	 */
+	double getClock(int slot) {
+		return clock[slot];
+	}
+
+	/**
+	 * Returns the x coordinate of a host's location
+	 * @param slot The host's slot
+	 * @return the x coordinate
+	 */
+	public double getX(int slot) {
+		return x[slot];
+	}
+
+	/**
+	 * Returns the y coordinate of a host's location
+	 * @param slot The host's slot
+	 * @return the y coordinate
+	 */
+	public double getY(int slot) {
+		return y[slot];
+	}
+
+	/**
+	 * Returns the simulation time of the locations
+	 * @return the simulation time of the locations
+	 */
+	public double getLocationTime() {
+		return this.locationTime;
+	}
+
+	/**
+	 * Returns the number of hosts in the kernel
+	 * @return the number of hosts in the kernel
+	 */
+	public int size() {
+		return this.size;
+	}
+}
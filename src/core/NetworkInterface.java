@@ -4,7 +4,6 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
@@ -14,13 +13,21 @@ import java.util.Random;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface
+		implements TypedModuleCommunicationListener {
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
 	public static final String TRANSMIT_SPEED_S = "transmitSpeed";
 	/** scanning interval -setting id ({@value})*/
 	public static final String SCAN_INTERVAL_S = "scanInterval";
+	/**
+	 * Transfer events -setting id ({@value}). Boolean valued. If true, the
+	 * connections this interface creates schedule a transfer event for
+	 * the time when their transfers complete (see
+	 * {@link Connection#setTransferEvents(boolean)}). Default is false.
+	 */
+	public static final String TRANSFER_EVENTS_S = "transferEvents";
 	
 	/** {@link ModuleCommunicationBus} identifier for the "scanning interval" 
     variable. */
@@ -31,7 +38,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed" 
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
-	
+	/** Handle of the {@link #SCAN_INTERVAL_ID} key */
+	public static final int SCAN_INTERVAL_KEY =
+		ModuleCommunicationBus.getKey(SCAN_INTERVAL_ID);
+	/** Handle of the {@link #RANGE_ID} key */
+	public static final int RANGE_KEY =
+		ModuleCommunicationBus.getKey(RANGE_ID);
+	/** Handle of the {@link #SPEED_ID} key */
+	public static final int SPEED_KEY =
+		ModuleCommunicationBus.getKey(SPEED_ID);
+
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 	private static int nextAddress = 0;
@@ -48,6 +64,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** are the transfer completions of the connections scheduled */
+	private boolean transferEvents;
 
 
 	static {
@@ -80,6 +98,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		} else {
 			this.scanInterval = 0;
 		}
+		this.transferEvents = s.contains(TRANSFER_EVENTS_S) &&
+			s.getBoolean(TRANSFER_EVENTS_S);
 	}
 	
 	/**
@@ -102,9 +122,12 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.interfacetype = ni.interfacetype;
 		this.transmitRange = ni.transmitRange;
 		this.transmitSpeed = ni.transmitSpeed;
+		this.transferEvents = ni.transferEvents;
 		
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * scanInterval;
+		Random r = RandomStreams.isLegacy() ? rng :
+			RandomStreams.getStream(RandomStreams.INTERFACE);
+		this.lastScanTime = r.nextDouble() * scanInterval;
 	}
 
 	/**
@@ -120,15 +143,39 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public void setHost(DTNHost host) {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
-		comBus.subscribe(SCAN_INTERVAL_ID, this);
-		comBus.subscribe(RANGE_ID, this);
-		comBus.subscribe(SPEED_ID, this);
+		comBus.subscribe(SCAN_INTERVAL_KEY, this);
+		comBus.subscribe(RANGE_KEY, this);
+		comBus.subscribe(SPEED_KEY, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
+		optimizer = ConnectivityOptimizer.getOptimizer(
 				this.interfacetype.hashCode(), transmitRange);
 		optimizer.addInterface(this);		
 	}
 
+	/**
+	 * Adds the interface to or removes it from the connectivity optimizer.
+	 * Other interfaces don't find the interface when it is not in the
+	 * optimizer (e.g., while its host is sleeping).
+	 * @param present Should the interface be in the optimizer
+	 */
+	public void setInOptimizer(boolean present) {
+		if (present) {
+			optimizer.addInterface(this);
+		}
+		else {
+			optimizer.removeInterface(this);
+		}
+	}
+
+	/**
+	 * Called on every update round instead of {@link #update()} while the
+	 * host of this interface is not active. Interfaces that keep shared
+	 * state about their own transmissions can release it here. Does nothing
+	 * by default.
+	 */
+	public void hostInactive() {
+	}
+
 	/**
 	 * For checking what interface type this interface is
 	 */
@@ -185,6 +232,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 	
+	/**
+	 * Returns true if the host of this interface has run out of energy (see
+	 * {@link EnergyLedger}). Such interfaces don't look for new connections.
+	 * @return true if the host has run out of energy
+	 */
+	protected boolean isOutOfEnergy() {
+		return EnergyLedger.isHostDepleted(this.host.getAddress());
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -226,6 +282,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param anotherInterface The interface to connect to
 	 */
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
+		con.setTransferEvents(this.transferEvents);
 
 		this.connections.add(con);
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
@@ -353,6 +410,41 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * This method is called by the {@link ModuleCommunicationBus} when/if
+	 * someone changes the scanning interval or range
+	 * @param key Handle of the changed value's key
+	 * @param newValue New value for the variable
+	 */
+	public void moduleDoubleChanged(int key, double newValue) {
+		if (key == SCAN_INTERVAL_KEY) {
+			this.scanInterval = newValue;
+		}
+		else if (key == RANGE_KEY) {
+			this.transmitRange = newValue;
+		}
+		else {
+			moduleValueChanged(ModuleCommunicationBus.getKeyName(key),
+					newValue);
+		}
+	}
+
+	/**
+	 * This method is called by the {@link ModuleCommunicationBus} when/if
+	 * someone changes the transmit speed
+	 * @param key Handle of the changed value's key
+	 * @param newValue New value for the variable
+	 */
+	public void moduleIntChanged(int key, int newValue) {
+		if (key == SPEED_KEY) {
+			this.transmitSpeed = newValue;
+		}
+		else {
+			moduleValueChanged(ModuleCommunicationBus.getKeyName(key),
+					newValue);
+		}
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active 
@@ -0,0 +1,239 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import movement.MovementModel;
+
+/**
+ * Source of the random number streams of the simulation. Every host gets
+ * its own stream for each component (movement, routing, ...) and the
+ * streams are derived only from the {@link MovementModel#RNG_SEED} setting,
+ * the component name, the host address and the index of the module
+ * among the host's modules of the same component (e.g., the sub-models of
+ * a movement model or several network interfaces). Hence the numbers a
+ * host draws don't depend on the other hosts or on the order the hosts
+ * are created or updated in, and no random number generator state is
+ * shared between the hosts or between the modules of a host.
+ * <P>If the {@link #LEGACY_RNG_S} setting is true, the components use the
+ * shared and time-seeded generators of the earlier versions instead, so
+ * the results of old simulation runs can be reproduced.</P>
+ */
+public class RandomStreams {
+	/** Use the old shared random number generators -setting id ({@value}).
+	 * Boolean valued, read from the {@link MovementModel#MOVEMENT_MODEL_NS}
+	 * name space. Default is false. */
+	public static final String LEGACY_RNG_S = "legacyRng";
+
+	/** Name of the movement models' streams ({@value}) */
+	public static final String MOVEMENT = "movement";
+	/** Name of the message routers' streams ({@value}) */
+	public static final String ROUTING = "routing";
+	/** Name of the network interfaces' streams ({@value}) */
+	public static final String INTERFACE = "interface";
+	/** Name of the energy models' streams ({@value}) */
+	public static final String ENERGY = "energy";
+	/** Name of the world's stream ({@value}) */
+	public static final String WORLD = "world";
+	/** Host address used for the streams that don't belong to any host */
+	public static final int NO_HOST = -1;
+
+	/** Golden ratio increment of the SplitMix64 generator */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static boolean initialized;
+	private static long seed;
+	private static boolean legacy;
+
+	/** the host whose modules are being created, per thread */
+	private static final ThreadLocal<HostStreams> currentHost =
+		new ThreadLocal<HostStreams>();
+	/** streams given for each component to the modules of no host */
+	private static Map<String, Integer> noHostStreams;
+
+	static {
+		DTNSim.registerForReset(RandomStreams.class.getCanonicalName());
+		reset();
+	}
+
+	private RandomStreams() {}
+
+	/**
+	 * Reads the seed and the legacy mode from the settings
+	 */
+	private static synchronized void init() {
+		if (initialized) {
+			return;
+		}
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		seed = s.contains(MovementModel.RNG_SEED) ?
+				s.getInt(MovementModel.RNG_SEED) : 0;
+		legacy = s.contains(LEGACY_RNG_S) && s.getBoolean(LEGACY_RNG_S);
+		initialized = true;
+	}
+
+	/**
+	 * Returns true if the old shared random number generators should be used
+	 * @return true if the legacy mode is on
+	 */
+	public static boolean isLegacy() {
+		init();
+		return legacy;
+	}
+
+	/**
+	 * Returns a new random number stream for a component of a host. The same
+	 * component and address always give the same sequence of numbers.
+	 * @param component Name of the component
+	 * @param address Address of the host (or {@link #NO_HOST})
+	 * @return The random number stream
+	 */
+	public static Random getStream(String component, int address) {
+		return getStream(component, address, 0);
+	}
+
+	/**
+	 * Returns a new random number stream for a module of a host. The same
+	 * component, address and index always give the same sequence of
+	 * numbers, and index zero gives the same sequence as
+	 * {@link #getStream(String, int)}.
+	 * @param component Name of the component
+	 * @param address Address of the host (or {@link #NO_HOST})
+	 * @param index Index of the module among the host's modules of the
+	 * component
+	 * @return The random number stream
+	 */
+	public static Random getStream(String component, int address,
+			int index) {
+		init();
+		long s = mix64(seed + GOLDEN_GAMMA * component.hashCode());
+		s = mix64(s + GOLDEN_GAMMA * (address + 1L));
+		if (index > 0) {
+			s = mix64(s + GOLDEN_GAMMA * index);
+		}
+		return new StreamRandom(s);
+	}
+
+	/**
+	 * Returns a new random number stream for the next module of a component
+	 * of the host that is being created by this thread (see
+	 * {@link #setCurrentHost(int)}). Every call gives a different stream:
+	 * the n<sup>th</sup> module of the component gets the stream of index n
+	 * (see {@link #getStream(String, int, int)}). The modules created when
+	 * no host is being created (e.g., the prototypes of the groups) are
+	 * numbered in the order they are created in.
+	 * @param component Name of the component
+	 * @return The random number stream
+	 */
+	public static Random getStream(String component) {
+		HostStreams hs = currentHost.get();
+		if (hs == null) {
+			return getStream(component, NO_HOST, nextNoHostIndex(component));
+		}
+		return getStream(component, hs.address, hs.nextIndex(component));
+	}
+
+	private static synchronized int nextNoHostIndex(String component) {
+		Integer index = noHostStreams.get(component);
+		index = (index == null ? 0 : index + 1);
+		noHostStreams.put(component, index);
+		return index;
+	}
+
+	/**
+	 * Sets the address of the host whose modules this thread creates. The
+	 * modules' constructors don't know the host so they get their streams
+	 * with {@link #getStream(String)}. The modules are numbered again from
+	 * zero every time the host is set.
+	 * @param address Address of the host or {@link #NO_HOST} when done
+	 */
+	public static void setCurrentHost(int address) {
+		if (address == NO_HOST) {
+			currentHost.remove();
+		}
+		else {
+			currentHost.set(new HostStreams(address));
+		}
+	}
+
+	/**
+	 * Returns the address of the host whose modules this thread creates
+	 * @return The address or {@link #NO_HOST} if no host is being created
+	 */
+	public static int getCurrentHost() {
+		HostStreams hs = currentHost.get();
+		return hs == null ? NO_HOST : hs.address;
+	}
+
+	/**
+	 * Resets the settings so that they are read again
+	 */
+	public static synchronized void reset() {
+		initialized = false;
+		noHostStreams = new HashMap<String, Integer>();
+	}
+
+	/* the finalizer of the SplitMix64 generator */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * The host whose modules a thread creates and the number of streams
+	 * given to the host's modules of each component
+	 */
+	private static class HostStreams {
+		private final int address;
+		private final Map<String, Integer> counts =
+			new HashMap<String, Integer>();
+
+		public HostStreams(int address) {
+			this.address = address;
+		}
+
+		public int nextIndex(String component) {
+			Integer index = counts.get(component);
+			index = (index == null ? 0 : index + 1);
+			counts.put(component, index);
+			return index;
+		}
+	}
+
+	/**
+	 * Random that draws its numbers from a SplittableRandom, so it can be
+	 * given to all the code that expects a Random. Not thread-safe; each
+	 * stream belongs to one host.
+	 */
+	private static class StreamRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		private SplittableRandom stream;
+
+		public StreamRandom(long seed) {
+			super(seed);
+		}
+
+		@Override
+		public void setSeed(long seed) {
+			super.setSeed(seed);
+			this.stream = new SplittableRandom(seed);
+		}
+
+		@Override
+		protected int next(int bits) {
+			return (int)(stream.nextLong() >>> (64 - bits));
+		}
+
+		@Override
+		public double nextDouble() {
+			return stream.nextDouble();
+		}
+	}
+}
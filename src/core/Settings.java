@@ -14,9 +14,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Properties;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface for simulation settings stored in setting file(s). Settings 
@@ -33,6 +35,10 @@ import java.util.Stack;
  * values (see {@link #setRunIndex(int)}). In file paths directory separator
  * should always be forward slash ("/").
  * </P> 
+ * <P> The values are resolved for the current run (and parsed to numbers,
+ * arrays etc. when they are first requested) only once, so requesting the
+ * same settings repeatedly, e.g., for every host of a group, is fast. 
+ * </P>
  */
 public class Settings {
 	/** properties object where the setting files are read into */
@@ -57,6 +63,12 @@ public class Settings {
 	
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
+	/** resolved values of the settings by namespace and setting name */
+	private static Map<String, Map<String, Value>> values =
+		new ConcurrentHashMap<String, Map<String, Value>>();
+	/** resolved values of the settings that have no namespace */
+	private static Map<String, Value> noNamespaceValues =
+		new ConcurrentHashMap<String, Value>();
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -99,8 +111,18 @@ public class Settings {
 	public static void setRunIndex(int index) {
 		runIndex = index;
 		writtenSettings.clear();
+		clearValues();
 	}
-	
+
+	/**
+	 * Clears the resolved values of the settings. Must be called when the
+	 * properties change.
+	 */
+	protected static void clearValues() {
+		values.clear();
+		noNamespaceValues.clear();
+	}
+
 	/**
 	 * Checks that the given integer array contains a valid range. I.e., 
 	 * the length of the array must be two and 
@@ -218,6 +240,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		clearValues();
 
 		outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
@@ -247,13 +270,24 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		clearValues();
 	}
-	
+
+	/**
+	 * Writes the given setting value to the settings output (if any)
+	 * @param value The value to write
+	 */
+	private static void outputSetting(Value value) {
+		if (out != null) {
+			outputSetting(value.propertyName + " = " + value.value);
+		}
+	}
+
 	/**
 	 * Writes the given setting string to the settings output (if any)
 	 * @param setting The string to write
 	 */
-	private static void outputSetting(String setting) {
+	private static synchronized void outputSetting(String setting) {
 		if (out != null && !writtenSettings.contains(setting)) {
 			if (writtenSettings.size() == 0) {
 				out.println("# Settings for run " + (runIndex + 1));
@@ -271,19 +305,14 @@ public class Settings {
 	 * @return True if the setting exists, false if not
 	 */
 	public boolean contains(String name) {
-		try {
-			String value = getSetting(name); 
-			if (value == null) {
-				return false;
-			}
-			
-			else return value.trim().length() > 0;
-		}
-		catch (SettingsError e) {
+		Value value = findValue(name);
+		if (value == null) {
 			return false; // didn't find the setting
 		}
+		outputSetting(value);
+		return true;
 	}
-	
+
 	/**
 	 * Returns full (namespace prefixed) property name for setting.
 	 * @param name Name of the settings 
@@ -312,37 +341,85 @@ public class Settings {
 	 * the namespaces
 	 */
 	public String getSetting(String name) {
-		String fullPropName;
+		return getValue(name).value;
+	}
+
+	/**
+	 * Returns the value of a setting from the namespace or from the
+	 * secondary namespace and writes it to the settings output (if any)
+	 * @param name Name of the setting to get
+	 * @return The value of the setting
+	 * @throws SettingsError if the setting is not found from either one of 
+	 * the namespaces
+	 */
+	private Value getValue(String name) {
+		Value value = findValue(name);
+		if (value == null) {
+			throw new SettingsError("Can't find setting " + 
+					getPropertyNamesString(name));
+		}
+
+		outputSetting(value);
+		return value;
+	}
+
+	/**
+	 * Finds the value of a setting from the namespace or from the
+	 * secondary namespace
+	 * @param name Name of the setting to find
+	 * @return The value of the setting or null if it was not found
+	 */
+	private Value findValue(String name) {
 		if (props == null) {
 			init(null);
 		}
-		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
-		
-		if (value != null) { // found value, check if run setting can be parsed
-			value = parseRunSetting(value.trim());
-		}
-			
-		if ((value == null || value.length() == 0) && 
-				this.secondaryNamespace != null) {
+		Value value = getResolvedValue(this.namespace, name);
+
+		if (!value.isSet() && this.secondaryNamespace != null) {
 			// try secondary namespace if the value wasn't found from primary
-			fullPropName = getFullPropertyName(name, true);
-			value = props.getProperty(fullPropName);
-			
-			if (value != null) {
-				value = parseRunSetting(value.trim());
+			value = getResolvedValue(this.secondaryNamespace, name);
+		}
+
+		return value.isSet() ? value : null;
+	}
+
+	/**
+	 * Returns the value of a property resolved for the current run
+	 * @param namespace Namespace of the setting (or null)
+	 * @param name Name of the setting
+	 * @return The value (that may be unset)
+	 */
+	private static Value getResolvedValue(String namespace, String name) {
+		Map<String, Value> nsValues;
+		if (namespace == null) {
+			nsValues = noNamespaceValues;
+		}
+		else {
+			nsValues = values.get(namespace);
+			if (nsValues == null) {
+				nsValues = new ConcurrentHashMap<String, Value>();
+				Map<String, Value> old = values.putIfAbsent(namespace,
+						nsValues);
+				if (old != null) {
+					nsValues = old; // created by another thread
+				}
 			}
 		}
-		
-		if (value == null || value.length() == 0) {
-			throw new SettingsError("Can't find setting " + 
-					getPropertyNamesString(name));
+
+		Value value = nsValues.get(name);
+		if (value == null) {
+			String propName = (namespace != null ? namespace + "." + name :
+				name);
+			String propValue = props.getProperty(propName);
+			if (propValue != null) { // check if run setting can be parsed
+				propValue = parseRunSetting(propValue.trim());
+			}
+			value = new Value(propName, propValue);
+			nsValues.put(name, value);
 		}
-		
-		outputSetting(fullPropName + " = " + value);
 		return value;
 	}
-	
+
 	/**
 	 * Parses run-specific settings from a String value
 	 * @param value The String to parse
@@ -394,9 +471,13 @@ public class Settings {
 	 * @return Value of the setting as a double
 	 */
 	public double getDouble(String name) {
-		return parseDouble(getSetting(name), name);
+		Value value = getValue(name);
+		if (value.number == null) {
+			value.number = parseDouble(value.value, name);
+		}
+		return value.number;
 	}
-	
+
 	/**
 	 * Parses a double value from a String valued setting. Supports
 	 * kilo (k), mega (M) and giga (G) suffixes.
@@ -441,16 +522,20 @@ public class Settings {
 	 * @throws SettingsError if something went wrong with reading
 	 */
 	public String[] getCsvSetting(String name) {
-		ArrayList<String> values = new ArrayList<String>();
-		String csv = getSetting(name);
-		Scanner s = new Scanner(csv);
-		s.useDelimiter(",");
+		Value value = getValue(name);
+		if (value.csv == null) {
+			ArrayList<String> values = new ArrayList<String>();
+			Scanner s = new Scanner(value.value);
+			s.useDelimiter(",");
 
-		while (s.hasNext()) {
-			values.add(s.next().trim());
+			while (s.hasNext()) {
+				values.add(s.next().trim());
+			}
+
+			value.csv = values.toArray(new String[0]);
 		}
-		
-		return values.toArray(new String[0]);
+
+		return value.csv.clone();
 	}
 
 	/**
@@ -484,7 +569,8 @@ public class Settings {
 	 * @see #getCsvSetting(String, int)
 	 */
 	public double[] getCsvDoubles(String name, int expectedCount) {
-		return parseDoubles(getCsvSetting(name, expectedCount),name);
+		getCsvSetting(name, expectedCount); // checks the count
+		return getCsvDoubles(name);
 	}
 
 	/**
@@ -494,9 +580,13 @@ public class Settings {
 	 * @see #getCsvSetting(String)
 	 */
 	public double[] getCsvDoubles(String name) {
-		return parseDoubles(getCsvSetting(name), name);
+		Value value = getValue(name);
+		if (value.numbers == null) {
+			value.numbers = parseDoubles(getCsvSetting(name), name);
+		}
+		return value.numbers.clone();
 	}
-	
+
 	/**
 	 * Parses a double array out of a String array
 	 * @param strings The array of strings containin double values
@@ -589,9 +679,13 @@ public class Settings {
 	 *  @see #getSetting(String)
 	 */
 	public boolean getBoolean(String name) {
-		String stringValue = getSetting(name);
+		Value resolved = getValue(name);
+		if (resolved.bool != null) {
+			return resolved.bool;
+		}
+		String stringValue = resolved.value;
 		boolean value;
-		
+
 		if (stringValue.equalsIgnoreCase("true") || 
 				stringValue.equals("1")) {
 			value = true;
@@ -604,10 +698,11 @@ public class Settings {
 			throw new SettingsError("Not a boolean value: '"+stringValue+
 					"' for setting " + name);
 		}
-		
+
+		resolved.bool = value;
 		return value;
 	}
-	
+
 
 	/**
 	 * Creates (and dynamically loads the class of) an object that
@@ -751,5 +846,33 @@ public class Settings {
 	public String toString() {
 		return props.toString();
 	}
-	
+
+	/**
+	 * Value of a setting resolved for the current run. The value is parsed
+	 * to other types when they are first requested.
+	 */
+	private static class Value {
+		/** full name of the property */
+		private final String propertyName;
+		/** the value or null if the property was not found */
+		private final String value;
+		private volatile Double number;
+		private volatile String[] csv;
+		private volatile double[] numbers;
+		private volatile Boolean bool;
+
+		public Value(String propertyName, String value) {
+			this.propertyName = propertyName;
+			this.value = value;
+		}
+
+		/**
+		 * Returns true if the setting has a (non-empty) value
+		 * @return true if the setting has a value
+		 */
+		public boolean isSet() {
+			return value != null && value.length() > 0;
+		}
+	}
+
 }
\ No newline at end of file
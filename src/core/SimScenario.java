@@ -10,6 +10,11 @@ import input.EventQueueHandler;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import movement.MapBasedMovement;
 import movement.MovementModel;
@@ -39,6 +44,10 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** number of threads that create the hosts -setting id ({@value}).
+	 * Integer valued. Default is 1 (the hosts are created sequentially).
+	 * See {@link #createHosts()}. */
+	public static final String CREATION_THREADS_S = "nrofCreationThreads";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -106,6 +115,8 @@ public class SimScenario implements Serializable {
 	private EventQueueHandler eqHandler;
 	/** Should connections between hosts be simulated */
 	private boolean simulateConnections;
+	/** Number of threads that create the hosts */
+	private int nrofCreationThreads;
 	/** Map used for host movement (if any) */
 	private SimMap simMap;
 
@@ -140,10 +151,13 @@ public class SimScenario implements Serializable {
 		this.endTime = s.getDouble(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
+		this.nrofCreationThreads = s.contains(CREATION_THREADS_S) ?
+				s.getInt(CREATION_THREADS_S) : 1;
 
 		ensurePositiveValue(nrofGroups, NROF_GROUPS_S);
 		ensurePositiveValue(endTime, END_TIME_S);
 		ensurePositiveValue(updateInterval, UP_INT_S);
+		ensurePositiveValue(nrofCreationThreads, CREATION_THREADS_S);
 
 		this.simMap = null;
 		this.maxHostRange = 1;
@@ -322,89 +336,172 @@ public class SimScenario implements Serializable {
 	}
 	
 	/**
-	 * Creates hosts for the scenario
+	 * Creates hosts for the scenario. If more than one creation thread is
+	 * used, the movement models of the groups whose models can be replicated
+	 * concurrently (see {@link MovementModel#isReplicableConcurrently()}) are
+	 * replicated and placed to their initial locations in parallel. The rest
+	 * of the hosts' construction is done in the order of the addresses, and
+	 * every replica draws its random numbers from the stream of the address
+	 * it was created for, so the hosts are identical to the ones created
+	 * sequentially.
 	 */
 	protected void createHosts() {
 		this.hosts = new ArrayList<DTNHost>();
+		ExecutorService executor = null;
+		if (nrofCreationThreads > 1 && !RandomStreams.isLegacy()) {
+			executor = Executors.newFixedThreadPool(nrofCreationThreads);
+		}
 
-		for (int i=1; i<=nrofGroups; i++) {
-			List<NetworkInterface> mmNetInterfaces = 
-				new ArrayList<NetworkInterface>();
-			Settings s = new Settings(GROUP_NS+i);
-			s.setSecondaryNamespace(GROUP_NS);
-			String gid = s.getSetting(GROUP_ID_S);
-			int nrofHosts = s.getInt(NROF_HOSTS_S);
-			int nrofInterfaces = s.getInt(NROF_INTERF_S);
-			int appCount;
-
-			// creates prototypes of MessageRouter and MovementModel
-			MovementModel mmProto = 
-				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
-						s.getSetting(MOVEMENT_MODEL_S));
-			MessageRouter mRouterProto = 
-				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
-						s.getSetting(ROUTER_S));
-			
-			// checks that these values are positive (throws Error if not)
-			ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
-			ensurePositiveValue(nrofInterfaces, NROF_INTERF_S);
-
-			// setup interfaces
-			for (int j=1;j<=nrofInterfaces;j++) {
-				String Intname = s.getSetting(INTERFACENAME_S+j);
-				Settings t = new Settings(Intname); 
-				NetworkInterface mmInterface = 
-					(NetworkInterface)t.createIntializedObject(INTTYPE_PACKAGE + 
-							t.getSetting(INTTYPE_S));
-				mmInterface.setClisteners(connectionListeners);
-				mmNetInterfaces.add(mmInterface);
-			}
-
-			// setup applications
-			if (s.contains(APPCOUNT_S)) {
-				appCount = s.getInt(APPCOUNT_S);
-			} else {
-				appCount = 0;
+		try {
+			for (int i=1; i<=nrofGroups; i++) {
+				createGroup(i, executor);
 			}
-			for (int j=1; j<=appCount; j++) {
-				String appname = null;
-				Application protoApp = null;
-				try {
-					// Get name of the application for this group
-					appname = s.getSetting(GAPPNAME_S+j);
-					// Get settings for the given application
-					Settings t = new Settings(appname);
-					// Load an instance of the application
-					protoApp = (Application)t.createIntializedObject(
-							APP_PACKAGE + t.getSetting(APPTYPE_S));
-					// Set application listeners
-					protoApp.setAppListeners(this.appListeners);
-					// Set the proto application in proto router
-					//mRouterProto.setApplication(protoApp);
-					mRouterProto.addApplication(protoApp);
-				} catch (SettingsError se) {
-					// Failed to create an application for this group
-					System.err.println("Failed to setup an application: " + se);
-					System.err.println("Caught at " + se.getStackTrace()[0]);
-					System.exit(-1);
-				}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
 			}
+		}
+	}
 
-			if (mmProto instanceof MapBasedMovement) {
-				this.simMap = ((MapBasedMovement)mmProto).getMap();
+	/**
+	 * Creates the hosts of a group
+	 * @param i Index of the group
+	 * @param executor The executor for the movement models' replication or
+	 * null if the hosts are created sequentially
+	 */
+	private void createGroup(int i, ExecutorService executor) {
+		List<NetworkInterface> mmNetInterfaces = 
+			new ArrayList<NetworkInterface>();
+		Settings s = new Settings(GROUP_NS+i);
+		s.setSecondaryNamespace(GROUP_NS);
+		String gid = s.getSetting(GROUP_ID_S);
+		int nrofHosts = s.getInt(NROF_HOSTS_S);
+		int nrofInterfaces = s.getInt(NROF_INTERF_S);
+		int appCount;
+
+		// creates prototypes of MessageRouter and MovementModel
+		MovementModel mmProto = 
+			(MovementModel)s.createIntializedObject(MM_PACKAGE + 
+					s.getSetting(MOVEMENT_MODEL_S));
+		MessageRouter mRouterProto = 
+			(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
+					s.getSetting(ROUTER_S));
+		
+		// checks that these values are positive (throws Error if not)
+		ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
+		ensurePositiveValue(nrofInterfaces, NROF_INTERF_S);
+
+		// setup interfaces
+		for (int j=1;j<=nrofInterfaces;j++) {
+			String Intname = s.getSetting(INTERFACENAME_S+j);
+			Settings t = new Settings(Intname); 
+			NetworkInterface mmInterface = 
+				(NetworkInterface)t.createIntializedObject(INTTYPE_PACKAGE + 
+						t.getSetting(INTTYPE_S));
+			mmInterface.setClisteners(connectionListeners);
+			mmNetInterfaces.add(mmInterface);
+		}
+
+		// setup applications
+		if (s.contains(APPCOUNT_S)) {
+			appCount = s.getInt(APPCOUNT_S);
+		} else {
+			appCount = 0;
+		}
+		for (int j=1; j<=appCount; j++) {
+			String appname = null;
+			Application protoApp = null;
+			try {
+				// Get name of the application for this group
+				appname = s.getSetting(GAPPNAME_S+j);
+				// Get settings for the given application
+				Settings t = new Settings(appname);
+				// Load an instance of the application
+				protoApp = (Application)t.createIntializedObject(
+						APP_PACKAGE + t.getSetting(APPTYPE_S));
+				// Set application listeners
+				protoApp.setAppListeners(this.appListeners);
+				// Set the proto application in proto router
+				//mRouterProto.setApplication(protoApp);
+				mRouterProto.addApplication(protoApp);
+			} catch (SettingsError se) {
+				// Failed to create an application for this group
+				System.err.println("Failed to setup an application: " + se);
+				System.err.println("Caught at " + se.getStackTrace()[0]);
+				System.exit(-1);
 			}
+		}
 
-			// creates hosts of ith group
-			for (int j=0; j<nrofHosts; j++) {
-				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		if (mmProto instanceof MapBasedMovement) {
+			this.simMap = ((MapBasedMovement)mmProto).getMap();
+		}
+
+		MovementModel[] replicas = new MovementModel[nrofHosts];
+		Coord[] locations = new Coord[nrofHosts];
+		if (executor != null && mmProto.isReplicableConcurrently()) {
+			replicateMovement(executor, mmProto, replicas, locations);
+		}
+
+		// creates hosts of ith group
+		for (int j=0; j<nrofHosts; j++) {
+			ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+
+			// prototypes are given to new DTNHost which replicates
+			// new instances of movement model (unless it's replicated
+			// already) and message router
+			DTNHost host = new DTNHost(this.messageListeners, 
+					this.movementListeners,	gid, mmNetInterfaces, comBus, 
+					mmProto, mRouterProto, replicas[j], locations[j]);
+			hosts.add(host);
+		}
+	}
 
-				// prototypes are given to new DTNHost which replicates
-				// new instances of movement model and message router
-				DTNHost host = new DTNHost(this.messageListeners, 
-						this.movementListeners,	gid, mmNetInterfaces, comBus, 
-						mmProto, mRouterProto);
-				hosts.add(host);
+	/**
+	 * Replicates a movement model for the next hosts and asks the replicas
+	 * for their initial locations. The hosts are divided to contiguous
+	 * blocks of addresses that are handled by the executor's threads.
+	 * @param executor The executor that runs the replication
+	 * @param mmProto The prototype to replicate
+	 * @param replicas The array where to put the replicas (one per host)
+	 * @param locations The array where to put the initial locations
+	 */
+	private void replicateMovement(ExecutorService executor,
+			final MovementModel mmProto, final MovementModel[] replicas,
+			final Coord[] locations) {
+		final int firstAddress = DTNHost.peekNextAddress();
+		int nrofBlocks = Math.min(nrofCreationThreads, replicas.length);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for (int b=0; b < nrofBlocks; b++) {
+			final int start = (int)((long)replicas.length * b / nrofBlocks);
+			final int end = (int)((long)replicas.length * (b+1) / nrofBlocks);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for (int j=start; j < end; j++) {
+						RandomStreams.setCurrentHost(firstAddress + j);
+						replicas[j] = mmProto.replicate();
+						locations[j] = replicas[j].getInitialLocation();
+					}
+					RandomStreams.setCurrentHost(RandomStreams.NO_HOST);
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Object> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while creating hosts", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
 			}
+			throw new SimError((Exception)e.getCause());
 		}
 	}
 
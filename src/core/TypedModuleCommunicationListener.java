@@ -0,0 +1,32 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+/**
+ * Listener of {@link ModuleCommunicationBus} value changes that gets the
+ * double and integer values as primitives, with the keys' handles (see
+ * {@link ModuleCommunicationBus#getKey(String)}), so no objects are
+ * created for the notifications. Other values are still notified with
+ * {@link #moduleValueChanged(String, Object)}.
+ */
+public interface TypedModuleCommunicationListener
+		extends ModuleCommunicationListener {
+
+	/**
+	 * This method is called whenever a double variable, whose changes the
+	 * module has registered to, changes.
+	 * @param key Handle of the variable's key
+	 * @param newValue New value for the variable
+	 */
+	public void moduleDoubleChanged(int key, double newValue);
+
+	/**
+	 * This method is called whenever an integer variable, whose changes the
+	 * module has registered to, changes.
+	 * @param key Handle of the variable's key
+	 * @param newValue New value for the variable
+	 */
+	public void moduleIntChanged(int key, int newValue);
+}
@@ -8,12 +8,20 @@ import routing.MessageRouter;
 
 /**
  * A connection between two DTN nodes.  The transmission speed
- * is updated every round from the end point transmission speeds
+ * is updated every round from the end point transmission speeds.
+ * If the transfer completions are scheduled (see
+ * {@link #setTransferEvents(boolean)}), the transferred amount is
+ * calculated from the time that has passed at the current speed and the
+ * completion is rescheduled whenever the speed changes.
  */
 public class VBRConnection extends Connection {
 	private int msgsize;
-	private int msgsent;
+	private double msgsent;
 	private int currentspeed = 0;
+	/** time of the last update (with scheduled transfer completions) */
+	private double lastUpdate;
+	/** when the current transfer completes at the current speed */
+	private double completionTime;
 	
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -54,17 +62,49 @@ public class VBRConnection extends Connection {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
+			if (hasTransferEvents()) {
+				this.lastUpdate = SimClock.getTime();
+				this.currentspeed = getEndPointSpeed();
+				scheduleTransfer();
+			}
 		}
 
 		return retVal;
 	}
 
+	/**
+	 * Returns the speed of the slower end point's interface
+	 */
+	private int getEndPointSpeed() {
+		int speed = this.fromInterface.getTransmitSpeed();
+		int othspeed = this.toInterface.getTransmitSpeed();
+		return (othspeed < speed ? othspeed : speed);
+	}
+
+	/**
+	 * Calculates when the current transfer completes at the current speed
+	 * and schedules an update for that time
+	 */
+	private void scheduleTransfer() {
+		if (currentspeed <= 0) {
+			completionTime = Double.MAX_VALUE; // rescheduled when speed changes
+			cancelCompletion();
+			return;
+		}
+		completionTime = SimClock.getTime() + (msgsize - msgsent) / currentspeed;
+		scheduleCompletion(completionTime);
+	}
+
 	/**
 	 * Calculate the current transmission speed from the information
 	 * given by the interfaces, and calculate the missing data amount.
 	 *
 	 */
 	public void update() {
+		if (hasTransferEvents()) {
+			updateTransfer();
+			return;
+		}
 		currentspeed =  this.fromInterface.getTransmitSpeed();
 		int othspeed =  this.toInterface.getTransmitSpeed();
 		
@@ -74,6 +114,32 @@ public class VBRConnection extends Connection {
 		
 		msgsent = msgsent + currentspeed;
 	}
+
+	/**
+	 * Updates the transferred amount from the time passed since the last
+	 * update and reschedules the completion if the speed has changed
+	 */
+	private void updateTransfer() {
+		double now = SimClock.getTime();
+		boolean transferring = msgOnFly != null && msgsent < msgsize;
+		if (transferring) {
+			if (now >= completionTime) {
+				msgsent = msgsize;
+				transferring = false;
+			} else {
+				msgsent += currentspeed * (now - lastUpdate);
+			}
+		}
+		lastUpdate = now;
+
+		int speed = getEndPointSpeed();
+		if (speed != currentspeed) {
+			currentspeed = speed;
+			if (transferring) {
+				scheduleTransfer();
+			}
+		}
+	}
 	
 	/**
 	 * returns the current speed of the connection
@@ -89,7 +155,7 @@ public class VBRConnection extends Connection {
      * @return the amount of bytes to be transferred
      */
     public int getRemainingByteCount() {
-    	int bytesLeft = msgsize - msgsent; 
+    	int bytesLeft = (int)Math.ceil(msgsize - msgsent); 
     	return (bytesLeft > 0 ? bytesLeft : 0);
     }
     
@@ -11,7 +11,9 @@ import interfaces.ConnectivityGrid;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 /**
@@ -37,8 +39,41 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Connectivity optimizer -setting id ({@value}). Either 
+	 * "ConnectivityGrid" (default) for a grid whose cell size is set by
+	 * the interfaces' range or "SparseConnectivityGrid" for a grid that 
+	 * stores only the occupied cells and has own cells for each range class.
+	 * @see interfaces.ConnectivityOptimizer
+	 */
+	public static final String CON_OPTIMIZER_S = "connectivityOptimizer";
+	/**
+	 * Movement kernel -setting id ({@value}). Boolean valued. If true, the
+	 * hosts whose movement models are compatible (e.g., RandomWaypoint and
+	 * RandomWalk without active times) are moved by a
+	 * {@link MovementKernel}. Default is false.
+	 */
+	public static final String MOVEMENT_KERNEL_S = "movementKernel";
+	/**
+	 * Sleep inactive hosts -setting id ({@value}). Boolean valued. If true,
+	 * the hosts that are outside their active times are not moved or
+	 * updated, and their interfaces are not in the connectivity optimizers,
+	 * until the start of their next active time range. Default is false.
+	 * @see movement.MovementModel#getNextActiveTime()
+	 */
+	public static final String SLEEP_INACTIVE_S = "sleepInactiveHosts";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
+	/** Index of the external event processing phase in the phase times */
+	public static final int PHASE_EVENTS = 0;
+	/** Index of the host movement phase in the phase times */
+	public static final int PHASE_MOVEMENT = 1;
+	/** Index of the host update phase in the phase times */
+	public static final int PHASE_HOSTS = 2;
+	/** Index of the update listener phase in the phase times */
+	public static final int PHASE_LISTENERS = 3;
+	/** Number of phases in the phase times */
+	public static final int NROF_PHASES = 4;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
@@ -57,13 +92,29 @@ public class World {
 	 * randomized; null value means that the order should not be randomized) */
 	private ArrayList<DTNHost> updateOrder;
 	/** is cancellation of simulation requested from UI */
-	private boolean isCancelled;
+	private volatile boolean isCancelled;
 	private List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
+	/** scheduled events that don't update the hosts in time order */
+	private PriorityQueue<ExternalEvent> localEvents;
+
+	/** random number stream for the update order (null in legacy mode) */
+	private Random updateOrderRng;
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
+	/** kernel that moves the hosts or null if they move themselves */
+	private MovementKernel movementKernel;
+	/** hosts that are not sleeping in the order of their addresses */
+	private ArrayList<DTNHost> awakeHosts;
+	/** sleeping hosts in the order of their wake up times (null if
+	 * inactive hosts don't sleep) */
+	private PriorityQueue<Sleeper> sleepers;
+	/** the hosts' energy ledger (null if no module uses it) */
+	private EnergyLedger energyLedger;
+	/** nanoseconds spent in the update phases (null if not timed) */
+	private long[] phaseTimes;
 
 	/**
 	 * Constructor.
@@ -81,7 +132,14 @@ public class World {
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		this.localEvents = new PriorityQueue<ExternalEvent>();
 		this.isCancelled = false;		
+		if (!RandomStreams.isLegacy()) {
+			this.updateOrderRng = RandomStreams.getStream(RandomStreams.WORLD,
+					RandomStreams.NO_HOST);
+		}
+
+		this.energyLedger = EnergyLedger.getExistingInstance();
 
 		setNextEventQueue();
 		initSettings();
@@ -117,6 +175,15 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		if (s.contains(MOVEMENT_KERNEL_S) && s.getBoolean(MOVEMENT_KERNEL_S)) {
+			this.movementKernel = new MovementKernel(this.hosts);
+		}
+
+		if (s.contains(SLEEP_INACTIVE_S) && s.getBoolean(SLEEP_INACTIVE_S)) {
+			this.awakeHosts = new ArrayList<DTNHost>(this.hosts);
+			this.sleepers = new PriorityQueue<Sleeper>();
+		}
 	}
 
 	/**
@@ -168,8 +235,11 @@ public class World {
 	 */
 	public void update () {
 		double runUntil = SimClock.getTime() + this.updateInterval;
+		long[] times = this.phaseTimes;
+		long phaseStart = (times != null ? System.nanoTime() : 0);
 
 		setNextEventQueue();
+		processLocalEvents(Math.min(this.nextQueueEventTime, runUntil));
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
@@ -178,17 +248,60 @@ public class World {
 			ee.processEvent(this);
 			updateHosts(); // update all hosts after every event
 			setNextEventQueue();
+			processLocalEvents(Math.min(this.nextQueueEventTime, runUntil));
+		}
+		if (times != null) {
+			phaseStart = endPhase(times, PHASE_EVENTS, phaseStart);
 		}
 
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
+		if (times != null) {
+			phaseStart = endPhase(times, PHASE_MOVEMENT, phaseStart);
+		}
 
 		updateHosts();
+		if (times != null) {
+			phaseStart = endPhase(times, PHASE_HOSTS, phaseStart);
+		}
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
+		if (times != null) {
+			endPhase(times, PHASE_LISTENERS, phaseStart);
+		}
+	}
+
+	/**
+	 * Adds the time since the start of a phase to the phase's total
+	 * @return The current time (the start of the next phase)
+	 */
+	private static long endPhase(long[] times, int phase, long phaseStart) {
+		long now = System.nanoTime();
+		times[phase] += now - phaseStart;
+		return now;
+	}
+
+	/**
+	 * Sets the timing of the update phases on or off. Timing is off by
+	 * default. The phase times are cleared when the timing is set on.
+	 * @param timed If true, the update phases are timed
+	 * @see #getPhaseTimes()
+	 */
+	public void setPhaseTiming(boolean timed) {
+		this.phaseTimes = (timed ? new long[NROF_PHASES] : null);
+	}
+
+	/**
+	 * Returns the total times spent in the update phases since the timing
+	 * was set on. The times are indexed by the PHASE_ constants. The host
+	 * updates after external events are part of the event phase.
+	 * @return The phase times in nanoseconds or null if the timing is off
+	 */
+	public long[] getPhaseTimes() {
+		return (this.phaseTimes != null ? this.phaseTimes.clone() : null);
 	}
 
 	/**
@@ -197,26 +310,90 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		List<DTNHost> awake = this.hosts;
+		if (this.sleepers != null) {
+			wakeHosts();
+			awake = this.awakeHosts;
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
-			for (int i=0, n = hosts.size();i < n; i++) {
+			for (int i=0, n = awake.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				awake.get(i).update(simulateConnections);
 			}
 		}
 		else { // update order randomizing is on
-			assert this.updateOrder.size() == this.hosts.size() : 
+			assert this.updateOrder.size() == awake.size() : 
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
+			Random rng = this.updateOrderRng;
+			if (rng == null) { /* legacy mode */
+				rng = new Random(SimClock.getIntTime());
+			}
 			Collections.shuffle(this.updateOrder, rng); 
-			for (int i=0, n = hosts.size();i < n; i++) {
+			for (int i=0, n = awake.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
 				this.updateOrder.get(i).update(simulateConnections);
 			}			
 		}
+
+		if (this.energyLedger != null) {
+			energyLedger.applyDebits();
+		}
+		if (this.sleepers != null) {
+			sleepInactiveHosts();
+		}
+	}
+
+	/**
+	 * Puts the awake hosts that are not active to sleep until their next
+	 * active time
+	 */
+	private void sleepInactiveHosts() {
+		double time = SimClock.getTime();
+		boolean slept = false;
+
+		for (Iterator<DTNHost> i = awakeHosts.iterator(); i.hasNext();) {
+			DTNHost host = i.next();
+			if (host.isActive()) {
+				continue;
+			}
+			double wakeTime = host.getNextActiveTime();
+			if (wakeTime > time) {
+				host.setAsleep(true);
+				sleepers.add(new Sleeper(host, wakeTime));
+				i.remove();
+				slept = true;
+			}
+		}
+
+		if (slept && this.updateOrder != null) {
+			for (Iterator<DTNHost> i = updateOrder.iterator(); i.hasNext();) {
+				if (i.next().isAsleep()) {
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the sleeping hosts whose wake up time has come
+	 */
+	private void wakeHosts() {
+		double time = SimClock.getTime();
+
+		while (!sleepers.isEmpty() && sleepers.peek().wakeTime <= time) {
+			DTNHost host = sleepers.poll().host;
+			host.setAsleep(false);
+			int index = Collections.binarySearch(awakeHosts, host);
+			awakeHosts.add(-index - 1, host);
+			if (this.updateOrder != null) {
+				updateOrder.add(host);
+			}
+		}
 	}
 
 	/**
@@ -224,8 +401,18 @@ public class World {
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
+		List<DTNHost> awake = this.hosts;
+		if (this.sleepers != null) {
+			wakeHosts();
+			awake = this.awakeHosts;
+		}
+
+		if (this.movementKernel != null) {
+			movementKernel.move(timeIncrement);
+			return;
+		}
+		for (int i=0,n = awake.size(); i<n; i++) {
+			DTNHost host = awake.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
@@ -287,4 +474,92 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Schedules a transfer event for the completion of a connection's
+	 * transfer. The event is a local event that only completes the
+	 * transfer (see
+	 * {@link routing.MessageRouter#transferCompleted(Connection)}). It
+	 * replaces the connection's earlier completion (if any); events of the
+	 * transfers that were finalized, aborted or rescheduled before their
+	 * time are discarded.
+	 * @param con The connection whose transfer completes
+	 * @param simTime The time when the transfer completes
+	 * @see #scheduleLocalEvent(ExternalEvent)
+	 */
+	public void scheduleTransferCompletion(Connection con, double simTime) {
+		con.setCompletionTime(simTime);
+		scheduleLocalEvent(new TransferCompletion(con, simTime));
+	}
+
+	/**
+	 * Schedules a local event, i.e., an event that only concerns the
+	 * objects it refers to. Unlike after the external events and the
+	 * scheduled updates, the hosts are not moved or updated after a local
+	 * event is processed.
+	 * @param ee The event
+	 */
+	public void scheduleLocalEvent(ExternalEvent ee) {
+		localEvents.add(ee);
+	}
+
+	/**
+	 * Processes the local events whose time is at most the given time. The
+	 * clock is set to the time of each event (but never backwards).
+	 * @param until The time until which the events are processed
+	 */
+	private void processLocalEvents(double until) {
+		while (!localEvents.isEmpty() && localEvents.peek().getTime() <= until) {
+			ExternalEvent ee = localEvents.poll();
+			if (ee.getTime() > SimClock.getTime()) {
+				simClock.setTime(ee.getTime());
+			}
+			ee.processEvent(this);
+		}
+	}
+
+	/**
+	 * Returns the number of pending scheduled updates
+	 * @return the number of pending scheduled updates
+	 */
+	public int getNrofScheduledUpdates() {
+		return scheduledUpdates.size();
+	}
+
+	/**
+	 * Scheduled completion of a connection's transfer
+	 */
+	private static class TransferCompletion extends ExternalEvent {
+		private Connection con;
+
+		public TransferCompletion(Connection con, double time) {
+			super(time);
+			this.con = con;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			con.completeTransfer(this.time);
+		}
+	}
+
+	/**
+	 * A sleeping host and the time when it should be woken up
+	 */
+	private static class Sleeper implements Comparable<Sleeper> {
+		private DTNHost host;
+		private double wakeTime;
+
+		public Sleeper(DTNHost host, double wakeTime) {
+			this.host = host;
+			this.wakeTime = wakeTime;
+		}
+
+		public int compareTo(Sleeper other) {
+			if (this.wakeTime != other.wakeTime) {
+				return this.wakeTime < other.wakeTime ? -1 : 1;
+			}
+			return this.host.compareTo(other.host);
+		}
+	}
 }
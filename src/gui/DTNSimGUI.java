@@ -12,6 +12,7 @@ import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
@@ -34,6 +35,8 @@ public class DTNSimGUI extends DTNSimUI {
 	private GUIControls guiControls;
 	private EventLogPanel eventLogPanel;
 	private InfoPanel infoPanel;
+	/** is a view update waiting in the event dispatch thread */
+	private AtomicBoolean viewUpdatePending = new AtomicBoolean(false);
 	
 	private void startGUI() {
 		try {
@@ -184,28 +187,31 @@ public class DTNSimGUI extends DTNSimUI {
 	}
 	
     /**
-     * Updates the GUI
+     * Updates the GUI. The playfield gets a new snapshot of the world
+     * and draws it in the event dispatch thread without stopping the
+     * simulation.
      */
     public void update(boolean forcedUpdate) {
     	double guiUpdateInterval = guiControls.getUpdateInterval(); 		
     	
     	// update only if long enough simTime has passed (and not forced)
-		if (!forcedUpdate && guiUpdateInterval > (SimClock.getTime()
-				- this.lastUpdate)) {
+		if (!forcedUpdate && !this.field.hasPendingPaths() &&
+				guiUpdateInterval > (SimClock.getTime() - this.lastUpdate)) {
 			return;
 		}
-    	
-		try {
-			// run update in EDT, TODO: optimize threading
-			SwingUtilities.invokeAndWait(new Runnable() {
+
+		if (!this.field.publishSnapshot(forcedUpdate)) {
+			return; // previous snapshot is still drawn, try again later
+		}
+		this.lastUpdate = SimClock.getTime();
+
+		if (!viewUpdatePending.getAndSet(true)) {
+			SwingUtilities.invokeLater(new Runnable() {
 			    public void run() {
+			    	viewUpdatePending.set(false);
 					updateView();
 			    }
 			});
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
 		}
 		
     	// wait a while if we don't want to run simulation at full speed
@@ -220,9 +226,8 @@ public class DTNSimGUI extends DTNSimUI {
      *
      */
     private void updateView() {
-    	double simTime = SimClock.getTime();
-    	this.lastUpdate = simTime;
-    	guiControls.setSimTime(simTime); //update time to control panel
+    	//update time of the drawn snapshot to control panel
+    	guiControls.setSimTime(this.field.getSnapshotTime());
 
     	this.field.updateField();
     }
@@ -242,7 +247,12 @@ public class DTNSimGUI extends DTNSimUI {
     public void setFocus(DTNHost host) {
     	centerViewAt(host.getLocation());
     	infoPanel.showInfo(host);
-    	showPath(host.getPath()); // show path on the playfield
+    	if (simDone) {
+    		showPath(host.getPath()); // show path on the playfield
+    	}
+    	else { // the simulation thread reads the path of the moving host
+    		field.addPath(host);
+    	}
     }
     
     /**
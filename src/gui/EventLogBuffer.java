@@ -0,0 +1,132 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import core.Message;
+
+/**
+ * Bounded ring buffer of event log records. One thread (the simulation)
+ * adds records and another one (the GUI) drains them. Neither of the
+ * threads waits for the other: if the buffer is full, the oldest record is
+ * dropped. The records consist of primitive values and a message reference
+ * so no objects are created when a record is added.
+ */
+public class EventLogBuffer {
+	private final int mask;
+	private final int[] types;
+	private final double[] times;
+	private final int[] hosts1;
+	private final int[] hosts2;
+	private final Message[] messages;
+
+	/** sequence number of the next record to add */
+	private volatile long head;
+	/** sequence number of the oldest record in the buffer */
+	private final AtomicLong tail;
+
+	/**
+	 * Constructor.
+	 * @param capacity How many records the buffer can hold at least (rounded
+	 * up to the next power of two)
+	 */
+	public EventLogBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.mask = size - 1;
+		this.types = new int[size];
+		this.times = new double[size];
+		this.hosts1 = new int[size];
+		this.hosts2 = new int[size];
+		this.messages = new Message[size];
+		this.tail = new AtomicLong();
+	}
+
+	/**
+	 * Returns the number of records the buffer can hold
+	 * @return the number of records the buffer can hold
+	 */
+	public int getCapacity() {
+		return this.mask + 1;
+	}
+
+	/**
+	 * Adds a record to the buffer. Must be called from one thread only.
+	 * @param type Type of the event
+	 * @param time Simulation time of the event
+	 * @param host1 Address of the first host of the event (or -1)
+	 * @param host2 Address of the second host of the event (or -1)
+	 * @param message The message of the event (or null)
+	 */
+	public void add(int type, double time, int host1, int host2,
+			Message message) {
+		long h = this.head;
+		long t = tail.get();
+		while (h - t > mask) { // full; drop the oldest unless it's drained
+			if (tail.compareAndSet(t, t + 1)) {
+				break;
+			}
+			t = tail.get();
+		}
+
+		int slot = (int)(h & mask);
+		types[slot] = type;
+		times[slot] = time;
+		hosts1[slot] = host1;
+		hosts2[slot] = host2;
+		messages[slot] = message;
+		this.head = h + 1;
+	}
+
+	/**
+	 * Moves the records from the buffer to a batch, oldest first. Must be
+	 * called from one thread only.
+	 * @param batch The batch to fill (its old records are discarded)
+	 */
+	public void drainTo(Batch batch) {
+		batch.ensureCapacity(getCapacity());
+		int n = 0;
+		long t = tail.get();
+
+		while (t < this.head && n <= mask) {
+			int slot = (int)(t & mask);
+			batch.types[n] = types[slot];
+			batch.times[n] = times[slot];
+			batch.hosts1[n] = hosts1[slot];
+			batch.hosts2[n] = hosts2[slot];
+			batch.messages[n] = messages[slot];
+			/* the record is valid only if it wasn't dropped (and possibly
+			   overwritten) while it was copied */
+			if (tail.compareAndSet(t, t + 1)) {
+				n++;
+			}
+			t = tail.get();
+		}
+
+		batch.size = n;
+	}
+
+	/**
+	 * Records that have been drained from the buffer
+	 */
+	public static class Batch {
+		public int size;
+		public int[] types = new int[0];
+		public double[] times = new double[0];
+		public int[] hosts1 = new int[0];
+		public int[] hosts2 = new int[0];
+		public Message[] messages = new Message[0];
+
+		private void ensureCapacity(int capacity) {
+			if (types.length < capacity) {
+				types = new int[capacity];
+				times = new double[capacity];
+				hosts1 = new int[capacity];
+				hosts2 = new int[capacity];
+				messages = new Message[capacity];
+			}
+		}
+	}
+}
@@ -25,9 +25,13 @@ import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
+import core.SimScenario;
 
 /**
- * Event log panel where log entries are displayed.
+ * Event log panel where log entries are displayed. The simulation thread
+ * only adds records of the events to an {@link EventLogBuffer}. The
+ * records are drained, filtered and shown in Swing's event dispatch thread
+ * every {@link #LOG_UP_INTERVAL} milliseconds.
  */
 public class EventLogPanel extends JPanel 
 	implements ConnectionListener, MessageListener, ActionListener {
@@ -47,6 +51,25 @@ public class EventLogPanel extends JPanel
 
 	/** How often the log is updated (milliseconds) */
 	public static final int LOG_UP_INTERVAL = 500;
+	/** How many events are buffered between the log updates at most */
+	public static final int BUFFER_SIZE = 4096;
+
+	/* types of the logged events */
+	private static final int CON_UP = 0;
+	private static final int CON_DOWN = 1;
+	private static final int MSG_REMOVED = 2;
+	private static final int MSG_DROPPED = 3;
+	private static final int MSG_DELIVERED = 4;
+	private static final int MSG_DELIVERED_AGAIN = 5;
+	private static final int MSG_RELAYED = 6;
+	private static final int MSG_CREATED = 7;
+	private static final int MSG_ABORTED = 8;
+	private static final int MSG_STARTED = 9;
+	/** descriptions of the events by their type */
+	private static final String[] EVENT_NAMES = {"Connection UP",
+		"Connection DOWN", "Message removed", "Message dropped",
+		"Message delivered", "Message delivered again", "Message relayed",
+		"Message created", "Message relay aborted", "Message relay started"};
 	
 	/** Regular expression to filter log entries (changed trough Settings) */ 
 	private String regExp = null;
@@ -68,6 +91,13 @@ public class EventLogPanel extends JPanel
 	private EventLogControl msgDeliveredCheck;
 	private EventLogControl msgDropCheck;
 	private EventLogControl msgAbortCheck;
+	/** controls of the events by their type */
+	private EventLogControl[] checks;
+
+	private EventLogBuffer buffer;
+	private EventLogBuffer.Batch batch;
+	/** indexes of the drained events that are added to the log */
+	private int[] shownEvents;
 	
 	/**
 	 * Creates a new log panel
@@ -97,6 +127,13 @@ public class EventLogPanel extends JPanel
 		this.eventPanes = new Vector<JPanel>(maxNrofEvents);
 		this.font = new Font(FONT_TYPE,Font.PLAIN, FONT_SIZE);
 		this.controls = createControls();
+		this.checks = new EventLogControl[] {conUpCheck, conDownCheck,
+				msgRemoveCheck, msgDropCheck, msgDeliveredCheck,
+				msgDeliveredCheck, msgRelayCheck, msgCreateCheck,
+				msgAbortCheck, msgTransferStartCheck};
+		this.buffer = new EventLogBuffer(BUFFER_SIZE);
+		this.batch = new EventLogBuffer.Batch();
+		this.shownEvents = new int[maxNrofEvents];
 		
 		// set log view to update every LOG_UP_INTERVAL milliseconds
 		// also ensures that the update is done in Swing's EDT
@@ -139,19 +176,19 @@ public class EventLogPanel extends JPanel
 	
 	/**
 	 * Adds a new event to the event log panel
+	 * @param time Simulation time of the event
 	 * @param description Textual description of the event
 	 * @param host1 Host that caused the event or null if there was not any
 	 * @param host2 Another host that was involved in the event (or null)
 	 * @param message Message that was involved in the event (or null)
 	 * @param highlight If true, the log entry is highlighted
 	 */
-	private void addEvent(String description, DTNHost host1,
+	private void addEvent(double time, String description, DTNHost host1,
 			DTNHost host2, Message message, boolean highlight) {
 		JPanel eventPane = new JPanel();
 		eventPane.setLayout(new BoxLayout(eventPane,BoxLayout.LINE_AXIS));
 		
-		String text = String.format(ENTRY_FORMAT, 
-				SimClock.getTime(),description);
+		String text = String.format(ENTRY_FORMAT, time, description);
 		JLabel label = new JLabel(text);
 		label.setFont(font);
 		eventPane.add(label);
@@ -182,10 +219,34 @@ public class EventLogPanel extends JPanel
 	}
 	
 	/**
-	 * Updates the log view
+	 * Adds the newest buffered events that pass the filters to the log and
+	 * updates the log view (if any events were added)
 	 */
 	private void updateLogView() {
-		//TODO Optimization: Check if update is really necessary
+		EventLogBuffer.Batch b = this.batch;
+		buffer.drainTo(b);
+
+		/* only the newest events fit to the log */
+		int nrofShown = 0;
+		for (int i = b.size - 1; i >= 0 && nrofShown < maxNrofEvents; i--) {
+			if (isShown(b.types[i], getHost(b.hosts1[i]), 
+					getHost(b.hosts2[i]), b.messages[i])) {
+				shownEvents[nrofShown++] = i;
+			}
+		}
+
+		if (nrofShown == 0) {
+			return; // no changes to the view
+		}
+
+		for (int j = nrofShown - 1; j >= 0; j--) {
+			int i = shownEvents[j];
+			int type = b.types[i];
+			addEvent(b.times[i], EVENT_NAMES[type], getHost(b.hosts1[i]),
+					getHost(b.hosts2[i]), b.messages[i],
+					checks[type].pauseOnEvent());
+		}
+
 		this.removeAll();
 		for (int i=0; i< this.eventPanes.size(); i++) {
 			this.add(eventPanes.get(i));
@@ -213,85 +274,111 @@ public class EventLogPanel extends JPanel
 	}
 	
 	/**
-	 * Processes a log event
-	 * @param check EventLogControls used to check if this entry type should
-	 * be shown and/or paused upon
-	 * @param name Text description of the event
+	 * Returns true if an event should be shown in the log, i.e., its type's
+	 * "show" is checked and its description matches the regular expression
+	 * (if one is defined)
+	 * @param type Type of the event
 	 * @param host1 First host involved in the event (if any, can be null)
 	 * @param host2 Second host involved in the event (if any, can be null)
-	 * @param message The message involved in the event (if any, can be null) 
+	 * @param message The message involved in the event (if any, can be null)
+	 * @return true if the event should be shown
 	 */
-	private void processEvent(EventLogControl check, final String name,
-			final DTNHost host1, final DTNHost host2, final Message message) {
+	private boolean isShown(int type, DTNHost host1, DTNHost host2,
+			Message message) {
 		String descString;	// String format description of the event
-		
-		if (!check.showEvent()) {
-			return; // if event's "show" is not checked, won't pause either 
+
+		if (!checks[type].showEvent()) {
+			return false;
+		}
+		if (regExp == null) {
+			return true;
 		}
 		
-		descString = name + " " + 
+		descString = EVENT_NAMES[type] + " " + 
 			(host1!=null ? host1 : "") + 
 			(host2!= null ? (HOST_DELIM + host2) : "") + 
 			(message!=null ? " " + message : "");
 		
-		if (regExp != null && !descString.matches(regExp)){
-			return;	// description doesn't match defined regular expression
+		return descString.matches(regExp);
+	}
+
+	/**
+	 * Returns a host by its address
+	 * @param address The address or -1 for no host
+	 * @return The host or null if the address was -1
+	 */
+	private DTNHost getHost(int address) {
+		if (address < 0) {
+			return null;
 		}
+		return SimScenario.getInstance().getHosts().get(address);
+	}
+	
+	/**
+	 * Processes a log event in the simulation thread: pauses the simulation
+	 * if requested and adds the event to the buffer
+	 * @param type Type of the event
+	 * @param host1 First host involved in the event (if any, can be null)
+	 * @param host2 Second host involved in the event (if any, can be null)
+	 * @param message The message involved in the event (if any, can be null) 
+	 */
+	private void processEvent(int type, DTNHost host1, DTNHost host2,
+			Message message) {
+		EventLogControl check = checks[type];
 		
-		if (check.pauseOnEvent()) {
+		if (check.pauseOnEvent() && isShown(type, host1, host2, message)) {
 			gui.setPaused(true);
 			if (host1 != null) {
 				gui.setFocus(host1);
 			}
 		}
 		
-      	addEvent(name, host1, host2, message, check.pauseOnEvent());	
+		buffer.add(type, SimClock.getTime(),
+				host1 != null ? host1.getAddress() : -1,
+				host2 != null ? host2.getAddress() : -1, message);
 	}
 	
 	// Implementations of ConnectionListener and MessageListener interfaces
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		processEvent(conUpCheck, "Connection UP", host1, host2, null);
+		processEvent(CON_UP, host1, host2, null);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		processEvent(conDownCheck, "Connection DOWN", host1, host2, null);
+		processEvent(CON_DOWN, host1, host2, null);
 	}
 
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
 		if (!dropped) {
-			processEvent(msgRemoveCheck, "Message removed", where, null, m);
+			processEvent(MSG_REMOVED, where, null, m);
 		}
 		else {
-			processEvent(msgDropCheck, "Message dropped", where, null, m);
+			processEvent(MSG_DROPPED, where, null, m);
 		}
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
 		if (firstDelivery) {
-			processEvent(msgDeliveredCheck, "Message delivered", from, to, m); 
+			processEvent(MSG_DELIVERED, from, to, m); 
 		}
 		else if (to == m.getTo()) {
-			processEvent(msgDeliveredCheck, "Message delivered again", 
-					from, to, m);
+			processEvent(MSG_DELIVERED_AGAIN, from, to, m);
 		}
 		else {
-			processEvent(msgRelayCheck, "Message relayed", from, to, m);
+			processEvent(MSG_RELAYED, from, to, m);
 		}
 	}
 
 	public void newMessage(Message m) {
-		processEvent(msgCreateCheck, "Message created", m.getFrom(), null, m);
+		processEvent(MSG_CREATED, m.getFrom(), null, m);
 	}
 	
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgAbortCheck, "Message relay aborted", from, to, m);
+		processEvent(MSG_ABORTED, from, to, m);
 	}
 	
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgTransferStartCheck,"Message relay started", from,
-				to,m);
-		
+		processEvent(MSG_STARTED, from, to, m);
 	}
 	
 	// end of message interface implementations
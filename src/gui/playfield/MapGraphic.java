@@ -6,14 +6,16 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 
 /**
- * PlayfieldGraphic for SimMap visualization
- *
+ * PlayfieldGraphic for SimMap visualization. Only the edges that cross
+ * the clip area of the graphics context are drawn. The play field caches
+ * the drawn map in a {@link MapTileCache}.
  */
 public class MapGraphic extends PlayFieldGraphic {
 	private SimMap simMap;
@@ -25,7 +27,6 @@ public class MapGraphic extends PlayFieldGraphic {
 
 	}	
 	
-	// TODO: draw only once and store to buffer
 	@Override
 	public void draw(Graphics2D g2) {
 		Coord c,c2;
@@ -33,6 +34,11 @@ public class MapGraphic extends PlayFieldGraphic {
 		if (simMap == null) {
 			return;
 		}
+
+		Rectangle area = g2.getClipBounds();
+		if (area != null) {
+			area.grow(1, 1); // for the width of the lines
+		}
 		
 		g2.setColor(PATH_COLOR);
 		g2.setBackground(BG_COLOR);
@@ -44,8 +50,13 @@ public class MapGraphic extends PlayFieldGraphic {
 			// draw a line to adjacent nodes
 			for (MapNode n2 : n.getNeighbors()) {
 				c2 = n2.getLocation();
-				g2.drawLine(scale(c2.getX()), scale(c2.getY()),
-						scale(c.getX()), scale(c.getY()));
+				int x1 = scale(c2.getX());
+				int y1 = scale(c2.getY());
+				int x2 = scale(c.getX());
+				int y2 = scale(c.getY());
+				if (area == null || area.intersectsLine(x1, y1, x2, y2)) {
+					g2.drawLine(x1, y1, x2, y2);
+				}
 			}
 		}
 	}	
@@ -0,0 +1,121 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package gui.playfield;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of pre-rendered tiles of the play field's static layers (the
+ * background, the underlay image and the map). The tiles are rendered when
+ * they are first drawn at a zoom level, and the least recently used tiles
+ * are dropped when the cache is full.
+ */
+public class MapTileCache {
+	/** width and height of the tiles in pixels ({@value}) */
+	public static final int TILE_SIZE = 256;
+	/** maximum number of tiles in the cache ({@value}) */
+	public static final int MAX_TILES = 128;
+
+	private PlayField field;
+	private LinkedHashMap<TileKey, BufferedImage> tiles;
+
+	/**
+	 * Constructor.
+	 * @param field The play field whose static layers are cached
+	 */
+	public MapTileCache(PlayField field) {
+		this.field = field;
+		this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f,
+				true) {
+			protected boolean removeEldestEntry(
+					Map.Entry<TileKey, BufferedImage> eldest) {
+				return size() > MAX_TILES;
+			}
+		};
+	}
+
+	/**
+	 * Draws the tiles that cover the given area
+	 * @param g2 The graphics context to draw to
+	 * @param area The area (in graphics coordinates) to cover
+	 */
+	public void draw(Graphics2D g2, Rectangle area) {
+		double scale = PlayFieldGraphic.getScale();
+		int firstCol = Math.max(0, area.x / TILE_SIZE);
+		int firstRow = Math.max(0, area.y / TILE_SIZE);
+		int lastCol = (area.x + area.width - 1) / TILE_SIZE;
+		int lastRow = (area.y + area.height - 1) / TILE_SIZE;
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int col = firstCol; col <= lastCol; col++) {
+				g2.drawImage(getTile(scale, col, row), col * TILE_SIZE,
+						row * TILE_SIZE, null);
+			}
+		}
+	}
+
+	/**
+	 * Returns a tile from the cache or renders it if it isn't cached
+	 */
+	private BufferedImage getTile(double scale, int col, int row) {
+		TileKey key = new TileKey(scale, col, row);
+		BufferedImage tile = tiles.get(key);
+		if (tile == null) {
+			tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+					BufferedImage.TYPE_INT_RGB);
+			Rectangle area = new Rectangle(col * TILE_SIZE, row * TILE_SIZE,
+					TILE_SIZE, TILE_SIZE);
+			Graphics2D g2 = tile.createGraphics();
+			g2.translate(-area.x, -area.y);
+			g2.clip(area);
+			field.drawStaticLayers(g2, area);
+			g2.dispose();
+			tiles.put(key, tile);
+		}
+		return tile;
+	}
+
+	/**
+	 * Removes all tiles from the cache. Must be called when the static
+	 * layers change.
+	 */
+	public void clear() {
+		tiles.clear();
+	}
+
+	/**
+	 * Location of a tile at a zoom level
+	 */
+	private static class TileKey {
+		private double scale;
+		private int col;
+		private int row;
+
+		public TileKey(double scale, int col, int row) {
+			this.scale = scale;
+			this.col = col;
+			this.row = row;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TileKey)) {
+				return false;
+			}
+			TileKey k = (TileKey)o;
+			return k.scale == scale && k.col == col && k.row == row;
+		}
+
+		@Override
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(scale);
+			return (int)(bits ^ (bits >>> 32)) * 31 * 31 + col * 31 + row;
+		}
+	}
+}
@@ -5,18 +5,19 @@
 package gui.playfield;
 
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.Ellipse2D;
-import java.util.ArrayList;
 
-import core.Connection;
-import core.Coord;
 import core.DTNHost;
-import core.NetworkInterface;
 
 /**
- * Visualization of a DTN Node
- *
+ * Visualization of a DTN Node. The node is drawn as it is in the current
+ * {@link WorldSnapshot} (see {@link #setSnapshot(WorldSnapshot)}), so one
+ * graphic can be created for each node and reused. Nodes and connections
+ * outside the drawn area (see {@link #setDrawnArea(Rectangle)}) are
+ * skipped.
  */
 public class NodeGraphic extends PlayFieldGraphic {
 	private static boolean drawCoverage = true;
@@ -31,34 +32,116 @@ public class NodeGraphic extends PlayFieldGraphic {
 	private static Color msgColor2 = Color.GREEN;
 	private static Color msgColor3 = Color.RED;
 
-	private DTNHost node;
+	private static final int BAR_HEIGHT = 5;
+	private static final int BAR_WIDTH = 5;
+	private static final int BAR_DISPLACEMENT = 2;
+
+	/** the snapshot where the nodes are drawn from */
+	private static WorldSnapshot snapshot;
+	/** the area that is drawn or null if everything is drawn */
+	private static Rectangle drawnArea;
+
+	/** address of the node */
+	private int index;
+	private String name;
+	private Ellipse2D.Double coverage;
+	/** size of the node's name in pixels (or -1 if not known yet) */
+	private int nameWidth;
+	private int nameHeight;
 
 	public NodeGraphic(DTNHost node) {	
-		this.node = node;
+		this.index = node.getAddress();
+		this.name = node.toString();
+		this.coverage = new Ellipse2D.Double();
+		this.nameWidth = -1;
+	}
+
+	/**
+	 * Sets the snapshot where the nodes are drawn from
+	 * @param s The snapshot
+	 */
+	public static void setSnapshot(WorldSnapshot s) {
+		snapshot = s;
+	}
+
+	/**
+	 * Sets the area that is drawn. Nodes and connections outside the area
+	 * are not drawn.
+	 * @param area The area in graphics coordinates or null if everything
+	 * should be drawn
+	 */
+	public static void setDrawnArea(Rectangle area) {
+		if (area == null) {
+			drawnArea = null;
+		}
+		else {
+			drawnArea = new Rectangle(area);
+			drawnArea.grow(1, 1); // for the width of the lines
+		}
 	}
 
 	@Override
 	public void draw(Graphics2D g2) {
-		drawHost(g2);
-		drawMessages(g2);
+		boolean visible = isInDrawnArea(g2);
+		drawHost(g2, visible);
+		if (visible) {
+			drawMessages(g2);
+		}
+	}
+
+	/**
+	 * Returns true if any part of the node's graphics (other than the
+	 * connections) can be in the drawn area
+	 * @param g2 The graphic context to draw to
+	 * @return true if the node should be drawn
+	 */
+	private boolean isInDrawnArea(Graphics2D g2) {
+		if (drawnArea == null) {
+			return true;
+		}
+		if (nameWidth < 0) {
+			FontMetrics fm = g2.getFontMetrics();
+			nameWidth = fm.stringWidth(name);
+			nameHeight = fm.getHeight();
+		}
+
+		WorldSnapshot s = snapshot;
+		double x = s.getX(index);
+		double y = s.getY(index);
+		double radius = 2;
+		for (int i=0, n = s.getNrofRanges(index); i < n; i++) {
+			radius = Math.max(radius, s.getRange(index, i));
+		}
+		int nrofMessages = s.getNrofMessages(index);
+		int barsHeight = BAR_DISPLACEMENT + BAR_HEIGHT * 
+			(1 + Math.max(nrofMessages % 10, nrofMessages / 10));
+		int barsWidth = BAR_DISPLACEMENT + 2 * BAR_WIDTH;
+
+		int left = scale(x - Math.max(radius, barsWidth)) - 1;
+		int top = Math.min(scale(y - Math.max(radius, barsHeight)), 
+				scale(y) - nameHeight) - 1;
+		int right = Math.max(scale(x + radius), scale(x) + nameWidth) + 1;
+		int bottom = Math.max(scale(y + radius), scale(y) + nameHeight) + 1;
+
+		return drawnArea.intersects(left, top, right - left, bottom - top);
 	}
 
 	/**
 	 * Visualize node's location, radio ranges and connections
 	 * @param g2 The graphic context to draw to
+	 * @param visible Is the node in the drawn area (if not, only the
+	 * connections that cross the area are drawn)
 	 */
-	private void drawHost(Graphics2D g2) {
-		Coord loc = node.getLocation();
-
-		if (drawCoverage && node.isActive()) {
-			ArrayList<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
-			interfaces.addAll(node.getInterfaces());
-			for (NetworkInterface ni : interfaces) {
-				double range = ni.getTransmitRange();
-				Ellipse2D.Double coverage;
+	private void drawHost(Graphics2D g2, boolean visible) {
+		WorldSnapshot s = snapshot;
+		double x = s.getX(index);
+		double y = s.getY(index);
 
-				coverage = new Ellipse2D.Double(scale(loc.getX()-range),
-						scale(loc.getY()-range), scale(range * 2), scale(range * 2)); 
+		if (visible && drawCoverage && s.isActive(index)) {
+			for (int i=0, n = s.getNrofRanges(index); i < n; i++) {
+				double range = s.getRange(index, i);
+				coverage.setFrame(scale(x-range), scale(y-range),
+						scale(range * 2), scale(range * 2)); 
 
 				// draw the "range" circle
 				g2.setColor(rangeColor);
@@ -68,26 +151,31 @@ public class NodeGraphic extends PlayFieldGraphic {
 
 		if (drawConnections) {
 			g2.setColor(conColor);
-			Coord c1 = node.getLocation();
-			ArrayList<Connection> conList = new ArrayList<Connection>();
-			// create a copy to prevent concurrent modification exceptions
-			conList.addAll(node.getConnections());
-			for (Connection c : conList) {
-				Coord c2 = c.getOtherNode(node).getLocation();
-
-				g2.drawLine(scale(c1.getX()), scale(c1.getY()),
-						scale(c2.getX()), scale(c2.getY()));
+			for (int i=0, n = s.getNrofConnections(index); i < n; i++) {
+				int other = s.getConnectedHost(index, i);
+				int x1 = scale(x);
+				int y1 = scale(y);
+				int x2 = scale(s.getX(other));
+				int y2 = scale(s.getY(other));
+
+				if (drawnArea == null || 
+						drawnArea.intersectsLine(x1, y1, x2, y2)) {
+					g2.drawLine(x1, y1, x2, y2);
+				}
 			}
 		}
 
+		if (!visible) {
+			return;
+		}
+
 		g2.setColor(hostColor);	// draw rectangle to host's location
-		g2.drawRect(scale(loc.getX()-1),scale(loc.getY()-1),scale(2),scale(2));
+		g2.drawRect(scale(x-1),scale(y-1),scale(2),scale(2));
 
 		if (drawNodeName) {
 			g2.setColor(hostNameColor);
 			// Draw node's address next to it
-			g2.drawString(node.toString(), scale(loc.getX()),
-					scale(loc.getY()));
+			g2.drawString(name, scale(x), scale(y));
 		}
 	}
 
@@ -121,25 +209,24 @@ public class NodeGraphic extends PlayFieldGraphic {
 	 * @param g2 The graphic context to draw to
 	 */
 	private void drawMessages(Graphics2D g2) {
-		int nrofMessages = node.getNrofMessages();
-		Coord loc = node.getLocation();
+		int nrofMessages = snapshot.getNrofMessages(index);
+		double x = snapshot.getX(index);
+		double y = snapshot.getY(index);
 
-		drawBar(g2,loc, nrofMessages % 10, 1);
-		drawBar(g2,loc, nrofMessages / 10, 2);
+		drawBar(g2,x,y, nrofMessages % 10, 1);
+		drawBar(g2,x,y, nrofMessages / 10, 2);
 	}
 
 	/**
 	 * Draws a bar (stack of squares) next to a location
 	 * @param g2 The graphic context to draw to
-	 * @param loc The location where to draw
+	 * @param x The x coordinate of the location where to draw
+	 * @param y The y coordinate of the location where to draw
 	 * @param nrof How many squares in the stack
 	 * @param col Which column
 	 */
-	private void drawBar(Graphics2D g2, Coord loc, int nrof, int col) {
-		final int BAR_HEIGHT = 5;
-		final int BAR_WIDTH = 5;
-		final int BAR_DISPLACEMENT = 2;
-
+	private void drawBar(Graphics2D g2, double x, double y, int nrof,
+			int col) {
 		// draws a stack of squares next loc
 		for (int i=1; i <= nrof; i++) {
 			if (i%2 == 0) { // use different color for every other msg
@@ -154,8 +241,8 @@ public class NodeGraphic extends PlayFieldGraphic {
 				}
 			}
 
-			g2.fillRect(scale(loc.getX()-BAR_DISPLACEMENT-(BAR_WIDTH*col)),
-					scale(loc.getY()- BAR_DISPLACEMENT- i* BAR_HEIGHT),
+			g2.fillRect(scale(x-BAR_DISPLACEMENT-(BAR_WIDTH*col)),
+					scale(y- BAR_DISPLACEMENT- i* BAR_HEIGHT),
 					scale(BAR_WIDTH), scale(BAR_HEIGHT));
 		}
 
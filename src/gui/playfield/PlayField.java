@@ -8,11 +8,13 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.swing.JPanel;
 
@@ -24,13 +26,19 @@ import core.World;
 
 /**
  * The canvas where node graphics and message visualizations are drawn.
- *
+ * The nodes are drawn from double buffered {@link WorldSnapshot}s: the
+ * simulation thread fills one snapshot while the other one is drawn.
+ * The static layers (underlay image and map) are drawn from the tiles of a
+ * {@link MapTileCache} and only the nodes that are in the drawn area are
+ * drawn.
  */
 public class PlayField extends JPanel {
 	private World w;
 	private Color bgColor = Color.WHITE;
 	
 	private List<PlayFieldGraphic> overlayGraphics;
+	/** hosts whose paths are added to the overlay with the next snapshot */
+	private List<DTNHost> pathHosts;
 	private boolean autoClearOverlay;	// automatically clear overlay graphics
 	private MapGraphic mapGraphic;
 	private boolean showMapGraphic;
@@ -41,6 +49,17 @@ public class PlayField extends JPanel {
 	private AffineTransform curTransform;
 	private double underlayImgDx;
 	private double underlayImgDy;
+
+	/** graphics of the nodes in the order of their addresses */
+	private NodeGraphic[] nodeGraphics;
+	/** the snapshot that is drawn */
+	private WorldSnapshot front;
+	/** the snapshot that the simulation thread fills */
+	private WorldSnapshot back;
+	/** lock that is held while the front snapshot is drawn or swapped */
+	private ReentrantLock snapshotLock;
+	/** pre-rendered tiles of the underlay image and map */
+	private MapTileCache tileCache;
 	
 	/**
 	 * Creates a playfield
@@ -53,10 +72,71 @@ public class PlayField extends JPanel {
         this.setBackground(bgColor);
         this.overlayGraphics = Collections.synchronizedList(
         		new ArrayList<PlayFieldGraphic>());
+        this.pathHosts = Collections.synchronizedList(
+        		new ArrayList<DTNHost>());
         this.mapGraphic = null;
         this.underlayImage = null;
         this.imageTransform = null;
         this.autoClearOverlay = true;
+
+        List<DTNHost> hosts = w.getHosts();
+        this.nodeGraphics = new NodeGraphic[hosts.size()];
+        for (int i=0; i < nodeGraphics.length; i++) {
+        	nodeGraphics[i] = new NodeGraphic(hosts.get(i));
+        }
+        this.front = new WorldSnapshot();
+        this.back = new WorldSnapshot();
+        this.snapshotLock = new ReentrantLock();
+        this.front.fill(hosts);
+        this.tileCache = new MapTileCache(this);
+	}
+
+	/**
+	 * Takes a new snapshot of the hosts to be drawn. Meant to be called
+	 * from the simulation thread: the snapshot is filled while the previous
+	 * one may still be drawn.
+	 * @param wait If true and the previous snapshot is being drawn, waits
+	 * until the drawing is done. If false, the new snapshot is not taken
+	 * into use in that case.
+	 * @return True if the new snapshot is drawn next, false if not
+	 */
+	public boolean publishSnapshot(boolean wait) {
+		synchronized (pathHosts) {
+			for (DTNHost host : pathHosts) {
+				addPath(host.getPath());
+			}
+			pathHosts.clear();
+		}
+		back.fill(w.getHosts());
+
+		if (wait) {
+			snapshotLock.lock();
+		}
+		else if (!snapshotLock.tryLock()) {
+			return false; // still drawing the previous snapshot
+		}
+
+		try {
+			WorldSnapshot drawn = this.front;
+			this.front = this.back;
+			this.back = drawn;
+		} finally {
+			snapshotLock.unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the simulation time of the snapshot that is drawn
+	 * @return the simulation time of the snapshot that is drawn
+	 */
+	public double getSnapshotTime() {
+		snapshotLock.lock();
+		try {
+			return front.getSimTime();
+		} finally {
+			snapshotLock.unlock();
+		}
 	}
 	
 	/**
@@ -76,6 +156,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setUnderlayImage(BufferedImage image, 
 			double dx, double dy, double scale, double rotation) {
+		this.tileCache.clear();
 		if (image == null) { 
 			this.underlayImage = null;
 			this.imageTransform = null;
@@ -116,6 +197,7 @@ public class PlayField extends JPanel {
 	public void setMap(SimMap simMap) {
 		this.mapGraphic = new MapGraphic(simMap);
 		this.showMapGraphic = true;
+		this.tileCache.clear();
 	}
 	
 	/**
@@ -124,6 +206,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setShowMapGraphic(boolean show) {
 		this.showMapGraphic = show;
+		this.tileCache.clear();
 	}
 	
 	/**
@@ -143,27 +226,38 @@ public class PlayField extends JPanel {
 	 */
 	public void paint(Graphics g) {
 		Graphics2D g2 = (Graphics2D)g;
-		g2.setBackground(bgColor);
-		
-		// clear old playfield graphics
-		g2.clearRect(0, 0, this.getWidth(), this.getHeight());
-		if (underlayImage != null) {
-			g2.drawImage(underlayImage,curTransform, null);
-		}
+		Rectangle field = new Rectangle(0, 0, this.getWidth(),
+				this.getHeight());
+		Rectangle area = g2.getClipBounds();
+		area = (area == null ? field : area.intersection(field));
 
-		// draw map (is exists and drawing requested)
-		if (mapGraphic != null && showMapGraphic) {
-			mapGraphic.draw(g2);
+		if (underlayImage != null || (mapGraphic != null && showMapGraphic)) {
+			tileCache.draw(g2, area);
+		}
+		else {
+			drawStaticLayers(g2, field);
 		}
 		
 		// draw hosts
-		for (DTNHost h : w.getHosts()) {
-			new NodeGraphic(h).draw(g2); // TODO: Optimization..?
+		snapshotLock.lock();
+		try {
+			NodeGraphic.setSnapshot(front);
+			NodeGraphic.setDrawnArea(area);
+			for (NodeGraphic ng : nodeGraphics) {
+				ng.draw(g2);
+			}
+		} finally {
+			snapshotLock.unlock();
 		}
 		
-		// draw overlay graphics
-		for (int i=0, n=overlayGraphics.size(); i<n; i++) {
-			overlayGraphics.get(i).draw(g2);
+		// draw overlay graphics (the list may be changed by other threads)
+		PlayFieldGraphic[] overlays;
+		synchronized (overlayGraphics) {
+			overlays = overlayGraphics.toArray(
+					new PlayFieldGraphic[overlayGraphics.size()]);
+		}
+		for (PlayFieldGraphic pg : overlays) {
+			pg.draw(g2);
 		}
 		
 		// draw reference scale
@@ -171,6 +265,27 @@ public class PlayField extends JPanel {
 	}
 
 	
+	/**
+	 * Draws the static layers of the play field: the background, the
+	 * underlay image and the map
+	 * @param g2 The graphics context to draw to
+	 * @param area The area to draw
+	 */
+	void drawStaticLayers(Graphics2D g2, Rectangle area) {
+		g2.setBackground(bgColor);
+		
+		// clear old playfield graphics
+		g2.clearRect(area.x, area.y, area.width, area.height);
+		if (underlayImage != null) {
+			g2.drawImage(underlayImage,curTransform, null);
+		}
+
+		// draw map (is exists and drawing requested)
+		if (mapGraphic != null && showMapGraphic) {
+			mapGraphic.draw(g2);
+		}
+	}
+
 	/**
 	 * Removes all overlay graphics stored to be drawn
 	 */
@@ -189,7 +304,8 @@ public class PlayField extends JPanel {
 	}
 	
 	/**
-	 * Adds a path to the overlay graphics
+	 * Adds a path to the overlay graphics. The coordinates are copied,
+	 * so the path must not be modified by another thread meanwhile.
 	 * @param path Path to add
 	 */
 	public void addPath(Path path) {
@@ -197,6 +313,24 @@ public class PlayField extends JPanel {
 		this.overlayGraphics.add(new PathGraphic(path));
 		this.updateField();
 	}
+
+	/**
+	 * Adds the current path of a host to the overlay graphics. The path is
+	 * read by the simulation thread when the next snapshot is published.
+	 * @param host The host whose path to add
+	 * @see #hasPendingPaths()
+	 */
+	public void addPath(DTNHost host) {
+		this.pathHosts.add(host);
+	}
+
+	/**
+	 * Returns true if there are host paths waiting for the next snapshot
+	 * @return true if there are host paths waiting for the next snapshot
+	 */
+	public boolean hasPendingPaths() {
+		return !this.pathHosts.isEmpty();
+	}
 	
 	/**
 	 * Clears overlay graphics if autoclear is requested
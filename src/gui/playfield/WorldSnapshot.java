@@ -0,0 +1,189 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package gui.playfield;
+
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * The state of the hosts that the play field draws: locations, radio ranges,
+ * connections and the number of buffered messages. A snapshot is filled by
+ * the simulation thread and not changed while it is drawn, so the GUI
+ * doesn't need to stop the simulation to draw the world. Hosts are
+ * indexed by their addresses. The arrays are reused when the snapshot is
+ * filled again.
+ */
+public class WorldSnapshot {
+	private double simTime;
+	private int nrofHosts;
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private boolean[] active = new boolean[0];
+	private int[] nrofMessages = new int[0];
+
+	/** start indexes of the hosts' ranges in the ranges array */
+	private int[] rangeStart = new int[1];
+	private double[] ranges = new double[0];
+	/** start indexes of the hosts' connections in the conTo array */
+	private int[] conStart = new int[1];
+	/** addresses of the hosts in the other end of the connections */
+	private int[] conTo = new int[0];
+
+	/**
+	 * Fills the snapshot with the current state of the hosts
+	 * @param hosts The hosts in the order of their addresses
+	 */
+	void fill(List<DTNHost> hosts) {
+		int n = hosts.size();
+		if (x.length < n) {
+			x = new double[n];
+			y = new double[n];
+			active = new boolean[n];
+			nrofMessages = new int[n];
+			rangeStart = new int[n + 1];
+			conStart = new int[n + 1];
+		}
+
+		this.simTime = SimClock.getTime();
+		this.nrofHosts = n;
+		int nrofRanges = 0;
+		int nrofCons = 0;
+
+		for (int i=0; i < n; i++) {
+			DTNHost h = hosts.get(i);
+			Coord loc = h.getLocation();
+			x[i] = loc.getX();
+			y[i] = loc.getY();
+			active[i] = h.isActive();
+			nrofMessages[i] = h.getNrofMessages();
+
+			rangeStart[i] = nrofRanges;
+			for (NetworkInterface ni : h.getInterfaces()) {
+				if (nrofRanges == ranges.length) {
+					ranges = grow(ranges);
+				}
+				ranges[nrofRanges++] = ni.getTransmitRange();
+			}
+
+			conStart[i] = nrofCons;
+			for (Connection c : h.getConnections()) {
+				if (nrofCons == conTo.length) {
+					conTo = grow(conTo);
+				}
+				conTo[nrofCons++] = c.getOtherNode(h).getAddress();
+			}
+		}
+
+		rangeStart[n] = nrofRanges;
+		conStart[n] = nrofCons;
+	}
+
+	private static double[] grow(double[] a) {
+		double[] bigger = new double[Math.max(16, a.length * 2)];
+		System.arraycopy(a, 0, bigger, 0, a.length);
+		return bigger;
+	}
+
+	private static int[] grow(int[] a) {
+		int[] bigger = new int[Math.max(16, a.length * 2)];
+		System.arraycopy(a, 0, bigger, 0, a.length);
+		return bigger;
+	}
+
+	/**
+	 * Returns the simulation time of the snapshot
+	 * @return the simulation time of the snapshot
+	 */
+	public double getSimTime() {
+		return this.simTime;
+	}
+
+	/**
+	 * Returns the number of hosts in the snapshot
+	 * @return the number of hosts in the snapshot
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns the x coordinate of a host's location
+	 * @param host Address of the host
+	 * @return the x coordinate
+	 */
+	public double getX(int host) {
+		return x[host];
+	}
+
+	/**
+	 * Returns the y coordinate of a host's location
+	 * @param host Address of the host
+	 * @return the y coordinate
+	 */
+	public double getY(int host) {
+		return y[host];
+	}
+
+	/**
+	 * Returns true if the host was active
+	 * @param host Address of the host
+	 * @return true if the host was active
+	 */
+	public boolean isActive(int host) {
+		return active[host];
+	}
+
+	/**
+	 * Returns the number of messages the host was carrying
+	 * @param host Address of the host
+	 * @return the number of messages
+	 */
+	public int getNrofMessages(int host) {
+		return nrofMessages[host];
+	}
+
+	/**
+	 * Returns the number of the host's network interfaces
+	 * @param host Address of the host
+	 * @return the number of network interfaces
+	 */
+	public int getNrofRanges(int host) {
+		return rangeStart[host + 1] - rangeStart[host];
+	}
+
+	/**
+	 * Returns the transmit range of a host's network interface
+	 * @param host Address of the host
+	 * @param index Index of the interface
+	 * @return the transmit range
+	 */
+	public double getRange(int host, int index) {
+		return ranges[rangeStart[host] + index];
+	}
+
+	/**
+	 * Returns the number of the host's connections
+	 * @param host Address of the host
+	 * @return the number of connections
+	 */
+	public int getNrofConnections(int host) {
+		return conStart[host + 1] - conStart[host];
+	}
+
+	/**
+	 * Returns the address of the host in the other end of a connection
+	 * @param host Address of the host
+	 * @param index Index of the connection
+	 * @return Address of the other host
+	 */
+	public int getConnectedHost(int host, int index) {
+		return conTo[conStart[host] + index];
+	}
+}
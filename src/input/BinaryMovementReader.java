@@ -0,0 +1,307 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Reads ExternalMovement traces from a binary file. The file is memory
+ * mapped in windows and the samples are read directly to a
+ * {@link MovementBatch}, so replaying a trace doesn't allocate memory per
+ * sample. Binary files are created from text traces (see
+ * {@link ExternalMovementReader}) with
+ * {@link #storeToBinaryFile(String, ExternalMovementReader)} or by running
+ * this class: <CODE>java input.BinaryMovementReader in.txt out.binem</CODE>
+ * <P>
+ * Format (big-endian): magic number, version, the six offset values
+ * (minTime maxTime minX maxX minY maxY) and the position of the id
+ * dictionary, followed by one block per time instance
+ * (<CODE>time count (id x y)*</CODE>) and the id dictionary
+ * (<CODE>count id*</CODE>). The values are stored without normalizing.
+ * </P>
+ */
+public class BinaryMovementReader implements MovementTraceReader {
+	/** Extension of binary external movement files */
+	public static final String BINARY_EXT = ".binem";
+	/** First four bytes of the file ("ONEM") */
+	private static final int MAGIC = 0x4F4E454D;
+	private static final int VERSION = 1;
+	/** size of the header in bytes */
+	private static final int HEADER_SIZE = 4 + 4 + 6 * 8 + 8;
+	/** size of one sample in bytes */
+	private static final int SAMPLE_SIZE = 4 + 8 + 8;
+	/** size of the block header (time and count) in bytes */
+	private static final int BLOCK_HEADER_SIZE = 8 + 4;
+	/** how many bytes of the file are mapped at once */
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private FileChannel channel;
+	private MappedByteBuffer window;
+	/** file position where the current window starts */
+	private long windowStart;
+	/** file position where the samples end (and the dictionary starts) */
+	private long dataEnd;
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private boolean normalize;
+	private List<String> idNames;
+
+	/**
+	 * Constructor.
+	 * @param inFilePath Path to the binary file
+	 * @throws SettingsError if the file wasn't found
+	 */
+	public BinaryMovementReader(String inFilePath) {
+		this.normalize = true;
+		File inFile = new File(inFilePath);
+		if (!inFile.exists()) {
+			throw new SettingsError("Couldn't find external movement input " +
+					"file " + inFile);
+		}
+
+		try {
+			this.channel = new RandomAccessFile(inFile, "r").getChannel();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new SimError("Invalid binary movement file " + inFile);
+			}
+			minTime = header.getDouble();
+			maxTime = header.getDouble();
+			minX = header.getDouble();
+			maxX = header.getDouble();
+			minY = header.getDouble();
+			maxY = header.getDouble();
+			dataEnd = header.getLong();
+
+			readIdDictionary(inFile);
+			map(HEADER_SIZE, 0);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Reads the id dictionary from the end of the file
+	 */
+	private void readIdDictionary(File inFile) throws IOException {
+		FileInputStream fis = new FileInputStream(inFile);
+		DataInputStream dis = new DataInputStream(fis);
+		try {
+			fis.getChannel().position(dataEnd);
+			int nrofIds = dis.readInt();
+			this.idNames = new ArrayList<String>(nrofIds);
+			for (int i=0; i < nrofIds; i++) {
+				idNames.add(dis.readUTF());
+			}
+		} finally {
+			dis.close();
+		}
+	}
+
+	/**
+	 * Maps a window of the samples
+	 * @param position File position where the window starts
+	 * @param minSize How many bytes the window must have at least
+	 */
+	private void map(long position, int minSize) throws IOException {
+		long size = Math.min(Math.max(WINDOW_SIZE, minSize),
+				dataEnd - position);
+		this.window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+				size);
+		this.windowStart = position;
+	}
+
+	/**
+	 * Makes sure that the given number of bytes can be read from the window
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (window.remaining() < bytes) {
+			map(windowStart + window.position(), bytes);
+		}
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, the values are
+	 * decremented by minimum values of the offsets. Default is on.
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	public boolean readNextBatch(MovementBatch batch) {
+		try {
+			if (windowStart + window.position() >= dataEnd) {
+				return false;
+			}
+			ensure(BLOCK_HEADER_SIZE);
+			double time = window.getDouble();
+			int count = window.getInt();
+			ensure(count * SAMPLE_SIZE);
+
+			double dt = normalize ? minTime : 0;
+			double dx = normalize ? minX : 0;
+			double dy = normalize ? minY : 0;
+			batch.clear(time - dt);
+			for (int i=0; i < count; i++) {
+				int id = window.getInt();
+				double x = window.getDouble();
+				double y = window.getDouble();
+				batch.add(id, x - dx, y - dy);
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		return true;
+	}
+
+	public String getIdName(int index) {
+		return idNames.get(index);
+	}
+
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Checks if the given file is a binary external movement file
+	 * @param file The file to check
+	 * @return True if the file has the binary extension and header
+	 */
+	public static boolean isBinaryMovementFile(File file) {
+		if (!file.getName().endsWith(BINARY_EXT) || !file.exists()) {
+			return false;
+		}
+
+		try {
+			DataInputStream dis = new DataInputStream(new FileInputStream(file));
+			try {
+				return dis.readInt() == MAGIC && dis.readInt() == VERSION;
+			} finally {
+				dis.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stores a text trace to a binary file
+	 * @param fileName Path to the file where the trace is stored
+	 * @param reader Reader of the text trace (that hasn't been read yet)
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static void storeToBinaryFile(String fileName,
+			ExternalMovementReader reader) throws IOException {
+		reader.setNormalize(false);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName)));
+		long position = HEADER_SIZE;
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(reader.getMinTime());
+			out.writeDouble(reader.getMaxTime());
+			out.writeDouble(reader.getMinX());
+			out.writeDouble(reader.getMaxX());
+			out.writeDouble(reader.getMinY());
+			out.writeDouble(reader.getMaxY());
+			out.writeLong(0); // dictionary position is set at the end
+
+			MovementBatch batch = new MovementBatch();
+			while (reader.readNextBatch(batch)) {
+				out.writeDouble(batch.getTime());
+				out.writeInt(batch.size());
+				for (int i=0, n = batch.size(); i < n; i++) {
+					out.writeInt(batch.getId(i));
+					out.writeDouble(batch.getX(i));
+					out.writeDouble(batch.getY(i));
+				}
+				position += BLOCK_HEADER_SIZE +
+					(long)batch.size() * SAMPLE_SIZE;
+			}
+
+			int nrofIds = reader.getNrofIds();
+			out.writeInt(nrofIds);
+			for (int i=0; i < nrofIds; i++) {
+				out.writeUTF(reader.getIdName(i));
+			}
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+		try {
+			raf.seek(HEADER_SIZE - 8);
+			raf.writeLong(position);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Converts a text trace to a binary file.
+	 * @param args The text file's path and the binary file's path
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: java " +
+					BinaryMovementReader.class.getName() +
+					" <text trace> <binary trace" + BINARY_EXT + ">");
+			System.exit(1);
+		}
+		ExternalMovementReader reader = new ExternalMovementReader(args[0]);
+		storeToBinaryFile(args[1], reader);
+		reader.close();
+	}
+
+	public double getMinTime() {
+		return minTime;
+	}
+
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMaxX() {
+		return maxX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public double getMaxY() {
+		return maxY;
+	}
+}
@@ -4,14 +4,19 @@
  */
 package input;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
 
 import core.Coord;
 import core.SettingsError;
+import core.SimError;
 import core.Tuple;
 
 
@@ -34,13 +39,18 @@ import core.Tuple;
  * All lines must be sorted by time. Sampling interval (time difference between
  * two time instances) must be same for the whole file.
  * </P>
+ * <P>
+ * The samples can be read as id-coordinate tuples or, without allocating
+ * memory per sample, as batches where the ids are indexes of an id 
+ * dictionary (see {@link #readNextBatch(MovementBatch)}).
+ * </P>
+ * @see BinaryMovementReader
  */
-public class ExternalMovementReader {
+public class ExternalMovementReader implements MovementTraceReader {
 	/* Prefix for comment lines (lines starting with this are ignored) */
 	public static final String COMMENT_PREFIX = "#";
-	private Scanner scanner;
+	private BufferedReader in;
 	private double lastTimeStamp = -1;
-	private String lastLine;
 	private double minTime;
 	private double maxTime;
 	private double minX;
@@ -49,7 +59,23 @@ public class ExternalMovementReader {
 	private double maxY;
 	private boolean normalize;
 
-		
+	/** index of each id in the id dictionary */
+	private Map<String, Integer> idIndexes;
+	/** the ids in the order of their indexes */
+	private List<String> idNames;
+
+	/* the sample of the latest read line (that is not in a batch yet,
+	   not normalized) */
+	private boolean hasNextSample;
+	private double nextTime;
+	private int nextId;
+	private double nextX;
+	private double nextY;
+	/** parsing position of the line being parsed */
+	private int linePos;
+	/** batch used by {@link #readNextMovements()} */
+	private MovementBatch batch;
+
 	/**
 	 * Constructor. Creates a new reader that reads the data from a file.
 	 * @param inFilePath Path to the file where the data is read
@@ -57,29 +83,31 @@ public class ExternalMovementReader {
 	 */
 	public ExternalMovementReader(String inFilePath) {
 		this.normalize = true;
+		this.idIndexes = new HashMap<String, Integer>();
+		this.idNames = new ArrayList<String>();
 		File inFile = new File(inFilePath);
 		try {
-			scanner = new Scanner(inFile);
+			in = new BufferedReader(new FileReader(inFile));
 		} catch (FileNotFoundException e) {
 			throw new SettingsError("Couldn't find external movement input " +
 					"file " + inFile);
 		}
 		
-		String offsets = scanner.nextLine();
+		String offsets = readLine();
 	
 		try {
-			Scanner lineScan = new Scanner(offsets);
-			minTime = lineScan.nextDouble();
-			maxTime = lineScan.nextDouble();
-			minX = lineScan.nextDouble();
-			maxX = lineScan.nextDouble();
-			minY = lineScan.nextDouble();
-			maxY = lineScan.nextDouble();
+			this.linePos = 0;
+			minTime = Double.parseDouble(nextToken(offsets));
+			maxTime = Double.parseDouble(nextToken(offsets));
+			minX = Double.parseDouble(nextToken(offsets));
+			maxX = Double.parseDouble(nextToken(offsets));
+			minY = Double.parseDouble(nextToken(offsets));
+			maxY = Double.parseDouble(nextToken(offsets));
 		} catch (Exception e) {
 			throw new SettingsError("Invalid offset line '" + offsets + "'");
 		}
 		
-		lastLine = scanner.nextLine();
+		readNextSample();
 	}
 	
 	/**
@@ -91,7 +119,113 @@ public class ExternalMovementReader {
 	public void setNormalize(boolean normalize) {
 		this.normalize = normalize;
 	}
-	
+
+	/**
+	 * Reads the next line from the file
+	 * @return The line or null if there are no more lines
+	 */
+	private String readLine() {
+		try {
+			return in.readLine();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the next whitespace separated token of a line
+	 * @param line The line
+	 * @return The token that starts from {@link #linePos} or later
+	 */
+	private String nextToken(String line) {
+		int n = line.length();
+		while (linePos < n && Character.isWhitespace(line.charAt(linePos))) {
+			linePos++;
+		}
+		if (linePos == n) {
+			throw new SettingsError("Invalid line '" + line + "'");
+		}
+		int start = linePos;
+		while (linePos < n && !Character.isWhitespace(line.charAt(linePos))) {
+			linePos++;
+		}
+		return line.substring(start, linePos);
+	}
+
+	/**
+	 * Reads the sample of the next (non-empty and non-comment) line
+	 * @throws SettingsError if an invalid line was read
+	 */
+	private void readNextSample() {
+		String line = readLine();
+		while (line != null && (line.trim().length() == 0 ||
+				line.startsWith(COMMENT_PREFIX))) {
+			line = readLine(); /* skip empty and comment lines */
+		}
+		if (line == null) {
+			this.hasNextSample = false;
+			return;
+		}
+
+		try {
+			this.linePos = 0;
+			nextTime = Double.parseDouble(nextToken(line));
+			nextId = getIdIndex(nextToken(line));
+			nextX = Double.parseDouble(nextToken(line));
+			nextY = Double.parseDouble(nextToken(line));
+		} catch (Exception e) {
+			throw new SettingsError("Invalid line '" + line + "'");
+		}
+		this.hasNextSample = true;
+	}
+
+	/**
+	 * Returns the index of an id in the id dictionary. New ids are added to
+	 * the dictionary.
+	 * @param id The id
+	 * @return Index of the id
+	 */
+	private synchronized int getIdIndex(String id) {
+		Integer index = idIndexes.get(id);
+		if (index == null) {
+			index = idNames.size();
+			idIndexes.put(id, index);
+			idNames.add(id);
+		}
+		return index;
+	}
+
+	public synchronized String getIdName(int index) {
+		return idNames.get(index);
+	}
+
+	/**
+	 * Returns the number of ids read so far
+	 * @return The size of the id dictionary
+	 */
+	public synchronized int getNrofIds() {
+		return idNames.size();
+	}
+
+	public boolean readNextBatch(MovementBatch batch) {
+		if (!hasNextSample) {
+			return false;
+		}
+
+		double dt = normalize ? minTime : 0;
+		double dx = normalize ? minX : 0;
+		double dy = normalize ? minY : 0;
+		double time = nextTime;
+		batch.clear(time - dt);
+		while (hasNextSample && nextTime == time) {
+			batch.add(nextId, nextX - dx, nextY - dy);
+			readNextSample();
+		}
+		lastTimeStamp = time - dt;
+
+		return true;
+	}
+
 	/**
 	 * Reads all new id-coordinate tuples that belong to the same time instance
 	 * @return A list of tuples or empty list if there were no more moves
@@ -100,60 +234,29 @@ public class ExternalMovementReader {
 	public List<Tuple<String, Coord>> readNextMovements() {
 		ArrayList<Tuple<String, Coord>> moves = 
 			new ArrayList<Tuple<String, Coord>>();
-		
-		if (!scanner.hasNextLine()) {
-			return moves;
-		}
-		
-		Scanner lineScan = new Scanner(lastLine);
-		double time = lineScan.nextDouble();
-		String id = lineScan.next();
-		double x = lineScan.nextDouble();
-		double y = lineScan.nextDouble();
-		
-		if (normalize) {
-			time -= minTime;
-			x -= minX;
-			y -= minY;
+		if (batch == null) {
+			batch = new MovementBatch();
 		}
 		
-		lastTimeStamp = time;
-		
-		while (scanner.hasNextLine() && lastTimeStamp == time) {
-			lastLine = scanner.nextLine();
-			
-			if (lastLine.trim().length() == 0 || 
-					lastLine.startsWith(COMMENT_PREFIX)) {
-				continue; /* skip empty and comment lines */
-			}
-						
-			// add previous line's tuple
-			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));		
-
-			lineScan = new Scanner(lastLine);
-			
-			try {
-				time = lineScan.nextDouble();
-				id = lineScan.next();
-				x = lineScan.nextDouble();
-				y = lineScan.nextDouble();
-			} catch (Exception e) {
-				throw new SettingsError("Invalid line '" + lastLine + "'");
-			}
-			
-			if (normalize) {
-				time -= minTime;
-				x -= minX;
-				y -= minY;
-			}
+		if (!readNextBatch(batch)) {
+			return moves;
 		}
 		
-		if (!scanner.hasNextLine()) {	// add the last tuple of the file
-			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));
+		for (int i=0, n = batch.size(); i < n; i++) {
+			moves.add(new Tuple<String, Coord>(getIdName(batch.getId(i)),
+					new Coord(batch.getX(i), batch.getY(i))));
 		}
 		
 		return moves;
 	}
+
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
 	
 	/**
 	 * Returns the time stamp where the last moves read with 
@@ -0,0 +1,127 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * Locations of the nodes at one time instance of a movement trace. The
+ * samples are stored in columns (primitive arrays of ids and coordinates)
+ * and the arrays are reused when the batch is refilled, so reading a trace
+ * doesn't allocate memory per sample.
+ * @see MovementTraceReader
+ */
+public class MovementBatch {
+	/** how large arrays are initially chosen */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private double time;
+	private int size;
+	private int[] ids;
+	private double[] xs;
+	private double[] ys;
+
+	/**
+	 * Creates an empty batch
+	 */
+	public MovementBatch() {
+		this.ids = new int[INITIAL_CAPACITY];
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Empties the batch for the samples of a new time instance
+	 * @param time The time of the samples
+	 */
+	public void clear(double time) {
+		this.time = time;
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a sample to the batch
+	 * @param id Index of the node's id in the trace's id dictionary
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	public void add(int id, double x, double y) {
+		ensureCapacity(size + 1);
+		ids[size] = id;
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	/**
+	 * Makes this batch a copy of another batch
+	 * @param other The batch to copy
+	 */
+	public void copyFrom(MovementBatch other) {
+		ensureCapacity(other.size);
+		System.arraycopy(other.ids, 0, ids, 0, other.size);
+		System.arraycopy(other.xs, 0, xs, 0, other.size);
+		System.arraycopy(other.ys, 0, ys, 0, other.size);
+		this.time = other.time;
+		this.size = other.size;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, ids.length * 2);
+		int[] newIds = new int[newCapacity];
+		double[] newXs = new double[newCapacity];
+		double[] newYs = new double[newCapacity];
+		System.arraycopy(ids, 0, newIds, 0, size);
+		System.arraycopy(xs, 0, newXs, 0, size);
+		System.arraycopy(ys, 0, newYs, 0, size);
+		this.ids = newIds;
+		this.xs = newXs;
+		this.ys = newYs;
+	}
+
+	/**
+	 * Returns the time of the samples
+	 * @return the time of the samples
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Returns the number of samples in the batch
+	 * @return the number of samples
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the id index of a sample
+	 * @param i Index of the sample
+	 * @return the id index
+	 */
+	public int getId(int i) {
+		return ids[i];
+	}
+
+	/**
+	 * Returns the x coordinate of a sample
+	 * @param i Index of the sample
+	 * @return the x coordinate
+	 */
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Returns the y coordinate of a sample
+	 * @param i Index of the sample
+	 * @return the y coordinate
+	 */
+	public double getY(int i) {
+		return ys[i];
+	}
+}
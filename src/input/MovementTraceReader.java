@@ -0,0 +1,69 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * Interface for the readers of ExternalMovement movement model's traces.
+ * The readers give the samples of one time instance at a time and the node
+ * ids as indexes of the trace's id dictionary (in the order the ids first
+ * appear in the trace).
+ */
+public interface MovementTraceReader {
+
+	/**
+	 * Reads the samples of the next time instance
+	 * @param batch The batch where the samples are read to
+	 * @return True if samples were read, false if there were no more
+	 */
+	public boolean readNextBatch(MovementBatch batch);
+
+	/**
+	 * Returns the id that has the given index in the id dictionary
+	 * @param index Index of the id
+	 * @return The id
+	 */
+	public String getIdName(int index);
+
+	/**
+	 * Releases the resources of the reader
+	 */
+	public void close();
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime();
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime();
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX();
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX();
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY();
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY();
+}
@@ -0,0 +1,139 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * Movement trace reader that reads (and parses) the batches of another
+ * reader ahead in a background thread. The batches are recycled between
+ * the threads so no memory is allocated once they have grown to the size
+ * of the trace's time instances. The batches are given in the same order
+ * as the wrapped reader reads them, so the results don't depend on the
+ * thread.
+ */
+public class PrefetchingMovementReader implements MovementTraceReader {
+	/** Marker for the end of the trace */
+	private static final MovementBatch END = new MovementBatch();
+
+	private final MovementTraceReader reader;
+	/** batches that have been read but not given out yet */
+	private final BlockingQueue<MovementBatch> filled;
+	/** batches that can be filled */
+	private final BlockingQueue<MovementBatch> free;
+	private final Thread thread;
+	/** error that stopped the reading thread (or null) */
+	private volatile RuntimeException error;
+	private boolean endReached;
+
+	/**
+	 * Constructor. Starts the reading thread.
+	 * @param reader The reader whose batches are read ahead
+	 * @param nrofBatches How many batches are read ahead at most
+	 */
+	public PrefetchingMovementReader(MovementTraceReader reader,
+			int nrofBatches) {
+		this.reader = reader;
+		this.filled = new ArrayBlockingQueue<MovementBatch>(nrofBatches + 1);
+		this.free = new ArrayBlockingQueue<MovementBatch>(nrofBatches);
+		for (int i=0; i < nrofBatches; i++) {
+			free.add(new MovementBatch());
+		}
+
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				prefetch();
+			}
+		}, "MovementPrefetch");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Reads the batches until the trace ends or the reader is closed
+	 */
+	private void prefetch() {
+		try {
+			while (true) {
+				MovementBatch batch = free.take();
+				if (!reader.readNextBatch(batch)) {
+					break;
+				}
+				filled.put(batch);
+			}
+		} catch (InterruptedException e) {
+			return; // closed
+		} catch (RuntimeException e) {
+			this.error = e;
+		}
+		filled.add(END);
+	}
+
+	public boolean readNextBatch(MovementBatch batch) {
+		if (endReached) {
+			return false;
+		}
+
+		MovementBatch next;
+		try {
+			next = filled.take();
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		}
+
+		if (next == END) {
+			endReached = true;
+			if (error != null) {
+				throw error;
+			}
+			return false;
+		}
+
+		batch.copyFrom(next);
+		free.add(next);
+		return true;
+	}
+
+	public String getIdName(int index) {
+		return reader.getIdName(index);
+	}
+
+	public void close() {
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		}
+		reader.close();
+	}
+
+	public double getMinTime() {
+		return reader.getMinTime();
+	}
+
+	public double getMaxTime() {
+		return reader.getMaxTime();
+	}
+
+	public double getMinX() {
+		return reader.getMinX();
+	}
+
+	public double getMaxX() {
+		return reader.getMaxX();
+	}
+
+	public double getMinY() {
+		return reader.getMinY();
+	}
+
+	public double getMaxY() {
+		return reader.getMaxY();
+	}
+}
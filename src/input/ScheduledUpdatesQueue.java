@@ -5,7 +5,11 @@
 package input;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * Event queue where simulation objects can request an update to happen
@@ -15,14 +19,18 @@ import java.util.List;
 public class ScheduledUpdatesQueue implements EventQueue {
 	/** Time of the event (simulated seconds) */
 	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** the updates after nextEvent (heap ordered by time) */
+	private PriorityQueue<ExternalEvent> updates;
+	/** times of the updates in the heap */
+	private Set<Double> updateTimes;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
 		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.updates = new PriorityQueue<ExternalEvent>();
+		this.updateTimes = new HashSet<Double>();
 	}
 	
 	/**
@@ -33,11 +41,12 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	public ExternalEvent nextEvent() {
 		ExternalEvent event = this.nextEvent;
 		
-		if (this.updates.size() == 0) {
+		if (this.updates.isEmpty()) {
 			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
 		}
 		else {
-			this.nextEvent = this.updates.remove(0);
+			this.nextEvent = this.updates.poll();
+			this.updateTimes.remove(this.nextEvent.getTime());
 		}
 		
 		return event;
@@ -72,31 +81,37 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
+	 * Puts a event to the queue unless an update with the same time is
+	 * there already. An event with time Double.MAX_VALUE (no update) is
+	 * not queued.
 	 * @param ee The event to put to the queue
 	 */
 	private void putToQueue(ExternalEvent ee) {
 		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
-			}
+
+		if (eeTime == Double.MAX_VALUE || !this.updateTimes.add(eeTime)) {
+			return; // update with the given time exists -> no need for new
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
 		this.updates.add(ee);  
 	}
 	
+	/**
+	 * Returns the number of pending updates
+	 * @return the number of pending updates
+	 */
+	public int size() {
+		if (this.nextEvent.getTime() == Double.MAX_VALUE) {
+			return 0;
+		}
+		return this.updates.size() + 1;
+	}
+
 	public String toString() {
 		String times = "updates @ " + this.nextEvent.getTime();
-		
-		for (ExternalEvent ee : this.updates) {
+		List<ExternalEvent> sorted = new ArrayList<ExternalEvent>(this.updates);
+		Collections.sort(sorted);
+
+		for (ExternalEvent ee : sorted) {
 			times += ", " + ee.getTime();
 		}
 		
@@ -6,13 +6,55 @@ package interfaces;
 
 import java.util.Collection;
 
+import core.DTNSim;
 import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
 abstract public class ConnectivityOptimizer {
+	/** Name of the (default) {@link ConnectivityGrid} optimizer ({@value}) */
+	public static final String GRID = "ConnectivityGrid";
+	/** Name of the {@link SparseConnectivityGrid} optimizer ({@value}) */
+	public static final String SPARSE_GRID = "SparseConnectivityGrid";
+
+	/** is the sparse grid used instead of the connectivity grid */
+	private static boolean sparse;
+
+	static {
+		DTNSim.registerForReset(ConnectivityOptimizer.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		Settings s = new Settings(World.SETTINGS_NS);
+		String type = s.contains(World.CON_OPTIMIZER_S) ?
+				s.getSetting(World.CON_OPTIMIZER_S) : GRID;
+		if (!type.equals(GRID) && !type.equals(SPARSE_GRID)) {
+			throw new SettingsError("Unknown value '" + type + "' for " +
+					World.SETTINGS_NS + "." + World.CON_OPTIMIZER_S);
+		}
+		sparse = type.equals(SPARSE_GRID);
+	}
+
+	/**
+	 * Returns the connectivity optimizer that is selected with the
+	 * {@link World#CON_OPTIMIZER_S} setting
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param range Transmit range of the interface
+	 * @return The connectivity optimizer for a specific interface
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key, double range) {
+		if (sparse) {
+			return SparseConnectivityGrid.SparseConnectivityGridFactory(key);
+		}
+		return ConnectivityGrid.ConnectivityGridFactory(key, range);
+	}
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -25,6 +67,11 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void addInterfaces(Collection<NetworkInterface> interfaces);
 
+	/**
+	 * Removes a network interface from the optimizer (if it is present)
+	 */
+	abstract public void removeInterface(NetworkInterface ni);
+
 	/**
 	 * Updates a network interface's location
 	 */
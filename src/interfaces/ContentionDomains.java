@@ -0,0 +1,152 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import java.util.HashMap;
+
+import core.Coord;
+import core.DTNSim;
+
+/**
+ * <P>Shared accounting of the transmitting interfaces in contention domains.
+ * The world is divided to square cells whose size is the interfaces'
+ * transmit range and the contention domain of a cell is the cell and the
+ * eight cells around it. Every interface keeps its own transmitter count in
+ * one cell up to date, so the number of transmitters that share the
+ * airtime is found without going through the connections of the
+ * neighbors.</P>
+ *
+ * <P>Only the cells that have transmitters are stored. The factors of the
+ * Gupta-Kumar equation are cached by the number of active stations.</P>
+ */
+public class ContentionDomains {
+	private static HashMap<Integer, ContentionDomains> domainObjects;
+	/** sqrt(n * ln(n)) by the number of active stations n */
+	private static double[] speedDivisors = new double[0];
+
+	private double cellSize;
+	/** number of transmitters by the cell's key */
+	private HashMap<Long, int[]> transmitters;
+
+	static {
+		DTNSim.registerForReset(ContentionDomains.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		domainObjects = new HashMap<Integer, ContentionDomains>();
+	}
+
+	private ContentionDomains(double cellSize) {
+		this.cellSize = cellSize;
+		this.transmitters = new HashMap<Long, int[]>();
+	}
+
+	/**
+	 * Returns the contention domains for interfaces of a specific type
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Size of the cells (transmit range of the interfaces)
+	 * @return The contention domains object
+	 */
+	public static ContentionDomains ContentionDomainsFactory(int key,
+			double cellSize) {
+		ContentionDomains cd = domainObjects.get(key);
+		if (cd == null) {
+			cd = new ContentionDomains(cellSize);
+			domainObjects.put(key, cd);
+		}
+		return cd;
+	}
+
+	/**
+	 * Returns the divisor of the maximum transmit speed when the given
+	 * number of stations is active, i.e., <CODE>sqrt(n * ln(n))</CODE>
+	 * @param nrofActive Number of active stations (at least two)
+	 * @return The divisor
+	 */
+	public static double getSpeedDivisor(int nrofActive) {
+		if (nrofActive >= speedDivisors.length) {
+			double[] divisors = new double[Math.max(nrofActive + 1,
+					speedDivisors.length * 2)];
+			for (int n = 0; n < divisors.length; n++) {
+				divisors[n] = Math.sqrt((1.0 * n) * Math.log(1.0 * n));
+			}
+			speedDivisors = divisors;
+		}
+		return speedDivisors[nrofActive];
+	}
+
+	/**
+	 * Returns the key of the cell where the given location is
+	 * @param c The location
+	 * @return The cell's key
+	 */
+	public long getCell(Coord c) {
+		return cellKey((int)Math.floor(c.getX() / cellSize),
+				(int)Math.floor(c.getY() / cellSize));
+	}
+
+	/** Returns the key of the cell with the given indexes */
+	private long cellKey(int col, int row) {
+		return ((long)col << 32) | (row & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds a transmitter to a cell
+	 * @param cell Key of the cell
+	 */
+	public void addTransmitter(long cell) {
+		int[] count = transmitters.get(cell);
+		if (count == null) {
+			count = new int[1];
+			transmitters.put(cell, count);
+		}
+		count[0]++;
+	}
+
+	/**
+	 * Removes a transmitter from a cell
+	 * @param cell Key of the cell
+	 */
+	public void removeTransmitter(long cell) {
+		int[] count = transmitters.get(cell);
+		assert count != null : "No transmitters in cell " + cell;
+		if (--count[0] == 0) {
+			transmitters.remove(cell);
+		}
+	}
+
+	/**
+	 * Returns the number of transmitters in the contention domain of a cell
+	 * @param cell Key of the cell
+	 * @return The number of transmitters in the cell and its neighbor cells
+	 */
+	public int getNrofTransmitters(long cell) {
+		if (transmitters.isEmpty()) {
+			return 0;
+		}
+		int col = (int)(cell >> 32);
+		int row = (int)cell;
+		int nrof = 0;
+		for (int c = col - 1; c <= col + 1; c++) {
+			for (int r = row - 1; r <= row + 1; r++) {
+				int[] count = transmitters.get(cellKey(c, r));
+				if (count != null) {
+					nrof += count[0];
+				}
+			}
+		}
+		return nrof;
+	}
+
+	/**
+	 * Returns the number of cells that have transmitters
+	 * @return the number of cells with transmitters
+	 */
+	public int getNrofCells() {
+		return transmitters.size();
+	}
+}
@@ -19,13 +19,34 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	/**
+	 * Contention domains -setting id ({@value}). Boolean valued. If true,
+	 * the transmitting stations are counted from the shared
+	 * {@link ContentionDomains} (all the transmitters within about the
+	 * transmit range) instead of the connected hosts that are transmitting.
+	 * Default is false.
+	 */
+	public static final String CONTENTION_DOMAINS_S = "contentionDomains";
+
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
+	/** the values the current transmit speed was calculated with */
+	private int speedActive;
+	private int speedTransmissions;
+	private int speedMax;
+
+	private boolean useDomains;
+	private ContentionDomains domains;
+	/** the cell where this interface is counted as a transmitter (if is) */
+	private long transmitterCell;
+	private boolean countedAsTransmitter;
 
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		this.useDomains = s.contains(CONTENTION_DOMAINS_S) &&
+			s.getBoolean(CONTENTION_DOMAINS_S);
 	}
 
 	/**
@@ -38,6 +59,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		this.useDomains = ni.useDomains;
 	}
 
 	
@@ -45,6 +67,15 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		return new InterferenceLimitedInterface(this);
 	}
 
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (useDomains) {
+			this.domains = ContentionDomains.ContentionDomainsFactory(
+					this.interfacetype.hashCode(), transmitRange);
+		}
+	}
+
 	/**
 	 * Returns the transmit speed of this network layer
 	 * @return the transmit speed
@@ -94,25 +125,32 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 				i++;
 			}
 		}
-		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		// Then find new possible connections (unless out of energy)
+		if (!isOutOfEnergy()) {
+			Collection<NetworkInterface> interfaces = 
+				optimizer.getNearInterfaces(this);
+			for (NetworkInterface i : interfaces) 
+				connect(i);
+		}
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
 		numberOfTransmissions = 0;
 		int numberOfActive = 1;
-		for (Connection con : this.connections) {
+		for (int i=0, n = connections.size(); i < n; i++) {
+			Connection con = connections.get(i);
 			if (con.getMessage() != null) {
 				numberOfTransmissions++;
 			}
-			if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
+			if (!useDomains &&
+					((InterferenceLimitedInterface)con.getOtherInterface(this)).
 					isTransferring() == true) {
 				numberOfActive++;
 			}
 		}
+		if (useDomains) {
+			numberOfActive = updateDomain();
+		}
 
 		int ntrans = numberOfTransmissions;
 		if ( numberOfTransmissions < 1) ntrans = 1;
@@ -120,16 +158,121 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 
 		// Based on the equation of Gupta and Kumar - and the transmission speed
 		// is divided equally to all the ongoing transmissions 
-		currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
-				(Math.sqrt((1.0*numberOfActive) *
-						Math.log(1.0*numberOfActive))) /
-							ntrans );
+		if (numberOfActive != speedActive || ntrans != speedTransmissions
+				|| transmitSpeed != speedMax) {
+			currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
+					ContentionDomains.getSpeedDivisor(numberOfActive) /
+								ntrans );
+			speedActive = numberOfActive;
+			speedTransmissions = ntrans;
+			speedMax = transmitSpeed;
+		}
 		
 		for (Connection con : getConnections()) {
 			con.update();
 		}
 	}
 
+	/**
+	 * Updates this interface's transmitter count in the contention domains
+	 * @return Number of active stations in the domain (this station and the
+	 * transmitting ones)
+	 */
+	private int updateDomain() {
+		long cell = domains.getCell(getLocation());
+		boolean transmitting = isTransferring();
+		if (!transmitting || cell != transmitterCell) {
+			leaveDomain();
+		}
+		if (transmitting && !countedAsTransmitter) {
+			domains.addTransmitter(cell);
+			transmitterCell = cell;
+			countedAsTransmitter = true;
+		}
+
+		int numberOfActive = domains.getNrofTransmitters(cell);
+		return transmitting ? numberOfActive : numberOfActive + 1;
+	}
+
+	/**
+	 * Removes this interface from the transmitters of its contention domain
+	 * (if it is counted there)
+	 */
+	private void leaveDomain() {
+		if (countedAsTransmitter) {
+			domains.removeTransmitter(transmitterCell);
+			countedAsTransmitter = false;
+		}
+	}
+
+	/**
+	 * Recounts the ongoing transmissions when connections are torn down
+	 * between the updates of this interface, and leaves the contention
+	 * domain if no transmissions are left. Otherwise an interface whose
+	 * host isn't updated (e.g., is inactive) would stay counted.
+	 */
+	private void recountTransmissions() {
+		if (!countedAsTransmitter) {
+			return;
+		}
+		int transmissions = 0;
+		for (int i=0, n = connections.size(); i < n; i++) {
+			Connection con = connections.get(i);
+			if (con.isUp() && con.getMessage() != null) {
+				transmissions++;
+			}
+		}
+		numberOfTransmissions = transmissions;
+		if (transmissions == 0) {
+			leaveDomain();
+		}
+	}
+
+	@Override
+	protected void disconnect(Connection con,
+			NetworkInterface anotherInterface) {
+		super.disconnect(con, anotherInterface);
+		connectionsDropped(anotherInterface);
+	}
+
+	@Override
+	public void destroyConnection(NetworkInterface anotherInterface) {
+		super.destroyConnection(anotherInterface);
+		connectionsDropped(anotherInterface);
+	}
+
+	/**
+	 * Recounts the transmissions of both ends of torn down connections
+	 * @param anotherInterface The interface at the other end
+	 */
+	private void connectionsDropped(NetworkInterface anotherInterface) {
+		recountTransmissions();
+		if (anotherInterface instanceof InterferenceLimitedInterface) {
+			((InterferenceLimitedInterface)anotherInterface).
+				recountTransmissions();
+		}
+	}
+
+	/**
+	 * Leaves the contention domain; an inactive host doesn't transmit
+	 */
+	@Override
+	public void hostInactive() {
+		leaveDomain();
+	}
+
+	/**
+	 * Leaves the contention domain when the interface is removed from the
+	 * optimizer (e.g., its host goes to sleep)
+	 */
+	@Override
+	public void setInOptimizer(boolean present) {
+		super.setInOptimizer(present);
+		if (!present) {
+			leaveDomain();
+		}
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active
@@ -0,0 +1,270 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import input.ExternalEvent;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Kinetic connectivity of a network interface. The hosts move on straight
+ * segments with constant speeds (see {@link DTNHost#getSegmentEnd()}), so
+ * the times when two hosts come within range of each other and go out of
+ * range can be solved from their current segments. The solved times are
+ * valid until either of the hosts reaches the end of its segment. Each
+ * crossing is scheduled as a local event of the world (see
+ * {@link World#scheduleLocalEvent(ExternalEvent)}) that opens or closes
+ * only the contact of that pair at the exact time, independent of the
+ * update interval, without updating the other hosts.
+ * <P>The interface's update still visits its connected and nearby
+ * interfaces every round, both to find the pairs to follow and to solve
+ * new times when a host starts a new segment. Only the distance test is
+ * replaced with a lookup of the solved times. Only the interfaces that are
+ * checked during an update round are followed, so with very long update
+ * intervals the connectivity optimizer's cells must be large enough to
+ * include the hosts that may come within range before the next update.</P>
+ */
+public class KineticContacts {
+	/** Time of crossings that never happen */
+	public static final double NEVER = Double.MAX_VALUE;
+
+	private NetworkInterface ni;
+	/** predictions for the other interfaces checked during this round */
+	private Map<NetworkInterface, Prediction> predictions;
+	/** number of the current update round */
+	private int round;
+
+	/**
+	 * Constructor.
+	 * @param ni The network interface whose contacts are followed
+	 */
+	public KineticContacts(NetworkInterface ni) {
+		this.ni = ni;
+		this.predictions = new HashMap<NetworkInterface, Prediction>();
+	}
+
+	/**
+	 * Starts a new update round
+	 */
+	public void startRound() {
+		this.round++;
+	}
+
+	/**
+	 * Ends an update round: schedules a contact check for the next crossing
+	 * of each interface that was checked during the round and forgets the
+	 * interfaces that weren't checked
+	 */
+	public void endRound() {
+		double now = SimClock.getTime();
+		Iterator<Map.Entry<NetworkInterface, Prediction>> iter =
+			predictions.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<NetworkInterface, Prediction> e = iter.next();
+			Prediction p = e.getValue();
+			if (p.round != this.round) {
+				iter.remove();
+				continue;
+			}
+			double next = p.nextCrossing(now);
+			if (next != NEVER && next != p.scheduled) {
+				SimScenario.getInstance().getWorld().scheduleLocalEvent(
+						new Crossing(e.getKey(), next));
+				p.scheduled = next;
+			}
+		}
+	}
+
+	/**
+	 * Opens or closes the contact with another interface depending on
+	 * whether the interfaces are within range at the current time
+	 * @param other The other interface
+	 */
+	public void checkContact(NetworkInterface other) {
+		boolean connected = false;
+		for (Connection con : ni.getConnections()) {
+			if (con.getOtherInterface(ni) == other) {
+				connected = true;
+				break;
+			}
+		}
+
+		if (isWithinRange(other)) {
+			if (!connected && ni.getHost().isActive()) {
+				ni.connect(other);
+			}
+		}
+		else if (connected) {
+			ni.destroyConnection(other);
+		}
+	}
+
+	/**
+	 * Returns true if another interface is within range of the interface at
+	 * the current simulation time
+	 * @param other The other interface
+	 * @return True if the interfaces are within range of each other
+	 */
+	public boolean isWithinRange(NetworkInterface other) {
+		Prediction p = getPrediction(other);
+		/* the segments are known only until the prediction's end */
+		double time = Math.min(SimClock.getTime(), p.validUntil);
+		return p.enter <= time && time < p.leave;
+	}
+
+	/**
+	 * Returns an up-to-date prediction for another interface
+	 */
+	private Prediction getPrediction(NetworkInterface other) {
+		double now = SimClock.getTime();
+		double range = Math.min(ni.getTransmitRange(),
+				other.getTransmitRange());
+		Prediction p = predictions.get(other);
+
+		if (p == null) {
+			p = new Prediction();
+			predictions.put(other, p);
+		}
+		else if (now < p.validUntil && range == p.range) {
+			p.round = this.round;
+			return p; // the hosts are still on the same segments
+		}
+
+		DTNHost h1 = ni.getHost();
+		DTNHost h2 = other.getHost();
+		double t0 = Math.max(h1.getLocationTime(), h2.getLocationTime());
+		double[] s1 = segment(h1, t0);
+		double[] s2 = segment(h2, t0);
+		double[] crossings = solveCrossings(s2[0] - s1[0], s2[1] - s1[1],
+				s2[2] - s1[2], s2[3] - s1[3], range);
+
+		if (crossings == null) {
+			p.enter = NEVER;
+			p.leave = NEVER;
+		}
+		else {
+			p.enter = t0 + crossings[0];
+			p.leave = t0 + crossings[1];
+		}
+		p.range = range;
+		p.validUntil = Math.min(h1.getSegmentEndTime(),
+				h2.getSegmentEndTime());
+		p.round = this.round;
+		return p;
+	}
+
+	/**
+	 * Returns the location of a host at the given time and its velocity as
+	 * {x, y, vx, vy}
+	 */
+	private double[] segment(DTNHost host, double time) {
+		Coord loc = host.getLocation();
+		Coord end = host.getSegmentEnd();
+		double duration = host.getSegmentEndTime() - host.getLocationTime();
+		double vx = 0;
+		double vy = 0;
+		if (duration > 0) {
+			vx = (end.getX() - loc.getX()) / duration;
+			vy = (end.getY() - loc.getY()) / duration;
+		}
+		double dt = time - host.getLocationTime();
+		return new double[] {loc.getX() + vx * dt, loc.getY() + vy * dt,
+				vx, vy};
+	}
+
+	/**
+	 * Solves the time interval when two points that move with constant
+	 * velocities are within the given range of each other.
+	 * @param dx Difference of the points' x coordinates at time 0
+	 * @param dy Difference of the points' y coordinates at time 0
+	 * @param dvx Difference of the points' x velocities
+	 * @param dvy Difference of the points' y velocities
+	 * @param range The range
+	 * @return The times {enter, leave} when the distance of the points
+	 * becomes the range (the times can be negative and infinite) or null
+	 * if the points are never within the range
+	 */
+	public static double[] solveCrossings(double dx, double dy,
+			double dvx, double dvy, double range) {
+		double a = dvx * dvx + dvy * dvy;
+		double b = dx * dvx + dy * dvy;
+		double c = dx * dx + dy * dy - range * range;
+
+		if (a == 0) { /* the distance doesn't change */
+			if (c <= 0) {
+				return new double[] {-NEVER, NEVER};
+			}
+			return null;
+		}
+
+		double discriminant = b * b - a * c;
+		if (discriminant < 0) {
+			return null;
+		}
+		double root = Math.sqrt(discriminant);
+		return new double[] {(-b - root) / a, (-b + root) / a};
+	}
+
+	/**
+	 * Contact check of another interface at a predicted range crossing.
+	 * If the prediction has changed since, the check finds that nothing
+	 * needs to be done.
+	 */
+	private class Crossing extends ExternalEvent {
+		private NetworkInterface other;
+
+		public Crossing(NetworkInterface other, double time) {
+			super(time);
+			this.other = other;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			checkContact(other);
+		}
+	}
+
+	/**
+	 * Range crossing times of another interface
+	 */
+	private static class Prediction {
+		/** time when the interfaces come within range */
+		private double enter;
+		/** time when the interfaces go out of range */
+		private double leave;
+		/** time until which the hosts stay on the same segments */
+		private double validUntil;
+		/** range that the times were solved for */
+		private double range;
+		/** time of the latest scheduled update */
+		private double scheduled = NEVER;
+		/** round when the prediction was last used */
+		private int round;
+
+		/**
+		 * Returns the first crossing after the given time that happens
+		 * while the prediction is valid
+		 */
+		private double nextCrossing(double time) {
+			if (time < enter && enter < validUntil) {
+				return enter;
+			}
+			if (time < leave && leave < validUntil) {
+				return leave;
+			}
+			return NEVER;
+		}
+	}
+}
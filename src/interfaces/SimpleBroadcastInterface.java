@@ -17,12 +17,27 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	/**
+	 * Kinetic contacts -setting id ({@value}). Boolean valued. If true, the
+	 * times when the hosts come within and go out of range are solved from
+	 * their movement and the contacts open and close at those times instead
+	 * of the update steps. The update still visits the connected and nearby
+	 * interfaces but doesn't compare their distances. Default is false. 
+	 * @see KineticContacts
+	 */
+	public static final String KINETIC_S = "kineticContacts";
+
+	/** kinetic connectivity or null if the range is checked every update */
+	private KineticContacts kinetic;
+	private boolean isKinetic;
+
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
 	 */
 	public SimpleBroadcastInterface(Settings s)	{
 		super(s);
+		this.isKinetic = s.contains(KINETIC_S) && s.getBoolean(KINETIC_S);
 	}
 		
 	/**
@@ -31,6 +46,10 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 */
 	public SimpleBroadcastInterface(SimpleBroadcastInterface ni) {
 		super(ni);
+		this.isKinetic = ni.isKinetic;
+		if (this.isKinetic) {
+			this.kinetic = new KineticContacts(this);
+		}
 	}
 
 	public NetworkInterface replicate()	{
@@ -39,11 +58,13 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 
 	/**
 	 * Tries to connect this host to another host. The other host must be
-	 * active and within range of this host for the connection to succeed. 
+	 * active and within range of this host, and this host must have energy
+	 * left, for the connection to succeed. 
 	 * @param anotherInterface The interface to connect to
 	 */
 	public void connect(NetworkInterface anotherInterface) {
 		if (isScanning()  
+				&& !isOutOfEnergy()
 				&& anotherInterface.getHost().isActive() 
 				&& isWithinRange(anotherInterface) 
 				&& !isConnected(anotherInterface)
@@ -66,6 +87,9 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 * that are out of range).
 	 */
 	public void update() {
+		if (kinetic != null) {
+			kinetic.startRound();
+		}
 		// First break the old ones
 		optimizer.updateLocation(this);
 		for (int i=0; i<this.connections.size(); ) {
@@ -83,12 +107,25 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				i++;
 			}
 		}
-		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		// Then find new possible connections (unless out of energy)
+		if (!isOutOfEnergy()) {
+			Collection<NetworkInterface> interfaces =
+				optimizer.getNearInterfaces(this);
+			for (NetworkInterface i : interfaces) {
+				connect(i);
+			}
+		}
+		if (kinetic != null) {
+			kinetic.endRound(); // schedule the next range crossings
+		}
+	}
+
+	@Override
+	protected boolean isWithinRange(NetworkInterface anotherInterface) {
+		if (kinetic != null) {
+			return kinetic.isWithinRange(anotherInterface);
 		}
+		return super.isWithinRange(anotherInterface);
 	}
 
 	/** 
@@ -0,0 +1,282 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+
+/**
+ * <P>Sparse and hierarchical alternative for the {@link ConnectivityGrid}.
+ * Interfaces are put on levels by their own transmit range: the cell size
+ * of a level is the smallest power of two that is at least the range, so
+ * short and long range interfaces don't share the same (large) cells.
+ * Only the cells that have interfaces are stored (in a hash map) so the
+ * memory use depends on the number of occupied cells and not on the size
+ * of the world. Negative coordinates are supported.</P>
+ *
+ * <P>Neighbor queries use the querying interface's own range: two interfaces
+ * can be connected only if their distance is at most the smaller one of
+ * their ranges, so on each level only the cells within that distance are
+ * checked.</P>
+ */
+public class SparseConnectivityGrid extends ConnectivityOptimizer {
+	/** Smallest cell size (meters) */
+	private static final double MIN_CELL_SIZE = 1.0;
+
+	private static HashMap<Integer, SparseConnectivityGrid> gridobjects;
+
+	/** levels by the cell size's exponent */
+	private HashMap<Integer, Level> levels;
+	/** the levels in a list for the neighbor queries */
+	private ArrayList<Level> levelList;
+	private HashMap<NetworkInterface, Cell> ginterfaces;
+
+	static {
+		DTNSim.registerForReset(SparseConnectivityGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer, SparseConnectivityGrid>();
+	}
+
+	private SparseConnectivityGrid() {
+		this.levels = new HashMap<Integer, Level>();
+		this.levelList = new ArrayList<Level>();
+		this.ginterfaces = new HashMap<NetworkInterface, Cell>();
+	}
+
+	/**
+	 * Returns a sparse connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @return The sparse connectivity grid object for a specific interface
+	 */
+	public static SparseConnectivityGrid SparseConnectivityGridFactory(
+			int key) {
+		SparseConnectivityGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new SparseConnectivityGrid();
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Returns the level for interfaces with the given range
+	 * @param range The transmit range
+	 * @return The level
+	 */
+	private Level getLevel(double range) {
+		range = Math.max(range, MIN_CELL_SIZE);
+		int exponent = Math.getExponent(range);
+		if (range > Math.scalb(1.0, exponent)) {
+			exponent++; // not a power of two
+		}
+
+		Level level = levels.get(exponent);
+		if (level == null) {
+			level = new Level(Math.scalb(1.0, exponent));
+			levels.put(exponent, level);
+			levelList.add(level);
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the cell of a location on a level
+	 * @param level The level
+	 * @param c The location
+	 * @param create If true, the cell is created if it doesn't exist
+	 * @return The cell or null if it doesn't exist and wasn't created
+	 */
+	private Cell getCell(Level level, Coord c, boolean create) {
+		long key = level.cellKey(level.index(c.getX()), level.index(c.getY()));
+		Cell cell = level.cells.get(key);
+		if (cell == null && create) {
+			cell = new Cell(level, key);
+			level.cells.put(key, cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (ginterfaces.containsKey(ni)) {
+			return;
+		}
+		Level level = getLevel(ni.getTransmitRange());
+		Cell c = getCell(level, ni.getLocation(), true);
+		c.interfaces.add(ni);
+		ginterfaces.put(ni, c);
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		Cell c = ginterfaces.remove(ni);
+		if (c != null) {
+			c.remove(ni);
+		}
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's cell. The interface
+	 * changes level if its range has changed.
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		Cell oldCell = ginterfaces.get(ni);
+		if (oldCell == null) {
+			return;
+		}
+		Level level = getLevel(ni.getTransmitRange());
+		Coord loc = ni.getLocation();
+		if (level == oldCell.level && oldCell.key ==
+				level.cellKey(level.index(loc.getX()), level.index(loc.getY()))) {
+			return; // still in the same cell
+		}
+
+		oldCell.remove(ni);
+		Cell newCell = getCell(level, loc, true);
+		newCell.interfaces.add(ni);
+		ginterfaces.put(ni, newCell);
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return ginterfaces.keySet();
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are
+	 * in the cells within the given interface's range (on every level)
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		if (!ginterfaces.containsKey(netinterf)) {
+			return ni;
+		}
+
+		Coord loc = netinterf.getLocation();
+		double range = netinterf.getTransmitRange();
+		for (int i=0, n = levelList.size(); i < n; i++) {
+			Level level = levelList.get(i);
+			if (level.cells.isEmpty()) {
+				continue;
+			}
+			/* no interface of the level has longer range than the cell */
+			double reach = Math.min(range, level.cellSize);
+			int minCol = level.index(loc.getX() - reach);
+			int maxCol = level.index(loc.getX() + reach);
+			int minRow = level.index(loc.getY() - reach);
+			int maxRow = level.index(loc.getY() + reach);
+			for (int col = minCol; col <= maxCol; col++) {
+				for (int row = minRow; row <= maxRow; row++) {
+					Cell c = level.cells.get(level.cellKey(col, row));
+					if (c != null) {
+						ni.addAll(c.interfaces);
+					}
+				}
+			}
+		}
+		return ni;
+	}
+
+	/**
+	 * Returns the number of cells that are currently stored
+	 * @return the number of occupied cells
+	 */
+	public int getNrofCells() {
+		int nrof = 0;
+		for (Level level : levelList) {
+			nrof += level.cells.size();
+		}
+		return nrof;
+	}
+
+	/**
+	 * Returns a string representation of the object
+	 * @return a string representation of the object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + levelList.size() +
+			" levels and " + getNrofCells() + " cells";
+	}
+
+	/**
+	 * Cells of one cell size
+	 */
+	private static class Level {
+		private double cellSize;
+		private HashMap<Long, Cell> cells;
+
+		private Level(double cellSize) {
+			this.cellSize = cellSize;
+			this.cells = new HashMap<Long, Cell>();
+		}
+
+		/** Returns the cell index of a coordinate value */
+		private int index(double value) {
+			return (int)Math.floor(value / cellSize);
+		}
+
+		/** Returns the key of the cell with the given indexes */
+		private long cellKey(int col, int row) {
+			return ((long)col << 32) | (row & 0xFFFFFFFFL);
+		}
+	}
+
+	/**
+	 * A single occupied cell
+	 */
+	private static class Cell {
+		// how large array is initially chosen
+		private static final int EXPECTED_INTERFACE_COUNT = 5;
+		private Level level;
+		private long key;
+		private ArrayList<NetworkInterface> interfaces;
+
+		private Cell(Level level, long key) {
+			this.level = level;
+			this.key = key;
+			this.interfaces = new ArrayList<NetworkInterface>(
+					EXPECTED_INTERFACE_COUNT);
+		}
+
+		/** Removes an interface and the cell too if it becomes empty */
+		private void remove(NetworkInterface ni) {
+			boolean removeOk = interfaces.remove(ni);
+			assert removeOk : "interface " + ni +
+				" not found from cell with " + interfaces.toString();
+			if (interfaces.isEmpty()) {
+				level.cells.remove(key);
+			}
+		}
+	}
+}
@@ -69,6 +69,15 @@ public class ActivenessHandler {
 		return timesList;
 	}
 	
+	/**
+	 * Returns true if no active times are defined, i.e., the node is active
+	 * all the time
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null;
+	}
+	
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
@@ -94,6 +103,25 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the time when the node is active next time
+	 * @return The current time if the node is active now, the start time of
+	 * the next active time range, or Double.MAX_VALUE if the node is not
+	 * active anymore
+	 */
+	public double getNextActiveTime() {
+		double time = SimClock.getTime();
+		if (isActive()) {
+			return time;
+		}
+
+		while (curRange != null && curRange.isOut(time)) {
+			curRange = activeTimes.poll();
+		}
+
+		return curRange == null ? Double.MAX_VALUE : curRange.start;
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
@@ -122,8 +122,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			return null;
 		} else if (state == STATE_DECIDED_TO_ENTER_A_BUS) {
 			state = STATE_TRAVELLING_ON_BUS;
-			List<Coord> coords = nextPath.getCoords();
-			location = (coords.get(coords.size() - 1)).clone();
+			location = nextPath.getLastWaypoint();
 			return nextPath;
 		} else if (state == STATE_WALKING_ELSEWHERE) {
 			// Try to find back to the bus stop
@@ -135,7 +134,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			MapNode destinationNode = map.getNodeByCoord(latestBusStop);
 			List<MapNode> nodes = pathFinder.getShortestPath(thisNode, 
 					destinationNode);
-			Path path = new Path(generateSpeed());
+			Path path = newPath(generateSpeed());
 			for (MapNode node : nodes) {
 				path.addWaypoint(node.getLocation());
 			}
@@ -167,6 +166,15 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return new BusTravellerMovement(this);
 	}
 
+	/**
+	 * Returns false: the replicas get their IDs from a shared counter
+	 * @return false
+	 */
+	@Override
+	public boolean isReplicableConcurrently() {
+		return false;
+	}
+
 	public int getState() {
 		return state;
 	}
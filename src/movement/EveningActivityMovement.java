@@ -181,7 +181,7 @@ public class EveningActivityMovement extends MapBasedMovement
 			
 			List<MapNode> nodes = pathFinder.getShortestPath(thisNode, 
 					destinationNode);
-			Path path = new Path(generateSpeed());
+			Path path = newPath(generateSpeed());
 			for (MapNode node : nodes) {
 				path.addWaypoint(node.getLocation());
 			}
@@ -227,6 +227,15 @@ public class EveningActivityMovement extends MapBasedMovement
 		return new EveningActivityMovement(this);
 	}
 
+	/**
+	 * Returns false: the replicas get their IDs from a shared counter
+	 * @return false
+	 */
+	@Override
+	public boolean isReplicableConcurrently() {
+		return false;
+	}
+
 	/**
 	 * @see SwitchableMovement
 	 */
@@ -4,12 +4,14 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
+import input.MovementBatch;
+import input.MovementTraceReader;
+import input.PrefetchingMovementReader;
 
-import java.util.HashMap;
+import java.io.File;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 
 import core.Coord;
@@ -28,16 +30,25 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** read the file ahead in a background thread -setting id ({@value}).
+	 * Boolean valued. Default is true. */
+	public static final String PREFETCH_S = "prefetch";
+	/** how many time instances the background thread reads ahead */
+	private static final int NROF_PREFETCH = 64;
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
+	private static MovementTraceReader reader;
 	private static String inputFileName;
 	
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
+	/** mapping of external id's index to movement model */
+	private static ExternalMovement[] idMapping;
 	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
+	private static MovementBatch initLocations;
+	/** index of the next unused initial location */
+	private static int nextInitLocation;
+	/** batch where the later locations are read to */
+	private static MovementBatch batch;
 	/** time of the very first location data */
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
@@ -79,12 +90,24 @@ public class ExternalMovement extends MovementModel {
 		if (idMapping == null) {
 			// run these the first time object is created or after reset call
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			if (BinaryMovementReader.isBinaryMovementFile(
+					new File(inputFileName))) {
+				reader = new BinaryMovementReader(inputFileName);
+			}
+			else {
+				reader = new ExternalMovementReader(inputFileName);
+			}
+			if (!s.contains(PREFETCH_S) || s.getBoolean(PREFETCH_S)) {
+				reader = new PrefetchingMovementReader(reader, NROF_PREFETCH);
+			}
 			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+			initLocations = new MovementBatch();
+			batch = new MovementBatch();
+			nextInitLocation = 0;
+			reader.readNextBatch(initLocations);
+			initTime = initLocations.getTime();
+			idMapping = new ExternalMovement[initLocations.size()];
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 			
@@ -109,14 +132,15 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 		
-		if (initLocations.size() > 0) { // we have location data left
+		if (nextInitLocation < initLocations.size()) { // location data left
 			// gets a new location from the list
-			Tuple<String, Coord> initLoc = initLocations.remove(0); 
-			this.intialLocation = this.latestLocation = initLoc.getValue();
+			int i = nextInitLocation++;
+			this.intialLocation = this.latestLocation = 
+				new Coord(initLocations.getX(i), initLocations.getY(i));
 			this.latestPathStartTime = initTime;
 			
 			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
+			idMapping[initLocations.getId(i)] = this;
 			isActive = true;
 		}
 		else {
@@ -154,6 +178,11 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	@Override
+	public double getNextActiveTime() {
+		return SimClock.getTime(); // depends on the trace
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
@@ -243,33 +272,34 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		if (!reader.readNextBatch(batch)) {
+			return Double.NaN;
+		}
+		double time = batch.getTime();
 		
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
 		}
 		
-		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
+		for (int i=0, n = batch.size(); i < n; i++) {
+			int id = batch.getId(i);
+			ExternalMovement em = (id < idMapping.length ? idMapping[id] : null);
 			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
 				// ...init phase or if there are more IDs than nodes
-				em.addLocation(t.getValue(), time);
+				em.addLocation(new Coord(batch.getX(i), batch.getY(i)), time);
 			}
 		}
 		
-		if (list.size() > 0) {
-			return time;
-		}
-		else {
-			return Double.NaN;
-		}
+		return time;
 	}
 	
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
+		if (idMapping != null) {
+			reader.close();
+		}
 		idMapping = null;
 	}
 
@@ -169,7 +169,7 @@ public class HomeActivityMovement extends MapBasedMovement
 			MapNode destinationNode = map.getNodeByCoord(homeLocation);
 			List<MapNode> nodes = pathFinder.getShortestPath(thisNode, 
 					destinationNode);
-			Path path = new Path(generateSpeed());
+			Path path = newPath(generateSpeed());
 			for (MapNode node : nodes) {
 				path.addWaypoint(node.getLocation());
 			}
@@ -194,7 +194,7 @@ public class HomeActivityMovement extends MapBasedMovement
 			path.addWaypoint(c);
 			return path;
 		} else {
-			Path path =  new Path(1);
+			Path path = newPath(1);
 			path.addWaypoint(lastWaypoint.clone());
 			mode = READY_MODE;
 			return path;
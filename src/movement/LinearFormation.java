@@ -95,7 +95,7 @@ public class LinearFormation extends MovementModel {
 	 */
 	@Override
 	public Path getPath() {
-		Path p = new Path(0);
+		Path p = newPath(0);
 		p.addWaypoint(loc);
 		return p;
 	}
@@ -179,7 +179,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
+		Path p = newPath(generateSpeed());
 		MapNode curNode = lastMapNode;
 		MapNode prevNode = lastMapNode;
 		MapNode nextNode = null;	
@@ -400,7 +400,12 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
 	}
-	
+
+	@Override
+	public boolean isReplicableConcurrently() {
+		return true;
+	}
+
 	public Coord getLastLocation() {
 		if (lastMapNode != null) {
 			return lastMapNode.getLocation();
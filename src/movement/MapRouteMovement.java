@@ -104,7 +104,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
+		Path p = newPath(generateSpeed());
 		MapNode to = route.nextStop();
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
@@ -149,6 +149,15 @@ public class MapRouteMovement extends MapBasedMovement implements
 		return new MapRouteMovement(this);
 	}	
 
+	/**
+	 * Returns false: the replicas take the routes of the prototype in turns
+	 * @return false
+	 */
+	@Override
+	public boolean isReplicableConcurrently() {
+		return false;
+	}
+
 	/**
 	 * Returns the list of stops on the route
 	 * @return The list of stops
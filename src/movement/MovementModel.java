@@ -9,6 +9,7 @@ import java.util.Random;
 import core.Coord;
 import core.DTNSim;
 import core.ModuleCommunicationBus;
+import core.RandomStreams;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -42,8 +43,12 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 	
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	/** common rng for all movement models in the simulation when the
+	 * legacy random number mode is on (see {@link RandomStreams}) */
+	private static Random sharedRng;
+	
+	/** random number generator of this movement model */
+	protected Random rng;
 	
 	private ActivenessHandler ah;
 		
@@ -57,6 +62,9 @@ public abstract class MovementModel {
 	
 	protected ModuleCommunicationBus comBus;
 
+	/** recycled paths of this model (created when first needed) */
+	private PathPool pathPool;
+
 	// static initialization of all movement models' random number generator
 	static {
 		DTNSim.registerForReset(MovementModel.class.getCanonicalName());				
@@ -87,6 +95,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = createRng();
 	}
 	
 	/**
@@ -97,6 +106,7 @@ public abstract class MovementModel {
 		double[] speeds;
 		double[] times;
 		
+		this.rng = createRng();
 		ah = new ActivenessHandler(settings);
 		
 		if (settings.contains(SPEED)) {
@@ -135,6 +145,7 @@ public abstract class MovementModel {
 	 * @param mm The MovementModel prototype to base the new object to 
 	 */
 	public MovementModel(MovementModel mm) {
+		this.rng = createRng();
 		this.maxSpeed = mm.maxSpeed;
 		this.minSpeed = mm.minSpeed;
 		this.maxWaitTime = mm.maxWaitTime;
@@ -145,6 +156,19 @@ public abstract class MovementModel {
 		this.comBus = null;
 	}
 		
+	/**
+	 * Returns the random number generator for a new movement model: the
+	 * shared generator in the legacy mode and otherwise the movement stream
+	 * of the host that is being created
+	 * @return The random number generator
+	 */
+	private static Random createRng() {
+		if (RandomStreams.isLegacy()) {
+			return sharedRng;
+		}
+		return RandomStreams.getStream(RandomStreams.MOVEMENT);
+	}
+	
 	/**
 	 * Returns the largest X coordinate value this model uses
 	 * @return Maximum of X coordinate values
@@ -196,6 +220,22 @@ public abstract class MovementModel {
 	 * @return A new path or null
 	 */
 	public abstract Path getPath();
+
+	/**
+	 * Returns an empty constant speed path from this model's path pool. 
+	 * Models should use this instead of creating new paths if they don't 
+	 * keep references to the paths they have returned from 
+	 * {@link #getPath()}; the paths are recycled when they have been 
+	 * traveled.
+	 * @param speed The speed on the path
+	 * @return The path
+	 */
+	protected Path newPath(double speed) {
+		if (this.pathPool == null) {
+			this.pathPool = new PathPool();
+		}
+		return this.pathPool.getPath(speed);
+	}
 	
 	/**
 	 * Returns a new initial placement for a node
@@ -210,6 +250,49 @@ public abstract class MovementModel {
 	public boolean isActive() {
 		return ah.isActive();
 	}
+
+	/**
+	 * Returns the time when the node is active next time. The node is not
+	 * updated before that time if the world lets inactive nodes sleep.
+	 * @return The current time if the node is active now (or the time is
+	 * not known), the next time it is active, or Double.MAX_VALUE if the
+	 * node is not active anymore
+	 */
+	public double getNextActiveTime() {
+		return ah.getNextActiveTime();
+	}
+
+	/**
+	 * Returns true if the hosts using this model can be moved by a
+	 * {@link core.MovementKernel}. The kernel doesn't check if the hosts
+	 * are active while they move, so only models that are always active
+	 * are compatible. This implementation returns false.
+	 * @return true if the model is compatible with the movement kernel
+	 */
+	public boolean isKernelCompatible() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the prototype can be replicated, and the replicas asked
+	 * for their initial locations, by several threads at the same time (see
+	 * {@link core.SimScenario#createHosts()}). That is the case if the
+	 * replicas only read the prototype and draw their random numbers from
+	 * their own streams. This implementation returns false.
+	 * @return true if the model can be replicated concurrently
+	 */
+	public boolean isReplicableConcurrently() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the model is active all the time (no active times
+	 * are defined)
+	 * @return true if the model is always active
+	 */
+	protected boolean isAlwaysActive() {
+		return ah.isAlwaysActive();
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -257,10 +340,10 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			sharedRng = new Random(seed);
 		}
 		else {
-			rng = new Random(0);
+			sharedRng = new Random(0);
 		}
 	}
 	
@@ -202,7 +202,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 			MapNode destinationNode = map.getNodeByCoord(officeLocation);
 			List<MapNode> nodes = pathFinder.getShortestPath(thisNode, 
 					destinationNode);
-			Path path = new Path(generateSpeed());
+			Path path = newPath(generateSpeed());
 			for (MapNode node : nodes) {
 				path.addWaypoint(node.getLocation());
 			}
@@ -215,7 +215,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 			startedWorkingTime = SimClock.getIntTime();
 		}
 		if (SimClock.getIntTime() - startedWorkingTime >= workDayLength) {
-			Path path =  new Path(1);
+			Path path = newPath(1);
 			path.addWaypoint(lastWaypoint.clone());
 			ready = true;
 			return path;
@@ -229,7 +229,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 			sittingAtDesk = true;
 		}
 		
-		Path path =  new Path(1);
+		Path path = newPath(1);
 		path.addWaypoint(c);
 		return path;
 	}
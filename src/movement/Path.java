@@ -10,33 +10,48 @@ import java.util.List;
 import core.Coord;
 
 /**
- * A Path between multiple Coordinates.
+ * A Path between multiple Coordinates. The coordinates and speeds are
+ * stored in primitive arrays and read with a cursor. Paths that are
+ * created with a {@link PathPool} can be recycled once they have been
+ * traveled (see {@link #recycle()}).
  */
 public class Path  {
-	/** coordinates of the path */
-	private List<Coord> coords;
+	/** how many waypoints there is room for initially */
+	private static final int INITIAL_CAPACITY = 8;
+	/** coordinates of the path (x and y of each waypoint in turns) */
+	private double[] coords;
 	/** speeds in the path legs */
-	private List<Double> speeds;
+	private double[] speeds;
+	/** number of waypoints */
+	private int size;
+	/** number of speeds (1 for constant speed paths) */
+	private int nrofSpeeds;
 	private int nextWpIndex;
+	/** pool where the path is returned when it is recycled (or null) */
+	private PathPool pool;
+	/** is the path in the pool */
+	private boolean recycled;
 	
 	/**
 	 * Creates a path with zero speed.
 	 */
 	public Path() {
 		this.nextWpIndex = 0;
-		this.coords = new ArrayList<Coord>();
-		this.speeds = new ArrayList<Double>(1);
+		this.coords = new double[2 * INITIAL_CAPACITY];
+		this.speeds = new double[1];
 	}
 
 	/**
-	 * Copy constructor. Creates a copy of this path with a shallow copy of
+	 * Copy constructor. Creates a copy of this path with a copy of
 	 * the coordinates and speeds.
 	 * @param path The path to create the copy from
 	 */
 	public Path(Path path) {
 		this.nextWpIndex = path.nextWpIndex;
-		this.coords = new ArrayList<Coord>((ArrayList<Coord>)path.coords);
-		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
+		this.size = path.size;
+		this.nrofSpeeds = path.nrofSpeeds;
+		this.coords = path.coords.clone();
+		this.speeds = path.speeds.clone();
 	}
 	
 	/**
@@ -47,22 +62,77 @@ public class Path  {
 		this();
 		setSpeed(speed);
 	}
+
+	/**
+	 * Sets the pool where the path is returned when it is recycled
+	 * @param pool The pool
+	 */
+	void setPool(PathPool pool) {
+		this.pool = pool;
+		this.recycled = false;
+	}
+
+	/**
+	 * Removes all the waypoints and speeds
+	 */
+	void clear() {
+		this.size = 0;
+		this.nrofSpeeds = 0;
+		this.nextWpIndex = 0;
+	}
+
+	/**
+	 * Returns the path to the pool it was taken from so that it can be
+	 * reused. Must be called only when nobody uses the path any more. Does
+	 * nothing for paths that were not taken from a pool.
+	 */
+	public void recycle() {
+		if (pool != null && !recycled) {
+			this.recycled = true;
+			pool.release(this);
+		}
+	}
 	
 	/**
 	 * Sets a constant speed for the whole path. Any previously set speed(s)
 	 * is discarded.
 	 */
 	public void setSpeed(double speed) {
-		this.speeds = new ArrayList<Double>(1);
-		speeds.add(speed);
+		this.speeds[0] = speed;
+		this.nrofSpeeds = 1;
 	}
 	
 	/**
-	 * Returns a reference to the coordinates of this path 
+	 * Returns a copy of the coordinates of this path 
 	 * @return coordinates of the path
 	 */
 	public List<Coord> getCoords() {
-		return this.coords;
+		double[] c = this.coords;
+		int n = this.size;
+		List<Coord> list = new ArrayList<Coord>(n);
+		for (int i=0; i<n; i++) {
+			list.add(new Coord(c[2*i], c[2*i+1]));
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the number of waypoints on this path
+	 * @return the number of waypoints
+	 */
+	public int getNrofWaypoints() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the last waypoint of this path
+	 * @return the last waypoint or null if the path has no waypoints
+	 */
+	public Coord getLastWaypoint() {
+		if (size == 0) {
+			return null;
+		}
+		return new Coord(coords[2*size-2], coords[2*size-1]);
 	}
 	
 	/**
@@ -70,9 +140,9 @@ public class Path  {
 	 * @param wp The waypoint to add
 	 */
 	public void addWaypoint(Coord wp) {
-		assert this.speeds.size() <= 1 : "This method should be used only for" +
+		assert this.nrofSpeeds <= 1 : "This method should be used only for" +
 			" paths with constant speed";
-		this.coords.add(wp);
+		add(wp);
 	}
 	
 	/**
@@ -81,8 +151,25 @@ public class Path  {
 	 * @param speed The speed towards that waypoint
 	 */
 	public void addWaypoint(Coord wp, double speed) {
-		this.coords.add(wp);
-		this.speeds.add(speed);
+		add(wp);
+		if (nrofSpeeds == speeds.length) {
+			double[] newSpeeds = new double[Math.max(INITIAL_CAPACITY,
+					2 * speeds.length)];
+			System.arraycopy(speeds, 0, newSpeeds, 0, nrofSpeeds);
+			this.speeds = newSpeeds;
+		}
+		this.speeds[nrofSpeeds++] = speed;
+	}
+
+	private void add(Coord wp) {
+		if (2 * size == coords.length) {
+			double[] newCoords = new double[2 * coords.length];
+			System.arraycopy(coords, 0, newCoords, 0, 2 * size);
+			this.coords = newCoords;
+		}
+		coords[2*size] = wp.getX();
+		coords[2*size+1] = wp.getY();
+		size++;
 	}
 	
 	/**
@@ -90,8 +177,20 @@ public class Path  {
 	 * @return the next waypoint
 	 */
 	public Coord getNextWaypoint() {
+		Coord c = new Coord(0, 0);
+		getNextWaypoint(c);
+		return c;
+	}
+
+	/**
+	 * Moves to the next waypoint on this path and sets its coordinates to
+	 * the given coordinate object (without creating a new object)
+	 * @param wp The coordinate object to set
+	 */
+	public void getNextWaypoint(Coord wp) {
 		assert hasNext() : "Path didn't have " + (nextWpIndex+1) + ". waypoint";
-		return coords.get(nextWpIndex++);
+		wp.setLocation(coords[2*nextWpIndex], coords[2*nextWpIndex+1]);
+		nextWpIndex++;
 	}
 	
 	/**
@@ -99,7 +198,7 @@ public class Path  {
 	 * @return true if the path has more waypoints, false if not
 	 */
 	public boolean hasNext() {
-		return nextWpIndex < this.coords.size();
+		return nextWpIndex < this.size;
 	}
 	
 	/**
@@ -108,14 +207,14 @@ public class Path  {
 	 * @return the speed towards the next waypoint
 	 */
 	public double getSpeed() {
-		assert speeds.size() != 0 : "No speed set"; 
+		assert nrofSpeeds != 0 : "No speed set"; 
 		assert nextWpIndex != 0 : "No waypoint asked";
 		
-		if (speeds.size() == 1) {
-			return speeds.get(0);
+		if (nrofSpeeds == 1) {
+			return speeds[0];
 		}
 		else {
-			return speeds.get(nextWpIndex-1);
+			return speeds[nextWpIndex-1];
 		}
 	}
 	
@@ -124,18 +223,25 @@ public class Path  {
 	 * @return Path as a string
 	 */
 	public String toString() {
-		String s ="";
-		for (int i=0, n=coords.size(); i<n; i++) {
-			Coord c = coords.get(i);
-			s+= "->" + c;
-			if (speeds.size() > 1) {
-				s += String.format("@%.2f ",speeds.get(i));
+		StringBuilder s = new StringBuilder();
+		for (int i=0; i<size; i++) {
+			s.append("->").append(new Coord(coords[2*i], coords[2*i+1]));
+			if (nrofSpeeds > 1) {
+				s.append(String.format("@%.2f ", speeds[i]));
 			}
 		}
-		return s;
+		return s.toString();
 	}
 	
+	/**
+	 * Returns a copy of the speeds of this path
+	 * @return the speeds
+	 */
 	public List<Double> getSpeeds() {
-		return this.speeds;
+		List<Double> list = new ArrayList<Double>(nrofSpeeds);
+		for (int i=0; i<nrofSpeeds; i++) {
+			list.add(speeds[i]);
+		}
+		return list;
 	}
 }
@@ -0,0 +1,53 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package movement;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of reusable paths. Each movement model has its own pool (see
+ * {@link MovementModel#newPath(double)}) and the host returns a path to the
+ * pool with {@link Path#recycle()} when it has traveled the path, so a
+ * model that creates a new path after the previous one has been traveled
+ * keeps reusing the same path objects (and their arrays).
+ */
+public class PathPool {
+	private ArrayList<Path> free;
+
+	/**
+	 * Creates an empty pool
+	 */
+	public PathPool() {
+		this.free = new ArrayList<Path>(2);
+	}
+
+	/**
+	 * Returns an empty path from the pool or a new path if the pool is
+	 * empty
+	 * @param speed The (constant) speed of the path
+	 * @return The path
+	 */
+	public Path getPath(double speed) {
+		Path p;
+		if (free.isEmpty()) {
+			p = new Path();
+		}
+		else {
+			p = free.remove(free.size() - 1);
+			p.clear();
+		}
+		p.setSpeed(speed);
+		p.setPool(this);
+		return p;
+	}
+
+	/**
+	 * Returns a path to the pool
+	 * @param p The path
+	 */
+	void release(Path p) {
+		free.add(p);
+	}
+}
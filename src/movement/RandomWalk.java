@@ -48,7 +48,7 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 	@Override
 	public Path getPath() {
 		Path p;
-		p = new Path(generateSpeed());
+		p = newPath(generateSpeed());
 		p.addWaypoint(lastWaypoint.clone());
 		double maxX = getMaxX();
 		double maxY = getMaxY();
@@ -81,6 +81,16 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return new RandomWalk(this);
 	}
 
+	@Override
+	public boolean isKernelCompatible() {
+		return isAlwaysActive();
+	}
+
+	@Override
+	public boolean isReplicableConcurrently() {
+		return true;
+	}
+
 	public Coord getLastLocation() {
 		return lastWaypoint;
 	}
@@ -40,7 +40,7 @@ public class RandomWaypoint extends MovementModel {
 	@Override
 	public Path getPath() {
 		Path p;
-		p = new Path(generateSpeed());
+		p = newPath(generateSpeed());
 		p.addWaypoint(lastWaypoint.clone());
 		Coord c = lastWaypoint;
 		
@@ -57,7 +57,17 @@ public class RandomWaypoint extends MovementModel {
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
 	}
-	
+
+	@Override
+	public boolean isKernelCompatible() {
+		return isAlwaysActive();
+	}
+
+	@Override
+	public boolean isReplicableConcurrently() {
+		return true;
+	}
+
 	protected Coord randomCoord() {
 		return new Coord(rng.nextDouble() * getMaxX(),
 				rng.nextDouble() * getMaxY());
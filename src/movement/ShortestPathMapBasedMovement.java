@@ -20,7 +20,8 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
 
-	/** Points Of Interest handler */
+	/** Points Of Interest handler (shared by the replicas; each replica
+	 * selects its destinations with its own random number generator) */
 	private PointsOfInterest pois;
 	
 	/**
@@ -47,8 +48,8 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		Path p = newPath(generateSpeed());
+		MapNode to = pois.selectDestination(rng);
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 		
@@ -52,7 +52,7 @@ public class StationaryMovement extends MovementModel {
 	 */
 	@Override
 	public Path getPath() {
-		Path p = new Path(0);
+		Path p = newPath(0);
 		p.addWaypoint(loc);
 		return p;
 	}
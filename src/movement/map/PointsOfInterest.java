@@ -74,6 +74,18 @@ public class PointsOfInterest {
 	 * @return A destination among POIs or all MapNodes
 	 */
 	public MapNode selectDestination() {
+		return selectDestination(this.rng);
+	}
+
+	/**
+	 * Selects a random destination like {@link #selectDestination()} but
+	 * draws the random numbers from the given generator. This way the
+	 * replicas of a movement model can share the POIs but still draw from
+	 * their own random number streams.
+	 * @param rng The random number generator to use
+	 * @return A destination among POIs or all MapNodes
+	 */
+	public MapNode selectDestination(Random rng) {
 		double random = rng.nextDouble();
 		double acc = 0;
 		
@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import core.DTNHost;
+import core.EnergyLedger;
 import core.Settings;
 import core.SimError;
 import core.UpdateListener;
@@ -15,7 +16,7 @@ import core.UpdateListener;
 /**
  * Node energy level report. Reports the energy level of all (or only some) 
  * nodes every configurable-amount-of seconds. Writes reports only after
- * the warmup period.
+ * the warmup period. The levels are read from the {@link EnergyLedger}.
  */
 public class EnergyLevelReport extends Report implements UpdateListener {
 	/** Reporting granularity -setting id ({@value}). 
@@ -76,19 +77,19 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 	 */
 	private void createSnapshot(List<DTNHost> hosts) {
 		write ("[" + (int)getSimTime() + "]"); /* simulation time stamp */
+		EnergyLedger ledger = EnergyLedger.getInstance();
 		for (DTNHost h : hosts) {
 			if (this.reportedNodes != null && 
 				!this.reportedNodes.contains(h.getAddress())) {
 				continue; /* node not in the list */
 			}
-			Double value = (Double)h.getComBus().
-				getProperty(routing.EnergyAwareRouter.ENERGY_VALUE_ID);
-			if (value == null) {
+			if (!ledger.isRegistered(h.getAddress())) {
 				throw new SimError("Host " + h + 
 						" is not using an energy aware router");
 			}
 			
-			write(h.toString() + " " +  format(value));
+			write(h.toString() + " " +  
+					format(ledger.getBalance(h.getAddress())));
 		}
 	
 	}
@@ -0,0 +1,91 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package report;
+
+import java.util.List;
+import java.util.Map;
+
+import core.DTNHost;
+import core.MetricsRegistry;
+import core.MetricsRegistry.Metric;
+import core.Settings;
+import core.UpdateListener;
+
+/**
+ * Periodic snapshot of the values in the {@link MetricsRegistry}. Every
+ * snapshot starts with a simulation time stamp line followed by one
+ * <CODE>name value</CODE> line per metric. Histograms are written as
+ * <CODE>name count min mean p50 p90 p99 max</CODE>. A final snapshot is
+ * written when the simulation ends. Writes snapshots only after the warmup
+ * period.
+ */
+public class MetricsSnapshotReport extends Report implements UpdateListener {
+	/** Snapshot interval -setting id ({@value}). Defines how often (seconds)
+	 * a new snapshot is written. Default is {@value #DEFAULT_GRANULARITY} */
+	public static final String GRANULARITY = "granularity";
+	/** Expose metrics via JMX -setting id ({@value}). Boolean valued.
+	 * If true, the registry is registered to the platform MBean server.
+	 * Default is false. */
+	public static final String JMX_S = "jmx";
+	/** Default value of the snapshot interval */
+	public static final int DEFAULT_GRANULARITY = 3600;
+	/** value of the granularity setting */
+	protected final int granularity;
+	/** time of last snapshot */
+	protected double lastUpdate;
+
+	/**
+	 * Constructor. Reads the settings and initializes the report module.
+	 */
+	public MetricsSnapshotReport() {
+		Settings settings = getSettings();
+		this.lastUpdate = 0;
+		if (settings.contains(GRANULARITY)) {
+			this.granularity = settings.getInt(GRANULARITY);
+		}
+		else {
+			this.granularity = DEFAULT_GRANULARITY;
+		}
+
+		if (settings.contains(JMX_S) && settings.getBoolean(JMX_S)) {
+			MetricsRegistry.registerMBean();
+		}
+
+		init();
+	}
+
+	/**
+	 * Creates a new snapshot of the metrics if "granularity" seconds have
+	 * passed since the last snapshot.
+	 * @param hosts All the hosts in the world
+	 */
+	public void updated(List<DTNHost> hosts) {
+		double simTime = getSimTime();
+		if (isWarmup()) {
+			return; /* warmup period is on */
+		}
+		if (simTime - lastUpdate >= granularity) {
+			createSnapshot();
+			this.lastUpdate = simTime - simTime % granularity;
+		}
+	}
+
+	/**
+	 * Writes the current values of all metrics
+	 */
+	private void createSnapshot() {
+		write ("[" + (int)getSimTime() + "]"); /* simulation time stamp */
+		for (Map.Entry<String, Metric> e :
+				MetricsRegistry.getMetrics().entrySet()) {
+			write(e.getKey() + " " + e.getValue().getValueString());
+		}
+	}
+
+	@Override
+	public void done() {
+		createSnapshot();
+		super.done();
+	}
+}
@@ -7,19 +7,25 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
+import routing.congestion.CongestionController;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
+import core.SimError;
 import core.Tuple;
 import static routing.MessageRouter.DENIED_NO_SPACE;
 import static routing.MessageRouter.DENIED_OLD;
 import static routing.MessageRouter.DENIED_TTL;
+import static routing.MessageRouter.DENIED_UNSPECIFIED;
 import static routing.MessageRouter.RCV_OK;
 import static routing.MessageRouter.TRY_LATER_BUSY;
 
@@ -36,15 +42,42 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Congestion control -setting id ({@value}). Name of a class in the
+	 * routing.congestion package (e.g. AIMDController) whose policy limits
+	 * the number of messages started over each connection. The controller's
+	 * settings are read from the {@link CongestionController#CONGESTION_NS}
+	 * name space. Default is no congestion control. */
+	public static final String CONGESTION_CONTROL_S = "congestionControl";
+	/** congestion controller of this router or null if not used */
+	protected CongestionController congestion;
+	/** If true, the running total of relay hops is cross-checked against
+	 * a full buffer scan every time it is read (for testing) */
+	public static boolean validateRelayHops = false;
+	/** running total of relay hops of the messages in the buffer */
+	private int totalRelayHops;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** IDs of the messages of the sending connections (same order) */
+	private ArrayList<String> sendingIds;
+	/** number of sending connections without transfer events, i.e., the
+	 * ones whose transfers are polled in {@link #update()} */
+	private int nrofPolled;
+	/** sending connections by the ID of the message they are sending */
+	private HashMap<String, Connection> sendingIndex;
+	/** buffered messages with finite TTL ordered by their expiry time. Entries
+	 * of messages that have left the buffer are discarded lazily */
+	private PriorityQueue<Message> expiryQueue;
+	
+	/** Orders messages by the time their TTL runs out */
+	private static final Comparator<Message> EXPIRY_ORDER =
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			return Double.compare(getExpiryTime(m1), getExpiryTime(m2));
+		}
+	};
 	
 
 	/**
@@ -61,6 +94,14 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		if (s.contains(CONGESTION_CONTROL_S)) {
+			Settings ccSettings = 
+				new Settings(CongestionController.CONGESTION_NS);
+			this.congestion = (CongestionController)ccSettings.
+				createIntializedObject("routing.congestion." + 
+						s.getSetting(CONGESTION_CONTROL_S));
+		}
 	}
 	
 	/**
@@ -70,21 +111,106 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		if (r.congestion != null) {
+			this.congestion = r.congestion.replicate();
+		}
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.sendingIds = new ArrayList<String>(1);
+		this.nrofPolled = 0;
+		this.sendingIndex = new HashMap<String, Connection>();
+		this.expiryQueue = new PriorityQueue<Message>(11, EXPIRY_ORDER);
+		this.totalRelayHops = 0;
+		if (this.congestion != null) {
+			this.congestion.init(host);
+		}
 	}
 	
 	/**
-	 * Called when a connection's state changes. This version doesn't do 
-	 * anything but subclasses may want to override this.
+	 * Called when a connection's state changes. This version only informs
+	 * the congestion controller (if any) but subclasses may want to 
+	 * override this. Subclasses that want to use congestion control must
+	 * call this method from their own implementation.
 	 */
 	@Override
-	public void changedConnection(Connection con) { }
+	public void changedConnection(Connection con) {
+		if (!con.isUp() && con.hasTransferEvents()) {
+			/* transfers with events aren't polled so abort it right away */
+			int i = this.sendingConnections.indexOf(con);
+			if (i >= 0) {
+				if (con.getMessage() != null) {
+					transferAborted(con);
+					con.abortTransfer();
+				}
+				removeSending(i);
+			}
+		}
+
+		if (this.congestion == null) {
+			return;
+		}
+		
+		if (con.isUp()) {
+			congestion.connectionUp(con);
+		}
+		else {
+			MessageRouter peer = con.getOtherNode(getHost()).getRouter();
+			CongestionController peerCongestion = null;
+			if (peer instanceof ActiveRouter) {
+				peerCongestion = ((ActiveRouter)peer).congestion;
+			}
+			congestion.connectionDown(con, peerCongestion, 
+					getTotalRelayHops());
+		}
+	}
+	
+	/**
+	 * Returns the congestion controller of this router
+	 * @return the congestion controller or null if congestion control
+	 * is not used
+	 */
+	public CongestionController getCongestionController() {
+		return this.congestion;
+	}
+	
+	/**
+	 * Returns the total number of relay hops of the messages in the buffer,
+	 * i.e. the sum of (hop count - 1) of the messages that have been 
+	 * relayed at least once. The total is kept up to date as messages
+	 * enter and leave the buffer.
+	 * @return the total number of relay hops
+	 * @throws SimError if {@link #validateRelayHops} is true and the 
+	 * running total doesn't match the buffer contents
+	 */
+	public int getTotalRelayHops() {
+		if (validateRelayHops) {
+			int scanned = 0;
+			for (Message m : getMessageCollection()) {
+				scanned += getRelayHops(m);
+			}
+			if (scanned != totalRelayHops) {
+				throw new SimError("Relay hop total " + totalRelayHops + 
+						" doesn't match buffer scan " + scanned + " at " +
+						getHost());
+			}
+		}
+		return this.totalRelayHops;
+	}
+	
+	/**
+	 * Returns the number of relay hops of a message (hop count - 1 or zero
+	 * for messages that haven't left their source)
+	 * @param m The message
+	 * @return The number of relay hops
+	 */
+	private static int getRelayHops(Message m) {
+		int hops = m.getHopCount();
+		return hops == 0 ? 0 : hops - 1;
+	}
 	
 	@Override
 	public boolean requestDeliverableMessages(Connection con) {
@@ -127,6 +253,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
+		if (this.congestion != null) {
+			congestion.messageReplicated();
+		}
 
 		/**
 		 *  N.B. With application support the following if-block
@@ -159,7 +288,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @param m The message to transfer
 	 * @param con The connection to use
 	 * @return the value returned by 
-	 * {@link Connection#startTransfer(DTNHost, Message)}
+	 * {@link Connection#startTransfer(DTNHost, Message)} or 
+	 * DENIED_UNSPECIFIED if the congestion controller doesn't allow
+	 * more transfers over the connection
 	 */
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
@@ -167,10 +298,16 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (!con.isReadyForTransfer()) {
 			return TRY_LATER_BUSY;
 		}
+		if (!hasQuota(con)) {
+			return DENIED_UNSPECIFIED; // replication limit reached
+		}
 		
 		retVal = con.startTransfer(getHost(), m);
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
+			if (this.congestion != null) {
+				congestion.transferStarted(con);
+			}
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD && 
 				m.getTo() == con.getOtherNode(this.getHost())) {
@@ -181,6 +318,16 @@ public abstract class ActiveRouter extends MessageRouter {
 		return retVal;
 	}
 	
+	/**
+	 * Returns true if the congestion controller (if any) lets this router
+	 * start a transfer over the connection
+	 * @param con The connection to check
+	 * @return true if a transfer can be started over the connection
+	 */
+	protected boolean hasQuota(Connection con) {
+		return this.congestion == null || congestion.hasQuota(con);
+	}
+
 	/**
 	 * Makes rudimentary checks (that we have at least one message and one
 	 * connection) about can this router start transfer.
@@ -254,6 +401,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			
 			/* delete message from the buffer as "drop" */
 			deleteMessage(m.getId(), true);
+			if (this.congestion != null) {
+				congestion.messageDropped();
+			}
 			freeBuffer += m.getSize();
 		}
 		
@@ -261,18 +411,83 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL is less than zero. Only the messages that are
+	 * due are popped from the expiry queue; messages that are being sent
+	 * are kept until the next check.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		double now = SimClock.getTime();
+		List<Message> sending = null;
+		
+		while (!expiryQueue.isEmpty() && 
+				getExpiryTime(expiryQueue.peek()) < now) {
+			Message m = expiryQueue.poll();
+			if (getMessage(m.getId()) != m) {
+				continue; // stale entry, message has already left the buffer
 			}
+			if (isSending(m.getId())) {
+				if (sending == null) {
+					sending = new ArrayList<Message>(1);
+				}
+				sending.add(m);
+				continue;
+			}
+			deleteMessage(m.getId(), true);
+		}
+		
+		if (sending != null) {
+			expiryQueue.addAll(sending);
 		}
 	}
 	
+	/**
+	 * Returns the simulation time after which the given message's TTL is
+	 * expired, i.e. {@link Message#getTtl()} returns zero or less (the TTL
+	 * is rounded down to full minutes), or Double.MAX_VALUE for messages with
+	 * infinite TTL.
+	 * @param m The message
+	 * @return The expiry time of the message
+	 */
+	private static double getExpiryTime(Message m) {
+		int ttl = m.getInitialTtl();
+		if (ttl == Message.INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return m.getCreationTime() + (ttl - 1) * 60.0;
+	}
+	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			totalRelayHops -= getRelayHops(old); // replaced by the new one
+		}
+		super.addToMessages(m, newMessage);
+		totalRelayHops += getRelayHops(m);
+		if (m.getInitialTtl() != Message.INFINITE_TTL) {
+			expiryQueue.add(m);
+		}
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			totalRelayHops -= getRelayHops(m);
+		}
+		/* the queue entry is left for lazy removal but if most of the
+		   entries are stale, rebuild the queue from the buffer */
+		if (m != null && expiryQueue.size() > 2 * getNrofMessages() + 16) {
+			expiryQueue.clear();
+			for (Message buffered : getMessageCollection()) {
+				if (buffered.getInitialTtl() != Message.INFINITE_TTL) {
+					expiryQueue.add(buffered);
+				}
+			}
+		}
+		return m;
+	}
+	
 	/**
 	 * Tries to make room for a new message. Current implementation simply
 	 * calls {@link #makeRoomForMessage(int)} and ignores the return value.
@@ -375,6 +590,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * transfer was started. 
 	  */
 	protected Message tryAllMessages(Connection con, List<Message> messages) {
+		if (!hasQuota(con)) {
+			return null; // none of the messages can be sent
+		}
 		for (Message m : messages) {
 			int retVal = startTransfer(m, con); 
 			if (retVal == RCV_OK) {
@@ -479,8 +697,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			return; // nothing to shuffle
 		}
 		
-		Random rng = new Random(SimClock.getIntTime());
-		Collections.shuffle(messages, rng);	
+		Collections.shuffle(messages, getRandom());
 	}
 	
 	/**
@@ -490,7 +707,120 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @param con The connection to add
 	 */
 	protected void addToSendingConnections(Connection con) {
+		String id = con.getMessage() != null ? con.getMessage().getId() : null;
 		this.sendingConnections.add(con);
+		this.sendingIds.add(id);
+		if (!con.hasTransferEvents()) {
+			this.nrofPolled++;
+		}
+		if (id != null) {
+			this.sendingIndex.put(id, con);
+		}
+	}
+	
+	/**
+	 * Removes a connection from the sending connections and the message ID
+	 * index
+	 * @param i Index of the connection in the sending connections list
+	 */
+	private void removeFromSendingConnections(int i) {
+		Connection con = this.sendingConnections.remove(i);
+		String id = this.sendingIds.remove(i);
+		if (!con.hasTransferEvents()) {
+			this.nrofPolled--;
+		}
+		if (id == null || this.sendingIndex.get(id) != con) {
+			return;
+		}
+		this.sendingIndex.remove(id);
+		/* another connection may still be sending the same message */
+		for (int j=0, n=this.sendingIds.size(); j<n; j++) {
+			if (id.equals(this.sendingIds.get(j))) {
+				this.sendingIndex.put(id, this.sendingConnections.get(j));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the connection this router is using for sending the message
+	 * with the given ID
+	 * @param msgId The ID of the message
+	 * @return The connection or null if the message is not being sent
+	 */
+	protected Connection getSendingConnection(String msgId) {
+		Connection con = this.sendingIndex.get(msgId);
+		if (con == null) {
+			return null; // not sending
+		}
+		if (isSendingOver(con, msgId)) {
+			return con;
+		}
+
+		/* the indexed transfer is finalized or aborted but it hasn't been
+		   removed yet; another connection may still be sending the message */
+		for (int i=0, n=this.sendingConnections.size(); i<n; i++) {
+			Connection other = this.sendingConnections.get(i);
+			if (other != con && isSendingOver(other, msgId)) {
+				this.sendingIndex.put(msgId, other);
+				return other;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isSendingOver(Connection con, String msgId) {
+		Message m = con.getMessage();
+		return m != null && m.getId().equals(msgId);
+	}
+	
+	/**
+	 * Deletes the given messages from the buffer in one pass. Transfers of
+	 * the messages that are in progress are aborted first. IDs of messages
+	 * that are not in the buffer are ignored.
+	 * @param ids IDs of the messages to delete
+	 * @param drop Is the deletion a drop (see 
+	 * {@link #deleteMessage(String, boolean)})
+	 */
+	protected void purgeMessages(Collection<String> ids, boolean drop) {
+		for (String id : ids) {
+			if (!hasMessage(id)) {
+				continue;
+			}
+			Connection con = getSendingConnection(id);
+			if (con != null) {
+				abortSending(con);
+			}
+			deleteMessage(id, drop);
+		}
+	}
+
+	/**
+	 * Aborts the transfer of a sending connection. Connections with
+	 * transfer events are also removed from the sending connections because
+	 * {@link #update()} doesn't poll them.
+	 * @param con The connection whose transfer is aborted
+	 */
+	protected void abortSending(Connection con) {
+		con.abortTransfer();
+		if (con.hasTransferEvents()) {
+			int i = this.sendingConnections.indexOf(con);
+			if (i >= 0) {
+				removeSending(i);
+			}
+		}
+	}
+
+	/**
+	 * Removes a connection from the sending connections after its transfer
+	 * has been finalized or aborted. If the message that was sent was holding
+	 * excess buffer, it is freed.
+	 * @param i Index of the connection in the sending connections list
+	 */
+	private void removeSending(int i) {
+		if (this.getFreeBufferSize() < 0) {
+			this.makeRoomForMessage(0);
+		}
+		removeFromSendingConnections(i);
 	}
 		
 	/**
@@ -525,34 +855,49 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
-		for (Connection con : this.sendingConnections) {
-			if (con.getMessage() == null) {
-				continue; // transmission is finalized
-			}
-			if (con.getMessage().getId().equals(msgId)) {
-				return true;
-			}
-		}
-		return false;
+		return getSendingConnection(msgId) != null;
 	}
 	
+	/**
+	 * Finalizes the transfer of a sending connection whose scheduled
+	 * completion time has come.
+	 */
+	@Override
+	public void transferCompleted(Connection con) {
+		int i = this.sendingConnections.indexOf(con);
+		if (i < 0) {
+			return; // not started by this router
+		}
+		transferDone(con);
+		con.finalizeTransfer();
+		removeSending(i);
+	}
+
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
-	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * and abort those whose connection went down. Connections with transfer
+	 * events are skipped because they are finalized by
+	 * {@link #transferCompleted(Connection)} and aborted by
+	 * {@link #changedConnection(Connection)}. Also drops messages
+	 * whose TTL <= 0 (see {@link #dropExpiredMessages()}).
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
 	public void update() {
-		
+
 		super.update();
-		
+
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
-		for (int i=0; i<this.sendingConnections.size(); ) {
+		for (int i=0; this.nrofPolled > 0 &&
+				i<this.sendingConnections.size(); ) {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
-			
+			if (con.hasTransferEvents()) {
+				i++;
+				continue;
+			}
+
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
@@ -571,11 +916,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			} 
 			
 			if (removeCurrent) {
-				// if the message being sent was holding excess buffer, free it
-				if (this.getFreeBufferSize() < 0) {
-					this.makeRoomForMessage(0);
-				}
-				sendingConnections.remove(i);
+				removeSending(i);
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -583,12 +924,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		/* drop the messages whose TTL has run out (if any) */
+		dropExpiredMessages();
 	}
 	
 	/**
@@ -0,0 +1,161 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.schedule.ContactPlan;
+import routing.schedule.ContactPlanDijkstra;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+import core.Tuple;
+
+/**
+ * Single-copy router that knows all future contacts. The contacts are read
+ * from the connection events of an external events file (e.g., the same
+ * trace that drives the simulation) and each message is forwarded along
+ * its earliest arrival path. This gives an optimal-delivery baseline for
+ * trace-driven scenarios (message sizes, buffer space and bandwidth are
+ * not taken into account when the paths are calculated).
+ */
+public class ContactPlanRouter extends ActiveRouter {
+	/** Contact plan router's settings name space ({@value})*/
+	public static final String CONTACT_PLAN_NS = "ContactPlanRouter";
+	/** Path of the events file where the contact plan is read from
+	 * -setting id ({@value}). The path supports value filling. */
+	public static final String PLAN_FILE_S = "contactPlanFile";
+
+	/** the contact plan (shared by all replicas) */
+	private ContactPlan plan;
+	/** search that is shared by all replicas */
+	private ContactPlanDijkstra dijkstra;
+	/** first hops towards every node or null if they need to be searched */
+	private int[] firstHops;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public ContactPlanRouter(Settings s) {
+		super(s);
+		Settings cpSettings = new Settings(CONTACT_PLAN_NS);
+		String planFile =
+			cpSettings.valueFillString(cpSettings.getSetting(PLAN_FILE_S));
+		this.plan = ContactPlan.fromEventsFile(planFile);
+		this.dijkstra = new ContactPlanDijkstra(this.plan);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ContactPlanRouter(ContactPlanRouter r) {
+		super(r);
+		this.plan = r.plan;
+		this.dijkstra = r.dijkstra;
+	}
+
+	@Override
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+		/* a path found earlier stays the fastest one until a contact of this
+		   host changes, so the first hops are searched again only then */
+		this.firstHops = null;
+	}
+
+	/**
+	 * Returns the first hop of the fastest path from this host to the given
+	 * host
+	 * @param to The destination host
+	 * @return Address of the first hop or -1 if there is no path
+	 */
+	protected int getFirstHop(DTNHost to) {
+		if (this.firstHops == null) {
+			int nrofNodes = plan.getNrofNodes();
+			this.firstHops = new int[nrofNodes];
+			dijkstra.search(getHost().getAddress(), SimClock.getTime());
+			for (int i=0; i<nrofNodes; i++) {
+				firstHops[i] = dijkstra.getFirstHop(i);
+			}
+		}
+
+		int address = to.getAddress();
+		if (address >= firstHops.length) {
+			return -1; // not in the plan
+		}
+		return firstHops[address];
+	}
+
+	@Override
+	protected int checkReceiving(Message m) {
+		int recvCheck = super.checkReceiving(m);
+
+		if (recvCheck == RCV_OK) {
+			/* the fastest path never visits a node twice; first hops that
+			   were searched at different times may still disagree */
+			if (m.getHops().contains(getHost())) {
+				recvCheck = DENIED_OLD;
+			}
+		}
+
+		return recvCheck;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return;
+		}
+
+		if (exchangeDeliverableMessages() != null) {
+			return;
+		}
+
+		tryPlannedMessages();
+	}
+
+	/**
+	 * Tries to send the messages whose next hop on the fastest path is one
+	 * of the hosts this host is currently connected to
+	 * @return The message and connection of the transfer that was started
+	 * or null if no transfer was started
+	 */
+	private Tuple<Message, Connection> tryPlannedMessages() {
+		List<Tuple<Message, Connection>> messages =
+			new ArrayList<Tuple<Message, Connection>>();
+
+		for (Connection con : getConnections()) {
+			int peer = con.getOtherNode(getHost()).getAddress();
+			for (Message m : getMessageCollection()) {
+				if (getFirstHop(m.getTo()) == peer) {
+					messages.add(new Tuple<Message, Connection>(m, con));
+				}
+			}
+		}
+
+		if (messages.size() == 0) {
+			return null;
+		}
+		sortByQueueMode(messages);
+		return tryMessagesForConnected(messages);
+	}
+
+	@Override
+	protected void transferDone(Connection con) {
+		/* single copy: don't leave a copy for the sender */
+		this.deleteMessage(con.getMessage().getId(), false);
+	}
+
+	@Override
+	public ContactPlanRouter replicate() {
+		return new ContactPlanRouter(this);
+	}
+}
@@ -4,14 +4,18 @@
  */
 package routing;
 
+import java.util.List;
 import java.util.Random;
 import core.*;
 
 /**
- * Energy level-aware variant of Epidemic router.
+ * Energy level-aware variant of Epidemic router. The energy levels are kept
+ * in the {@link EnergyLedger}: the router records the energy it uses as
+ * debits and turns the radio off when the ledger tells that the host has
+ * run out of energy.
  */
 public class EnergyAwareRouter extends ActiveRouter 
-		implements ModuleCommunicationListener{
+		implements EnergyLedger.Listener {
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -29,19 +33,21 @@ public class EnergyAwareRouter extends ActiveRouter
 	public static final String WARMUP_S = "energyWarmup";
 
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of 
-	 * energy left" variable. Value type: double */
+	 * energy left" variable. Value type: double. The value is published by
+	 * the {@link EnergyLedger}. */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
-	
+
 	private final double[] initEnergy;
 	private double warmupTime;
-	private double currentEnergy;
+	/** energy level of the host before it is in the ledger */
+	private double startEnergy;
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
 	private double lastScanUpdate;
 	private double lastUpdate;
 	private double scanInterval;	
-	private ModuleCommunicationBus comBus;
+	private EnergyLedger ledger;
 	private static Random rng = null;
 
 	/**
@@ -76,21 +82,47 @@ public class EnergyAwareRouter extends ActiveRouter
 	
 	/**
 	 * Sets the current energy level into the given range using uniform 
-	 * random distribution.
+	 * random distribution. The level is set to the ledger if the host is
+	 * already there.
 	 * @param range The min and max values of the range, or if only one value
 	 * is given, that is used as the energy level
 	 */
 	protected void setEnergy(double range[]) {
+		double energy;
 		if (range.length == 1) {
-			this.currentEnergy = range[0];
+			energy = range[0];
 		}
 		else {
-			if (rng == null) {
-				rng = new Random((int)(range[0] + range[1]));
+			Random r;
+			if (RandomStreams.isLegacy()) {
+				if (rng == null) {
+					rng = new Random((int)(range[0] + range[1]));
+				}
+				r = rng;
+			}
+			else { /* stream of the host whose router this is */
+				r = RandomStreams.getStream(RandomStreams.ENERGY);
 			}
-			this.currentEnergy = range[0] + 
-				rng.nextDouble() * (range[1] - range[0]);
+			energy = range[0] + r.nextDouble() * (range[1] - range[0]);
+		}
+
+		if (this.ledger != null) {
+			this.ledger.setBalance(getHost().getAddress(), energy);
+		}
+		else {
+			this.startEnergy = energy;
+		}
+	}
+
+	/**
+	 * Returns the current energy level of the host
+	 * @return the current energy level
+	 */
+	protected double getEnergy() {
+		if (this.ledger == null) {
+			return this.startEnergy;
 		}
+		return this.ledger.getBalance(getHost().getAddress());
 	}
 	
 	/**
@@ -105,14 +137,22 @@ public class EnergyAwareRouter extends ActiveRouter
 		this.transmitEnergy = r.transmitEnergy;
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
-		this.comBus = null;
+		this.ledger = null;
 		this.lastScanUpdate = 0;
 		this.lastUpdate = 0;
 	}
-	
+
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		this.ledger = EnergyLedger.getInstance();
+		this.ledger.register(host.getAddress(), this.startEnergy,
+				host.getComBus(), this);
+	}
+
 	@Override
 	protected int checkReceiving(Message m) {
-		if (this.currentEnergy < 0) {
+		if (getEnergy() < 0) {
 			return DENIED_UNSPECIFIED;
 		}
 		else {
@@ -121,8 +161,9 @@ public class EnergyAwareRouter extends ActiveRouter
 	}
 	
 	/**
-	 * Updates the current energy so that the given amount is reduced from it.
-	 * If the energy level goes below zero, sets the level to zero.
+	 * Records a debit of the given amount of energy to the ledger. The
+	 * ledger reduces it from the current energy after the update round and
+	 * doesn't let the level go below zero.
 	 * Does nothing if the warmup time has not passed.
 	 * @param amount The amount of energy to reduce
 	 */
@@ -130,11 +171,8 @@ public class EnergyAwareRouter extends ActiveRouter
 		if (SimClock.getTime() < this.warmupTime) {
 			return;
 		}
-		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
-		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
-		}
+
+		this.ledger.debit(getHost().getAddress(), amount);
 	}
 	
 	/**
@@ -143,16 +181,9 @@ public class EnergyAwareRouter extends ActiveRouter
 	 */
 	protected void reduceSendingAndScanningEnergy() {
 		double simTime = SimClock.getTime();
-		
-		if (this.comBus == null) {
-			this.comBus = getHost().getComBus();
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
-		}
-		
-		if (this.currentEnergy <= 0) {
-			/* turn radio off */
-			this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+
+		if (this.ledger.isDepleted(getHost().getAddress())) {
+			/* the radio was turned off when the energy ran out */
 			return; /* no more energy to start new transfers */
 		}
 		
@@ -192,17 +223,17 @@ public class EnergyAwareRouter extends ActiveRouter
 	}
 	
 	/**
-	 * Called by the combus is the energy value is changed
-	 * @param key The energy ID
-	 * @param newValue The new energy value
+	 * Called by the ledger when the host runs out of energy. Turns the
+	 * radio off.
+	 * @param address Address of the host
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		this.currentEnergy = (Double)newValue;
+	public void energyDepleted(int address) {
+		getHost().getComBus().setDouble(NetworkInterface.RANGE_KEY, 0.0);
 	}
 
 	
 	@Override
 	public String toString() {
-		return super.toString() + " energy level = " + this.currentEnergy;
+		return super.toString() + " energy level = " + getEnergy();
 	}	
 }
\ No newline at end of file
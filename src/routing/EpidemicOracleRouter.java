@@ -5,7 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import core.*;
 
@@ -15,12 +20,38 @@ import core.*;
  * and that message is then removed from all nodes that use this routing module.
  * This router also <B>ignores message size and all messages are delivered 
  * immediately</B>.</P><P>
+ * All routers share the oracle's state: the IDs of delivered messages and,
+ * for each message, the set of routers holding it. Each router also knows
+ * the set of messages it holds (as bits indexed by a global message
+ * number), so a delivery removes the message only from its holders and
+ * the messages to copy from a peer are the difference of two bit sets.
+ * The number of a message that no router holds anymore (e.g., after its
+ * delivery) is reused for the next new message, so the numbers and the bit
+ * sets are bounded by the largest number of different messages held at the
+ * same time. Only the IDs of the delivered messages are kept for the whole
+ * simulation.
+ * </P><P>
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 	
-	/** List of all routers in this node group */
+	/** List of all routers in this node group (by router index) */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** IDs of the messages that have been delivered */
+	private static Set<String> delivered;
+	/** indexes of the routers holding each message (by message ID) */
+	private static Map<String, BitSet> holders;
+	/** global numbers of messages by their ID */
+	private static Map<String, Integer> messageNumbers;
+	/** message IDs by their global number (null for a free number) */
+	private static List<String> messageIds;
+	/** global numbers that no message uses at the moment */
+	private static BitSet freeNumbers;
+	
+	/** index of this router in the router list */
+	private int index;
+	/** global numbers of the messages this router holds */
+	private BitSet heldMessages;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -42,18 +73,79 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
+		this.index = allRouters.size();
+		this.heldMessages = new BitSet();
 		allRouters.add(this);
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		String id = m.getId();
+		Integer number = messageNumbers.get(id);
+		if (number == null) {
+			number = freeNumbers.nextSetBit(0);
+			if (number < 0) {
+				number = messageIds.size();
+				messageIds.add(id);
+			}
+			else {
+				freeNumbers.clear(number);
+				messageIds.set(number, id);
+			}
+			messageNumbers.put(id, number);
+		}
+		BitSet h = holders.get(id);
+		if (h == null) {
+			h = new BitSet();
+			holders.put(id, h);
+		}
+		h.set(this.index);
+		heldMessages.set(number);
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			int number = messageNumbers.get(id);
+			heldMessages.clear(number);
+			BitSet h = holders.get(id);
+			h.clear(this.index);
+			if (h.isEmpty()) {
+				/* nobody holds the message anymore -> free its number */
+				holders.remove(id);
+				messageNumbers.remove(id);
+				messageIds.set(number, null);
+				freeNumbers.set(number);
+			}
+		}
+		return m;
+	}
+	
 	@Override
 	public void changedConnection(Connection con) {
+		super.changedConnection(con);
 		if (con.isUp()) {
 			DTNHost peer = con.getOtherNode(getHost());
 			List<Message> newMessages = new ArrayList<Message>();
 			
-			for (Message m : peer.getMessageCollection()) {
-				if (!this.hasMessage(m.getId())) {
-					newMessages.add(m);
+			if (peer.getRouter() instanceof EpidemicOracleRouter) {
+				EpidemicOracleRouter peerRouter = 
+					(EpidemicOracleRouter)peer.getRouter();
+				/* messages the peer has but this router doesn't */
+				BitSet diff = (BitSet)peerRouter.heldMessages.clone();
+				diff.andNot(this.heldMessages);
+				for (int i = diff.nextSetBit(0); i >= 0; 
+						i = diff.nextSetBit(i + 1)) {
+					newMessages.add(peerRouter.getMessage(messageIds.get(i)));
+				}
+			}
+			else {
+				for (Message m : peer.getMessageCollection()) {
+					if (!this.hasMessage(m.getId())) {
+						newMessages.add(m);
+					}
 				}
 			}
 			for (Message m : newMessages) {
@@ -95,11 +187,10 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	public void removeDeliveredMessage(String id) {
 		if (this.hasMessage(id)) {
-			for (Connection c : this.sendingConnections) {
-				/* if sending the message-to-be-removed, cancel transfer */
-				if (c.getMessage().getId().equals(id)) {
-					c.abortTransfer();
-				}
+			/* if sending the message-to-be-removed, cancel transfer */
+			Connection c = getSendingConnection(id);
+			if (c != null) {
+				abortSending(c);
 			}
 			this.deleteMessage(id, false);			
 		}
@@ -110,8 +201,15 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
-				if (r != this && r != from.getRouter()) {
+			delivered.add(id);
+			BitSet h = holders.get(id);
+			/* remove the message from its holders only (including the
+			   sender, the transfer is never finalized through update());
+			   the bit of a holder is cleared when it removes the message */
+			for (int i = (h == null ? -1 : h.nextSetBit(0)); i >= 0; 
+					i = h.nextSetBit(i + 1)) {
+				EpidemicOracleRouter r = allRouters.get(i);
+				if (r != this) {
 					r.removeDeliveredMessage(id);
 				}
 			}
@@ -124,7 +222,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	
 	protected int checkReceiving(Message m) {
 		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) || 
-				isDeliveredMessage(m) ){
+				isDeliveredMessage(m) || delivered.contains(m.getId()) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -170,10 +268,15 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 	
 	/**
-	 * Resets the static router list
+	 * Resets the static router list and the shared oracle state
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		delivered = new HashSet<String>();
+		holders = new HashMap<String, BitSet>();
+		messageNumbers = new HashMap<String, Integer>();
+		messageIds = new ArrayList<String>();
+		freeNumbers = new BitSet();
 	}
 
 }
\ No newline at end of file
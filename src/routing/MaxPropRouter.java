@@ -117,6 +117,7 @@ public class MaxPropRouter extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		super.changedConnection(con);
 		if (con.isUp()) { // new connection
 			this.costsForMessages = null; // invalidate old cost estimates
 			
@@ -141,6 +141,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	
 	@Override
 	public void changedConnection(Connection con) {
+		super.changedConnection(con);
 		if (con.isUp()) { // new connection
 			this.costsForMessages = null; // invalidate old cost estimates
 			
@@ -17,6 +17,7 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.RandomStreams;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -127,6 +128,11 @@ public abstract class MessageRouter {
 
     private int nodeSelfish;
 
+    /**
+     * random number stream of this router or null in the legacy mode
+     */
+    private Random random;
+
     protected LinkedList<Integer> nodeList;
 
     /**
@@ -175,6 +181,10 @@ public abstract class MessageRouter {
         this.deliveredMessages = new HashMap<String, Message>();
         this.mListeners = mListeners;
         this.host = host;
+        if (!RandomStreams.isLegacy()) {
+            this.random = RandomStreams.getStream(RandomStreams.ROUTING,
+                    host.getAddress());
+        }
 //        Random rnd = new Random();
 //        for (int i = 0; i < 5; i++) {
 //            if (i > 0 && nodeList.contains(nodeList.get(i - 1))) {
@@ -224,6 +234,17 @@ public abstract class MessageRouter {
      */
     public abstract void changedConnection(Connection con);
 
+    /**
+     * Informs the router that the scheduled completion time of a transfer
+     * it is sending over a connection has come (see
+     * {@link Connection#setTransferEvents(boolean)}). This version doesn't
+     * do anything but routers that start transfers should finalize the
+     * transfer.
+     *
+     * @param con The connection whose transfer completed
+     */
+    public void transferCompleted(Connection con) { }
+
     /**
      * Returns a message by ID.
      *
@@ -543,6 +564,21 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns the random number generator for the router's random choices:
+     * the host's own routing stream or, in the legacy mode (see
+     * {@link RandomStreams}), a new generator seeded with the current
+     * simulation time.
+     *
+     * @return The random number generator
+     */
+    protected Random getRandom() {
+        if (this.random == null) {
+            return new Random(SimClock.getIntTime());
+        }
+        return this.random;
+    }
+
     /**
      * Sorts/shuffles the given list according to the current sending queue
      * mode. The list can contain either Message or Tuple<Message, Connection>
@@ -556,7 +592,7 @@ public abstract class MessageRouter {
     protected List sortByQueueMode(List list) {
         switch (sendQueueMode) {
             case Q_MODE_RANDOM:
-                Collections.shuffle(list, new Random(SimClock.getIntTime()));
+                Collections.shuffle(list, getRandom());
                 break;
             case Q_MODE_FIFO:
                 Collections.sort(list,
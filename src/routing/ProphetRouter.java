@@ -95,6 +95,7 @@ public class ProphetRouter extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		super.changedConnection(con);
 		if (con.isUp()) {
 			DTNHost otherHost = con.getOtherNode(getHost());
 			updateDeliveryPredFor(otherHost);
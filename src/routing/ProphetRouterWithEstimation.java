@@ -137,6 +137,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		super.changedConnection(con);
 		if (con.isUp()) {
 			DTNHost otherHost = con.getOtherNode(getHost());
 			if (updateIET(otherHost)) {
@@ -2,6 +2,8 @@ package routing;
 
 import java.util.*;
 import core.*;
+import routing.congestion.AIMDController;
+import routing.congestion.AbstractCongestionController;
 
 /**
  * Implementation of PRoPHET router as described in
@@ -24,16 +26,13 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
     public static final double GAMMA = 0.98;
 
     /**
-     * Prophet router's setting namespace ({@value})
+     * Prophet router's setting namespace ({@value}). The congestion control
+     * settings ({@link AIMDController#AI_S}, {@link AIMDController#MD_S} and
+     * {@link AbstractCongestionController#ALPHA_CV_S}) are read from this
+     * name space unless the router's {@link #CONGESTION_CONTROL_S} setting
+     * selects another policy.
      */
     public static final String PROPHET_NS = "ProphetRouterWithRR";
-    public static final String AI_S = "ai";
-    public static final String MD_S = "md";
-    public static final String ALPHA_CV = "alphaCV";
-
-    public static final int DEFAULT_AI = 1;
-    public static final double DEFAULT_MD = 0.2;
-    public static final double DEFAULT_ALPHA = 0.9;
     /**
      * Number of seconds in time unit -setting id ({@value}). How many seconds
      * one time unit is when calculating aging of delivery predictions. Should
@@ -65,23 +64,11 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
      */
     private double lastAgeUpdate;
 
-    // added - Retiring replicants's attributes -
-    private int nrOfReps = 0; // inisialisasi jumlah replikasi
-    private int nrOfDrops = 0; // inisialisasi jumlah drop
-    private int limit = 1; // inisialisasi limit
-    protected double CV = 0; // inisialisasi CV
-    private int AI;
-    private double MD;
-    public double ALPHA;
-    private Map<Connection, Integer> connLimit; // store connection along with limit
-    protected List<CVTime> cvList = new ArrayList<>();
-    protected List<Double> dropRepList = new ArrayList<>();
     private Map<String, ACK_TTL> receiptBuffer; // buffer that save receipt(ACK purposes)
     /**
-     * message that should be deleted
+     * buffered messages whose receipt is known, deleted at the next contact
      */
     private Set<String> messageReadytoDelete;
-
     /**
      * Constructor. Creates a new message router based on the settings in the
      * given Settings object.
@@ -97,23 +84,10 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         } else {
             beta = DEFAULT_BETA;
         }
-        if (prophetSettings.contains(AI_S)) {
-            AI = prophetSettings.getInt(AI_S);
-        } else {
-            AI = DEFAULT_AI;
-        }
-        if (prophetSettings.contains(MD_S)) {
-            MD = prophetSettings.getDouble(MD_S);
-        } else {
-            MD = DEFAULT_MD;
-        }
-        if (prophetSettings.contains(ALPHA_CV)) {
-            ALPHA = prophetSettings.getDouble(ALPHA_CV);
-        } else {
-            ALPHA = DEFAULT_ALPHA;
+        if (this.congestion == null) {
+            this.congestion = new AIMDController(prophetSettings);
         }
         initPreds();
-        initConnLimit();
         this.receiptBuffer = new HashMap<>();
         this.messageReadytoDelete = new HashSet<>();
     }
@@ -127,11 +101,7 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         super(r);
         this.secondsInTimeUnit = r.secondsInTimeUnit;
         this.beta = r.beta;
-        this.AI = r.AI;
-        this.MD = r.MD;
-        this.ALPHA = r.ALPHA;
         initPreds();
-        initConnLimit();
         this.receiptBuffer = new HashMap<>();
         this.messageReadytoDelete = new HashSet<>();
 
@@ -144,23 +114,14 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         this.preds = new HashMap<DTNHost, Double>();
     }
 
-    /**
-     * Initializes Connection and Limit hash
-     */
-    private void initConnLimit() {
-        this.connLimit = new HashMap<Connection, Integer>();
-    }
-
     @Override
     public void changedConnection(Connection con) {
+        super.changedConnection(con); // grants the quota or updates CV
         if (con.isUp()) {
             DTNHost otherHost = con.getOtherNode(getHost());
             updateDeliveryPredFor(otherHost);
             updateTransitivePreds(otherHost);
 
-            connLimit.put(con, this.limit);
-            System.out.println(this.limit);
-            Collection<Message> thisMessageList = getMessageCollection();
             ProphetRouterWithRR othRouter = (ProphetRouterWithRR) otherHost.getRouter();
 
             // Exchange receipt buffer
@@ -169,40 +130,15 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
             for (Map.Entry<String, ACK_TTL> entry : peerReceiptBuffer.entrySet()) {
                 if (!receiptBuffer.containsKey(entry.getKey())) {
                     receiptBuffer.put(entry.getKey(), entry.getValue());
-                }
-            }
-            for (Message m : thisMessageList) {
-                // Delete message that have a receipt
-                if (receiptBuffer.containsKey(m.getId())) {
-                    messageReadytoDelete.add(m.getId());
-                }
-            }
-
-            for (String m : messageReadytoDelete) {
-                if (isSending(m)) {
-                    List<Connection> conList = getConnections();
-                    for (Connection conn : conList) {
-                        if (conn.getMessage() != null && conn.getMessage().getId() == m) {
-                            conn.abortTransfer();;
-                            break;
-                        }
+                    // Delete message that have a receipt
+                    if (hasMessage(entry.getKey())) {
+                        messageReadytoDelete.add(entry.getKey());
                     }
                 }
-                deleteMessage(m, false);
             }
-            messageReadytoDelete.clear();
-        } else {
-            DTNHost otherHost = con.getOtherNode(getHost());
-            double newCV = calculateCV(con, otherHost);
-            CVTime cvValue = new CVTime(newCV, SimClock.getTime());
-            cvList.add(cvValue);
-            if (newCV <= this.CV) {
-                this.limit = this.limit + AI;
-            } else {
-                this.limit = (int) Math.ceil(this.limit * MD);
-            }
-            this.CV = newCV;
-            connLimit.remove(con);
+
+            // aborts the transfers of the messages and deletes them in one pass
+            purgeMessages(messageReadytoDelete, false);
             messageReadytoDelete.clear();
         }
     }
@@ -313,41 +249,18 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         tryOtherMessages();
     }
 
-    // Untuk menghitung jumlah drop pesan
-    @Override
-    protected boolean makeRoomForMessage(int size) {
-        if (size > this.getBufferSize()) {
-            return false; // message too big for the buffer
-        }
-
-        int freeBuffer = this.getFreeBufferSize();
-        /* delete messages from the buffer until there's enough space */
-        while (freeBuffer < size) {
-            Message m = getOldestMessage(true); // don't remove msgs being sent
-
-            if (m == null) {
-                return false; // couldn't remove any more messages
-            }
-
-            /* delete message from the buffer as "drop" */
-            deleteMessage(m.getId(), true);
-            this.nrOfDrops++;
-
-            freeBuffer += m.getSize();
-        }
-
-        return true;
-    }
-
     @Override
     public Message messageTransferred(String id, DTNHost from) {
         Message msg = super.messageTransferred(id, from);
-        this.nrOfReps++; // add -> this.nrOfReps++
         // - ACK -
         if (isFinalDest(msg, this.getHost()) && !receiptBuffer.containsKey(msg.getId())) {
             ACK_TTL ack = new ACK_TTL(SimClock.getTime(), msg.getTtl());
             receiptBuffer.put(msg.getId(), ack);
         }
+        // the receipt is already known, delete the message at next contact
+        if (receiptBuffer.containsKey(msg.getId()) && hasMessage(msg.getId())) {
+            messageReadytoDelete.add(msg.getId());
+        }
         return msg;
     }
 
@@ -359,42 +272,6 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         return m.getTo().equals(aHost);
     }
 
-    // Untuk mengembalikan nilai CV
-    private double calculateCV(Connection con, DTNHost peer) {
-        ProphetRouterWithRR othRouter = (ProphetRouterWithRR) peer.getRouter();
-        int hopCount = messagestotalHops();
-        int drops = this.nrOfDrops + othRouter.nrOfDrops;
-        int reps = this.nrOfReps + othRouter.nrOfReps + hopCount;
-        // reset
-        nrOfDrops = 0;
-        nrOfReps = 0;
-        // added
-        double rasio;
-        if (reps != 0) {
-            rasio = (double) drops / (double) reps;
-            dropRepList.add(rasio);
-            return (ALPHA * rasio) + ((1.0 - ALPHA) * CV);
-        } else {
-            //rasio = (double) drops / 0.0001;
-            //rasio = 1;
-            return this.CV;
-        }
-    }
-
-    // Counting total hops of messages
-    private int messagestotalHops() {
-        Collection<Message> msg = getMessageCollection();
-        int totalHops = 0;
-        if (!msg.isEmpty()) {
-            for (Message m : msg) {
-                if (!(m.getHopCount() == 0)) {
-                    totalHops += (m.getHopCount() - 1);
-                }
-            }
-        }
-        return totalHops;
-    }
-
     @Override
     protected Connection tryAllMessagesToAllConnections() {
         List<Connection> connections = getConnections();
@@ -450,40 +327,14 @@ public class ProphetRouterWithRR extends ActiveRouter implements CVDetectionEngi
         return tryMessagesForConnected(messages); // try to send messages
     }
 
-    protected int startTransfer(Message m, Connection con) {
-        int retVal;
-
-        if (!con.isReadyForTransfer()) {
-            return TRY_LATER_BUSY;
-        }
-        if (connLimit.containsKey(con)) {
-            retVal = con.startTransfer(getHost(), m);
-            if (retVal == RCV_OK) { // started transfer
-                addToSendingConnections(con);
-                int remainingLimit = connLimit.get(con) - 1;
-                if (remainingLimit != 0) {
-                    connLimit.replace(con, remainingLimit);
-                } else {
-                    connLimit.remove(con);
-                }
-            } else if (deleteDelivered && retVal == DENIED_OLD && m.getTo() == con.getOtherNode(this.getHost())) {
-                /* final recipient has already received the msg -> delete it*/
-                this.deleteMessage(m.getId(), false);
-
-            }
-            return retVal;
-        }
-        return DENIED_UNSPECIFIED;
-    }
-
     @Override
     public List<CVTime> getCongestionValue() {
-        return this.cvList;
+        return this.congestion.getCVHistory();
     }
 
     @Override
     public List<Double> getDropRep() {
-        return this.dropRepList;
+        return this.congestion.getDropRepHistory();
     }
 
     /**
@@ -0,0 +1,70 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Additive increase, additive decrease congestion control. The limit is
+ * increased by {@link #AI_S} when the congestion value didn't grow and
+ * decreased by {@link #AD_S} (but not below one) when it did.
+ */
+public class AIADController extends AbstractCongestionController {
+	/** Additive increase -setting id ({@value}). Default is
+	 * {@value #DEFAULT_AI} */
+	public static final String AI_S = "ai";
+	/** Additive decrease -setting id ({@value}). Default is
+	 * {@value #DEFAULT_AD} */
+	public static final String AD_S = "ad";
+	/** Default additive increase */
+	public static final int DEFAULT_AI = 1;
+	/** Default additive decrease */
+	public static final int DEFAULT_AD = 1;
+
+	private int ai;
+	private int ad;
+
+	/**
+	 * Constructor.
+	 * @param s Settings where the controller's settings are read from
+	 */
+	public AIADController(Settings s) {
+		super(s);
+		if (s.contains(AI_S)) {
+			this.ai = s.getInt(AI_S);
+		}
+		else {
+			this.ai = DEFAULT_AI;
+		}
+		if (s.contains(AD_S)) {
+			this.ad = s.getInt(AD_S);
+		}
+		else {
+			this.ad = DEFAULT_AD;
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype whose settings are copied
+	 */
+	protected AIADController(AIADController proto) {
+		super(proto);
+		this.ai = proto.ai;
+		this.ad = proto.ad;
+	}
+
+	@Override
+	protected int nextLimit(int limit, double oldCV, double newCV) {
+		if (newCV <= oldCV) {
+			return limit + ai;
+		}
+		return Math.max(1, limit - ad);
+	}
+
+	public AIADController replicate() {
+		return new AIADController(this);
+	}
+}
@@ -0,0 +1,71 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Additive increase, multiplicative decrease congestion control. The limit
+ * is increased by {@link #AI_S} when the congestion value didn't grow and
+ * multiplied by {@link #MD_S} (rounding up) when it did. This is the
+ * original Retiring Replicants policy.
+ */
+public class AIMDController extends AbstractCongestionController {
+	/** Additive increase -setting id ({@value}). Default is
+	 * {@value #DEFAULT_AI} */
+	public static final String AI_S = "ai";
+	/** Multiplicative decrease -setting id ({@value}). Default is
+	 * {@value #DEFAULT_MD} */
+	public static final String MD_S = "md";
+	/** Default additive increase */
+	public static final int DEFAULT_AI = 1;
+	/** Default multiplicative decrease */
+	public static final double DEFAULT_MD = 0.2;
+
+	private int ai;
+	private double md;
+
+	/**
+	 * Constructor.
+	 * @param s Settings where the controller's settings are read from
+	 */
+	public AIMDController(Settings s) {
+		super(s);
+		if (s.contains(AI_S)) {
+			this.ai = s.getInt(AI_S);
+		}
+		else {
+			this.ai = DEFAULT_AI;
+		}
+		if (s.contains(MD_S)) {
+			this.md = s.getDouble(MD_S);
+		}
+		else {
+			this.md = DEFAULT_MD;
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype whose settings are copied
+	 */
+	protected AIMDController(AIMDController proto) {
+		super(proto);
+		this.ai = proto.ai;
+		this.md = proto.md;
+	}
+
+	@Override
+	protected int nextLimit(int limit, double oldCV, double newCV) {
+		if (newCV <= oldCV) {
+			return limit + ai;
+		}
+		return (int)Math.ceil(limit * md);
+	}
+
+	public AIMDController replicate() {
+		return new AIMDController(this);
+	}
+}
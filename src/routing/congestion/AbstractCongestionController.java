@@ -0,0 +1,265 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.CVTime;
+import core.Connection;
+import core.DTNHost;
+import core.MetricsRegistry;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Superclass of the congestion controllers. Implements the Retiring
+ * Replicants bookkeeping: drop and replication counters, the congestion
+ * value (an exponentially weighted moving average of the drop/rep ratio
+ * observed at the end of each contact) and the per-connection quotas.
+ * Subclasses only decide how the replication limit reacts to a new
+ * congestion value (see {@link #nextLimit(int, double, double)}).
+ */
+public abstract class AbstractCongestionController
+		implements CongestionController {
+	/** CV smoothing factor -setting id ({@value}). Weight of the latest
+	 * drop/rep ratio in the congestion value. Default is
+	 * {@value #DEFAULT_ALPHA} */
+	public static final String ALPHA_CV_S = "alphaCV";
+	/** Default value for the CV smoothing factor */
+	public static final double DEFAULT_ALPHA = 0.9;
+	/** Initial replication limit */
+	public static final int INITIAL_LIMIT = 1;
+	/** Initial capacity of the per-connection quota arrays */
+	private static final int INIT_QUOTA_CAPACITY = 4;
+
+	/** weight of the latest drop/rep ratio */
+	protected double alpha;
+	/** current replication limit */
+	protected int limit;
+	/** current congestion value */
+	protected double cv;
+	private int nrofDrops;
+	private int nrofReps;
+
+	/** connections with quota left and their remaining quotas */
+	private Connection[] quotaCons;
+	private int[] quotas;
+	private int nrofQuotas;
+
+	private List<CVTime> cvHistory;
+	private List<Double> dropRepHistory;
+
+	private MetricsRegistry.Gauge limitGauge;
+	private MetricsRegistry.Gauge cvGauge;
+	private MetricsRegistry.Counter dropCounter;
+	private MetricsRegistry.Counter repCounter;
+	private MetricsRegistry.Histogram quotaHistogram;
+	private MetricsRegistry.Histogram dropRepHistogram;
+
+	/**
+	 * Constructor.
+	 * @param s Settings where the controller's settings are read from
+	 */
+	public AbstractCongestionController(Settings s) {
+		if (s.contains(ALPHA_CV_S)) {
+			this.alpha = s.getDouble(ALPHA_CV_S);
+		}
+		else {
+			this.alpha = DEFAULT_ALPHA;
+		}
+		initState();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype whose settings are copied
+	 */
+	protected AbstractCongestionController(AbstractCongestionController proto) {
+		this.alpha = proto.alpha;
+		initState();
+	}
+
+	private void initState() {
+		this.limit = INITIAL_LIMIT;
+		this.cv = 0;
+		this.quotaCons = new Connection[INIT_QUOTA_CAPACITY];
+		this.quotas = new int[INIT_QUOTA_CAPACITY];
+		this.nrofQuotas = 0;
+		this.cvHistory = new ArrayList<CVTime>();
+		this.dropRepHistory = new ArrayList<Double>();
+	}
+
+	/**
+	 * Looks up the metrics the controller publishes to the
+	 * {@link MetricsRegistry}: the host's limit and CV and the drop, rep and
+	 * per-connection quota statistics shared by all controllers.
+	 */
+	public void init(DTNHost host) {
+		String prefix = "rr." + host + ".";
+		this.limitGauge = MetricsRegistry.gauge(prefix + "limit");
+		this.cvGauge = MetricsRegistry.gauge(prefix + "cv");
+		this.dropCounter = MetricsRegistry.counter("rr.drops");
+		this.repCounter = MetricsRegistry.counter("rr.reps");
+		this.quotaHistogram = MetricsRegistry.histogram("rr.connQuota");
+		this.dropRepHistogram = MetricsRegistry.histogram("rr.dropRep");
+		this.limitGauge.set(this.limit);
+	}
+
+	/**
+	 * Returns the replication limit to use after a contact
+	 * @param limit The current limit
+	 * @param oldCV The congestion value before the contact ended
+	 * @param newCV The new congestion value
+	 * @return The new limit
+	 */
+	protected abstract int nextLimit(int limit, double oldCV, double newCV);
+
+	public void connectionUp(Connection con) {
+		setQuota(con, this.limit);
+		quotaHistogram.record(this.limit);
+	}
+
+	public void connectionDown(Connection con, CongestionController peer,
+			int bufferHops) {
+		double newCV = calculateCV(peer, bufferHops);
+		cvHistory.add(new CVTime(newCV, SimClock.getTime()));
+		this.limit = nextLimit(this.limit, this.cv, newCV);
+		this.cv = newCV;
+		limitGauge.set(this.limit);
+		cvGauge.set(newCV);
+		removeQuota(con);
+	}
+
+	/**
+	 * Calculates a new congestion value from the drops and replications of
+	 * this and the peer host and resets this host's counters.
+	 * @param peer Controller of the peer (or null)
+	 * @param bufferHops Total relay hops of the messages in the buffer
+	 * @return The new congestion value
+	 */
+	private double calculateCV(CongestionController peer, int bufferHops) {
+		int drops = this.nrofDrops;
+		int reps = this.nrofReps + bufferHops;
+		if (peer != null) {
+			drops += peer.getNrofDrops();
+			reps += peer.getNrofReps();
+		}
+		// reset
+		this.nrofDrops = 0;
+		this.nrofReps = 0;
+
+		if (reps == 0) {
+			return this.cv;
+		}
+		double ratio = (double)drops / reps;
+		dropRepHistory.add(ratio);
+		dropRepHistogram.record(ratio);
+		return (alpha * ratio) + ((1.0 - alpha) * this.cv);
+	}
+
+	public boolean hasQuota(Connection con) {
+		return indexOf(con) >= 0;
+	}
+
+	public void transferStarted(Connection con) {
+		int i = indexOf(con);
+		if (i < 0) {
+			return;
+		}
+		quotas[i]--;
+		if (quotas[i] <= 0) {
+			removeAt(i);
+		}
+	}
+
+	/**
+	 * Sets the quota of a connection. Connections with no quota are not
+	 * stored.
+	 * @param con The connection
+	 * @param quota The quota
+	 */
+	private void setQuota(Connection con, int quota) {
+		removeQuota(con);
+		if (quota <= 0) {
+			return;
+		}
+		if (nrofQuotas == quotaCons.length) {
+			Connection[] cons = new Connection[nrofQuotas * 2];
+			int[] qs = new int[nrofQuotas * 2];
+			System.arraycopy(quotaCons, 0, cons, 0, nrofQuotas);
+			System.arraycopy(quotas, 0, qs, 0, nrofQuotas);
+			quotaCons = cons;
+			quotas = qs;
+		}
+		quotaCons[nrofQuotas] = con;
+		quotas[nrofQuotas] = quota;
+		nrofQuotas++;
+	}
+
+	private void removeQuota(Connection con) {
+		int i = indexOf(con);
+		if (i >= 0) {
+			removeAt(i);
+		}
+	}
+
+	/* a host has only a handful of simultaneous connections so a linear
+	   search over the primitive arrays is cheaper than a hash lookup */
+	private int indexOf(Connection con) {
+		for (int i=0; i<nrofQuotas; i++) {
+			if (quotaCons[i] == con) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void removeAt(int i) {
+		nrofQuotas--;
+		quotaCons[i] = quotaCons[nrofQuotas];
+		quotas[i] = quotas[nrofQuotas];
+		quotaCons[nrofQuotas] = null;
+	}
+
+	public void messageDropped() {
+		this.nrofDrops++;
+		dropCounter.increment();
+	}
+
+	public void messageReplicated() {
+		this.nrofReps++;
+		repCounter.increment();
+	}
+
+	public int getNrofDrops() {
+		return this.nrofDrops;
+	}
+
+	public int getNrofReps() {
+		return this.nrofReps;
+	}
+
+	public int getLimit() {
+		return this.limit;
+	}
+
+	public double getCongestionValue() {
+		return this.cv;
+	}
+
+	public List<CVTime> getCVHistory() {
+		return this.cvHistory;
+	}
+
+	public List<Double> getDropRepHistory() {
+		return this.dropRepHistory;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " limit=" + limit + " CV=" + cv;
+	}
+}
@@ -0,0 +1,115 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import java.util.List;
+
+import routing.CVTime;
+import core.Connection;
+import core.DTNHost;
+
+/**
+ * Interface for congestion control policies of active routers. A controller
+ * keeps track of the router's drops and replications, computes the
+ * congestion value (CV) when a contact ends and, based on that, the
+ * replication limit (the number of messages the router may start sending
+ * over a new connection).
+ */
+public interface CongestionController {
+	/** Congestion control settings' default name space ({@value}) */
+	public static final String CONGESTION_NS = "CongestionControl";
+
+	/**
+	 * Initializes the controller for the given host
+	 * @param host The host whose router uses this controller
+	 */
+	public void init(DTNHost host);
+
+	/**
+	 * Called when a connection goes up. Grants the connection the current
+	 * replication limit as its quota.
+	 * @param con The new connection
+	 */
+	public void connectionUp(Connection con);
+
+	/**
+	 * Called when a connection goes down. Calculates a new congestion value
+	 * and adjusts the replication limit.
+	 * @param con The connection that went down
+	 * @param peer The controller of the host on the other side of the
+	 * connection or null if that host doesn't use congestion control
+	 * @param bufferHops Total number of relay hops of the messages in the
+	 * router's buffer (i.e. sum of hop counts - 1)
+	 */
+	public void connectionDown(Connection con, CongestionController peer,
+			int bufferHops);
+
+	/**
+	 * Returns true if a new transfer can be started over the connection
+	 * @param con The connection
+	 * @return true if the connection has quota left
+	 */
+	public boolean hasQuota(Connection con);
+
+	/**
+	 * Called when a transfer was started over the connection; uses one unit
+	 * of the connection's quota.
+	 * @param con The connection
+	 */
+	public void transferStarted(Connection con);
+
+	/**
+	 * Called when the router dropped a message from its buffer
+	 */
+	public void messageDropped();
+
+	/**
+	 * Called when the router received a message replica
+	 */
+	public void messageReplicated();
+
+	/**
+	 * Returns the number of drops since the last CV calculation
+	 * @return the number of drops
+	 */
+	public int getNrofDrops();
+
+	/**
+	 * Returns the number of received replicas since the last CV calculation
+	 * @return the number of replicas
+	 */
+	public int getNrofReps();
+
+	/**
+	 * Returns the current replication limit
+	 * @return the current replication limit
+	 */
+	public int getLimit();
+
+	/**
+	 * Returns the current congestion value
+	 * @return the current congestion value
+	 */
+	public double getCongestionValue();
+
+	/**
+	 * Returns all calculated congestion values with their calculation times
+	 * @return the congestion value history
+	 */
+	public List<CVTime> getCVHistory();
+
+	/**
+	 * Returns all calculated drop/rep ratios
+	 * @return the drop/rep ratio history
+	 */
+	public List<Double> getDropRepHistory();
+
+	/**
+	 * Creates a replicate of this controller. The replicate has the same
+	 * settings but initial state.
+	 * @return The replicate
+	 */
+	public CongestionController replicate();
+}
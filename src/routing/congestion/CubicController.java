@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * CUBIC-like congestion control. When the congestion value grows, the
+ * limit before the decrease is remembered as <CODE>Wmax</CODE> and the
+ * limit is multiplied by {@link #BETA_S}. After that the limit follows
+ * the cubic curve <CODE>C*(t-K)^3 + Wmax</CODE>, where <CODE>t</CODE> is
+ * the number of contacts since the decrease and 
+ * <CODE>K = cbrt(Wmax*(1-beta)/C)</CODE>: it grows fast back towards
+ * <CODE>Wmax</CODE>, stays there for a while and then probes beyond it.
+ * The limit always grows at least by one per uncongested contact.
+ */
+public class CubicController extends AbstractCongestionController {
+	/** Cubic scaling constant -setting id ({@value}). Default is
+	 * {@value #DEFAULT_C} */
+	public static final String C_S = "cubicC";
+	/** Multiplicative decrease -setting id ({@value}). Default is
+	 * {@value #DEFAULT_BETA} */
+	public static final String BETA_S = "beta";
+	/** Default cubic scaling constant */
+	public static final double DEFAULT_C = 0.4;
+	/** Default multiplicative decrease */
+	public static final double DEFAULT_BETA = 0.7;
+
+	private double c;
+	private double beta;
+	/** limit before the last decrease */
+	private double wMax;
+	/** number of uncongested contacts since the last decrease */
+	private int epoch;
+
+	/**
+	 * Constructor.
+	 * @param s Settings where the controller's settings are read from
+	 */
+	public CubicController(Settings s) {
+		super(s);
+		if (s.contains(C_S)) {
+			this.c = s.getDouble(C_S);
+		}
+		else {
+			this.c = DEFAULT_C;
+		}
+		if (s.contains(BETA_S)) {
+			this.beta = s.getDouble(BETA_S);
+		}
+		else {
+			this.beta = DEFAULT_BETA;
+		}
+		this.wMax = INITIAL_LIMIT;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype whose settings are copied
+	 */
+	protected CubicController(CubicController proto) {
+		super(proto);
+		this.c = proto.c;
+		this.beta = proto.beta;
+		this.wMax = INITIAL_LIMIT;
+	}
+
+	@Override
+	protected int nextLimit(int limit, double oldCV, double newCV) {
+		if (newCV > oldCV) {
+			this.wMax = limit;
+			this.epoch = 0;
+			return Math.max(1, (int)Math.ceil(limit * beta));
+		}
+
+		this.epoch++;
+		double k = Math.cbrt(wMax * (1 - beta) / c);
+		double d = epoch - k;
+		int target = (int)Math.ceil(c * d * d * d + wMax);
+		return Math.max(limit + 1, target);
+	}
+
+	public CubicController replicate() {
+		return new CubicController(this);
+	}
+}
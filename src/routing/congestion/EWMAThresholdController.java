@@ -0,0 +1,85 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Threshold based congestion control. Instead of reacting to the trend of
+ * the congestion value (like {@link AIMDController}), the limit is
+ * increased by {@link #AI_S} while the (exponentially weighted) congestion
+ * value stays at or under {@link #THRESHOLD_S} and multiplied by
+ * {@link #MD_S} (rounding up) when it exceeds the threshold.
+ */
+public class EWMAThresholdController extends AbstractCongestionController {
+	/** Additive increase -setting id ({@value}). Default is
+	 * {@value #DEFAULT_AI} */
+	public static final String AI_S = "ai";
+	/** Multiplicative decrease -setting id ({@value}). Default is
+	 * {@value #DEFAULT_MD} */
+	public static final String MD_S = "md";
+	/** Congestion value threshold -setting id ({@value}). Default is
+	 * {@value #DEFAULT_THRESHOLD} */
+	public static final String THRESHOLD_S = "cvThreshold";
+	/** Default additive increase */
+	public static final int DEFAULT_AI = 1;
+	/** Default multiplicative decrease */
+	public static final double DEFAULT_MD = 0.5;
+	/** Default congestion value threshold */
+	public static final double DEFAULT_THRESHOLD = 0.1;
+
+	private int ai;
+	private double md;
+	private double threshold;
+
+	/**
+	 * Constructor.
+	 * @param s Settings where the controller's settings are read from
+	 */
+	public EWMAThresholdController(Settings s) {
+		super(s);
+		if (s.contains(AI_S)) {
+			this.ai = s.getInt(AI_S);
+		}
+		else {
+			this.ai = DEFAULT_AI;
+		}
+		if (s.contains(MD_S)) {
+			this.md = s.getDouble(MD_S);
+		}
+		else {
+			this.md = DEFAULT_MD;
+		}
+		if (s.contains(THRESHOLD_S)) {
+			this.threshold = s.getDouble(THRESHOLD_S);
+		}
+		else {
+			this.threshold = DEFAULT_THRESHOLD;
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype whose settings are copied
+	 */
+	protected EWMAThresholdController(EWMAThresholdController proto) {
+		super(proto);
+		this.ai = proto.ai;
+		this.md = proto.md;
+		this.threshold = proto.threshold;
+	}
+
+	@Override
+	protected int nextLimit(int limit, double oldCV, double newCV) {
+		if (newCV <= threshold) {
+			return limit + ai;
+		}
+		return (int)Math.ceil(limit * md);
+	}
+
+	public EWMAThresholdController replicate() {
+		return new EWMAThresholdController(this);
+	}
+}
@@ -0,0 +1,241 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.schedule;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contact plan: all the (future) contacts between nodes. A contact is the
+ * time interval when two nodes are connected. Each node's contacts are
+ * stored in primitive arrays sorted by the contact end time so the
+ * contacts that are still usable at a given time can be found with a
+ * binary search (see {@link #firstUsable(int, double)}).
+ */
+public class ContactPlan {
+	/** Value for contacts that never end */
+	public static final double INFINITY = Double.MAX_VALUE;
+	/** How many events are read from an event file at once */
+	private static final int NROF_PRELOAD = 5000;
+	/** Orders {start, end, peer} triples by the end time */
+	private static final Comparator<double[]> END_ORDER =
+		new Comparator<double[]>() {
+		public int compare(double[] c1, double[] c2) {
+			return Double.compare(c1[1], c2[1]);
+		}
+	};
+
+	/** contacts of each node as {start, end, peer} triples (in insert order)*/
+	private List<List<double[]>> added;
+	/** is the sorted index up to date with the added contacts */
+	private boolean indexed;
+
+	/* sorted index: contact i of node n is peers[n][i] from starts[n][i]
+	   to ends[n][i]; contacts are ordered by the end time */
+	private int[][] peers;
+	private double[][] starts;
+	private double[][] ends;
+
+	/**
+	 * Creates an empty contact plan
+	 */
+	public ContactPlan() {
+		this.added = new ArrayList<List<double[]>>();
+		this.indexed = false;
+	}
+
+	/**
+	 * Creates a contact plan from the connection events of an external
+	 * events file (see {@link input.StandardEventsReader}). Contacts whose
+	 * down event is missing from the file never end. Other events are
+	 * ignored.
+	 * @param filePath Path to the events file
+	 * @return The contact plan
+	 */
+	public static ContactPlan fromEventsFile(String filePath) {
+		ContactPlan plan = new ContactPlan();
+		ExternalEventsQueue queue =
+			new ExternalEventsQueue(filePath, NROF_PRELOAD);
+		/* start times of the contacts that are up, by node pair */
+		Map<Long, Double> upTimes = new HashMap<Long, Double>();
+
+		while (queue.nextEventsTime() != Double.MAX_VALUE) {
+			ExternalEvent ee = queue.nextEvent();
+			if (!(ee instanceof ConnectionEvent)) {
+				continue;
+			}
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			int a = Math.min(ce.getFromAddr(), ce.getToAddr());
+			int b = Math.max(ce.getFromAddr(), ce.getToAddr());
+			Long key = ((long)a << 32) | b;
+
+			if (ce.isUp()) {
+				if (!upTimes.containsKey(key)) {
+					upTimes.put(key, ce.getTime());
+				}
+			}
+			else {
+				Double start = upTimes.remove(key);
+				if (start != null) {
+					plan.addContact(a, b, start, ce.getTime());
+				}
+			}
+		}
+
+		for (Map.Entry<Long, Double> e : upTimes.entrySet()) {
+			int a = (int)(e.getKey() >>> 32);
+			int b = (int)(e.getKey() & 0xFFFFFFFFL);
+			plan.addContact(a, b, e.getValue(), INFINITY);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Adds a new (bidirectional) contact to the plan
+	 * @param a Address of the first node
+	 * @param b Address of the second node
+	 * @param start Time when the contact starts
+	 * @param end Time when the contact ends
+	 */
+	public void addContact(int a, int b, double start, double end) {
+		add(a, b, start, end);
+		add(b, a, start, end);
+		this.indexed = false;
+	}
+
+	private void add(int from, int to, double start, double end) {
+		while (added.size() <= from) {
+			added.add(new ArrayList<double[]>());
+		}
+		added.get(from).add(new double[] {start, end, to});
+	}
+
+	/**
+	 * Builds the sorted contact arrays from the added contacts
+	 */
+	private void index() {
+		int nrofNodes = added.size();
+		this.peers = new int[nrofNodes][];
+		this.starts = new double[nrofNodes][];
+		this.ends = new double[nrofNodes][];
+
+		for (int n=0; n<nrofNodes; n++) {
+			List<double[]> list = added.get(n);
+			int nrof = list.size();
+			double[][] contacts = list.toArray(new double[nrof][]);
+			Arrays.sort(contacts, END_ORDER);
+
+			peers[n] = new int[nrof];
+			starts[n] = new double[nrof];
+			ends[n] = new double[nrof];
+			for (int i=0; i<nrof; i++) {
+				starts[n][i] = contacts[i][0];
+				ends[n][i] = contacts[i][1];
+				peers[n][i] = (int)contacts[i][2];
+			}
+		}
+		this.indexed = true;
+	}
+
+	/**
+	 * Returns the number of nodes in the plan (the largest address + 1)
+	 * @return the number of nodes in the plan
+	 */
+	public int getNrofNodes() {
+		return added.size();
+	}
+
+	/**
+	 * Returns the number of contacts of a node
+	 * @param node Address of the node
+	 * @return the number of contacts
+	 */
+	public int getNrofContacts(int node) {
+		if (node >= added.size()) {
+			return 0;
+		}
+		return added.get(node).size();
+	}
+
+	/**
+	 * Returns the index of the first contact of a node that hasn't ended at
+	 * the given time. All the contacts from that index on are usable at or
+	 * after the time.
+	 * @param node Address of the node
+	 * @param time The time
+	 * @return Index of the first usable contact or
+	 * {@link #getNrofContacts(int)} if there are no usable contacts
+	 */
+	public int firstUsable(int node, double time) {
+		if (node >= added.size()) {
+			return 0;
+		}
+		if (!indexed) {
+			index();
+		}
+
+		double[] nodeEnds = ends[node];
+		int low = 0;
+		int high = nodeEnds.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (nodeEnds[mid] <= time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the address of the peer of a contact
+	 * @param node Address of the node
+	 * @param index Index of the contact
+	 * @return the address of the peer
+	 */
+	public int getPeer(int node, int index) {
+		if (!indexed) {
+			index();
+		}
+		return peers[node][index];
+	}
+
+	/**
+	 * Returns the start time of a contact
+	 * @param node Address of the node
+	 * @param index Index of the contact
+	 * @return the start time
+	 */
+	public double getStart(int node, int index) {
+		if (!indexed) {
+			index();
+		}
+		return starts[node][index];
+	}
+
+	/**
+	 * Returns the end time of a contact
+	 * @param node Address of the node
+	 * @param index Index of the contact
+	 * @return the end time
+	 */
+	public double getEnd(int node, int index) {
+		if (!indexed) {
+			index();
+		}
+		return ends[node][index];
+	}
+}
@@ -0,0 +1,245 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.schedule;
+
+/**
+ * Time-dependent Dijkstra's earliest arrival search for a
+ * {@link ContactPlan}. A node can forward to a peer at any time during
+ * their contact, so the arrival time at the peer is the later of the time
+ * at the node and the contact's start time. Transfers are assumed to take
+ * no time. Of the paths with the same arrival time, the one with the
+ * fewest hops is chosen; this keeps the first hops of the nodes
+ * consistent so that messages are not passed back and forth. All the work
+ * arrays are reused between searches, so a search allocates memory only
+ * when the plan has grown.
+ */
+public class ContactPlanDijkstra {
+	/** Arrival time of nodes that can't be reached */
+	public static final double UNREACHABLE = Double.MAX_VALUE;
+
+	private ContactPlan plan;
+	/** earliest known arrival time of each node */
+	private double[] arrival;
+	/** number of hops on the fastest path to each node */
+	private int[] hops;
+	/** first hop on the fastest path to each node (-1 if n/a) */
+	private int[] firstHop;
+	/** is the fastest path to the node known */
+	private boolean[] visited;
+	/** binary min-heap of (arrival, hops, node) triples; a node can be in
+	   the heap several times but only its best entry is used */
+	private double[] heapTimes;
+	private int[] heapHops;
+	private int[] heapNodes;
+	private int heapSize;
+	/** source of the latest search */
+	private int source;
+
+	/**
+	 * Constructor.
+	 * @param plan The contact plan to search
+	 */
+	public ContactPlanDijkstra(ContactPlan plan) {
+		this.plan = plan;
+		this.arrival = new double[0];
+		this.heapTimes = new double[0];
+		this.heapHops = new int[0];
+		this.heapNodes = new int[0];
+		this.source = -1;
+	}
+
+	/**
+	 * Initializes the work arrays for a new search
+	 */
+	private void initWith(int node, double time) {
+		int nrofNodes = Math.max(plan.getNrofNodes(), node + 1);
+		if (arrival.length < nrofNodes) {
+			this.arrival = new double[nrofNodes];
+			this.hops = new int[nrofNodes];
+			this.firstHop = new int[nrofNodes];
+			this.visited = new boolean[nrofNodes];
+		}
+		for (int i=0; i<arrival.length; i++) {
+			arrival[i] = UNREACHABLE;
+			hops[i] = Integer.MAX_VALUE;
+			firstHop[i] = -1;
+			visited[i] = false;
+		}
+		this.heapSize = 0;
+		this.source = node;
+
+		arrival[node] = time;
+		hops[node] = 0;
+		push(node, time, 0);
+	}
+
+	/**
+	 * Finds the earliest arrival times from a source node to all other
+	 * nodes. The results can be read with {@link #getArrival(int)} and
+	 * {@link #getFirstHop(int)} until the next search.
+	 * @param from The source node
+	 * @param time The time when the search starts
+	 */
+	public void search(int from, double time) {
+		search(from, -1, time);
+	}
+
+	/**
+	 * Finds the earliest arrival time from a source node to the destination
+	 * @param from The source node
+	 * @param to The destination node
+	 * @param time The time when the search starts
+	 * @return The earliest arrival time or {@link #UNREACHABLE}
+	 */
+	public double getEarliestArrival(int from, int to, double time) {
+		search(from, to, time);
+		return getArrival(to);
+	}
+
+	/**
+	 * Runs the search. Stops when the destination is reached.
+	 * @param from The source node
+	 * @param to The destination node or -1 for all nodes
+	 * @param time The time when the search starts
+	 */
+	private void search(int from, int to, double time) {
+		assert time >= 0.0 : "Can't use negative start time";
+		initWith(from, time);
+
+		while (heapSize > 0) {
+			int node = pop();
+			if (visited[node]) {
+				continue; // an older entry of the node
+			}
+			visited[node] = true;
+			if (node == to) {
+				break;
+			}
+			relax(node);
+		}
+	}
+
+	/**
+	 * Relaxes the contacts of a node that are usable after the node's
+	 * arrival time
+	 * @param node The node whose contacts are relaxed
+	 */
+	private void relax(int node) {
+		double timeNow = arrival[node];
+		int hopsTo = hops[node] + 1;
+		for (int i = plan.firstUsable(node, timeNow),
+				n = plan.getNrofContacts(node); i < n; i++) {
+			int peer = plan.getPeer(node, i);
+			if (peer >= arrival.length || visited[peer]) {
+				continue;
+			}
+			double timeTo = Math.max(timeNow, plan.getStart(node, i));
+			if (timeTo < arrival[peer] ||
+					(timeTo == arrival[peer] && hopsTo < hops[peer])) {
+				arrival[peer] = timeTo;
+				hops[peer] = hopsTo;
+				firstHop[peer] = (node == source ? peer : firstHop[node]);
+				push(peer, timeTo, hopsTo);
+			}
+		}
+	}
+
+	/**
+	 * Returns the earliest arrival time at a node found by the latest search
+	 * @param node The node
+	 * @return The arrival time or {@link #UNREACHABLE}
+	 */
+	public double getArrival(int node) {
+		if (node >= arrival.length) {
+			return UNREACHABLE;
+		}
+		return arrival[node];
+	}
+
+	/**
+	 * Returns the first hop on the fastest path to a node found by the latest
+	 * search
+	 * @param node The node
+	 * @return Address of the first hop or -1 if the node is the source or
+	 * can't be reached
+	 */
+	public int getFirstHop(int node) {
+		if (node >= arrival.length) {
+			return -1;
+		}
+		return firstHop[node];
+	}
+
+	/**
+	 * Returns true if heap entry i is before the given arrival time and hops
+	 */
+	private boolean isBefore(int i, double time, int nrofHops) {
+		return heapTimes[i] < time ||
+			(heapTimes[i] == time && heapHops[i] < nrofHops);
+	}
+
+	private void push(int node, double time, int nrofHops) {
+		if (heapSize == heapNodes.length) {
+			int size = Math.max(16, heapSize * 2);
+			double[] times = new double[size];
+			int[] hs = new int[size];
+			int[] nodes = new int[size];
+			System.arraycopy(heapTimes, 0, times, 0, heapSize);
+			System.arraycopy(heapHops, 0, hs, 0, heapSize);
+			System.arraycopy(heapNodes, 0, nodes, 0, heapSize);
+			this.heapTimes = times;
+			this.heapHops = hs;
+			this.heapNodes = nodes;
+		}
+
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!isBefore(parent, time, nrofHops)) {
+				heapTimes[i] = heapTimes[parent];
+				heapHops[i] = heapHops[parent];
+				heapNodes[i] = heapNodes[parent];
+				i = parent;
+			}
+			else {
+				break;
+			}
+		}
+		heapTimes[i] = time;
+		heapHops[i] = nrofHops;
+		heapNodes[i] = node;
+	}
+
+	private int pop() {
+		int top = heapNodes[0];
+		heapSize--;
+		double time = heapTimes[heapSize];
+		int nrofHops = heapHops[heapSize];
+		int node = heapNodes[heapSize];
+
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize &&
+					isBefore(child + 1, heapTimes[child], heapHops[child])) {
+				child++;
+			}
+			if (!isBefore(child, time, nrofHops)) {
+				break;
+			}
+			heapTimes[i] = heapTimes[child];
+			heapHops[i] = heapHops[child];
+			heapNodes[i] = heapNodes[child];
+			i = child;
+		}
+		heapTimes[i] = time;
+		heapHops[i] = nrofHops;
+		heapNodes[i] = node;
+		return top;
+	}
+}
@@ -51,11 +51,19 @@ public class ScheduleDijkstra {
 	 * @param time The time when the path starts
 	 */
 	private void initWith(Integer node, double time) {	
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE, 
-				new DurationComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevHops = new HashMap<Integer, ScheduleEntry>();
-		this.times = new TimeMap();
+		if (this.unvisited == null) {
+			this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE, 
+					new DurationComparator());
+			this.visited = new HashSet<Integer>();
+			this.prevHops = new HashMap<Integer, ScheduleEntry>();
+			this.times = new TimeMap();
+		}
+		else { /* reuse the structures of the previous search */
+			this.unvisited.clear();
+			this.visited.clear();
+			this.prevHops.clear();
+			this.times.clear();
+		}
 		
 		this.times.put(node, time);
 		this.unvisited.add(node);
@@ -200,6 +208,13 @@ public class ScheduleDijkstra {
 			map.put(node, time);
 		}
 		
+		/**
+		 * Removes all time values from the map
+		 */
+		public void clear() {
+			map.clear();
+		}
+		
 		/**
 		 * Returns a string representation of the map's contents
 		 * @return a string representation of the map's contents
@@ -4,19 +4,37 @@
  */
 package routing.schedule;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Oracle that knows the schedules of all nodes. Each node's schedule is
+ * kept sorted by the start time so the entries after a given time can be
+ * found with a binary search.
+ */
 public class ScheduleOracle implements Serializable{
 	private static final long serialVersionUID = 42L;
 	
+	/** Orders schedule entries by their start time */
+	private static final Comparator<ScheduleEntry> TIME_ORDER =
+		new TimeComparator();
+	
 	Map<Integer, List<ScheduleEntry>> schedules;
+	/** nodes whose schedule list has to be sorted before the next query */
+	private Set<Integer> unsorted;
 	
 	public ScheduleOracle() {
 		this.schedules = new HashMap<Integer, List<ScheduleEntry>>();
+		this.unsorted = new HashSet<Integer>();
 	}
 	
 	/**
@@ -36,7 +54,12 @@ public class ScheduleOracle implements Serializable{
 			schedules.put(from, list);
 		}
 
-		list.add(new ScheduleEntry(start, from, via, to, duration));
+		ScheduleEntry se = new ScheduleEntry(start, from, via, to, duration);
+		if (list.size() > 0 && 
+				TIME_ORDER.compare(list.get(list.size() - 1), se) > 0) {
+			unsorted.add(from); /* not added in time order */
+		}
+		list.add(se);
 	}
 
 	/**
@@ -58,20 +81,52 @@ public class ScheduleOracle implements Serializable{
 	 * @return List of reachable nodes 
 	 */
 	public List<ScheduleEntry> getConnected(int from, double time) {
-		List<ScheduleEntry> connected = new ArrayList<ScheduleEntry>();
 		List<ScheduleEntry> all = schedules.get(from);
 
 		if (all == null) {
-			return connected;
+			return new ArrayList<ScheduleEntry>();
+		}
+		if (unsorted.remove(from)) {
+			Collections.sort(all, TIME_ORDER);
 		}
 		
-		for (ScheduleEntry s : all) {
-			if (s.getTime() >= time) {
-				connected.add(s);
+		/* binary search for the first entry that starts at or after time */
+		int low = 0;
+		int high = all.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (all.get(mid).getTime() < time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
 			}
 		}
 		
-		return connected;
+		return new ArrayList<ScheduleEntry>(all.subList(low, all.size()));
+	}
+	
+	/**
+	 * Marks all schedules unsorted. Must be called if the delta of any
+	 * entry is changed after the entry was added to the oracle.
+	 * @see ScheduleEntry#setDelta(double)
+	 */
+	public void entriesChanged() {
+		unsorted.addAll(schedules.keySet());
+	}
+	
+	/**
+	 * Reads the oracle from a stream. Oracles serialized before the sorted
+	 * schedule lists don't have the unsorted set so all their schedules are
+	 * marked unsorted.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		if (this.unsorted == null) {
+			this.unsorted = new HashSet<Integer>();
+			entriesChanged();
+		}
 	}
 	
 	/**
@@ -88,4 +143,16 @@ public class ScheduleOracle implements Serializable{
 		
 		return entries;
 	}
+	
+	/**
+	 * Compares schedule entries by their start time
+	 */
+	private static class TimeComparator implements Comparator<ScheduleEntry>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+
+		public int compare(ScheduleEntry e1, ScheduleEntry e2) {
+			return Double.compare(e1.getTime(), e2.getTime());
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests for the sending connection bookkeeping of ActiveRouter
+ */
+public class ActiveRouterTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		setRouterProto(new SendingRouter(ts));
+		super.setUp();
+	}
+
+	private static Connection getConnection(DTNHost from, DTNHost to) {
+		for (Connection c : from.getConnections()) {
+			if (c.getOtherNode(from) == to) {
+				return c;
+			}
+		}
+		fail("No connection from " + from + " to " + to);
+		return null;
+	}
+
+	public void testSendingIndex() {
+		SendingRouter r1 = (SendingRouter)h1.getRouter();
+		h1.createNewMessage(new Message(h1, h5, msgId1, 10));
+		h1.createNewMessage(new Message(h1, h5, msgId2, 10));
+		h1.connect(h2);
+		Connection c = getConnection(h1, h2);
+		assertFalse(r1.isSending(msgId1));
+
+		assertEquals(MessageRouter.RCV_OK,
+				r1.send(msgId1, c));
+		assertTrue(r1.isSending(msgId1));
+		assertFalse(r1.isSending(msgId2));
+
+		clock.advance(1);
+		h1.update(true); // finalizes the transfer
+		assertFalse(r1.isSending(msgId1));
+		assertEquals(0, r1.getNrofSendingConnections());
+	}
+
+	public void testSameMessageOverTwoConnections() {
+		SendingRouter r1 = (SendingRouter)h1.getRouter();
+		h1.createNewMessage(new Message(h1, h5, msgId1, 10));
+		h1.connect(h2);
+		h1.connect(h3);
+		Connection c2 = getConnection(h1, h2);
+		Connection c3 = getConnection(h1, h3);
+
+		assertEquals(MessageRouter.RCV_OK,
+				r1.send(msgId1, c2));
+		assertEquals(MessageRouter.RCV_OK,
+				r1.send(msgId1, c3));
+
+		/* the latest transfer ends but c2 is still sending the message */
+		c3.abortTransfer();
+		assertTrue(r1.isSending(msgId1));
+		h1.update(true);
+		assertEquals(1, r1.getNrofSendingConnections());
+		assertTrue(r1.isSending(msgId1));
+
+		/* and the other way around */
+		assertEquals(MessageRouter.RCV_OK,
+				r1.send(msgId1, c3));
+		c2.abortTransfer();
+		assertTrue(r1.isSending(msgId1));
+		c3.abortTransfer();
+		assertFalse(r1.isSending(msgId1));
+		h1.update(true);
+		assertEquals(0, r1.getNrofSendingConnections());
+	}
+
+	public void testPurgeMessages() {
+		SendingRouter r1 = (SendingRouter)h1.getRouter();
+		h1.createNewMessage(new Message(h1, h5, msgId1, 10));
+		h1.createNewMessage(new Message(h1, h5, msgId2, 10));
+		h1.createNewMessage(new Message(h1, h5, msgId3, 10));
+		checkCreates(3);
+		h1.connect(h2);
+		Connection c = getConnection(h1, h2);
+		assertEquals(MessageRouter.RCV_OK,
+				r1.send(msgId1, c));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+
+		r1.purge(Arrays.asList(msgId1, msgId2, "not-in-buffer"));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_ABORT, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+
+		assertFalse(r1.isSending(msgId1));
+		assertTrue(c.isReadyForTransfer());
+		assertFalse(r1.has(msgId1));
+		assertFalse(r1.has(msgId2));
+		assertTrue(r1.has(msgId3));
+	}
+
+	/**
+	 * Router that doesn't start transfers by itself but lets the test start
+	 * them and purge messages
+	 */
+	private static class SendingRouter extends EpidemicRouter {
+		public SendingRouter(Settings s) {
+			super(s);
+		}
+
+		protected SendingRouter(SendingRouter r) {
+			super(r);
+		}
+
+		@Override
+		protected boolean canStartTransfer() {
+			return false;
+		}
+
+		public int send(String id, Connection con) {
+			return startTransfer(getMessage(id), con);
+		}
+
+		public boolean has(String id) {
+			return hasMessage(id);
+		}
+
+		public void purge(Collection<String> ids) {
+			purgeMessages(ids, false);
+		}
+
+		public int getNrofSendingConnections() {
+			return this.sendingConnections.size();
+		}
+
+		@Override
+		public SendingRouter replicate() {
+			return new SendingRouter(this);
+		}
+	}
+}
@@ -69,6 +69,23 @@ public class ActivenessHandlerTest extends TestCase {
 		assertFalse(ah.isActive());
 
 	}
+
+	public void testNextActiveTime() {
+		assertEquals(in, ah.getNextActiveTime());
+		clock.setTime(5);
+		assertEquals(5.0, ah.getNextActiveTime());
+		clock.setTime(50);
+		assertEquals(100.0, ah.getNextActiveTime());
+
+		// skips the ranges that have passed
+		clock.setTime(300);
+		assertEquals(350.0, ah.getNextActiveTime());
+		clock.setTime(350);
+		assertTrue(ah.isActive());
+
+		clock.setTime(401);
+		assertEquals(Double.MAX_VALUE, ah.getNextActiveTime());
+	}
 	
 }
 
@@ -31,6 +31,8 @@ public class AllTests {
 		suite.addTestSuite(WKTPointReaderTest.class);
 		suite.addTestSuite(MapNodeTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
+		suite.addTestSuite(PathTest.class);
+		suite.addTestSuite(MovementKernelTest.class);
 		suite.addTestSuite(CoordTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
@@ -47,8 +49,25 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(ContactPlanTest.class);
+		suite.addTestSuite(KineticContactsTest.class);
+		suite.addTestSuite(SparseConnectivityGridTest.class);
+		suite.addTestSuite(ContentionDomainsTest.class);
+		suite.addTestSuite(ScheduleDijkstraTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(MetricsRegistryTest.class);
+		suite.addTestSuite(RandomStreamsTest.class);
+		suite.addTestSuite(CongestionControllerTest.class);
+		suite.addTestSuite(EnergyLedgerTest.class);
+		suite.addTestSuite(ActiveRouterTest.class);
+		suite.addTestSuite(ContactPlanRouterTest.class);
+		suite.addTestSuite(EpidemicOracleRouterTest.class);
+		suite.addTestSuite(DTNHostMovementTest.class);
+		suite.addTestSuite(InterferenceLimitedInterfaceTest.class);
+		suite.addTestSuite(TransferEventsTest.class);
+		suite.addTestSuite(EventLogBufferTest.class);
+		suite.addTestSuite(ControlServerTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,179 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.ActiveRouter;
+import routing.MessageRouter;
+import routing.ProphetRouter;
+import routing.congestion.AIADController;
+import routing.congestion.AIMDController;
+import routing.congestion.CongestionController;
+import core.CBRConnection;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MetricsRegistry;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the congestion controllers of the routing.congestion package
+ */
+public class CongestionControllerTest extends TestCase {
+	private DTNHost h1;
+	private DTNHost h2;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		MetricsRegistry.reset();
+		ts = new TestSettings();
+		h1 = createHost();
+		h2 = createHost();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		new TestSettings(); // don't leave the router settings for others
+	}
+
+	private DTNHost createHost() {
+		NetworkInterface ni = new TestInterface(1.0,1);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		comBus.addProperty(NetworkInterface.RANGE_ID, 1.0);
+		comBus.addProperty(NetworkInterface.SPEED_ID, 1);
+		return new TestDTNHost(li,comBus);
+	}
+
+	private Connection connect() {
+		return new CBRConnection(h1, h1.getInterfaces().get(0), h2,
+				h2.getInterfaces().get(0), 1);
+	}
+
+	private CongestionController create(CongestionController proto) {
+		CongestionController c = proto.replicate();
+		c.init(h1);
+		return c;
+	}
+
+	public void testQuota() {
+		CongestionController cc = create(new AIMDController(ts));
+		Connection con = connect();
+		assertFalse(cc.hasQuota(con));
+
+		cc.connectionUp(con);
+		assertTrue(cc.hasQuota(con));
+		cc.transferStarted(con);
+		assertFalse(cc.hasQuota(con)); // initial limit is one
+
+		/* no drops -> limit increases */
+		cc.messageReplicated();
+		cc.connectionDown(con, null, 0);
+		assertEquals(2, cc.getLimit());
+		assertEquals(0.0, cc.getCongestionValue());
+
+		Connection con2 = connect();
+		cc.connectionUp(con2);
+		cc.transferStarted(con2);
+		assertTrue(cc.hasQuota(con2));
+		cc.transferStarted(con2);
+		assertFalse(cc.hasQuota(con2));
+		assertEquals(1, MetricsRegistry.counter("rr.reps").getCount());
+	}
+
+	/**
+	 * Congestion control must work with routers that aren't written for it
+	 * (i.e., override changedConnection)
+	 */
+	public void testNonRRRouter() {
+		ts.putSetting(MessageRouter.B_SIZE_S, "100");
+		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+				ProphetRouter.SECONDS_IN_UNIT_S, "60");
+		ts.putSetting(ActiveRouter.CONGESTION_CONTROL_S, "AIMDController");
+
+		MessageChecker mc = new MessageChecker();
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(mc);
+		TestUtils utils = new TestUtils(null, ml, ts);
+		utils.setMessageRouterProto(new ProphetRouter(ts));
+		DTNHost from = utils.createHost(new Coord(0,0), "from");
+		DTNHost to = utils.createHost(new Coord(0,0), "to");
+		assertNotNull(((ActiveRouter)from.getRouter()).
+				getCongestionController());
+
+		from.createNewMessage(new Message(from, to, "M1", 1));
+		from.createNewMessage(new Message(from, to, "M2", 1));
+		assertTrue(mc.next());
+		assertTrue(mc.next());
+
+		from.connect(to);
+		from.update(true);
+		to.update(true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(to, mc.getLastTo());
+
+		/* initial limit of one message per connection is used up */
+		SimClock.getInstance().advance(1);
+		from.update(true);
+		to.update(true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertFalse(mc.next());
+	}
+
+	public void testAIMD() {
+		ts.putSetting(AIMDController.AI_S, "2");
+		ts.putSetting(AIMDController.MD_S, "0.5");
+		CongestionController cc = create(new AIMDController(ts));
+		CongestionController peer = create(new AIMDController(ts));
+
+		cc.messageReplicated();
+		cc.connectionDown(connect(), peer, 0);
+		cc.connectionDown(connect(), peer, 0);
+		assertEquals(5, cc.getLimit());
+
+		/* drops from both hosts: (1+1) / (1 + 1 + 2 hops) */
+		cc.messageDropped();
+		cc.messageReplicated();
+		peer.messageDropped();
+		peer.messageReplicated();
+		cc.connectionDown(connect(), peer, 2);
+		assertEquals(0.9 * 0.5, cc.getCongestionValue(), 0.00001);
+		assertEquals(3, cc.getLimit());
+		assertEquals(0, cc.getNrofDrops());
+		assertEquals(1, peer.getNrofDrops());
+		assertEquals(2, cc.getDropRepHistory().size());
+		assertEquals(3, cc.getCVHistory().size());
+	}
+
+	public void testAIAD() {
+		CongestionController cc = create(new AIADController(ts));
+		cc.messageReplicated();
+		cc.connectionDown(connect(), null, 0);
+		assertEquals(2, cc.getLimit());
+		cc.messageDropped();
+		cc.connectionDown(connect(), null, 0);
+		assertEquals(3, cc.getLimit()); // no reps -> CV is not updated
+		cc.messageDropped();
+		cc.messageReplicated();
+		cc.connectionDown(connect(), null, 0);
+		assertEquals(2, cc.getLimit());
+		cc.messageDropped();
+		cc.messageReplicated();
+		cc.connectionDown(connect(), null, 0);
+		assertEquals(1, cc.getLimit()); // never under one
+	}
+}
@@ -0,0 +1,126 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+
+import routing.ContactPlanRouter;
+import routing.MessageRouter;
+import core.Message;
+
+/**
+ * Tests for ContactPlanRouter
+ */
+public class ContactPlanRouterTest extends AbstractRouterTest {
+	/** the contact plan of the tests: 1-2 and 1-4 at 10-20, 2-3 at 30-40
+	 * and 1-3 at 100-110 */
+	private static final String[] PLAN = {
+		"10 CONN 1 2 up", "10 CONN 1 4 up",
+		"20 CONN 1 2 down", "20 CONN 1 4 down",
+		"30 CONN 2 3 up", "40 CONN 2 3 down",
+		"100 CONN 1 3 up", "110 CONN 1 3 down"};
+
+	private File planFile;
+
+	@Override
+	public void setUp() throws Exception {
+		planFile = File.createTempFile("contactplan", ".txt");
+		planFile.deleteOnExit();
+		PrintWriter out = new PrintWriter(new FileWriter(planFile));
+		for (String line : PLAN) {
+			out.println(line);
+		}
+		out.close();
+
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ContactPlanRouter.CONTACT_PLAN_NS + "." +
+				ContactPlanRouter.PLAN_FILE_S, planFile.getAbsolutePath());
+		setRouterProto(new ContactPlanRouter(ts));
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		planFile.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that a message goes along the earliest arrival path and that
+	 * only one copy of it exists
+	 */
+	public void testEarliestArrivalPath() {
+		clock.setTime(10);
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h5, msgId2, 1));
+		checkCreates(2);
+
+		h1.connect(h4);
+		h1.connect(h2);
+		updateAllNodes();
+
+		/* via 2 the message arrives at 30, directly only at 100 */
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertEquals(h2, mc.getLastTo());
+
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(h2, mc.getLastTo());
+		assertFalse(mc.next()); // no path for the message to h5
+
+		assertEquals(1, h1.getNrofMessages());
+		assertEquals(1, h2.getNrofMessages());
+		assertEquals(0, h4.getNrofMessages());
+
+		disconnect(h1);
+		clock.setTime(30);
+		h2.connect(h3);
+		updateAllNodes();
+		clock.advance(1);
+		updateAllNodes();
+
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h2, mc.getLastFrom());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertTrue(mc.getLastFirstDelivery());
+		assertEquals(h3, mc.getLastTo());
+		assertFalse(mc.next());
+		assertEquals(0, h2.getNrofMessages());
+	}
+
+	/**
+	 * Tests that a host doesn't accept a message it has already relayed
+	 */
+	public void testDenyRevisit() {
+		clock.setTime(10);
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		checkCreates(1);
+		h1.connect(h2);
+		updateAllNodes();
+		clock.advance(1);
+		updateAllNodes();
+		assertEquals(0, h1.getNrofMessages());
+		assertEquals(1, h2.getNrofMessages());
+
+		Message m = h2.getMessageCollection().iterator().next();
+		assertEquals(MessageRouter.DENIED_OLD,
+				h1.getRouter().receiveMessage(m.replicate(), h2));
+		assertEquals(MessageRouter.RCV_OK,
+				h6.getRouter().receiveMessage(m.replicate(), h2));
+	}
+}
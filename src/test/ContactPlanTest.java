@@ -0,0 +1,80 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import routing.schedule.ContactPlan;
+import routing.schedule.ContactPlanDijkstra;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the contact plan and its earliest arrival search
+ */
+public class ContactPlanTest extends TestCase {
+
+	private ContactPlan plan;
+	private ContactPlanDijkstra d;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		plan = new ContactPlan();
+		d = new ContactPlanDijkstra(plan);
+
+		plan.addContact(0, 1, 10, 20);
+		plan.addContact(1, 2, 5, 8);
+		plan.addContact(1, 3, 30, 40);
+		plan.addContact(0, 3, 50, 60);
+	}
+
+	public void testFirstUsable() {
+		assertEquals(3, plan.getNrofContacts(1));
+		assertEquals(0, plan.firstUsable(1, 0));
+		assertEquals(0, plan.firstUsable(1, 7));
+		/* the 1-2 contact ends at 8 */
+		assertEquals(1, plan.firstUsable(1, 8));
+		assertEquals(2, plan.firstUsable(1, 20));
+		assertEquals(3, plan.getPeer(1, 2));
+		assertEquals(3, plan.firstUsable(1, 40));
+		assertEquals(0, plan.firstUsable(7, 0)); /* not in the plan */
+	}
+
+	public void testEarliestArrival() {
+		assertEquals(10.0, d.getEarliestArrival(0, 1, 0));
+		/* contact is ongoing at the start time */
+		assertEquals(12.0, d.getEarliestArrival(0, 1, 12));
+		/* the 1-2 contact ends before 0 meets 1 */
+		assertEquals(ContactPlanDijkstra.UNREACHABLE,
+				d.getEarliestArrival(0, 2, 0));
+		assertEquals(10.0, d.getEarliestArrival(2, 0, 0));
+		/* via 1 is faster than the direct contact */
+		assertEquals(30.0, d.getEarliestArrival(0, 3, 0));
+		/* too late for the path via 1 */
+		assertEquals(50.0, d.getEarliestArrival(0, 3, 25));
+		assertEquals(ContactPlanDijkstra.UNREACHABLE,
+				d.getEarliestArrival(0, 3, 60));
+	}
+
+	public void testFirstHops() {
+		d.search(2, 0);
+		assertEquals(-1, d.getFirstHop(2));
+		assertEquals(1, d.getFirstHop(1));
+		assertEquals(1, d.getFirstHop(0));
+		assertEquals(1, d.getFirstHop(3));
+		assertEquals(30.0, d.getArrival(3));
+
+		/* the workspace is reused: results are from the latest search */
+		d.search(3, 45);
+		assertEquals(0, d.getFirstHop(0));
+		assertEquals(50.0, d.getArrival(0));
+		assertEquals(ContactPlanDijkstra.UNREACHABLE, d.getArrival(2));
+		assertEquals(-1, d.getFirstHop(2));
+	}
+
+	public void testAddingContactsAfterSearch() {
+		assertEquals(ContactPlanDijkstra.UNREACHABLE,
+				d.getEarliestArrival(0, 4, 0));
+		plan.addContact(3, 4, 35, 36);
+		assertEquals(35.0, d.getEarliestArrival(0, 4, 0));
+	}
+}
@@ -0,0 +1,56 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.ContentionDomains;
+import junit.framework.TestCase;
+import core.Coord;
+
+/**
+ * Tests for the contention domain accounting
+ */
+public class ContentionDomainsTest extends TestCase {
+	private ContentionDomains domains;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ContentionDomains.reset();
+		domains = ContentionDomains.ContentionDomainsFactory(1, 10);
+	}
+
+	public void testCounts() {
+		long a = domains.getCell(new Coord(5, 5));
+		long near = domains.getCell(new Coord(15, -5));
+		long far = domains.getCell(new Coord(35, 5));
+		assertEquals(a, domains.getCell(new Coord(9.9, 0)));
+
+		domains.addTransmitter(a);
+		domains.addTransmitter(a);
+		domains.addTransmitter(near);
+		domains.addTransmitter(far);
+		assertEquals(3, domains.getNrofTransmitters(a));
+		assertEquals(3, domains.getNrofTransmitters(near));
+		assertEquals(1, domains.getNrofTransmitters(far));
+		assertEquals(3, domains.getNrofCells());
+
+		domains.removeTransmitter(a);
+		domains.removeTransmitter(near);
+		assertEquals(1, domains.getNrofTransmitters(near));
+		assertEquals(2, domains.getNrofCells());
+	}
+
+	public void testSharedByKey() {
+		assertSame(domains, ContentionDomains.ContentionDomainsFactory(1, 10));
+		assertNotSame(domains,
+				ContentionDomains.ContentionDomainsFactory(2, 10));
+	}
+
+	public void testSpeedDivisor() {
+		for (int n = 2; n < 100; n++) {
+			assertEquals(Math.sqrt(n * Math.log(n)),
+					ContentionDomains.getSpeedDivisor(n), 0.0);
+		}
+	}
+}
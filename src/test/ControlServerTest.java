@@ -0,0 +1,174 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Scanner;
+
+import junit.framework.TestCase;
+import ui.ControlServer;
+import ui.DTNSimServerUI;
+
+/**
+ * Tests for the ControlServer
+ */
+public class ControlServerTest extends TestCase {
+	private ControlServer server;
+	private File tokenFile;
+	private String token;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tokenFile = File.createTempFile("controltest", ".token");
+		tokenFile.deleteOnExit();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(ControlServer.SETTINGS_NS + "." +
+				ControlServer.TOKEN_FILE_S, tokenFile.getPath());
+		server = new ControlServer();
+		server.start();
+		token = new String(Files.readAllBytes(tokenFile.toPath()),
+				StandardCharsets.US_ASCII);
+	}
+
+	protected void tearDown() throws Exception {
+		server.stop();
+		tokenFile.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Sends a request to the server
+	 * @return The response code and the body separated by a space
+	 */
+	private String request(String method, String path, String reqToken)
+			throws IOException {
+		URL url = new URL("http://127.0.0.1:" + server.getPort() + path);
+		HttpURLConnection con = (HttpURLConnection)url.openConnection();
+		con.setRequestMethod(method);
+		if (reqToken != null) {
+			con.setRequestProperty(ControlServer.TOKEN_HEADER, reqToken);
+		}
+		int code = con.getResponseCode();
+		InputStream in = (code == 200 ? con.getInputStream() :
+			con.getErrorStream());
+		Scanner s = new Scanner(in, "UTF-8").useDelimiter("\\A");
+		String body = s.hasNext() ? s.next() : "";
+		s.close();
+		return code + " " + body;
+	}
+
+	public void testQuote() {
+		assertEquals("\"abc\"", ControlServer.quote("abc"));
+		assertEquals("\"\"", ControlServer.quote(""));
+		assertEquals("\"a\\\"b\\\\c\"", ControlServer.quote("a\"b\\c"));
+		assertEquals("\"a\\u000ab\\u0009\"", ControlServer.quote("a\nb\t"));
+		assertEquals("\"\u00e4\"", ControlServer.quote("\u00e4"));
+	}
+
+	public void testNumber() {
+		assertEquals("1.5", ControlServer.number(1.5));
+		assertEquals("-0.25", ControlServer.number(-0.25));
+		assertEquals("null", ControlServer.number(Double.NaN));
+		assertEquals("null", ControlServer.number(Double.POSITIVE_INFINITY));
+		assertEquals("null", ControlServer.number(Double.NEGATIVE_INFINITY));
+	}
+
+	public void testTokenFile() throws IOException {
+		assertEquals(tokenFile.getPath(), server.getTokenFile());
+		assertEquals(32, token.length());
+		Path p = tokenFile.toPath();
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains(
+				"posix")) {
+			assertEquals("rw-------", PosixFilePermissions.toString(
+					Files.getPosixFilePermissions(p)));
+		}
+
+		/* the file is replaced by the next server with a new token */
+		ControlServer other = new ControlServer();
+		other.start();
+		assertFalse(token.equals(new String(Files.readAllBytes(p),
+				StandardCharsets.US_ASCII)));
+		other.stop();
+		assertFalse(tokenFile.exists());
+	}
+
+	public void testDefaultPortAndTokenFile() throws IOException {
+		new TestSettings();
+		ControlServer other = new ControlServer();
+		other.start();
+		assertTrue(other.getPort() > 0);
+		assertTrue(other.getPort() != server.getPort());
+		Path p = Paths.get(other.getTokenFile());
+		assertTrue(Files.exists(p));
+		other.stop();
+		assertFalse(Files.exists(p));
+	}
+
+	public void testStatus() throws IOException {
+		String response = request("GET", "/status", null);
+		assertTrue(response, response.startsWith("200 {\"run\":0,"));
+		assertTrue(response, response.contains("\"state\":\"starting\""));
+	}
+
+	public void testRouting() throws IOException {
+		assertEquals("404 {\"error\":\"unknown path\"}",
+				request("GET", "/nothing", token));
+		assertEquals("404 {\"error\":\"unknown path\"}",
+				request("POST", "/nothing", token));
+		assertEquals("405 {\"error\":\"use POST\"}",
+				request("GET", "/pause", token));
+		assertEquals("409 {\"error\":\"no run to control\"}",
+				request("POST", "/pause", token));
+
+		DTNSimServerUI run = new DTNSimServerUI(server);
+		server.setRun(run, 0, 1);
+		assertEquals("200 {\"state\":\"paused\"}",
+				request("POST", "/pause", token));
+		assertEquals("200 {\"state\":\"starting\"}",
+				request("POST", "/resume", token));
+		assertEquals("200 {\"state\":\"cancelled\"}",
+				request("POST", "/cancel", token));
+		assertFalse(server.isStopped());
+
+		server.setRun(new DTNSimServerUI(server), 1, 1);
+		assertEquals("200 {\"state\":\"cancelled\"}",
+				request("POST", "/stop", token));
+		assertTrue(server.isStopped());
+	}
+
+	/**
+	 * Tests that a stop request before the first run stops the batch
+	 */
+	public void testStopWithoutRun() throws IOException {
+		assertEquals("200 {\"state\":null}", request("POST", "/stop", token));
+		assertTrue(server.isStopped());
+	}
+
+	public void testPostNeedsToken() throws IOException {
+		DTNSimServerUI run = new DTNSimServerUI(server);
+		server.setRun(run, 0, 1);
+		String denied = "403 {\"error\":\"invalid token\"}";
+
+		for (String path : new String[] {"/pause", "/resume", "/cancel",
+				"/stop"}) {
+			assertEquals(path, denied, request("POST", path, null));
+			assertEquals(path, denied, request("POST", path, "wrong"));
+			assertEquals(path, denied, request("POST", path,
+					token.substring(1)));
+		}
+		assertEquals(DTNSimServerUI.STATE_STARTING, run.getState());
+		assertFalse(server.isStopped());
+	}
+}
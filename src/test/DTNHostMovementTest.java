@@ -0,0 +1,260 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests that the positions a host calculates from its movement segments
+ * are the same as the ones given by moving the host step by step towards
+ * its waypoints
+ */
+public class DTNHostMovementTest extends TestCase {
+	private static final double DELTA = 1e-9;
+	private TestUtils utils;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	private void assertLocation(StepMover expected, DTNHost host) {
+		Coord loc = host.getLocation();
+		assertEquals(expected.location.getX(), loc.getX(), DELTA);
+		assertEquals(expected.location.getY(), loc.getY(), DELTA);
+	}
+
+	private void runAndCompare(double[] increments, int rounds) {
+		DTNHost eager = utils.createHost(new PolygonMovement(), null);
+		DTNHost lazy = utils.createHost(new PolygonMovement(), null);
+		StepMover ref = new StepMover(new PolygonMovement());
+
+		for (int i=0; i < rounds; i++) {
+			double dt = increments[i % increments.length];
+			ref.move(dt);
+			eager.move(dt);
+			lazy.move(dt);
+			clock.advance(dt);
+
+			assertLocation(ref, eager);
+			if (i % 13 == 0) { // the lazy host is asked only now and then
+				assertLocation(ref, lazy);
+			}
+			if (ref.isMoving()) {
+				Coord end = eager.getSegmentEnd();
+				assertEquals(ref.destination.getX(), end.getX(), DELTA);
+				assertEquals(ref.destination.getY(), end.getY(), DELTA);
+				double endTime = SimClock.getTime() +
+					ref.location.distance(ref.destination) / ref.speed;
+				assertEquals(endTime, eager.getSegmentEndTime(), 1e-6);
+			}
+		}
+		assertLocation(ref, lazy);
+	}
+
+	public void testSmallSteps() {
+		runAndCompare(new double[] {0.1}, 2000);
+	}
+
+	public void testVaryingSteps() {
+		runAndCompare(new double[] {0.1, 0.75, 1.3, 0.05, 2.2}, 1000);
+	}
+
+	public void testStepsOverSeveralWaypoints() {
+		/* a step can pass several waypoints and the pause between paths */
+		runAndCompare(new double[] {7.5, 0.5, 12.25}, 300);
+	}
+
+	public void testSetLocation() {
+		DTNHost host = utils.createHost(new PolygonMovement(), null);
+		StepMover ref = new StepMover(new PolygonMovement());
+		for (int i=0; i < 50; i++) {
+			ref.move(0.5);
+			host.move(0.5);
+			clock.advance(0.5);
+		}
+		assertLocation(ref, host);
+
+		ref.location.setLocation(35, 12);
+		host.setLocation(new Coord(35, 12));
+		for (int i=0; i < 200; i++) {
+			ref.move(0.3);
+			host.move(0.3);
+			clock.advance(0.3);
+			assertLocation(ref, host);
+		}
+	}
+
+	public void testGetPathIsCopy() {
+		DTNHost host = utils.createHost(new PolygonMovement(), null);
+		host.move(0.1);
+		clock.advance(0.1);
+		Path p = host.getPath();
+		assertNotSame(p, host.getPath());
+		List<Coord> coords = p.getCoords();
+		assertEquals(new Coord(40, 3), coords.get(0));
+
+		/* the traveled path is recycled and reused for the next paths */
+		for (int i=0; i < 400; i++) {
+			host.move(0.5);
+			clock.advance(0.5);
+		}
+		assertEquals(coords, p.getCoords());
+	}
+
+	public void testDestinationsAreCopies() {
+		final List<Coord> destinations = new ArrayList<Coord>();
+		List<MovementListener> movLs = new ArrayList<MovementListener>();
+		movLs.add(new MovementListener() {
+			public void newDestination(DTNHost host, Coord destination,
+					double speed) {
+				destinations.add(destination);
+			}
+			public void initialLocation(DTNHost host, Coord location) { }
+		});
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(1.0, 1));
+		DTNHost host = new DTNHost(null, movLs, "m", li,
+				new ModuleCommunicationBus(), new PolygonMovement(),
+				new PassiveRouter(new TestSettings()));
+
+		for (int i=0; i < 100; i++) {
+			host.move(0.5);
+			clock.advance(0.5);
+		}
+		assertTrue(destinations.size() > 2);
+		for (int i=1; i < destinations.size(); i++) {
+			assertFalse(destinations.get(i - 1).equals(destinations.get(i)));
+		}
+
+		/* changing the returned end point doesn't change the segment */
+		Coord end = host.getSegmentEnd();
+		Coord expected = end.clone();
+		end.setLocation(-1, -1);
+		assertEquals(expected, host.getSegmentEnd());
+		assertEquals(expected, destinations.get(destinations.size() - 1));
+	}
+
+	/**
+	 * Moves a host like the hosts were moved before the segments were
+	 * evaluated analytically: towards the next waypoint by the distance
+	 * the host can travel during each step
+	 */
+	private class StepMover {
+		private MovementModel movement;
+		private Path path;
+		private Coord location;
+		private Coord destination;
+		private double speed;
+		private double nextTimeToMove;
+
+		public StepMover(MovementModel movement) {
+			this.movement = movement;
+			this.location = movement.getInitialLocation();
+			this.nextTimeToMove = movement.nextPathAvailable();
+		}
+
+		public boolean isMoving() {
+			return destination != null && path != null &&
+				!location.equals(destination);
+		}
+
+		public void move(double timeIncrement) {
+			if (SimClock.getTime() < nextTimeToMove) {
+				return;
+			}
+			if (destination == null && !setNextWaypoint()) {
+				return;
+			}
+
+			double possibleMovement = timeIncrement * speed;
+			double distance = location.distance(destination);
+			while (possibleMovement >= distance) {
+				location.setLocation(destination);
+				possibleMovement -= distance;
+				if (!setNextWaypoint()) {
+					return;
+				}
+				distance = location.distance(destination);
+			}
+
+			double dx = (possibleMovement/distance) *
+				(destination.getX() - location.getX());
+			double dy = (possibleMovement/distance) *
+				(destination.getY() - location.getY());
+			location.translate(dx, dy);
+		}
+
+		private boolean setNextWaypoint() {
+			if (path == null) {
+				path = movement.getPath();
+			}
+			if (path == null || !path.hasNext()) {
+				nextTimeToMove = movement.nextPathAvailable();
+				path = null;
+				return false;
+			}
+			destination = path.getNextWaypoint();
+			speed = path.getSpeed();
+			return true;
+		}
+	}
+
+	/**
+	 * Movement around a polygon with a different speed on every path and a
+	 * pause between the paths
+	 */
+	private static class PolygonMovement extends MovementModel {
+		private static final Coord[] CORNERS = {new Coord(0, 0),
+			new Coord(40, 3), new Coord(37, 29), new Coord(11, 41.5),
+			new Coord(-6, 17)};
+		private int nrofPaths;
+
+		@Override
+		public Coord getInitialLocation() {
+			return CORNERS[0].clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			nrofPaths++;
+			Path p = newPath(0.7 + (nrofPaths % 4) * 1.1);
+			for (int i=1; i <= CORNERS.length; i++) {
+				p.addWaypoint(CORNERS[(i * nrofPaths) % CORNERS.length]);
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + (nrofPaths % 3) * 2.5;
+		}
+
+		@Override
+		public PolygonMovement replicate() {
+			return new PolygonMovement();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.EnergyLedger;
+import core.ModuleCommunicationBus;
+import core.SimError;
+
+public class EnergyLedgerTest extends TestCase {
+	private EnergyLedger ledger;
+	private List<Integer> depleted;
+	private EnergyLedger.Listener listener;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		EnergyLedger.reset();
+		this.ledger = EnergyLedger.getInstance();
+		this.depleted = new ArrayList<Integer>();
+		this.listener = new EnergyLedger.Listener() {
+			public void energyDepleted(int address) {
+				depleted.add(address);
+			}
+		};
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		EnergyLedger.reset();
+	}
+
+	public void testBatchedDebits() {
+		ledger.register(0, 10.0, null, listener);
+		ledger.register(3, 5.0, null, listener);
+		assertFalse(ledger.isRegistered(1));
+		assertTrue(ledger.isRegistered(3));
+
+		ledger.debit(0, 1.5);
+		ledger.debit(3, 2.0);
+		ledger.debit(0, 0.5);
+		assertEquals(10.0, ledger.getBalance(0)); /* not applied yet */
+
+		ledger.applyDebits();
+		assertEquals(8.0, ledger.getBalance(0));
+		assertEquals(3.0, ledger.getBalance(3));
+
+		ledger.applyDebits(); /* debits are applied only once */
+		assertEquals(8.0, ledger.getBalance(0));
+		assertTrue(depleted.isEmpty());
+	}
+
+	public void testDepletion() {
+		ledger.register(0, 1.0, null, listener);
+		ledger.register(1, 1.0, null, listener);
+
+		ledger.debit(0, 0.6);
+		ledger.applyDebits();
+		assertFalse(ledger.isDepleted(0));
+
+		ledger.debit(0, 0.6);
+		ledger.debit(1, 1.0);
+		ledger.applyDebits();
+		assertEquals(0.0, ledger.getBalance(0)); /* not below zero */
+		assertEquals(0.0, ledger.getBalance(1));
+		assertTrue(ledger.isDepleted(0));
+		assertTrue(ledger.isDepleted(1));
+		assertEquals(2, depleted.size());
+
+		ledger.debit(0, 1.0);
+		ledger.applyDebits();
+		assertEquals(2, depleted.size()); /* told only once */
+
+		ledger.setBalance(0, 2.0); /* recharged */
+		assertFalse(ledger.isDepleted(0));
+		ledger.debit(0, 3.0);
+		ledger.applyDebits();
+		assertEquals(3, depleted.size());
+		assertEquals(0, (int)depleted.get(2));
+	}
+
+	public void testDepletedAtDebit() {
+		ledger.register(0, 1.0, null, listener);
+		ledger.debit(0, 0.4);
+		assertFalse(ledger.isDepleted(0));
+		ledger.debit(0, 0.6); /* crosses zero */
+		assertTrue(ledger.isDepleted(0));
+		assertEquals(1, depleted.size());
+		assertEquals(1.0, ledger.getBalance(0)); /* not applied yet */
+
+		ledger.debit(0, 0.5);
+		ledger.applyDebits();
+		assertEquals(0.0, ledger.getBalance(0));
+		assertEquals(1, depleted.size()); /* told only once */
+
+		/* recharged during a round with debits left to apply */
+		ledger.setBalance(0, 2.0);
+		ledger.debit(0, 1.5);
+		ledger.setBalance(0, 1.0);
+		assertTrue(ledger.isDepleted(0));
+		assertEquals(2, depleted.size());
+		ledger.applyDebits();
+		assertEquals(0.0, ledger.getBalance(0));
+		assertEquals(2, depleted.size());
+	}
+
+	public void testComBus() {
+		ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		ledger.register(2, 4.0, comBus, null);
+		assertEquals(4.0, comBus.getDouble(
+				EnergyLedger.ENERGY_VALUE_KEY, -1));
+		ledger.debit(2, 1.0);
+		ledger.applyDebits();
+		assertEquals(3.0, comBus.getDouble(
+				EnergyLedger.ENERGY_VALUE_KEY, -1));
+	}
+
+	public void testUnregistered() {
+		assertFalse(ledger.isDepleted(5));
+		try {
+			ledger.getBalance(5);
+			fail("Balance of an unregistered host");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
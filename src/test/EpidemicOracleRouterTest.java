@@ -0,0 +1,169 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import routing.EpidemicOracleRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for EpidemicOracleRouter
+ */
+public class EpidemicOracleRouterTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		EpidemicOracleRouter.reset();
+		setRouterProto(new EpidemicOracleRouter(ts));
+		super.setUp();
+	}
+
+	private void checkRelay(String id, Object from, Object to) {
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(id, mc.getLastMsg().getId());
+		assertEquals(from, mc.getLastFrom());
+		assertEquals(to, mc.getLastTo());
+	}
+
+	private void checkDelete(String id, Object where) {
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(id, mc.getLastMsg().getId());
+		assertEquals(where, mc.getLastFrom());
+	}
+
+	/**
+	 * Tests that messages are copied right away to the connected hosts and
+	 * to the hosts that connect later
+	 */
+	public void testSpreading() {
+		h1.connect(h2);
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		/* a new message goes to the connected hosts right away */
+		checkRelay(msgId1, h1, h2);
+		assertFalse(mc.next());
+
+		h2.connect(h3);
+		checkRelay(msgId1, h2, h3);
+		assertFalse(mc.next());
+
+		/* the peer with nothing new to give doesn't get a copy again */
+		h3.connect(h1);
+		assertFalse(mc.next());
+
+		assertEquals(1, h1.getNrofMessages());
+		assertEquals(1, h2.getNrofMessages());
+		assertEquals(1, h3.getNrofMessages());
+		assertEquals(0, h4.getNrofMessages());
+	}
+
+	/**
+	 * Tests that a delivery removes the message from all the hosts that
+	 * hold it, including the host that delivered it
+	 */
+	public void testDeliveryRemovesCopies() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h5, msgId2, 1));
+		checkCreates(2);
+		h1.connect(h2);
+		checkRelay(msgId1, h1, h2);
+		checkRelay(msgId2, h1, h2);
+		h1.connect(h4);
+		checkRelay(msgId1, h1, h4);
+		checkRelay(msgId2, h1, h4);
+		assertFalse(mc.next());
+
+		h2.connect(h3);
+		checkRelay(msgId1, h2, h3);
+		assertTrue(mc.getLastFirstDelivery());
+
+		/* the oracle removes the copies of the delivered message only */
+		checkDelete(msgId1, h1);
+		checkDelete(msgId1, h2);
+		checkDelete(msgId1, h4);
+		/* the other message spreads to the recipient of the first one */
+		checkRelay(msgId2, h2, h3);
+		assertFalse(mc.next());
+
+		assertEquals(1, h1.getNrofMessages());
+		assertEquals(1, h2.getNrofMessages());
+		assertEquals(1, h3.getNrofMessages());
+		assertEquals(1, h4.getNrofMessages());
+		assertEquals(msgId2,
+				h4.getMessageCollection().iterator().next().getId());
+	}
+
+	/**
+	 * Tests that a message that reuses the number of a delivered message
+	 * spreads like any other message
+	 */
+	public void testReusedMessageNumber() {
+		Message m = new Message(h1, h3, msgId1, 1);
+		h1.createNewMessage(m);
+		checkCreates(1);
+		h1.connect(h2);
+		checkRelay(msgId1, h1, h2);
+		h2.connect(h3);
+		checkRelay(msgId1, h2, h3);
+		checkDelete(msgId1, h1);
+		checkDelete(msgId1, h2);
+		assertFalse(mc.next());
+
+		/* the new message gets the number nobody holds anymore */
+		h4.createNewMessage(new Message(h4, h5, msgId2, 1));
+		checkCreates(1);
+		h4.connect(h1);
+		checkRelay(msgId2, h4, h1);
+		checkRelay(msgId2, h1, h2);
+		checkRelay(msgId2, h2, h3);
+		assertFalse(mc.next());
+		for (DTNHost h : new DTNHost[] {h1, h2, h3}) {
+			assertEquals(1, h.getNrofMessages());
+			assertEquals(msgId2,
+					h.getMessageCollection().iterator().next().getId());
+		}
+		/* everyone connected has the message already */
+		h3.connect(h4);
+		assertFalse(mc.next());
+
+		/* the delivered message is still rejected */
+		assertEquals(MessageRouter.DENIED_OLD,
+				h5.getRouter().receiveMessage(m.replicate(), h4));
+	}
+
+	/**
+	 * Tests that a delivered message isn't accepted again by any host
+	 */
+	public void testDeliveredMessageIsRejected() {
+		Message m = new Message(h1, h2, msgId1, 1);
+		h1.createNewMessage(m);
+		checkCreates(1);
+		Message copy = m.replicate();
+
+		h1.connect(h2);
+		checkRelay(msgId1, h1, h2);
+		assertTrue(mc.getLastFirstDelivery());
+		checkDelete(msgId1, h1);
+		assertFalse(mc.next());
+		assertEquals(0, h1.getNrofMessages());
+
+		/* a host that never had the message rejects it */
+		assertEquals(MessageRouter.DENIED_OLD,
+				h5.getRouter().receiveMessage(copy.replicate(), h4));
+		/* as does the recipient */
+		assertEquals(MessageRouter.DENIED_OLD,
+				h2.getRouter().receiveMessage(copy.replicate(), h4));
+		/* and the sender that delivered it */
+		assertEquals(MessageRouter.DENIED_OLD,
+				h1.getRouter().receiveMessage(copy.replicate(), h4));
+	}
+}
@@ -4,6 +4,7 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
 import core.DTNHost;
@@ -24,7 +25,13 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		setRouterProto(new EpidemicRouter(ts));
 		super.setUp();
 	}
-	
+
+	@Override
+	protected void tearDown() throws Exception {
+		ActiveRouter.validateRelayHops = false;
+		super.tearDown();
+	}
+
 	/**
 	 * Tests routing messages between three hosts
 	 */
@@ -499,6 +506,32 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	public void testTotalRelayHops() {
+		ActiveRouter.validateRelayHops = true;
+		ActiveRouter r2 = (ActiveRouter)h2.getRouter();
+		ActiveRouter r4 = (ActiveRouter)h4.getRouter();
+		
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		h2.createNewMessage(new Message(h2, h5, msgId2, 1));
+		assertEquals(0, r2.getTotalRelayHops());
+		
+		// relay h1 -> h2 -> h3 -> h4
+		h1.connect(h2);
+		h2.connect(h3);
+		h3.connect(h4);
+		for (int i=0; i<10; i++) {
+			clock.advance(1);
+			updateAllNodes();
+		}
+		assertEquals(2, r4.getNrofMessages());
+		/* msgId1 has been relayed 3 times (2 relay hops), msgId2 twice */
+		assertEquals(3, r4.getTotalRelayHops());
+		assertEquals(0, r2.getTotalRelayHops());
+		
+		r4.deleteMessage(msgId1, false);
+		assertEquals(1, r4.getTotalRelayHops());
+	}
+	
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
 		m1.setResponseSize(1);
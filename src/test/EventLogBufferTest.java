@@ -0,0 +1,128 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import gui.EventLogBuffer;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the EventLogBuffer
+ */
+public class EventLogBufferTest extends TestCase {
+	private EventLogBuffer buffer;
+	private EventLogBuffer.Batch batch;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		buffer = new EventLogBuffer(4);
+		batch = new EventLogBuffer.Batch();
+	}
+
+	/**
+	 * Adds a record whose fields are all derived from the given number
+	 */
+	private static void add(EventLogBuffer b, int i) {
+		b.add(i % 7, i * 0.5, i, -i, null);
+	}
+
+	/**
+	 * Checks that the batch has the records from first to last
+	 */
+	private void assertRecords(int first, int last) {
+		assertEquals(last - first + 1, batch.size);
+		for (int i=0; i < batch.size; i++) {
+			assertRecord(first + i, i);
+		}
+	}
+
+	private void assertRecord(int expected, int index) {
+		assertEquals(expected, batch.hosts1[index]);
+		assertEquals(-expected, batch.hosts2[index]);
+		assertEquals(expected % 7, batch.types[index]);
+		assertEquals(expected * 0.5, batch.times[index]);
+	}
+
+	public void testCapacity() {
+		assertEquals(4, buffer.getCapacity());
+		assertEquals(8, new EventLogBuffer(5).getCapacity());
+		assertEquals(2, new EventLogBuffer(1).getCapacity());
+		assertEquals(1024, new EventLogBuffer(1000).getCapacity());
+	}
+
+	public void testDrain() {
+		buffer.drainTo(batch);
+		assertEquals(0, batch.size);
+
+		add(buffer, 0);
+		add(buffer, 1);
+		buffer.drainTo(batch);
+		assertRecords(0, 1);
+
+		/* drained records are not drained again */
+		buffer.drainTo(batch);
+		assertEquals(0, batch.size);
+	}
+
+	public void testWrapAround() {
+		for (int round=0; round < 5; round++) {
+			for (int i=0; i < 3; i++) {
+				add(buffer, round * 3 + i);
+			}
+			buffer.drainTo(batch);
+			assertRecords(round * 3, round * 3 + 2);
+		}
+	}
+
+	public void testDropOldest() {
+		for (int i=0; i < 6; i++) {
+			add(buffer, i);
+		}
+		buffer.drainTo(batch);
+		assertRecords(2, 5);
+
+		/* full buffer after a wrap-around */
+		for (int i=6; i < 17; i++) {
+			add(buffer, i);
+		}
+		buffer.drainTo(batch);
+		assertRecords(13, 16);
+	}
+
+	/**
+	 * Tests that records drained while another thread adds them are
+	 * complete and in order, and that the last record is always drained
+	 */
+	public void testConcurrentDrain() throws Exception {
+		final int nrofRecords = 2000000;
+		final EventLogBuffer b = new EventLogBuffer(64);
+		Thread producer = new Thread() {
+			public void run() {
+				for (int i=0; i < nrofRecords; i++) {
+					add(b, i);
+				}
+			}
+		};
+
+		int last = -1;
+		int drained = 0;
+		boolean done;
+		producer.start();
+		do {
+			done = !producer.isAlive();
+			b.drainTo(batch);
+			for (int i=0; i < batch.size; i++) {
+				int seq = batch.hosts1[i];
+				assertTrue("record " + seq + " after " + last, seq > last);
+				assertRecord(seq, i);
+				last = seq;
+			}
+			drained += batch.size;
+		} while (!done);
+		producer.join();
+
+		assertEquals(nrofRecords - 1, last);
+		assertTrue(drained > 0 && drained <= nrofRecords);
+	}
+}
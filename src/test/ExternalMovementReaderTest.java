@@ -4,7 +4,11 @@
  */
 package test;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
+import input.MovementBatch;
+import input.MovementTraceReader;
+import input.PrefetchingMovementReader;
 
 import java.io.File;
 import java.io.PrintWriter;
@@ -16,6 +20,7 @@ import core.Tuple;
 
 public class ExternalMovementReaderTest extends TestCase {
 	private ExternalMovementReader r;
+	private File tmpFile;
 	private static final String INPUT = 
 		"0 0 0 0 0 0\n"+
 		"10 1 10 10\n"+ 
@@ -39,7 +44,7 @@ public class ExternalMovementReaderTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 		
-		File tmpFile = File.createTempFile("EMRTest","tmp");
+		tmpFile = File.createTempFile("EMRTest","tmp");
 		tmpFile.deleteOnExit();
 		
 		PrintWriter pw = new PrintWriter(tmpFile);
@@ -62,6 +67,39 @@ public class ExternalMovementReaderTest extends TestCase {
 		assertEquals(0, list.size());
 	}
 
+	public void testBinaryReader() throws Exception {
+		File binFile = File.createTempFile("EMRTest", 
+				BinaryMovementReader.BINARY_EXT);
+		binFile.deleteOnExit();
+		BinaryMovementReader.storeToBinaryFile(binFile.getAbsolutePath(), r);
+		assertTrue(BinaryMovementReader.isBinaryMovementFile(binFile));
+		assertFalse(BinaryMovementReader.isBinaryMovementFile(tmpFile));
+
+		checkBatches(new BinaryMovementReader(binFile.getAbsolutePath()));
+	}
+
+	public void testPrefetchingReader() {
+		checkBatches(new PrefetchingMovementReader(r, 1));
+	}
+
+	private void checkBatches(MovementTraceReader reader) {
+		MovementBatch batch = new MovementBatch();
+
+		for (int i=0; i<times.length; i++) {
+			assertTrue(reader.readNextBatch(batch));
+			assertEquals(times[i], batch.getTime());
+			assertEquals(ids.length, batch.size());
+			for (int j=0; j<ids.length; j++) {
+				assertEquals(ids[j], reader.getIdName(batch.getId(j)));
+				assertEquals(coords[i][j],
+						new Coord(batch.getX(j), batch.getY(j)));
+			}
+		}
+
+		assertFalse(reader.readNextBatch(batch));
+		reader.close();
+	}
+
 	private void checkTuples(List<Tuple<String, Coord>> list, String[] ids,
 			Coord[] coords) {
 		
@@ -0,0 +1,166 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ContentionDomains;
+import interfaces.InterferenceLimitedInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the transmitter accounting of InterferenceLimitedInterface
+ * with contention domains
+ */
+public class InterferenceLimitedInterfaceTest extends TestCase {
+	private static final String NS = "ilInterface";
+	private static final double RANGE = 10;
+	private TestSettings ts;
+	private ContentionDomains domains;
+	private NetworkInterface proto;
+	private DTNHost a;
+	private DTNHost b;
+	private boolean[] aActive;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_SPEED_S, "100");
+		ts.putSetting(NS + "." +
+				InterferenceLimitedInterface.CONTENTION_DOMAINS_S, "true");
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		ContentionDomains.reset();
+		DTNHost.reset();
+
+		proto = new InterferenceLimitedInterface(new TestSettings(NS));
+		domains = ContentionDomains.ContentionDomainsFactory(NS.hashCode(),
+				RANGE);
+		aActive = new boolean[] {true};
+		a = createHost(new Coord(0, 0), aActive);
+		b = createHost(new Coord(2, 0), new boolean[] {true});
+	}
+
+	private DTNHost createHost(Coord loc, boolean[] active) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(proto);
+		return new DTNHost(new ArrayList<MessageListener>(), null, "h", li,
+				new ModuleCommunicationBus(),
+				new SwitchedMovement(loc, active), new PassiveRouter(ts));
+	}
+
+	private static NetworkInterface ni(DTNHost host) {
+		return host.getInterfaces().get(0);
+	}
+
+	private int transmitters() {
+		return domains.getNrofTransmitters(domains.getCell(new Coord(0, 0)));
+	}
+
+	private void update(DTNHost... hosts) {
+		for (DTNHost h : hosts) {
+			h.update(true);
+		}
+	}
+
+	/**
+	 * Connects the hosts and starts a long transfer from a to b
+	 */
+	private Connection startTransfer() {
+		update(a, b);
+		assertEquals(1, ni(a).getConnections().size());
+		Connection con = ni(a).getConnections().get(0);
+		assertEquals(PassiveRouter.RCV_OK,
+				con.startTransfer(a, new Message(a, b, "M1", 1000000)));
+		update(a, b);
+		assertTrue(((InterferenceLimitedInterface)ni(a)).isTransferring());
+		return con;
+	}
+
+	public void testTransmittersCounted() {
+		assertEquals(0, transmitters());
+		startTransfer();
+		assertEquals(2, transmitters());
+		/* the speed is shared with the other transmitter */
+		assertTrue(ni(a).getTransmitSpeed() < 100);
+
+		ni(a).getConnections().get(0).abortTransfer();
+		update(a, b);
+		assertEquals(0, transmitters());
+	}
+
+	public void testInactiveHostLeaves() {
+		startTransfer();
+		aActive[0] = false;
+		update(a, b);
+		/* b still has the transfer going on but a isn't updated any more */
+		assertEquals(1, transmitters());
+
+		aActive[0] = true;
+		update(a, b);
+		assertEquals(2, transmitters());
+	}
+
+	public void testDroppedConnectionLeaves() {
+		startTransfer();
+		/* b moves away and tears the connection down in its update */
+		b.setLocation(new Coord(50, 50));
+		update(b);
+		assertEquals(0, ni(a).getConnections().size());
+		assertEquals(0, transmitters());
+	}
+
+	public void testDestroyedConnectionLeaves() {
+		startTransfer();
+		ni(a).destroyConnection(ni(b));
+		assertEquals(0, transmitters());
+	}
+
+	public void testRemovedFromOptimizerLeaves() {
+		startTransfer();
+		ni(a).setInOptimizer(false);
+		assertEquals(1, transmitters());
+		ni(b).setInOptimizer(false);
+		assertEquals(0, transmitters());
+	}
+
+	/**
+	 * Stationary movement whose activeness can be switched (the flag is
+	 * shared by the replicas)
+	 */
+	private static class SwitchedMovement extends StationaryMovement {
+		private boolean[] active;
+
+		public SwitchedMovement(Coord location, boolean[] active) {
+			super(location);
+			this.active = active;
+		}
+
+		@Override
+		public boolean isActive() {
+			return active[0];
+		}
+
+		@Override
+		public SwitchedMovement replicate() {
+			return new SwitchedMovement(getInitialLocation(), active);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.KineticContacts;
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the kinetic contact prediction
+ */
+public class KineticContactsTest extends TestCase {
+	private static final double DELTA = 0.00001;
+	private TestUtils utils;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		utils = new TestUtils(null, null, new TestSettings());
+		utils.setTransmitRange(10);
+	}
+
+	public void testSolveCrossings() {
+		/* approaching from 30 m with relative speed 2 m/s */
+		double[] c = KineticContacts.solveCrossings(30, 0, -2, 0, 10);
+		assertEquals(10.0, c[0], DELTA);
+		assertEquals(20.0, c[1], DELTA);
+
+		/* passing by at 5 m distance */
+		c = KineticContacts.solveCrossings(-20, 5, 1, 0, 10);
+		assertEquals(20 - Math.sqrt(75), c[0], DELTA);
+		assertEquals(20 + Math.sqrt(75), c[1], DELTA);
+
+		/* passing by too far */
+		assertNull(KineticContacts.solveCrossings(-20, 15, 1, 0, 10));
+		/* not moving */
+		assertNull(KineticContacts.solveCrossings(11, 0, 0, 0, 10));
+		c = KineticContacts.solveCrossings(5, 5, 0, 0, 10);
+		assertEquals(-KineticContacts.NEVER, c[0]);
+		assertEquals(KineticContacts.NEVER, c[1]);
+	}
+
+	public void testRangeBetweenSteps() {
+		DTNHost mover = utils.createHost(new LineMovement(
+				new Coord(0, 0), new Coord(100, 0), 2), "m");
+		DTNHost stat = utils.createHost(new Coord(50, 5), "s");
+		NetworkInterface ni = mover.getInterfaces().get(0);
+		NetworkInterface other = stat.getInterfaces().get(0);
+		KineticContacts kc = new KineticContacts(ni);
+
+		mover.move(5);
+		stat.move(5);
+		clock.setTime(5);
+		assertEquals(10.0, mover.getLocation().getX(), DELTA);
+		assertEquals(100.0, mover.getSegmentEnd().getX(), DELTA);
+		assertEquals(50.0, mover.getSegmentEndTime(), DELTA);
+		assertFalse(kc.isWithinRange(other));
+
+		/* in range during [20.67, 29.33] although the hosts aren't moved */
+		clock.setTime(21);
+		assertTrue(kc.isWithinRange(other));
+		clock.setTime(29);
+		assertTrue(kc.isWithinRange(other));
+		clock.setTime(30);
+		assertFalse(kc.isWithinRange(other));
+	}
+
+	public void testCheckContact() {
+		DTNHost mover = utils.createHost(new LineMovement(
+				new Coord(0, 0), new Coord(100, 0), 2), "m");
+		DTNHost stat = utils.createHost(new Coord(50, 5), "s");
+		NetworkInterface ni = mover.getInterfaces().get(0);
+		NetworkInterface other = stat.getInterfaces().get(0);
+		KineticContacts kc = new KineticContacts(ni);
+
+		mover.move(5);
+		stat.move(5);
+		clock.setTime(5);
+		kc.checkContact(other);
+		assertEquals(0, ni.getConnections().size());
+
+		/* the contact opens and closes at the checks without moving */
+		clock.setTime(21);
+		kc.checkContact(other);
+		assertEquals(1, ni.getConnections().size());
+		assertEquals(1, other.getConnections().size());
+		kc.checkContact(other);
+		assertEquals(1, ni.getConnections().size());
+
+		clock.setTime(30);
+		kc.checkContact(other);
+		assertEquals(0, ni.getConnections().size());
+		assertEquals(0, other.getConnections().size());
+	}
+
+	/**
+	 * Movement along a single straight line
+	 */
+	private static class LineMovement extends MovementModel {
+		private Coord from;
+		private Coord to;
+		private double speed;
+		private boolean pathGiven;
+
+		public LineMovement(Coord from, Coord to, double speed) {
+			this.from = from;
+			this.to = to;
+			this.speed = speed;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return from.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			if (pathGiven) {
+				return null;
+			}
+			pathGiven = true;
+			Path p = new Path(speed);
+			p.addWaypoint(from.clone());
+			p.addWaypoint(to.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return pathGiven ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(from, to, speed);
+		}
+	}
+}
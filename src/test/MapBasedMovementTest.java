@@ -20,6 +20,7 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNHost;
+import core.RandomStreams;
 import core.Settings;
 
 public class MapBasedMovementTest extends TestCase {
@@ -52,6 +53,11 @@ public class MapBasedMovementTest extends TestCase {
 		s = new TestSettings();
 	}
 	
+	public void tearDown() throws Exception {
+		super.tearDown();
+		RandomStreams.reset();
+	}
+	
 	private void setupMapData(String okTypes, String speed, String wTime) {
 		Settings.init(null);
 		StringReader input = new StringReader(WKT);
@@ -64,6 +70,10 @@ public class MapBasedMovementTest extends TestCase {
 		}
 		
 		s = new TestSettings();
+		/* the expected paths depend on the shared rng's sequence */
+		s.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				RandomStreams.LEGACY_RNG_S, "true");
+		RandomStreams.reset();
 		s.putSetting(MovementModel.SPEED, (speed != null ? speed : "1,1"));
 		s.putSetting(MovementModel.WAIT_TIME, (wTime != null ? wTime : "0,0"));
 		
@@ -0,0 +1,60 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.MetricsRegistry;
+import core.SimError;
+
+public class MetricsRegistryTest extends TestCase {
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		MetricsRegistry.reset();
+	}
+
+	public void testSameMetricForSameName() {
+		MetricsRegistry.Counter c = MetricsRegistry.counter("c");
+		c.increment();
+		c.add(2);
+		assertSame(c, MetricsRegistry.counter("c"));
+		assertEquals(3, MetricsRegistry.counter("c").getCount());
+		assertEquals(1, MetricsRegistry.getMetrics().size());
+	}
+
+	public void testTypeClash() {
+		MetricsRegistry.gauge("g").set(1.5);
+		assertEquals(1.5, MetricsRegistry.gauge("g").getValue());
+		try {
+			MetricsRegistry.counter("g");
+			fail("Different type of metric with the same name was returned");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testHistogram() {
+		MetricsRegistry.Histogram h = MetricsRegistry.histogram("h");
+		assertEquals(0.0, h.getPercentile(50));
+		h.record(0);
+		for (int i=1; i<=100; i++) {
+			h.record(i);
+		}
+		assertEquals(101, h.getCount());
+		assertEquals(0.0, h.getMin());
+		assertEquals(100.0, h.getMax());
+		assertEquals(50.0, h.getMean(), 0.0001);
+		assertEquals(0.0, h.getPercentile(0));
+		assertEquals(100.0, h.getPercentile(100));
+		
+		double p50 = h.getPercentile(50);
+		assertTrue(p50 >= 50 && p50 <= 50 * (1 + 1.0 / 
+				MetricsRegistry.Histogram.SUB_BUCKETS));
+		
+		h.record(0.25);
+		assertEquals(0.25, h.getPercentile(1), 0.25 / 
+				MetricsRegistry.Histogram.SUB_BUCKETS);
+	}
+}
@@ -11,6 +11,8 @@ import org.junit.Test;
 
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
+import core.SimError;
+import core.TypedModuleCommunicationListener;
 
 public class ModuleCommunicationBusTest extends TestCase {
 
@@ -103,4 +105,100 @@ public class ModuleCommunicationBusTest extends TestCase {
 		assertEquals(-16.7, b.getDouble(key, -1.0));
 	}	
 
+	@Test
+	public void testTypedKeys() {
+		int key = ModuleCommunicationBus.getKey("typedtst");
+		assertEquals(key, ModuleCommunicationBus.getKey("typedtst"));
+		assertEquals("typedtst", ModuleCommunicationBus.getKeyName(key));
+		assertFalse(b.contains(key));
+		assertEquals(-1.0, b.getDouble(key, -1.0));
+
+		b.addDouble(key, 2.5);
+		assertTrue(b.contains(key));
+		assertEquals(3.0, b.updateDouble(key, 0.5));
+		assertEquals(3.0, b.getDouble("typedtst", -1.0));
+		assertEquals(3.0, b.getProperty("typedtst"));
+
+		b.updateProperty("typedtst", 4);
+		assertEquals(4, b.getInt(key, -1));
+		try {
+			b.getDouble(key, -1.0);
+			fail("Integer value returned as a double");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			b.addInt(key, 5);
+			fail("Value added twice");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testConcurrentKeys() throws Exception {
+		final int nrofKeys = 200;
+		final int[][] handles = new int[4][nrofKeys];
+		Thread[] threads = new Thread[handles.length];
+
+		for (int t=0; t < threads.length; t++) {
+			final int[] own = handles[t];
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i=0; i < nrofKeys; i++) {
+						own[i] = ModuleCommunicationBus.getKey("conctst" + i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (int i=0; i < nrofKeys; i++) {
+			for (int t=1; t < handles.length; t++) {
+				assertEquals(handles[0][i], handles[t][i]);
+			}
+			assertEquals("conctst" + i,
+					ModuleCommunicationBus.getKeyName(handles[0][i]));
+		}
+	}
+
+	@Test
+	public void testTypedListener() {
+		final int key = ModuleCommunicationBus.getKey("typedsubtst");
+		final double[] notified = new double[1];
+		TypedModuleCommunicationListener tl =
+			new TypedModuleCommunicationListener() {
+			public void moduleValueChanged(String k, Object newValue) {
+				fail("Boxed notification to a typed listener");
+			}
+			public void moduleDoubleChanged(int k, double newValue) {
+				assertEquals(key, k);
+				notified[0] = newValue;
+			}
+			public void moduleIntChanged(int k, int newValue) {
+				assertEquals(key, k);
+				notified[0] = newValue;
+			}
+		};
+
+		b.subscribe(key, tl);
+		b.subscribe("typedsubtst", mcl);
+		b.setDouble(key, 1.5);
+		assertEquals(1.5, notified[0]);
+		assertEquals("typedsubtst", notifyKey);
+		assertEquals(1.5, notifyValue);
+
+		b.updateProperty("typedsubtst", 7);
+		assertEquals(7.0, notified[0]);
+		assertEquals(7, notifyValue);
+
+		b.unsubscribe(key, tl);
+		b.setDouble(key, 2.5);
+		assertEquals(7.0, notified[0]);
+		assertEquals(2.5, notifyValue);
+	}
+
 }
@@ -0,0 +1,132 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.Coord;
+import core.DTNHost;
+import core.MovementKernel;
+import core.SimClock;
+
+/**
+ * Tests for the structure of arrays movement kernel
+ */
+public class MovementKernelTest extends TestCase {
+	private static final int NROF_HOSTS = 5;
+	private TestUtils utils;
+	private SimClock clock;
+	private List<DTNHost> ownHosts;
+	private List<DTNHost> kernelHosts;
+	private MovementKernel kernel;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		utils = new TestUtils(null, null, new TestSettings());
+		ownHosts = new ArrayList<DTNHost>();
+		kernelHosts = new ArrayList<DTNHost>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			ownHosts.add(utils.createHost(new ZigZagMovement(i), null));
+			kernelHosts.add(utils.createHost(new ZigZagMovement(i), null));
+		}
+		kernelHosts.add(utils.createHost(new Coord(10, 10))); // stationary
+		kernel = new MovementKernel(kernelHosts);
+	}
+
+	private void move(double timeIncrement) {
+		for (DTNHost h : ownHosts) {
+			h.move(timeIncrement);
+		}
+		kernel.move(timeIncrement);
+		clock.advance(timeIncrement);
+	}
+
+	private void assertSameMovement() {
+		for (int i=0; i < NROF_HOSTS; i++) {
+			DTNHost own = ownHosts.get(i);
+			DTNHost k = kernelHosts.get(i);
+			assertEquals(own.getLocation(), k.getLocation());
+			assertEquals(own.getSegmentEnd(), k.getSegmentEnd());
+			assertEquals(own.getSegmentEndTime(), k.getSegmentEndTime());
+			assertEquals(own.getLocationTime(), k.getLocationTime());
+		}
+	}
+
+	public void testSameAsHosts() {
+		assertEquals(NROF_HOSTS, kernel.size());
+		for (int i=0; i < 400; i++) {
+			move(0.1 + (i % 7) * 0.15);
+			assertSameMovement();
+		}
+		assertEquals(new Coord(10, 10),
+				kernelHosts.get(NROF_HOSTS).getLocation());
+	}
+
+	public void testSetLocation() {
+		move(3);
+		ownHosts.get(1).setLocation(new Coord(50, 50));
+		kernelHosts.get(1).setLocation(new Coord(50, 50));
+		assertSameMovement();
+		for (int i=0; i < 100; i++) {
+			move(0.5);
+			assertSameMovement();
+		}
+	}
+
+	/**
+	 * Movement back and forth between points with a pause between the paths
+	 */
+	private static class ZigZagMovement extends MovementModel {
+		private int index;
+		private boolean forward;
+
+		public ZigZagMovement(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(index, 0);
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public boolean isKernelCompatible() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			forward = !forward;
+			Path p = new Path(1 + index * 0.7);
+			Coord a = new Coord(index, 0);
+			Coord b = new Coord(index + 30, 20 + index);
+			p.addWaypoint(forward ? a : b);
+			p.addWaypoint(new Coord(index + 15, 40));
+			p.addWaypoint(forward ? b : a);
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + index;
+		}
+
+		@Override
+		public ZigZagMovement replicate() {
+			return new ZigZagMovement(index);
+		}
+	}
+}
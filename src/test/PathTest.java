@@ -0,0 +1,64 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.Path;
+import movement.PathPool;
+import core.Coord;
+
+/**
+ * Tests for the Path and its recycling
+ */
+public class PathTest extends TestCase {
+
+	public void testCursor() {
+		Path p = new Path();
+		p.addWaypoint(new Coord(0, 0), 1);
+		p.addWaypoint(new Coord(10, 0), 2);
+		p.addWaypoint(new Coord(10, 10), 3);
+		assertEquals(3, p.getNrofWaypoints());
+		assertEquals(new Coord(10, 10), p.getLastWaypoint());
+
+		Coord c = new Coord(0, 0);
+		p.getNextWaypoint(c);
+		assertEquals(new Coord(0, 0), c);
+		assertEquals(1.0, p.getSpeed());
+		assertEquals(new Coord(10, 0), p.getNextWaypoint());
+		assertEquals(2.0, p.getSpeed());
+
+		/* the copy continues from the same waypoint */
+		Path copy = new Path(p);
+		p.getNextWaypoint(c);
+		assertEquals(3.0, p.getSpeed());
+		assertFalse(p.hasNext());
+		assertTrue(copy.hasNext());
+		assertEquals(new Coord(10, 10), copy.getNextWaypoint());
+		assertEquals(3, copy.getCoords().size());
+	}
+
+	public void testRecycling() {
+		PathPool pool = new PathPool();
+		Path p = pool.getPath(5);
+		for (int i=0; i<20; i++) {
+			p.addWaypoint(new Coord(i, i));
+		}
+		p.recycle();
+		p.recycle(); // recycling twice doesn't put the path twice to the pool
+
+		Path p2 = pool.getPath(7);
+		assertSame(p, p2);
+		assertEquals(0, p2.getNrofWaypoints());
+		p2.addWaypoint(new Coord(1, 2));
+		assertEquals(new Coord(1, 2), p2.getNextWaypoint());
+		assertEquals(7.0, p2.getSpeed());
+		assertNotSame(p, pool.getPath(1));
+
+		/* copies are not returned to the pool */
+		Path copy = new Path(p2);
+		copy.recycle();
+		assertNotSame(copy, pool.getPath(1));
+	}
+}
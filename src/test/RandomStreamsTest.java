@@ -0,0 +1,141 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.RandomStreams;
+
+public class RandomStreamsTest extends TestCase {
+	private static final int NROF = 100;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings.init(null);
+		RandomStreams.reset();
+		RandomStreams.setCurrentHost(RandomStreams.NO_HOST);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		RandomStreams.reset();
+	}
+
+	private void assertSameSequence(Random r1, Random r2) {
+		for (int i=0; i<NROF; i++) {
+			assertEquals(r1.nextDouble(), r2.nextDouble());
+			assertEquals(r1.nextInt(10), r2.nextInt(10));
+		}
+	}
+
+	private boolean isSameSequence(Random r1, Random r2) {
+		for (int i=0; i<NROF; i++) {
+			if (r1.nextLong() != r2.nextLong()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void testReproducible() {
+		Random r1 = RandomStreams.getStream(RandomStreams.MOVEMENT, 3);
+		/* drawing from other streams doesn't affect the sequence */
+		RandomStreams.getStream(RandomStreams.MOVEMENT, 2).nextDouble();
+		Random r2 = RandomStreams.getStream(RandomStreams.MOVEMENT, 3);
+		assertSameSequence(r1, r2);
+	}
+
+	public void testIndependentStreams() {
+		assertFalse(isSameSequence(
+				RandomStreams.getStream(RandomStreams.MOVEMENT, 1),
+				RandomStreams.getStream(RandomStreams.MOVEMENT, 2)));
+		assertFalse(isSameSequence(
+				RandomStreams.getStream(RandomStreams.MOVEMENT, 1),
+				RandomStreams.getStream(RandomStreams.ROUTING, 1)));
+	}
+
+	public void testCurrentHost() {
+		assertEquals(RandomStreams.NO_HOST, RandomStreams.getCurrentHost());
+		RandomStreams.setCurrentHost(5);
+		assertEquals(5, RandomStreams.getCurrentHost());
+		Random r = RandomStreams.getStream(RandomStreams.ROUTING);
+		RandomStreams.setCurrentHost(RandomStreams.NO_HOST);
+		assertEquals(RandomStreams.NO_HOST, RandomStreams.getCurrentHost());
+		assertSameSequence(r, RandomStreams.getStream(RandomStreams.ROUTING, 5));
+	}
+
+	public void testCurrentHostPerThread() throws InterruptedException {
+		final Random[] r = new Random[1];
+		final int[] otherHost = new int[1];
+		RandomStreams.setCurrentHost(7);
+		Thread t = new Thread() {
+			public void run() {
+				otherHost[0] = RandomStreams.getCurrentHost();
+				RandomStreams.setCurrentHost(3);
+				r[0] = RandomStreams.getStream(RandomStreams.MOVEMENT);
+			}
+		};
+		t.start();
+		t.join();
+
+		assertEquals(RandomStreams.NO_HOST, otherHost[0]);
+		assertEquals(7, RandomStreams.getCurrentHost());
+		assertSameSequence(r[0], RandomStreams.getStream(
+				RandomStreams.MOVEMENT, 3));
+	}
+
+	public void testModuleStreams() {
+		RandomStreams.setCurrentHost(4);
+		Random r1 = RandomStreams.getStream(RandomStreams.INTERFACE);
+		Random r2 = RandomStreams.getStream(RandomStreams.INTERFACE);
+		Random r3 = RandomStreams.getStream(RandomStreams.MOVEMENT);
+		/* the same host again: the modules are numbered from zero */
+		RandomStreams.setCurrentHost(4);
+		Random r4 = RandomStreams.getStream(RandomStreams.INTERFACE);
+		Random r5 = RandomStreams.getStream(RandomStreams.INTERFACE);
+		RandomStreams.setCurrentHost(RandomStreams.NO_HOST);
+
+		assertSameSequence(r1, r4);
+		assertSameSequence(r2, r5);
+		assertSameSequence(r3, RandomStreams.getStream(
+				RandomStreams.MOVEMENT, 4));
+		assertFalse(isSameSequence(
+				RandomStreams.getStream(RandomStreams.INTERFACE, 4, 0),
+				RandomStreams.getStream(RandomStreams.INTERFACE, 4, 1)));
+	}
+
+	public void testNoHostStreams() {
+		Random r1 = RandomStreams.getStream(RandomStreams.MOVEMENT);
+		Random r2 = RandomStreams.getStream(RandomStreams.MOVEMENT);
+		assertFalse(isSameSequence(r1, r2));
+
+		RandomStreams.reset();
+		assertSameSequence(RandomStreams.getStream(RandomStreams.MOVEMENT),
+				RandomStreams.getStream(RandomStreams.MOVEMENT,
+						RandomStreams.NO_HOST));
+	}
+
+	public void testSeed() {
+		Random r1 = RandomStreams.getStream(RandomStreams.MOVEMENT, 1);
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "42");
+		RandomStreams.reset();
+		Random r2 = RandomStreams.getStream(RandomStreams.MOVEMENT, 1);
+		assertFalse(isSameSequence(r1, r2));
+	}
+
+	public void testLegacySetting() {
+		assertFalse(RandomStreams.isLegacy());
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				RandomStreams.LEGACY_RNG_S, "true");
+		assertFalse(RandomStreams.isLegacy()); /* read only once per run */
+		RandomStreams.reset();
+		assertTrue(RandomStreams.isLegacy());
+	}
+}
@@ -4,6 +4,11 @@
  */
 package test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
 import java.util.List;
 
 import routing.schedule.ScheduleDijkstra;
@@ -96,4 +101,33 @@ public class ScheduleDijkstraTest extends TestCase {
 		comparePaths(new int[]{3,12,13,14,20}, d.getShortestPath(3, 20, 40));		
 	}
 
+	/**
+	 * An oracle serialized before the unsorted set was added must be
+	 * usable after it has been read back
+	 */
+	public void testReadOldOracle() throws Exception {
+		oracle.addEntry(5, 1, 6, 10); /* not in time order */
+		Field f = ScheduleOracle.class.getDeclaredField("unsorted");
+		f.setAccessible(true);
+		f.set(oracle, null);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(oracle);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		ScheduleOracle read = (ScheduleOracle)in.readObject();
+		in.close();
+
+		List<ScheduleEntry> entries = read.getConnected(1, 0);
+		assertEquals(5, entries.size());
+		assertEquals(5.0, entries.get(0).getTime());
+		assertEquals(1, read.getConnected(1, 30).size());
+
+		read.addEntry(55, 2, 10, 5);
+		comparePaths(new int[]{1,2,10},
+				new ScheduleDijkstra(read).getShortestPath(1, 10, 0));
+	}
+
 }
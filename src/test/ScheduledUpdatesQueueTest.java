@@ -47,6 +47,23 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(MAX, suq.nextEvent().getTime());
 	}
 
+	public void testSize() {
+		assertEquals(0, suq.size());
+		suq.addUpdate(1);
+		suq.addUpdate(3);
+		suq.addUpdate(1); // merged
+		suq.addUpdate(2);
+		assertEquals(3, suq.size());
+
+		suq.nextEvent();
+		assertEquals(2, suq.size());
+		suq.nextEvent();
+		suq.nextEvent();
+		assertEquals(0, suq.size());
+		suq.nextEvent();
+		assertEquals(0, suq.size());
+	}
+
 	public void testInterlavedRequests() {
 		suq.addUpdate(4);
 		suq.addUpdate(7);
@@ -107,4 +124,23 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+
+	public void testManyUpdates() {
+		/* superseded completion times of many connections */
+		for (int i=1000; i > 0; i--) {
+			suq.addUpdate(i % 250);
+			suq.addUpdate(i / 4.0);
+		}
+		suq.addUpdate(MAX); // no update
+		assertEquals(1001, suq.size());
+		double last = -1;
+		for (int i=0; i < 1001; i++) {
+			double time = suq.nextEvent().getTime();
+			assertTrue(time > last);
+			last = time;
+		}
+		assertEquals(250.0, last);
+		assertEquals(0, suq.size());
+		assertEquals(MAX, suq.nextEvent().getTime());
+	}
 }
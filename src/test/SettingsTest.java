@@ -216,4 +216,50 @@ public class SettingsTest extends TestCase {
 		assertEquals("[val1 ; val2;val3; val4 ]", s.getSetting(RS_S));
 	}
 
+	/**
+	 * Tests that changed settings are read again after the values have
+	 * been resolved once
+	 */
+	public void testChangedSetting() {
+		TestSettings ts = new TestSettings(null);
+		assertEquals(1, s.getInt("int"));
+		assertEquals(1.1, s.getDouble("double"));
+		assertFalse(s.contains("newSetting"));
+
+		ts.putSetting("int", "2");
+		ts.putSetting("double", "2.2");
+		ts.putSetting("newSetting", "new");
+		assertEquals(2, s.getInt("int"));
+		assertEquals(2.2, s.getDouble("double"));
+		assertEquals("new", s.getSetting("newSetting"));
+	}
+
+	/**
+	 * Tests that the run-array values are resolved again when the run index
+	 * changes
+	 */
+	public void testChangedRunIndex() {
+		new TestSettings(null).putSetting("runInts", "[1;2;3]");
+		for (int run=0; run < 7; run++) {
+			Settings.setRunIndex(run);
+			assertEquals(run % 3 + 1, s.getInt("runInts"));
+			assertEquals(run % 3 + 1, s.getInt("runInts")); // resolved value
+			assertEquals(CSV_RS_V[(run % 2) * 2],
+					s.getCsvInts(CSV_RS_S, 2)[0]);
+		}
+		Settings.setRunIndex(0);
+		assertEquals(1, s.getInt("runInts"));
+	}
+
+	/**
+	 * Tests that initializing the settings again drops the resolved values
+	 */
+	public void testInitClearsValues() {
+		assertEquals(TST_RES, s.getSetting(TST));
+		Settings.init(null);
+		assertFalse(s.contains(TST));
+		TestSettings.init(null);
+		assertFalse(s.contains("int"));
+	}
+
 }
@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.SparseConnectivityGrid;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the sparse connectivity grid
+ */
+public class SparseConnectivityGridTest extends TestCase {
+	private TestUtils shortUtils;
+	private TestUtils longUtils;
+	private SparseConnectivityGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SparseConnectivityGrid.reset();
+		/* the utils' hosts share the range through the com bus */
+		shortUtils = new TestUtils(null, null, new TestSettings());
+		shortUtils.setTransmitRange(10);
+		longUtils = new TestUtils(null, null, new TestSettings());
+		longUtils.setTransmitRange(1000);
+		grid = SparseConnectivityGrid.SparseConnectivityGridFactory(1);
+	}
+
+	private NetworkInterface add(double range, Coord loc) {
+		TestUtils utils = (range > 10 ? longUtils : shortUtils);
+		DTNHost h = utils.createHost(loc);
+		NetworkInterface ni = h.getInterfaces().get(0);
+		grid.addInterface(ni);
+		return ni;
+	}
+
+	public void testNearInterfaces() {
+		NetworkInterface shortA = add(10, new Coord(100, 100));
+		NetworkInterface shortB = add(10, new Coord(108, 100));
+		NetworkInterface shortFar = add(10, new Coord(150, 100));
+		NetworkInterface shortC = add(10, new Coord(605, 100));
+		NetworkInterface longA = add(1000, new Coord(600, 100));
+		NetworkInterface longB = add(1000, new Coord(-900, 100));
+
+		Collection<NetworkInterface> near = grid.getNearInterfaces(shortA);
+		assertTrue(near.contains(shortB));
+		assertFalse(near.contains(shortFar));
+		assertFalse(near.contains(longB));
+
+		/* short range interfaces are checked only within their own range */
+		near = grid.getNearInterfaces(longA);
+		assertTrue(near.contains(shortC));
+		assertFalse(near.contains(shortA));
+		assertFalse(near.contains(shortFar));
+		assertTrue(grid.getNearInterfaces(shortC).contains(longA));
+
+		/* negative coordinates work */
+		near = grid.getNearInterfaces(longB);
+		assertTrue(near.contains(longA));
+		assertEquals(6, grid.getAllInterfaces().size());
+	}
+
+	public void testOnlyOccupiedCells() {
+		NetworkInterface a = add(10, new Coord(0, 0));
+		NetworkInterface b = add(10, new Coord(1, 1));
+		assertEquals(1, grid.getNrofCells());
+		add(10, new Coord(4000, 3000));
+		assertEquals(2, grid.getNrofCells());
+
+		/* empty cells are dropped when the interfaces move */
+		a.getHost().setLocation(new Coord(4001, 3001));
+		grid.updateLocation(a);
+		assertEquals(2, grid.getNrofCells());
+		b.getHost().setLocation(new Coord(4002, 3002));
+		grid.updateLocation(b);
+		assertEquals(1, grid.getNrofCells());
+
+		grid.removeInterface(a);
+		assertEquals(2, grid.getAllInterfaces().size());
+		assertFalse(grid.getNearInterfaces(b).contains(a));
+	}
+}
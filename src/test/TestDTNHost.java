@@ -6,6 +6,7 @@ package test;
 
 import java.util.List;
 
+import movement.MovementModel;
 import routing.PassiveRouter;
 import core.Coord;
 import core.DTNHost;
@@ -34,8 +35,12 @@ public class TestDTNHost extends DTNHost {
 	
 	public TestDTNHost(List<NetworkInterface> li, 
 			ModuleCommunicationBus comBus) {
-		super(null,null,"TST", li, comBus, 
-				new StationaryMovement(new Coord(0,0)), 
+		this(li, comBus, new StationaryMovement(new Coord(0,0)));
+	}
+
+	public TestDTNHost(List<NetworkInterface> li,
+			ModuleCommunicationBus comBus, MovementModel mm) {
+		super(null,null,"TST", li, comBus, mm,
 				new PassiveRouter(new TestSettings()));
 	}
 	
@@ -44,6 +44,7 @@ public class TestSettings extends core.Settings {
 	
 	public static void init(String propFile) throws SettingsError {
 		props = new Properties();
+		clearValues();
 	}
 	
 	/**
@@ -61,6 +62,7 @@ public class TestSettings extends core.Settings {
 			}
 		}
 		props.put(key, value);
+		clearValues();
 	}	
 
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.CBRConnection;
+import core.DTNHost;
+import core.Message;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+import core.VBRConnection;
+
+/**
+ * Tests for the scheduled transfer completions of the connections
+ */
+public class TransferEventsTest extends TestCase {
+	private SimClock clock;
+	private SpeedInterface ni0;
+	private SpeedInterface ni1;
+	private DTNHost h0;
+	private DTNHost h1;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		clock.setTime(10);
+		h0 = createHost();
+		h1 = createHost();
+		/* the hosts have replicas of the given interfaces */
+		ni0 = (SpeedInterface)h0.getInterfaces().get(0);
+		ni1 = (SpeedInterface)h1.getInterfaces().get(0);
+	}
+
+	private DTNHost createHost() {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new SpeedInterface(100));
+		return new TestDTNHost(li, new ModuleCommunicationBus());
+	}
+
+	private ScheduledVBRConnection startVBR(int size) {
+		ScheduledVBRConnection con = new ScheduledVBRConnection(h0, ni0, h1,
+				ni1);
+		con.setTransferEvents(true);
+		con.startTransfer(h0, new Message(h0, h1, "M", size));
+		return con;
+	}
+
+	private void assertScheduled(List<Double> scheduled, double... times) {
+		assertEquals(times.length, scheduled.size());
+		for (int i=0; i < times.length; i++) {
+			assertEquals(times[i], scheduled.get(i));
+		}
+	}
+
+	/**
+	 * Tests that the transfer completes exactly at size/speed even if the
+	 * connection is updated only once a second
+	 */
+	public void testVBRCompletion() {
+		ScheduledVBRConnection con = startVBR(250);
+		assertScheduled(con.scheduled, 12.5);
+
+		clock.setTime(11);
+		con.update();
+		assertEquals(150, con.getRemainingByteCount());
+		clock.setTime(12);
+		con.update();
+		assertEquals(50, con.getRemainingByteCount());
+		assertFalse(con.isMessageTransferred());
+
+		clock.setTime(12.5);
+		con.update();
+		assertTrue(con.isMessageTransferred());
+		assertEquals(0, con.getRemainingByteCount());
+		/* the speed didn't change so nothing was rescheduled */
+		assertScheduled(con.scheduled, 12.5);
+	}
+
+	/**
+	 * Tests that a speed change reschedules the completion
+	 */
+	public void testVBRSpeedChange() {
+		ScheduledVBRConnection con = startVBR(300);
+		assertScheduled(con.scheduled, 13);
+
+		clock.setTime(11);
+		ni1.setSpeed(50);
+		con.update();
+		assertEquals(50.0, con.getSpeed());
+		/* 200 bytes left at the new speed */
+		assertScheduled(con.scheduled, 13, 15);
+
+		clock.setTime(13); // the superseded completion time
+		con.update();
+		assertFalse(con.isMessageTransferred());
+		assertEquals(100, con.getRemainingByteCount());
+
+		clock.setTime(15);
+		con.update();
+		assertTrue(con.isMessageTransferred());
+		assertScheduled(con.scheduled, 13, 15);
+	}
+
+	/**
+	 * Tests that a stalled transfer is scheduled again when the speed
+	 * returns
+	 */
+	public void testVBRZeroSpeed() {
+		ScheduledVBRConnection con = startVBR(300);
+		clock.setTime(11);
+		ni0.setSpeed(0);
+		con.update();
+		assertScheduled(con.scheduled, 13);
+
+		clock.setTime(20);
+		con.update();
+		assertEquals(200, con.getRemainingByteCount());
+
+		clock.setTime(21);
+		ni0.setSpeed(200);
+		con.update();
+		assertEquals(200, con.getRemainingByteCount());
+		/* the slower end (100) limits the speed */
+		assertScheduled(con.scheduled, 13, 23);
+	}
+
+	/**
+	 * Tests that the remaining byte count of a partly sent byte rounds up
+	 */
+	public void testVBRRemainingRoundsUp() {
+		ni0.setSpeed(3);
+		ScheduledVBRConnection con = startVBR(10);
+		clock.setTime(11.5);
+		con.update();
+		/* 4.5 bytes sent */
+		assertEquals(6, con.getRemainingByteCount());
+		assertFalse(con.isMessageTransferred());
+	}
+
+	/**
+	 * Tests that a constant bit-rate transfer is scheduled to complete at
+	 * size/speed
+	 */
+	public void testCBRCompletion() {
+		ScheduledCBRConnection con = new ScheduledCBRConnection(h0, ni0, h1,
+				ni1, 100);
+		con.setTransferEvents(true);
+		con.startTransfer(h0, new Message(h0, h1, "M", 250));
+		assertScheduled(con.scheduled, 12.5);
+
+		clock.setTime(12);
+		assertEquals(50, con.getRemainingByteCount());
+		assertFalse(con.isMessageTransferred());
+		clock.setTime(12.5);
+		assertTrue(con.isMessageTransferred());
+	}
+
+	/**
+	 * Interface whose transmit speed can be changed
+	 */
+	private static class SpeedInterface extends TestInterface {
+		public SpeedInterface(int speed) {
+			super(1.0, speed);
+		}
+
+		public SpeedInterface(SpeedInterface si) {
+			super(si);
+		}
+
+		public void setSpeed(int speed) {
+			this.transmitSpeed = speed;
+		}
+
+		@Override
+		public SpeedInterface replicate() {
+			return new SpeedInterface(this);
+		}
+	}
+
+	/**
+	 * VBRConnection that records the completion times it schedules
+	 * instead of scheduling world updates
+	 */
+	private static class ScheduledVBRConnection extends VBRConnection {
+		private List<Double> scheduled = new ArrayList<Double>();
+
+		public ScheduledVBRConnection(DTNHost fromNode,
+				NetworkInterface fromInterface, DTNHost toNode,
+				NetworkInterface toInterface) {
+			super(fromNode, fromInterface, toNode, toInterface);
+		}
+
+		@Override
+		protected void scheduleCompletion(double time) {
+			scheduled.add(time);
+		}
+	}
+
+	/**
+	 * CBRConnection that records the completion times it schedules
+	 */
+	private static class ScheduledCBRConnection extends CBRConnection {
+		private List<Double> scheduled = new ArrayList<Double>();
+
+		public ScheduledCBRConnection(DTNHost fromNode,
+				NetworkInterface fromInterface, DTNHost toNode,
+				NetworkInterface toInterface, int speed) {
+			super(fromNode, fromInterface, toNode, toInterface, speed);
+		}
+
+		@Override
+		protected void scheduleCompletion(double time) {
+			scheduled.add(time);
+		}
+	}
+}
@@ -7,12 +7,21 @@ package test;
 import input.EventQueue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
+import movement.ActivenessHandler;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import core.CBRConnection;
+import core.Connection;
+import core.Coord;
 import core.DTNHost;
+import core.Message;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
 import core.UpdateListener;
 import core.World;
@@ -31,6 +40,10 @@ public class WorldTest extends TestCase {
 	private double upInterval = 0.1;
 	private List<TestDTNHost> testHosts;
 	private List<EventQueue> eQueues;
+	private List<Double> completions = new ArrayList<Double>();
+	/** active times of the hosts of the sleeping tests (null = always) */
+	private static final String[] ACTIVE_TIMES = {null, "0,0.45,1.05,2",
+		"0.25,0.65,1.02,2", "1.08,2"};
 	
 	protected void setUp() throws Exception {
 		super.setUp();
@@ -97,8 +110,284 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(5);
 
 	}
+
+	/**
+	 * Tests that the transfer events complete the transfers at their
+	 * exact times without extra host updates and that the replaced and
+	 * cancelled events are discarded
+	 */
+	public void testTransferCompletion() {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(1.0, 1));
+		DTNHost from = new DTNHost(null, null, "TST", li,
+				new ModuleCommunicationBus(),
+				new StationaryMovement(new Coord(0,0)), new CompletionRouter());
+		TestDTNHost to = testHosts.get(0);
+		ScheduledConnection con = new ScheduledConnection(from,
+				from.getInterfaces().get(0), to, to.getInterfaces().get(0));
+
+		con.startTransfer(from, new Message(from, to, "M1", 25));
+		world.update();
+		world.update();
+		assertEquals(0, completions.size());
+		world.update();
+		assertEquals(1, completions.size());
+		assertEquals(0.25, completions.get(0), TIME_DELTA);
+		assertEquals("M1", to.transferredId);
+		assertEquals(0.3, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(3); // no extra updates for the completion
+
+		/* completion at 0.55 is replaced by an earlier one */
+		con.startTransfer(from, new Message(from, to, "M2", 25));
+		world.scheduleTransferCompletion(con, 0.42);
+		for (int i=0; i<4; i++) {
+			world.update();
+		}
+		assertEquals(2, completions.size());
+		assertEquals(0.42, completions.get(1), TIME_DELTA);
+		assertEquals("M2", to.transferredId);
+
+		/* aborting the transfer cancels its completion */
+		con.startTransfer(from, new Message(from, to, "M3", 25));
+		con.abortTransfer();
+		for (int i=0; i<4; i++) {
+			world.update();
+		}
+		assertEquals(2, completions.size());
+		assertEquals("M3", to.abortedId);
+		assertNrofUpdates(11);
+	}
+
+	/**
+	 * Tests that the inactive hosts sleep outside their active times, are
+	 * not in the connectivity optimizer while they sleep, and are woken up
+	 * in address order when their next active time starts
+	 */
+	public void testSleepInactiveHosts() {
+		List<String> log = new ArrayList<String>();
+		List<SleepyHost> hosts = createSleepyHosts(true, log);
+		SleepyHost a = hosts.get(0);
+		SleepyHost b = hosts.get(1);
+		SleepyHost c = hosts.get(2);
+		SleepyHost d = hosts.get(3);
+
+		/* c and d are inactive at first */
+		world.update();
+		assertSleepyUpdates(hosts, 1, 1, 1, 1);
+		assertInOptimizer(hosts, true, true, false, false);
+		world.update();
+		assertSleepyUpdates(hosts, 2, 2, 1, 1);
+
+		/* c wakes up at 0.25 */
+		world.update();
+		assertSleepyUpdates(hosts, 3, 3, 2, 1);
+		assertInOptimizer(hosts, true, true, true, false);
+
+		/* b sleeps after 0.45 and c after 0.65 */
+		for (int i=0; i<7; i++) {
+			world.update();
+		}
+		assertEquals(1.0, SimClock.getTime(), TIME_DELTA);
+		assertSleepyUpdates(hosts, 10, 5, 6, 1);
+		assertInOptimizer(hosts, true, false, false, false);
+
+		/* all wake up for the round at 1.1, c first but updated after b */
+		log.clear();
+		world.update();
+		assertSleepyUpdates(hosts, 11, 6, 7, 2);
+		assertInOptimizer(hosts, true, true, true, true);
+		assertEquals(Arrays.asList("11:0", "11:1", "11:2", "11:3"), log);
+		assertTrue(a.compareTo(b) < 0 && b.compareTo(c) < 0 &&
+				c.compareTo(d) < 0);
+	}
+
+	/**
+	 * Tests that the active hosts are updated in the same order whether
+	 * inactive hosts sleep or not
+	 */
+	public void testSleepingResults() {
+		List<String> sleepLog = new ArrayList<String>();
+		List<String> awakeLog = new ArrayList<String>();
+
+		List<SleepyHost> sleepHosts = createSleepyHosts(true, sleepLog);
+		for (int i=0; i<25; i++) {
+			world.update();
+		}
+		List<SleepyHost> awakeHosts = createSleepyHosts(false, awakeLog);
+		for (int i=0; i<25; i++) {
+			world.update();
+		}
+
+		assertEquals(awakeLog, sleepLog);
+		assertEquals(sleepHosts.get(0).nrofUpdate,
+				awakeHosts.get(0).nrofUpdate);
+		assertTrue(sleepHosts.get(3).nrofUpdate <
+				awakeHosts.get(3).nrofUpdate);
+	}
+
+	/**
+	 * Creates a new world for hosts with the {@link #ACTIVE_TIMES} and
+	 * returns the hosts
+	 * @param sleep Should the inactive hosts sleep
+	 * @param log The log where the hosts record their active updates
+	 * @return The hosts of the world in address (and index) order
+	 */
+	private List<SleepyHost> createSleepyHosts(boolean sleep,
+			List<String> log) {
+		SimClock.reset();
+		List<SleepyHost> hosts = new ArrayList<SleepyHost>();
+		for (int i=0; i<ACTIVE_TIMES.length; i++) {
+			/* each host resets the test settings */
+			TestSettings ts = new TestSettings();
+			if (ACTIVE_TIMES[i] != null) {
+				ts.putSetting("Sleepy" + i + "." +
+						ActivenessHandler.ACTIVE_TIMES_S, ACTIVE_TIMES[i]);
+			}
+			hosts.add(new SleepyHost(i, new Settings("Sleepy" + i), log));
+		}
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+		ts.putSetting(World.SETTINGS_NS + "." + World.SLEEP_INACTIVE_S,
+				String.valueOf(sleep));
+		this.world = new World(new ArrayList<DTNHost>(hosts), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+		return hosts;
+	}
+
+	private void assertSleepyUpdates(List<SleepyHost> hosts, int... nrofs) {
+		for (int i=0; i<nrofs.length; i++) {
+			assertEquals("host " + i, nrofs[i], hosts.get(i).nrofUpdate);
+		}
+	}
+
+	private void assertInOptimizer(List<SleepyHost> hosts,
+			boolean... present) {
+		for (int i=0; i<present.length; i++) {
+			OptimizerInterface ni =
+				(OptimizerInterface)hosts.get(i).getInterfaces().get(0);
+			assertEquals("host " + i, present[i], ni.isInOptimizer());
+		}
+	}
 	
 
+	/**
+	 * Router that records the times of the transfer completions and
+	 * finalizes the transfers
+	 */
+	private class CompletionRouter extends PassiveRouter {
+		public CompletionRouter() {
+			super(new TestSettings());
+		}
+
+		@Override
+		public void transferCompleted(Connection con) {
+			completions.add(SimClock.getTime());
+			con.finalizeTransfer();
+		}
+
+		@Override
+		public MessageRouter replicate() {
+			return this;
+		}
+	}
+
+	/**
+	 * Connection whose transfer completions are scheduled to the world of
+	 * the test
+	 */
+	private class ScheduledConnection extends CBRConnection {
+		public ScheduledConnection(DTNHost fromNode,
+				NetworkInterface fromInterface, DTNHost toNode,
+				NetworkInterface toInterface) {
+			super(fromNode, fromInterface, toNode, toInterface, 100);
+		}
+
+		@Override
+		protected void scheduleCompletion(double time) {
+			world.scheduleTransferCompletion(this, time);
+		}
+	}
+
+	/**
+	 * Host whose activeness follows its active times and that records its
+	 * updates while active as "round:index" to a log
+	 */
+	private class SleepyHost extends TestDTNHost {
+		private int index;
+		private List<String> log;
+
+		public SleepyHost(int index, Settings s, List<String> log) {
+			super(createOptimizerInterfaces(), new ModuleCommunicationBus(),
+					new ActiveTimesMovement(new ActivenessHandler(s)));
+			this.index = index;
+			this.log = log;
+		}
+
+		@Override
+		public void update(boolean up) {
+			super.update(up);
+			if (isActive()) {
+				log.add(Math.round(SimClock.getTime() / upInterval) + ":" +
+						index);
+			}
+		}
+	}
+
+	private static List<NetworkInterface> createOptimizerInterfaces() {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new OptimizerInterface(new TestInterface(1.0, 1)));
+		return li;
+	}
+
+	/**
+	 * Interface that tells if it is in its connectivity optimizer
+	 */
+	private static class OptimizerInterface extends TestInterface {
+		public OptimizerInterface(TestInterface ti) {
+			super(ti);
+		}
+
+		public boolean isInOptimizer() {
+			return optimizer.getAllInterfaces().contains(this);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new OptimizerInterface(this);
+		}
+	}
+
+	/**
+	 * Stationary movement that is active at the times of its activeness
+	 * handler
+	 */
+	private static class ActiveTimesMovement extends StationaryMovement {
+		private ActivenessHandler ah;
+
+		public ActiveTimesMovement(ActivenessHandler ah) {
+			super(new Coord(0,0));
+			this.ah = ah;
+		}
+
+		@Override
+		public boolean isActive() {
+			return ah.isActive();
+		}
+
+		@Override
+		public double getNextActiveTime() {
+			return ah.getNextActiveTime();
+		}
+
+		@Override
+		public ActiveTimesMovement replicate() {
+			return this;
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
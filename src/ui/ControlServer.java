@@ -0,0 +1,423 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import core.MetricsRegistry;
+import core.MetricsRegistry.Counter;
+import core.MetricsRegistry.Gauge;
+import core.MetricsRegistry.Histogram;
+import core.MetricsRegistry.Metric;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Local HTTP server for monitoring and controlling headless simulation
+ * runs (see {@link DTNSimServerUI}). The server listens on the loopback
+ * address only and answers with JSON objects. The POST requests must have
+ * the access token of the server in the {@value #TOKEN_HEADER} header.
+ * The token is created when the server is started and written to a file
+ * that only the user who runs the simulation can read (see
+ * {@link #TOKEN_FILE_S}).
+ * <UL>
+ * <LI>GET /status : state of the current run, simulated seconds per
+ * second, event queue depths, heap usage, time spent in the update phases
+ * and the values of the {@link MetricsRegistry} metrics (e.g. the RR
+ * congestion metrics)</LI>
+ * <LI>POST /pause : pauses the current run after the ongoing update</LI>
+ * <LI>POST /resume : resumes a paused run</LI>
+ * <LI>POST /cancel : cancels the current run (its reports are written and
+ * the next run of the batch is started)</LI>
+ * <LI>POST /stop : cancels the current run (if any) and the rest of the
+ * batch</LI>
+ * </UL>
+ */
+public class ControlServer {
+	/** namespace of the server settings ({@value}) */
+	public static final String SETTINGS_NS = "Server";
+	/**
+	 * Port -setting id ({@value}). The port of the loopback address where
+	 * the server listens. Zero picks a free port (see {@link #getPort()}).
+	 * Default is {@value #DEF_PORT}.
+	 */
+	public static final String PORT_S = "port";
+	/**
+	 * Token file -setting id ({@value}). Path of the file where the access
+	 * token is written. An existing file is replaced. Default is a new file
+	 * in the temporary directory. The file is deleted when the server is
+	 * stopped.
+	 */
+	public static final String TOKEN_FILE_S = "tokenFile";
+	/**
+	 * Status interval -setting id ({@value}). How often (milliseconds of
+	 * real time) the status of the running simulation is updated. Default
+	 * is {@value #DEF_STATUS_INTERVAL}.
+	 */
+	public static final String STATUS_INTERVAL_S = "statusInterval";
+	/** default value of the port setting */
+	public static final int DEF_PORT = 0;
+	/** default value of the status interval setting */
+	public static final int DEF_STATUS_INTERVAL = 1000;
+	/** name of the request header with the access token ({@value}) */
+	public static final String TOKEN_HEADER = "X-Control-Token";
+
+	/** how many random bytes the access token has */
+	private static final int TOKEN_BYTES = 16;
+
+	private HttpServer httpServer;
+	private int statusInterval;
+	/** the access token of the POST requests (hexadecimal) */
+	private String token;
+	private Path tokenFile;
+	/** the run that is controlled (null before the first run) */
+	private volatile DTNSimServerUI run;
+	private volatile int runIndex;
+	private volatile int lastRunIndex;
+	/** has the rest of the batch been cancelled */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor. Reads the settings, binds the server to its port and
+	 * writes the access token to the token file.
+	 * @throws SimError if the server can't be bound to the port or the
+	 * token file can't be written
+	 */
+	public ControlServer() {
+		Settings s = new Settings(SETTINGS_NS);
+		int port = s.contains(PORT_S) ? s.getInt(PORT_S) : DEF_PORT;
+		this.statusInterval = s.contains(STATUS_INTERVAL_S) ?
+				s.getInt(STATUS_INTERVAL_S) : DEF_STATUS_INTERVAL;
+		String tokenFileName = s.contains(TOKEN_FILE_S) ?
+				s.getSetting(TOKEN_FILE_S) : null;
+
+		if (port < 0 || port > 65535) {
+			throw new SettingsError("Invalid port " + port + " for " +
+					SETTINGS_NS + "." + PORT_S);
+		}
+
+		try {
+			this.httpServer = HttpServer.create(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new SimError("Can't bind the control server to port " +
+					port + ": " + e.getMessage(), e);
+		}
+		httpServer.createContext("/", new RequestHandler());
+
+		byte[] bytes = new byte[TOKEN_BYTES];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		this.token = sb.toString();
+
+		try {
+			this.tokenFile = writeTokenFile(tokenFileName, this.token);
+		} catch (IOException e) {
+			httpServer.stop(0);
+			throw new SimError("Can't write the control server token file: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Creates a file that only the owner can read and write and writes the
+	 * token to it
+	 * @param name Path of the file or null for a new temporary file
+	 * @param token The token to write
+	 * @return Path of the file
+	 * @throws IOException if the file can't be written
+	 */
+	private static Path writeTokenFile(String name, String token)
+			throws IOException {
+		boolean posix = FileSystems.getDefault().supportedFileAttributeViews()
+			.contains("posix");
+		Set<PosixFilePermission> perms =
+			PosixFilePermissions.fromString("rw-------");
+		FileAttribute<?>[] attrs = (posix ? new FileAttribute<?>[] {
+				PosixFilePermissions.asFileAttribute(perms)} :
+				new FileAttribute<?>[0]);
+		Path file;
+
+		if (name == null) {
+			file = Files.createTempFile("one-control", ".token", attrs);
+		}
+		else {
+			/* a new file, so nobody else has it open already */
+			file = Paths.get(name);
+			Files.deleteIfExists(file);
+			Files.createFile(file, attrs);
+		}
+		if (!posix) {
+			File f = file.toFile();
+			f.setReadable(false, false);
+			f.setWritable(false, false);
+			f.setReadable(true, true);
+			f.setWritable(true, true);
+		}
+
+		Files.write(file, token.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	/**
+	 * Starts answering requests
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/**
+	 * Stops the server and deletes the token file
+	 */
+	public void stop() {
+		httpServer.stop(0);
+		try {
+			Files.deleteIfExists(this.tokenFile);
+		} catch (IOException e) {
+			System.err.println("Can't delete " + tokenFile + ": " +
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the path of the file where the access token is written
+	 * @return the path of the token file
+	 */
+	public String getTokenFile() {
+		return this.tokenFile.toString();
+	}
+
+	/**
+	 * Returns true if the token of a request is the access token
+	 * @param requestToken The token of the request (or null)
+	 * @return true if the token is valid
+	 */
+	private boolean isValidToken(String requestToken) {
+		if (requestToken == null) {
+			return false;
+		}
+		/* compares all the bytes so the time doesn't tell how many match */
+		return MessageDigest.isEqual(
+				this.token.getBytes(StandardCharsets.US_ASCII),
+				requestToken.trim().getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Returns the port where the server listens
+	 * @return the port where the server listens
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the status update interval
+	 * @return the status update interval (milliseconds)
+	 */
+	public int getStatusInterval() {
+		return this.statusInterval;
+	}
+
+	/**
+	 * Sets the run that is monitored and controlled
+	 * @param run The run
+	 * @param index Index of the run in the batch
+	 * @param lastIndex Index of the last run of the batch
+	 */
+	public void setRun(DTNSimServerUI run, int index, int lastIndex) {
+		this.runIndex = index;
+		this.lastRunIndex = lastIndex;
+		this.run = run;
+	}
+
+	/**
+	 * Returns true if the rest of the batch has been cancelled
+	 * @return true if no more runs should be started
+	 */
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
+	/**
+	 * Returns the JSON object of the server and the current run
+	 */
+	private String getStatus() {
+		DTNSimServerUI r = this.run;
+		Runtime rt = Runtime.getRuntime();
+		StringBuilder sb = new StringBuilder("{");
+
+		sb.append("\"run\":").append(runIndex);
+		sb.append(",\"lastRun\":").append(lastRunIndex);
+		sb.append(",\"state\":").append(quote(r != null ? r.getState() :
+			DTNSimServerUI.STATE_STARTING));
+		sb.append(",\"heap\":{\"used\":").append(
+				rt.totalMemory() - rt.freeMemory());
+		sb.append(",\"committed\":").append(rt.totalMemory());
+		sb.append(",\"max\":").append(rt.maxMemory()).append('}');
+
+		String runStatus = (r != null ? r.getStatus() : null);
+		if (runStatus != null) {
+			sb.append(',').append(runStatus);
+		}
+
+		sb.append(",\"metrics\":{");
+		boolean first = true;
+		for (Map.Entry<String, Metric> e :
+				MetricsRegistry.getMetrics().entrySet()) {
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append(quote(e.getKey())).append(':');
+			appendMetric(sb, e.getValue());
+		}
+		sb.append("}}");
+
+		return sb.toString();
+	}
+
+	private static void appendMetric(StringBuilder sb, Metric m) {
+		if (m instanceof Counter) {
+			sb.append(((Counter)m).getCount());
+		}
+		else if (m instanceof Gauge) {
+			sb.append(number(((Gauge)m).getValue()));
+		}
+		else if (m instanceof Histogram) {
+			Histogram h = (Histogram)m;
+			sb.append("{\"count\":").append(h.getCount());
+			sb.append(",\"min\":").append(number(h.getMin()));
+			sb.append(",\"mean\":").append(number(h.getMean()));
+			sb.append(",\"p50\":").append(number(h.getPercentile(50)));
+			sb.append(",\"p90\":").append(number(h.getPercentile(90)));
+			sb.append(",\"p99\":").append(number(h.getPercentile(99)));
+			sb.append(",\"max\":").append(number(h.getMax())).append('}');
+		}
+		else {
+			sb.append(quote(m.getValueString()));
+		}
+	}
+
+	/**
+	 * Returns a string as a JSON string literal
+	 * @param s The string
+	 * @return The quoted and escaped string
+	 */
+	public static String quote(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i=0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int)c));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Returns a number as a JSON value
+	 * @param value The number
+	 * @return The number or null if it's not finite
+	 */
+	public static String number(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return "null";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Handles the requests of all the paths
+	 */
+	private class RequestHandler implements HttpHandler {
+		public void handle(HttpExchange ex) throws IOException {
+			String path = ex.getRequestURI().getPath();
+			boolean post = ex.getRequestMethod().equalsIgnoreCase("POST");
+			DTNSimServerUI r = run;
+			int code = 200;
+			String body;
+
+			if (path.equals("/status")) {
+				body = getStatus();
+			}
+			else if (!path.equals("/pause") && !path.equals("/resume") &&
+					!path.equals("/cancel") && !path.equals("/stop")) {
+				code = 404;
+				body = "{\"error\":\"unknown path\"}";
+			}
+			else if (!post) {
+				code = 405;
+				body = "{\"error\":\"use POST\"}";
+			}
+			else if (!isValidToken(ex.getRequestHeaders().getFirst(
+					TOKEN_HEADER))) {
+				code = 403;
+				body = "{\"error\":\"invalid token\"}";
+			}
+			else if (path.equals("/stop")) {
+				stopped = true; // also before the first run has started
+				if (r != null) {
+					r.cancel();
+				}
+				body = "{\"state\":" + (r != null ? quote(r.getState()) :
+					"null") + "}";
+			}
+			else if (r == null) {
+				code = 409;
+				body = "{\"error\":\"no run to control\"}";
+			}
+			else {
+				if (path.equals("/pause")) {
+					r.pause();
+				}
+				else if (path.equals("/resume")) {
+					r.resume();
+				}
+				else {
+					r.cancel();
+				}
+				body = "{\"state\":" + quote(r.getState()) + "}";
+			}
+
+			byte[] bytes = body.getBytes("UTF-8");
+			ex.getResponseHeaders().set("Content-Type", "application/json");
+			ex.sendResponseHeaders(code, bytes.length);
+			OutputStream out = ex.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+	}
+}
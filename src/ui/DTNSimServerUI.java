@@ -0,0 +1,231 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package ui;
+
+import input.EventQueue;
+import input.ExternalEventsQueue;
+import core.SimClock;
+import core.World;
+
+/**
+ * Headless user interface that is monitored and controlled through a
+ * {@link ControlServer}. The simulation runs like with the text UI, but it
+ * can be paused, resumed and cancelled between the world updates. The
+ * status of the run is updated every
+ * {@link ControlServer#STATUS_INTERVAL_S} milliseconds.
+ */
+public class DTNSimServerUI extends DTNSimUI {
+	/** State of a run that hasn't started to update the world yet */
+	public static final String STATE_STARTING = "starting";
+	/** State of a running run */
+	public static final String STATE_RUNNING = "running";
+	/** State of a paused run */
+	public static final String STATE_PAUSED = "paused";
+	/** State of a run that has been cancelled */
+	public static final String STATE_CANCELLED = "cancelled";
+	/** State of a run that has reached its end time */
+	public static final String STATE_DONE = "done";
+	/** State of a run that failed */
+	public static final String STATE_FAILED = "failed";
+
+	/** names of the update phases in the status */
+	private static final String[] PHASE_NAMES = {"events", "movement",
+		"hosts", "listeners"};
+
+	private ControlServer server;
+	/** is pausing requested */
+	private boolean paused;
+	/** state of a finished run (null while the run isn't finished) */
+	private volatile String finalState;
+	/** JSON fields of the latest status (null before the first status) */
+	private volatile String status;
+	private long startTime;	// simulation start time
+	private long lastUpdateRt;	// real time of last status update
+	private double ssps = Double.NaN;	// simulated seconds per second
+
+	/**
+	 * Constructor.
+	 * @param server The server that controls this run
+	 */
+	public DTNSimServerUI(ControlServer server) {
+		this.server = server;
+	}
+
+	protected void runSim() {
+		double simTime = SimClock.getTime();
+		double endTime = scen.getEndTime();
+
+		print("Running simulation '" + scen.getName() + "'");
+
+		world.setPhaseTiming(true);
+		startTime = System.currentTimeMillis();
+		lastUpdateRt = startTime;
+		updateStatus();
+
+		while (simTime < endTime && waitWhilePaused()) {
+			try {
+				world.update();
+			} catch (AssertionError e) {
+				e.printStackTrace();
+				done();
+				finish(STATE_FAILED);
+				return;
+			}
+			simTime = SimClock.getTime();
+			if (System.currentTimeMillis() - lastUpdateRt >=
+					server.getStatusInterval()) {
+				updateStatus();
+			}
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+
+		simDone = true;
+		done();
+		finish(isCancelled() ? STATE_CANCELLED : STATE_DONE);
+
+		print("Simulation " + finalState + " in " +
+				String.format("%.2f", duration) + "s");
+	}
+
+	/**
+	 * Waits while the run is paused
+	 * @return false if the run has been cancelled
+	 */
+	private synchronized boolean waitWhilePaused() {
+		if (paused && !simCancelled) {
+			updateStatus();
+		}
+		while (paused && !simCancelled) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				simCancelled = true;
+			}
+		}
+		return !simCancelled;
+	}
+
+	private synchronized boolean isCancelled() {
+		return simCancelled;
+	}
+
+	private void finish(String state) {
+		updateStatus();
+		this.finalState = state;
+	}
+
+	/**
+	 * Pauses the run after the ongoing world update
+	 */
+	public synchronized void pause() {
+		this.paused = true;
+	}
+
+	/**
+	 * Resumes a paused run
+	 */
+	public synchronized void resume() {
+		this.paused = false;
+		notifyAll();
+	}
+
+	/**
+	 * Cancels the run. The ongoing world update is cut short
+	 * (see {@link World#cancelSim()}) and the reports are written.
+	 */
+	public synchronized void cancel() {
+		this.simCancelled = true;
+		if (this.world != null) {
+			world.cancelSim();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns the state of the run (one of the STATE_ constants)
+	 * @return the state of the run
+	 */
+	public synchronized String getState() {
+		if (finalState != null) {
+			return finalState;
+		}
+		if (simCancelled) {
+			return STATE_CANCELLED;
+		}
+		if (paused) {
+			return STATE_PAUSED;
+		}
+		return (status == null ? STATE_STARTING : STATE_RUNNING);
+	}
+
+	/**
+	 * Returns the JSON fields (without the enclosing braces) of the latest
+	 * status of the run
+	 * @return the status fields or null if the run hasn't started yet
+	 */
+	public String getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * Updates the status of the run. Must be called from the simulation
+	 * thread.
+	 */
+	private void updateStatus() {
+		long now = System.currentTimeMillis();
+		long diff = now - this.lastUpdateRt;
+		double simTime = SimClock.getTime();
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("\"simTime\":").append(ControlServer.number(simTime));
+		sb.append(",\"endTime\":").append(
+				ControlServer.number(scen.getEndTime()));
+		sb.append(",\"realTime\":").append((now - startTime) / 1000.0);
+		if (diff > 0) {
+			this.ssps = ((simTime - lastUpdate) * 1000) / diff;
+			this.lastUpdateRt = now;
+			this.lastUpdate = simTime;
+		}
+		sb.append(",\"simSecondsPerSecond\":").append(
+				ControlServer.number(ssps));
+		sb.append(",\"hosts\":").append(world.getHosts().size());
+
+		sb.append(",\"eventQueues\":[");
+		for (EventQueue eq : scen.getExternalEvents()) {
+			sb.append("{\"type\":").append(
+					ControlServer.quote(eq.getClass().getSimpleName()));
+			sb.append(",\"nextEventTime\":").append(
+					nextTime(eq.nextEventsTime()));
+			if (eq instanceof ExternalEventsQueue) {
+				sb.append(",\"buffered\":").append(
+						((ExternalEventsQueue)eq).eventsLeftInBuffer());
+			}
+			sb.append("},");
+		}
+		sb.append("{\"type\":\"ScheduledUpdatesQueue\",\"size\":").append(
+				world.getNrofScheduledUpdates()).append("}]");
+
+		long[] times = world.getPhaseTimes();
+		sb.append(",\"phaseSeconds\":{");
+		for (int i=0; i < World.NROF_PHASES; i++) {
+			sb.append(i > 0 ? "," : "").append(
+					ControlServer.quote(PHASE_NAMES[i]));
+			sb.append(':').append(times != null ? times[i] / 1e9 : 0.0);
+		}
+		sb.append('}');
+
+		this.status = sb.toString();
+	}
+
+	private static String nextTime(double time) {
+		return (time == Double.MAX_VALUE ? "null" :
+			ControlServer.number(time));
+	}
+
+	private void print(String txt) {
+		System.out.println(txt);
+	}
+}